@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Synthetic data with realistic properties for benchmarks. All methods are deterministic for
+ * the same {@link Random} seed.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class BenchmarkData {
+
+    /** Seed for the random generators in the benchmarks. */
+    public static final long SEED = 1984;
+
+    private static final byte[] BASES = {'A', 'C', 'G', 'T'};
+
+    /** Cannot be instantiated. */
+    private BenchmarkData() {}
+
+    /** Generates random bases, with the provided probability of N at each position. */
+    public static byte[] randomBases(final Random random, final int length,
+            final double nProbability) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = (random.nextDouble() < nProbability) ? (byte) 'N' : BASES[random.nextInt(4)];
+        }
+        return bases;
+    }
+
+    /**
+     * Generates Illumina-like qualities (Standard encoding, not ASCII-offset): high quality at
+     * the beginning which degrades towards the 3' end, and some reads ending with a tail of Q2.
+     */
+    public static byte[] illuminaQualities(final Random random, final int length) {
+        final byte[] quals = new byte[length];
+        // 10% of the reads have a tail of Q2 in the last 20% of the read
+        final int q2Start = (random.nextDouble() < 0.1) ? length - length / 5 : length;
+        for (int i = 0; i < length; i++) {
+            if (i >= q2Start) {
+                quals[i] = 2;
+            } else {
+                final double decay = 20.0 * i * i / ((double) length * length);
+                final int q = (int) Math.round(37 - decay + 3 * random.nextGaussian());
+                quals[i] = (byte) Math.max(2, Math.min(41, q));
+            }
+        }
+        return quals;
+    }
+
+    /** Generates a set of unique random barcodes, without Ns. */
+    public static Set<String> randomBarcodes(final Random random, final int number,
+            final int length) {
+        final Set<String> barcodes = new LinkedHashSet<>(number);
+        while (barcodes.size() < number) {
+            barcodes.add(new String(randomBases(random, length, 0)));
+        }
+        return barcodes;
+    }
+
+    /**
+     * Sequenced version of a barcode: exact match (70%), one mismatch (20%), one N (5%) or a
+     * random sequence (5%).
+     */
+    public static String sequencedBarcode(final Random random, final String barcode) {
+        final double p = random.nextDouble();
+        if (p < 0.7) {
+            return barcode;
+        }
+        if (p >= 0.95) {
+            return new String(randomBases(random, barcode.length(), 0));
+        }
+        final byte[] bases = barcode.getBytes();
+        final int position = random.nextInt(bases.length);
+        if (p < 0.9) {
+            bases[position] = BASES[(indexOf(bases[position]) + 1 + random.nextInt(3)) % 4];
+        } else {
+            bases[position] = 'N';
+        }
+        return new String(bases);
+    }
+
+    private static int indexOf(final byte base) {
+        for (int i = 0; i < BASES.length; i++) {
+            if (BASES[i] == base) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /** Creates an unmapped read with random bases and Illumina-like qualities. */
+    public static GATKRead randomRead(final Random random, final String name, final int length) {
+        final GATKRead read = ArtificialReadUtils.createArtificialUnmappedRead(null,
+                randomBases(random, length, 0.001), illuminaQualities(random, length));
+        read.setName(name);
+        return read;
+    }
+
+    /** Creates a Illumina-like read name. */
+    public static String illuminaReadName(final Random random) {
+        return String.format("HWI-ST1234:8:%d:%d:%d", 1101 + random.nextInt(16),
+                random.nextInt(20000), random.nextInt(200000));
+    }
+}
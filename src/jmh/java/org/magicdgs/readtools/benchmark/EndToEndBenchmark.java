@@ -0,0 +1,278 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.benchmark;
+
+import org.magicdgs.readtools.BenchmarkData;
+import org.magicdgs.readtools.Main;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end benchmark for ReadTools: generates synthetic data with
+ * {@link SyntheticDataGenerator} (if not already generated) and runs the tools in-process through
+ * {@link Main}, reporting a tab-delimited table with reads/second, MB/second, peak heap and GC
+ * time for each run.
+ *
+ * Options (all optional):
+ *
+ * - {@code --directory}: directory for the data and the results (default: benchmark).
+ * - {@code --pairs}: number of pairs to generate (default: 1000000).
+ * - {@code --readLength}: length of the reads (default: 150).
+ * - {@code --samples}: number of samples in the barcode dictionary (default: 96).
+ * - {@code --threads}: value for the {@code --threads} argument of the tools (default: 1).
+ * - {@code --repeats}: number of measured runs for each tool, after one warm-up (default: 3).
+ * - {@code --tools}: comma-separated tools to run (default: all).
+ *
+ * The results are also written to {@code results.tsv} in the directory.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class EndToEndBenchmark {
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private static final String HEADER = String.join("\t", "TOOL", "INPUT", "RUN", "READS",
+            "SECONDS", "READS_PER_SECOND", "INPUT_MB", "INPUT_MB_PER_SECOND", "OUTPUT_MB",
+            "PEAK_HEAP_MB", "GC_SECONDS", "GC_COUNT");
+
+    private final Path dataDirectory;
+    private final Path outputDirectory;
+    private final long numberOfReads;
+    private final int threads;
+
+    private EndToEndBenchmark(final Path directory, final long numberOfReads, final int threads) {
+        this.dataDirectory = directory.resolve("data");
+        this.outputDirectory = directory.resolve("output");
+        this.numberOfReads = numberOfReads;
+        this.threads = threads;
+    }
+
+    // definition of a tool run: input files and arguments
+    private static final class Scenario {
+        private final String tool;
+        private final List<String> inputs;
+        private final Function<EndToEndBenchmark, List<String>> arguments;
+
+        private Scenario(final String tool, final List<String> inputs,
+                final Function<EndToEndBenchmark, List<String>> arguments) {
+            this.tool = tool;
+            this.inputs = inputs;
+            this.arguments = arguments;
+        }
+    }
+
+    private static final List<Scenario> SCENARIOS = Arrays.asList(
+            new Scenario("StandardizeReads", SyntheticDataGenerator.PAIRED_FASTQ_GZ,
+                    b -> b.pairedInput(SyntheticDataGenerator.PAIRED_FASTQ_GZ,
+                            "--output", b.output("StandardizeReads", "standard.bam"))),
+            new Scenario("AssignReadGroupByBarcode",
+                    Collections.singletonList(SyntheticDataGenerator.TAGGED_BAM),
+                    b -> Arrays.asList(
+                            "--input", b.data(SyntheticDataGenerator.TAGGED_BAM),
+                            "--interleavedInput", "true",
+                            "--barcodeFile", b.data(SyntheticDataGenerator.BARCODES),
+                            "--maximumMismatches", "1",
+                            "--keepDiscarded", "true",
+                            "--output", b.output("AssignReadGroupByBarcode", "assigned"))),
+            new Scenario("TrimReads", SyntheticDataGenerator.PAIRED_FASTQ_GZ,
+                    b -> b.pairedInput(SyntheticDataGenerator.PAIRED_FASTQ_GZ,
+                            "--output", b.output("TrimReads", "trimmed.bam"))),
+            new Scenario("ReadsToFastq",
+                    Collections.singletonList(SyntheticDataGenerator.TAGGED_BAM),
+                    b -> Arrays.asList(
+                            "--input", b.data(SyntheticDataGenerator.TAGGED_BAM),
+                            "--interleavedInput", "true",
+                            "--output", b.output("ReadsToFastq", "converted"))),
+            new Scenario("ReadsToDistmap", SyntheticDataGenerator.PAIRED_FASTQ,
+                    b -> b.pairedInput(SyntheticDataGenerator.PAIRED_FASTQ,
+                            "--output", b.output("ReadsToDistmap", "distmap.txt")))
+    );
+
+    private String data(final String name) {
+        return dataDirectory.resolve(name).toString();
+    }
+
+    private String output(final String tool, final String name) {
+        return outputDirectory.resolve(tool).resolve(name).toString();
+    }
+
+    private List<String> pairedInput(final List<String> pair, final String... args) {
+        final List<String> list = new ArrayList<>(Arrays.asList(
+                "--input", data(pair.get(0)), "--input2", data(pair.get(1))));
+        list.addAll(Arrays.asList(args));
+        return list;
+    }
+
+    // runs the scenario and returns the result line
+    private String run(final Scenario scenario, final String runName) throws IOException {
+        final List<String> args = new ArrayList<>();
+        args.add(scenario.tool);
+        args.addAll(scenario.arguments.apply(this));
+        args.addAll(Arrays.asList("--forceOverwrite", "true",
+                "--threads", String.valueOf(threads),
+                "--verbosity", "ERROR", "--QUIET", "true"));
+
+        final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+        final List<GarbageCollectorMXBean> collectors =
+                ManagementFactory.getGarbageCollectorMXBeans();
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        final long gcMillisBefore = collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+        final long gcCountBefore = collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+
+        final long start = System.nanoTime();
+        new Main().instanceMain(args.toArray(new String[args.size()]));
+        final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        final long gcMillis = collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum() - gcMillisBefore;
+        final long gcCount = collectors.stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum() - gcCountBefore;
+        final long peakHeap = heapPools.stream()
+                .mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        long inputBytes = 0;
+        for (final String input : scenario.inputs) {
+            inputBytes += Files.size(dataDirectory.resolve(input));
+        }
+
+        return String.join("\t", scenario.tool, String.join(",", scenario.inputs), runName,
+                String.valueOf(numberOfReads),
+                format(seconds),
+                format(numberOfReads / seconds),
+                format(inputBytes / BYTES_PER_MB),
+                format(inputBytes / BYTES_PER_MB / seconds),
+                format(directorySize(outputDirectory.resolve(scenario.tool)) / BYTES_PER_MB),
+                format(peakHeap / BYTES_PER_MB),
+                format(gcMillis / 1000d),
+                String.valueOf(gcCount));
+    }
+
+    private static String format(final double value) {
+        return String.format("%.2f", value);
+    }
+
+    private static long directorySize(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length())
+                    .sum();
+        }
+    }
+
+    // parses --name value options, failing for unknown ones
+    private static Map<String, String> parseOptions(final String[] args,
+            final Map<String, String> defaults) {
+        final Map<String, String> options = new HashMap<>(defaults);
+        for (int i = 0; i < args.length; i += 2) {
+            final String name = args[i].replaceFirst("^--", "");
+            if (!defaults.containsKey(name) || i + 1 == args.length) {
+                throw new UserException.BadArgumentValue(args[i],
+                        "unknown option or without value; available options: " + defaults.keySet());
+            }
+            options.put(name, args[i + 1]);
+        }
+        return options;
+    }
+
+    /** Runs the benchmark from the command line. */
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("directory", "benchmark");
+        defaults.put("pairs", "1000000");
+        defaults.put("readLength", "150");
+        defaults.put("samples", "96");
+        defaults.put("threads", "1");
+        defaults.put("repeats", "3");
+        defaults.put("tools", SCENARIOS.stream().map(s -> s.tool)
+                .collect(Collectors.joining(",")));
+        final Map<String, String> options = parseOptions(args, defaults);
+
+        final Path directory = Paths.get(options.get("directory"));
+        final int pairs = Integer.parseInt(options.get("pairs"));
+        final int readLength = Integer.parseInt(options.get("readLength"));
+        final int samples = Integer.parseInt(options.get("samples"));
+        final SyntheticDataGenerator generator = new SyntheticDataGenerator(BenchmarkData.SEED,
+                pairs, readLength, samples);
+
+        // the data is re-used if it was generated with the same parameters
+        final Path dataDirectory = directory.resolve("data");
+        final String dataId = String.join("\t", options.get("pairs"), options.get("readLength"),
+                options.get("samples"));
+        final Path dataIdFile = dataDirectory.resolve("parameters.txt");
+        if (!Files.exists(dataIdFile)
+                || !dataId.equals(new String(Files.readAllBytes(dataIdFile)))) {
+            System.err.printf("Generating %d pairs of %dbp for %d samples in %s%n",
+                    pairs, readLength, samples, dataDirectory);
+            generator.generate(dataDirectory);
+            Files.write(dataIdFile, dataId.getBytes());
+        }
+
+        final EndToEndBenchmark benchmark = new EndToEndBenchmark(directory,
+                generator.getNumberOfReads(), Integer.parseInt(options.get("threads")));
+        final List<String> tools = Arrays.asList(options.get("tools").split(","));
+        final int repeats = Integer.parseInt(options.get("repeats"));
+
+        final List<String> results = new ArrayList<>();
+        results.add(HEADER);
+        System.out.println(HEADER);
+        for (final Scenario scenario : SCENARIOS) {
+            if (!tools.contains(scenario.tool)) {
+                continue;
+            }
+            // warm-up run, not reported
+            benchmark.run(scenario, "warm-up");
+            for (int i = 1; i <= repeats; i++) {
+                final String line = benchmark.run(scenario, String.valueOf(i));
+                results.add(line);
+                System.out.println(line);
+            }
+        }
+        Files.write(directory.resolve("results.tsv"), results);
+        System.err.println("Results written to " + directory.resolve("results.tsv"));
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.benchmark;
+
+import org.magicdgs.readtools.BenchmarkData;
+import org.magicdgs.readtools.RTDefaults;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.SAMUtils;
+import org.broadinstitute.hellbender.utils.BaseUtils;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generates synthetic inputs for the end-to-end benchmark, reproducible for the same seed. The
+ * generated pairs have the following properties:
+ *
+ * - Dual-indexed barcodes from a dictionary with the requested number of samples, sequenced with
+ * mismatches, Ns and unknown barcodes (see {@link BenchmarkData#sequencedBarcode(Random, String)}).
+ * - Illumina-like qualities (see {@link BenchmarkData#illuminaQualities(Random, int)}).
+ * - Short inserts with TruSeq adapters read-through in some of the pairs.
+ * - N-rich tails with low quality in some of the reads.
+ *
+ * The same pairs are written in the following files:
+ *
+ * - {@link #BARCODES}: barcode dictionary for the samples.
+ * - {@link #SINGLE_FASTQ} and {@link #SINGLE_FASTQ_GZ}: first read of the pair with the barcodes
+ * in Illumina read names.
+ * - {@link #PAIRED_FASTQ} and {@link #PAIRED_FASTQ_GZ}: pairs in two files with the barcodes in
+ * Casava read names.
+ * - {@link #TAGGED_BAM}: interleaved unmapped BAM file with the barcodes in the BC/QT tags.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class SyntheticDataGenerator {
+
+    /** Barcode dictionary file. */
+    public static final String BARCODES = "barcodes.txt";
+    /** Single-end FASTQ file, with Illumina read names. */
+    public static final String SINGLE_FASTQ = "single.illumina.fq";
+    /** Single-end gzipped FASTQ file, with Illumina read names. */
+    public static final String SINGLE_FASTQ_GZ = "single.illumina.fq.gz";
+    /** Pair-end FASTQ files (first and second), with Casava read names. */
+    public static final List<String> PAIRED_FASTQ =
+            Arrays.asList("paired.casava_1.fq", "paired.casava_2.fq");
+    /** Pair-end gzipped FASTQ files (first and second), with Casava read names. */
+    public static final List<String> PAIRED_FASTQ_GZ =
+            Arrays.asList("paired.casava_1.fq.gz", "paired.casava_2.fq.gz");
+    /** Interleaved unmapped BAM file, with the barcodes in the tags. */
+    public static final String TAGGED_BAM = "paired.tagged.bam";
+
+    /** TruSeq adapter for the first read. */
+    public static final String ADAPTER_1 = "AGATCGGAAGAGCACACGTCTGAACTCCAGTCAC";
+    /** TruSeq adapter for the second read. */
+    public static final String ADAPTER_2 = "AGATCGGAAGAGCGTCGTGTAGGGAAAGAGTGT";
+
+    // fraction of pairs with an insert shorter than the read length
+    private static final double ADAPTER_FRACTION = 0.2;
+    // fraction of reads with a tail of Ns
+    private static final double N_TAIL_FRACTION = 0.05;
+
+    private final long seed;
+    private final int numberOfPairs;
+    private final int readLength;
+    private final int numberOfSamples;
+    private final int barcodeLength;
+
+    /**
+     * Constructor.
+     *
+     * @param seed            seed for the random generator.
+     * @param numberOfPairs   number of pairs to generate.
+     * @param readLength      length of each read.
+     * @param numberOfSamples number of samples in the barcode dictionary.
+     */
+    public SyntheticDataGenerator(final long seed, final int numberOfPairs, final int readLength,
+            final int numberOfSamples) {
+        Utils.validateArg(numberOfPairs > 0, "numberOfPairs should be positive");
+        Utils.validateArg(readLength > ADAPTER_1.length(),
+                "readLength should be longer than the adapters");
+        Utils.validateArg(numberOfSamples > 0, "numberOfSamples should be positive");
+        this.seed = seed;
+        this.numberOfPairs = numberOfPairs;
+        this.readLength = readLength;
+        this.numberOfSamples = numberOfSamples;
+        // 8bp barcodes are enough for up to ~1000 samples with low collision rate between them
+        this.barcodeLength = (numberOfSamples <= 1000) ? 8 : 10;
+    }
+
+    /** Gets the number of reads in the pair-end files (twice the number of pairs). */
+    public long getNumberOfReads() {
+        return 2L * numberOfPairs;
+    }
+
+    /**
+     * Generates all the files in the directory.
+     *
+     * @param directory output directory, created if it does not exist.
+     */
+    public void generate(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        final Random random = new Random(seed);
+
+        // the dictionary
+        final List<String> i7 = new ArrayList<>(
+                BenchmarkData.randomBarcodes(random, numberOfSamples, barcodeLength));
+        final List<String> i5 = new ArrayList<>(
+                BenchmarkData.randomBarcodes(random, numberOfSamples, barcodeLength));
+        writeDictionary(directory.resolve(BARCODES), i7, i5);
+
+        final SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        header.setGroupOrder(SAMFileHeader.GroupOrder.query);
+
+        try (final Writer single = newWriter(directory.resolve(SINGLE_FASTQ), false);
+                final Writer singleGz = newWriter(directory.resolve(SINGLE_FASTQ_GZ), true);
+                final Writer first = newWriter(directory.resolve(PAIRED_FASTQ.get(0)), false);
+                final Writer second = newWriter(directory.resolve(PAIRED_FASTQ.get(1)), false);
+                final Writer firstGz = newWriter(directory.resolve(PAIRED_FASTQ_GZ.get(0)), true);
+                final Writer secondGz = newWriter(directory.resolve(PAIRED_FASTQ_GZ.get(1)), true);
+                final SAMFileWriter bam = new SAMFileWriterFactory()
+                        .makeBAMWriter(header, true, directory.resolve(TAGGED_BAM).toFile())) {
+            for (int i = 0; i < numberOfPairs; i++) {
+                final int sample = random.nextInt(numberOfSamples);
+                final String[] barcodes = new String[] {
+                        BenchmarkData.sequencedBarcode(random, i7.get(sample)),
+                        BenchmarkData.sequencedBarcode(random, i5.get(sample))};
+                final String barcode = String.join(RTDefaults.BARCODE_INDEX_DELIMITER, barcodes);
+                final String name = BenchmarkData.illuminaReadName(random);
+                final byte[][] bases = generatePair(random);
+                final byte[][] quals = {
+                        BenchmarkData.illuminaQualities(random, readLength),
+                        BenchmarkData.illuminaQualities(random, readLength)};
+                for (int j = 0; j < 2; j++) {
+                    addNTail(random, bases[j], quals[j]);
+                }
+
+                writeFastq(single, name + "#" + barcode + "/1", bases[0], quals[0]);
+                writeFastq(singleGz, name + "#" + barcode + "/1", bases[0], quals[0]);
+                writeFastq(first, name + " 1:N:0:" + barcode, bases[0], quals[0]);
+                writeFastq(firstGz, name + " 1:N:0:" + barcode, bases[0], quals[0]);
+                writeFastq(second, name + " 2:N:0:" + barcode, bases[1], quals[1]);
+                writeFastq(secondGz, name + " 2:N:0:" + barcode, bases[1], quals[1]);
+
+                final String barcodeQuals = String.join(RTDefaults.BARCODE_INDEX_DELIMITER,
+                        barcodeQualities(random), barcodeQualities(random));
+                for (int j = 0; j < 2; j++) {
+                    final SAMRecord record = new SAMRecord(header);
+                    record.setReadName(name);
+                    record.setReadBases(bases[j]);
+                    record.setBaseQualities(quals[j]);
+                    record.setReadPairedFlag(true);
+                    record.setReadUnmappedFlag(true);
+                    record.setMateUnmappedFlag(true);
+                    record.setFirstOfPairFlag(j == 0);
+                    record.setSecondOfPairFlag(j == 1);
+                    record.setAttribute(SAMTag.BC.name(), barcode);
+                    record.setAttribute(SAMTag.QT.name(), barcodeQuals);
+                    bam.addAlignment(record);
+                }
+            }
+        }
+    }
+
+    // generates the bases for a pair, with adapters if the insert is short
+    private byte[][] generatePair(final Random random) {
+        final int insertSize = (random.nextDouble() < ADAPTER_FRACTION)
+                ? ADAPTER_1.length() + random.nextInt(readLength - ADAPTER_1.length())
+                : readLength + random.nextInt(2 * readLength);
+        final byte[] insert = BenchmarkData.randomBases(random, insertSize, 0.001);
+        final byte[] reverse = BaseUtils.simpleReverseComplement(insert);
+        return new byte[][] {
+                readThrough(random, insert, ADAPTER_1),
+                readThrough(random, reverse, ADAPTER_2)};
+    }
+
+    // reads the insert, continuing with the adapter and random bases if it is short
+    private byte[] readThrough(final Random random, final byte[] insert, final String adapter) {
+        if (insert.length >= readLength) {
+            return Arrays.copyOf(insert, readLength);
+        }
+        final byte[] bases = BenchmarkData.randomBases(random, readLength, 0);
+        System.arraycopy(insert, 0, bases, 0, insert.length);
+        final int adapterLength = Math.min(adapter.length(), readLength - insert.length);
+        System.arraycopy(adapter.getBytes(StandardCharsets.US_ASCII), 0, bases, insert.length,
+                adapterLength);
+        return bases;
+    }
+
+    // replaces the last bases by Ns with quality 2 in some reads
+    private void addNTail(final Random random, final byte[] bases, final byte[] quals) {
+        if (random.nextDouble() < N_TAIL_FRACTION) {
+            final int start = readLength - 1 - random.nextInt(readLength / 5);
+            for (int i = start; i < readLength; i++) {
+                bases[i] = 'N';
+                quals[i] = 2;
+            }
+        }
+    }
+
+    private String barcodeQualities(final Random random) {
+        final byte[] quals = new byte[barcodeLength];
+        for (int i = 0; i < barcodeLength; i++) {
+            quals[i] = (byte) (30 + random.nextInt(11));
+        }
+        return SAMUtils.phredToFastq(quals);
+    }
+
+    private void writeDictionary(final Path path, final List<String> i7, final List<String> i5)
+            throws IOException {
+        try (final Writer writer = newWriter(path, false)) {
+            writer.write(String.join("\t", BarcodeDictionaryFactory.SAMPLE_NAME_COLUMN,
+                    BarcodeDictionaryFactory.LIBRARY_NAME_COLUMN,
+                    BarcodeDictionaryFactory.BARCODE_SEQUENCE_COLUMN,
+                    BarcodeDictionaryFactory.BARCODE_SEQUENCE_COLUMN + "_2"));
+            writer.write('\n');
+            for (int i = 0; i < numberOfSamples; i++) {
+                writer.write(String.join("\t", "sample" + i, "lib" + i, i7.get(i), i5.get(i)));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static Writer newWriter(final Path path, final boolean gzip) throws IOException {
+        final OutputStream stream = Files.newOutputStream(path);
+        return new BufferedWriter(new OutputStreamWriter(
+                gzip ? new GZIPOutputStream(stream, 65536) : stream, StandardCharsets.US_ASCII),
+                65536);
+    }
+
+    private static void writeFastq(final Writer writer, final String name, final byte[] bases,
+            final byte[] quals) throws IOException {
+        writer.write('@');
+        writer.write(name);
+        writer.write('\n');
+        writer.write(new String(bases, StandardCharsets.US_ASCII));
+        writer.write("\n+\n");
+        writer.write(SAMUtils.phredToFastq(quals));
+        writer.write('\n');
+    }
+
+    /**
+     * Generates the data from the command line.
+     *
+     * Usage: {@code SyntheticDataGenerator <directory> [pairs] [readLength] [samples] [seed]}
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length == 0 || args.length > 5) {
+            System.err.println("Usage: SyntheticDataGenerator "
+                    + "<directory> [pairs] [readLength] [samples] [seed]");
+            System.exit(1);
+        }
+        final SyntheticDataGenerator generator = new SyntheticDataGenerator(
+                (args.length > 4) ? Long.parseLong(args[4]) : BenchmarkData.SEED,
+                (args.length > 1) ? Integer.parseInt(args[1]) : 1_000_000,
+                (args.length > 2) ? Integer.parseInt(args[2]) : 150,
+                (args.length > 3) ? Integer.parseInt(args[3]) : 96);
+        generator.generate(Paths.get(args[0]));
+    }
+}
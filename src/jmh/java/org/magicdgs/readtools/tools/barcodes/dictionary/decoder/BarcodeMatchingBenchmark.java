@@ -0,0 +1,209 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.BenchmarkData;
+import org.magicdgs.readtools.cmd.argumentcollections.ReadGroupArgumentCollection;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionary;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for matching sequenced barcodes against a dictionary with {@link BarcodeMatch} and
+ * {@link BarcodeDecoder}, comparing the String and packed (see {@link PackedBarcodes})
+ * versions. Sequenced barcodes are mostly exact matches, with some mismatches, Ns
+ * and unknown barcodes (see {@link BenchmarkData#sequencedBarcode(Random, String)}).
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BarcodeMatchingBenchmark {
+
+    // number of sequenced barcodes to cycle through
+    private static final int NUMBER_OF_QUERIES = 1024;
+
+    /** Number of samples in the dictionary (e.g., 96-well plate). */
+    @Param({"12", "96", "384"})
+    public int dictionarySize;
+
+    /** Length of each barcode. */
+    @Param({"8", "16"})
+    public int barcodeLength;
+
+    /** Number of barcodes per sample (single or dual indexing). */
+    @Param({"1", "2"})
+    public int numberOfIndexes;
+
+    private Set<String> firstIndexSet;
+    private List<String> firstIndexList;
+    private PackedBarcodes firstIndexPacked;
+    private EditDistanceBarcodes firstIndexEditDistance;
+    // packed bases and Ns for the first index of the queries
+    private long[] packedQueryBases;
+    private long[] packedQueryNs;
+    private BarcodeDecoder decoder;
+    private BarcodeDecoder cachedDecoder;
+    private String[][] queries;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        final Random random = new Random(BenchmarkData.SEED);
+        final List<Set<String>> indexes = new ArrayList<>(numberOfIndexes);
+        for (int i = 0; i < numberOfIndexes; i++) {
+            indexes.add(BenchmarkData.randomBarcodes(random, dictionarySize, barcodeLength));
+        }
+        final BarcodeDictionary dictionary = writeAndReadDictionary(indexes);
+        firstIndexSet = dictionary.getSetBarcodesFromIndex(0);
+        firstIndexList = new ArrayList<>(firstIndexSet);
+        firstIndexPacked = dictionary.getPackedBarcodesFromIndex(0);
+        firstIndexEditDistance = EditDistanceBarcodes.build(firstIndexSet, true);
+
+        final int[] maxMismatches = new int[numberOfIndexes];
+        final int[] minDifference = new int[numberOfIndexes];
+        Arrays.fill(maxMismatches, 1);
+        Arrays.fill(minDifference, 1);
+        // queries are repeated, so the cache is disabled to benchmark the matching
+        decoder = new BarcodeDecoder(dictionary, Integer.MAX_VALUE, true, maxMismatches,
+                minDifference, 0);
+        cachedDecoder = new BarcodeDecoder(dictionary, Integer.MAX_VALUE, true, maxMismatches,
+                minDifference);
+
+        queries = new String[NUMBER_OF_QUERIES][numberOfIndexes];
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            final int sample = random.nextInt(dictionarySize);
+            for (int j = 0; j < numberOfIndexes; j++) {
+                queries[i][j] = BenchmarkData.sequencedBarcode(random,
+                        dictionary.getBarcodesFor(sample)[j]);
+            }
+        }
+        packedQueryBases = new long[NUMBER_OF_QUERIES];
+        packedQueryNs = new long[NUMBER_OF_QUERIES];
+        for (int i = 0; i < NUMBER_OF_QUERIES; i++) {
+            packedQueryBases[i] = PackedBarcodes.packBases(queries[i][0], barcodeLength);
+            packedQueryNs[i] = PackedBarcodes.packNs(queries[i][0], barcodeLength);
+        }
+    }
+
+    // writes the barcode file in a temp file to use the same loading as the tools
+    private BarcodeDictionary writeAndReadDictionary(final List<Set<String>> indexes)
+            throws IOException {
+        final Path file = Files.createTempFile("benchmark", ".barcodes");
+        file.toFile().deleteOnExit();
+        final List<Iterator<String>> iterators = new ArrayList<>(indexes.size());
+        indexes.forEach(set -> iterators.add(set.iterator()));
+        try (final PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file))) {
+            writer.print(BarcodeDictionaryFactory.SAMPLE_NAME_COLUMN);
+            writer.print('\t');
+            writer.print(BarcodeDictionaryFactory.BARCODE_SEQUENCE_COLUMN);
+            if (indexes.size() == 2) {
+                writer.print('\t');
+                writer.print(BarcodeDictionaryFactory.BARCODE_SEQUENCE_COLUMN + "_2");
+            }
+            writer.println();
+            for (int i = 0; i < dictionarySize; i++) {
+                writer.print("sample" + i);
+                iterators.forEach(it -> writer.print("\t" + it.next()));
+                writer.println();
+            }
+        }
+        return BarcodeDictionaryFactory.fromFile(file, null, new ReadGroupArgumentCollection());
+    }
+
+    // gets the next query, cycling through all of them
+    private String[] nextQuery() {
+        next = (next + 1) % NUMBER_OF_QUERIES;
+        return queries[next];
+    }
+
+    @Benchmark
+    public int hammingDistance() {
+        final String[] query = nextQuery();
+        return BarcodeMatch.hammingDistance(query[0], firstIndexList.get(next % dictionarySize),
+                true);
+    }
+
+    @Benchmark
+    public int packedHammingDistance() {
+        nextQuery();
+        final int barcode = next % dictionarySize;
+        return BarcodeMatch.hammingDistance(packedQueryBases[next], packedQueryNs[next],
+                firstIndexPacked.getBases(barcode), firstIndexPacked.getLengthMask(barcode), true);
+    }
+
+    @Benchmark
+    public BarcodeMatch getBestBarcodeMatch() {
+        return BarcodeMatch.getBestBarcodeMatch(0, nextQuery()[0], firstIndexSet, true);
+    }
+
+    @Benchmark
+    public BarcodeMatch getBestBarcodeMatchPacked() {
+        return BarcodeMatch.getBestBarcodeMatch(0, nextQuery()[0], firstIndexPacked, true);
+    }
+
+    @Benchmark
+    public BarcodeMatch getBestBarcodeMatchEditDistance() {
+        return BarcodeMatch.getBestBarcodeMatch(0, nextQuery()[0], firstIndexEditDistance);
+    }
+
+    @Benchmark
+    public String getBestBarcode() {
+        return decoder.getBestBarcode(nextQuery());
+    }
+
+    @Benchmark
+    public String getBestBarcodeCached() {
+        return cachedDecoder.getBestBarcode(nextQuery());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.distmap;
+
+import org.magicdgs.readtools.BenchmarkData;
+
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scala.Tuple2;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for encoding and decoding pair-end reads with {@link DistmapEncoder}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DistmapEncoderBenchmark {
+
+    // number of pairs to cycle through
+    private static final int NUMBER_OF_PAIRS = 1024;
+
+    /** Length of each read in the pair. */
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    private Tuple2<GATKRead, GATKRead>[] pairs;
+    private String[] encoded;
+    private int next = 0;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        final Random random = new Random(BenchmarkData.SEED);
+        pairs = new Tuple2[NUMBER_OF_PAIRS];
+        encoded = new String[NUMBER_OF_PAIRS];
+        for (int i = 0; i < NUMBER_OF_PAIRS; i++) {
+            final String name = BenchmarkData.illuminaReadName(random);
+            final GATKRead first = BenchmarkData.randomRead(random, name, readLength);
+            final GATKRead second = BenchmarkData.randomRead(random, name, readLength);
+            first.setIsFirstOfPair();
+            second.setIsSecondOfPair();
+            pairs[i] = new Tuple2<>(first, second);
+            encoded[i] = DistmapEncoder.encode(pairs[i]);
+        }
+    }
+
+    @Benchmark
+    public String encode() {
+        next = (next + 1) % NUMBER_OF_PAIRS;
+        return DistmapEncoder.encode(pairs[next]);
+    }
+
+    @Benchmark
+    public Tuple2<GATKRead, GATKRead> decodePaired() {
+        next = (next + 1) % NUMBER_OF_PAIRS;
+        return DistmapEncoder.decodePaired(encoded[next]);
+    }
+}
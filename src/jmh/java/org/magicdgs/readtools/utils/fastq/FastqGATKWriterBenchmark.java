@@ -0,0 +1,105 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.magicdgs.readtools.BenchmarkData;
+import org.magicdgs.readtools.utils.read.RTReadUtils;
+
+import htsjdk.samtools.fastq.BasicFastqWriter;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for formatting reads with {@link FastqGATKWriter}. The output is discarded, so only
+ * the cost of building the records and encoding them is measured.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FastqGATKWriterBenchmark {
+
+    // number of reads to cycle through
+    private static final int NUMBER_OF_READS = 1024;
+
+    /** Length of the reads. */
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    /** If {@code true}, the reads are paired and have a barcode in the read name. */
+    @Param({"false", "true"})
+    public boolean pairedWithBarcode;
+
+    private GATKRead[] reads;
+    private FastqGATKWriter writer;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(BenchmarkData.SEED);
+        reads = new GATKRead[NUMBER_OF_READS];
+        for (int i = 0; i < NUMBER_OF_READS; i++) {
+            reads[i] = BenchmarkData.randomRead(random, BenchmarkData.illuminaReadName(random),
+                    readLength);
+            if (pairedWithBarcode) {
+                reads[i].setIsFirstOfPair();
+                RTReadUtils.addBarcodesTagToRead(reads[i],
+                        new String[] {new String(BenchmarkData.randomBases(random, 8, 0))});
+            }
+        }
+        writer = new FastqGATKWriter(new BasicFastqWriter(new PrintStream(new OutputStream() {
+            @Override
+            public void write(final int b) { }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) { }
+        })));
+    }
+
+    @Benchmark
+    public void addRead() {
+        next = (next + 1) % NUMBER_OF_READS;
+        writer.addRead(reads[next]);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for decoding FASTQ read names with the regular expressions in
+ * {@link FastqReadNameEncoding} and with the per-source {@link FastqReadNameDecoder}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FastqReadNameDecodingBenchmark {
+
+    @Param({"CASAVA", "ILLUMINA"})
+    public FastqReadNameEncoding encoding;
+
+    private String readName;
+    private GATKRead read;
+    private FastqReadNameDecoder decoder;
+
+    @Setup
+    public void setup() {
+        readName = (encoding == FastqReadNameEncoding.CASAVA)
+                ? "HWI-ST1234:8:1101:1234:5678 1:Y:0:ACTGACTG"
+                : "HWI-ST1234:8:1101:1234:5678#ACTGACTG/1";
+        read = ArtificialReadUtils.createArtificialUnmappedRead(null, new byte[] {'A'},
+                new byte[] {30});
+        // lock the encoding before the measurement
+        decoder = new FastqReadNameDecoder();
+        for (int i = 0; i < FastqReadNameDecoder.DETECTION_RECORDS; i++) {
+            decoder.updateReadFromReadName(read, readName);
+        }
+    }
+
+    @Benchmark
+    public GATKRead regexEncoding() {
+        FastqReadNameEncoding.updateReadFromReadName(read, readName);
+        return read;
+    }
+
+    @Benchmark
+    public GATKRead cachedDecoder() {
+        decoder.updateReadFromReadName(read, readName);
+        return read;
+    }
+}
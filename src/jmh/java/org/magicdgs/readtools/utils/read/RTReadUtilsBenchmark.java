@@ -0,0 +1,88 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import org.magicdgs.readtools.BenchmarkData;
+import org.magicdgs.readtools.RTDefaults;
+
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for extracting the barcodes from the tags with {@link RTReadUtils}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RTReadUtilsBenchmark {
+
+    /** Number of barcodes in the read (single or dual indexing). */
+    @Param({"1", "2"})
+    public int numberOfIndexes;
+
+    /** Number of tags to look for the barcodes (the last one is the one present). */
+    @Param({"1", "2"})
+    public int numberOfTags;
+
+    private GATKRead read;
+    private List<String> tags;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(BenchmarkData.SEED);
+        read = BenchmarkData.randomRead(random, BenchmarkData.illuminaReadName(random), 100);
+        final String[] barcodes = BenchmarkData.randomBarcodes(random, numberOfIndexes, 8)
+                .toArray(new String[numberOfIndexes]);
+        tags = (numberOfTags == 1) ? RTReadUtils.RAW_BARCODE_TAG_LIST
+                : Arrays.asList("B2", RTReadUtils.RAW_BARCODE_TAG);
+        read.setAttribute(RTReadUtils.RAW_BARCODE_TAG,
+                String.join(RTDefaults.BARCODE_INDEX_DELIMITER, barcodes));
+    }
+
+    @Benchmark
+    public String[] getBarcodesFromTags() {
+        return RTReadUtils.getBarcodesFromTags(read, tags);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.trimming;
+
+import org.magicdgs.readtools.BenchmarkData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the trimming algorithms in {@link TrimmingUtil}, cycling through reads with
+ * Illumina-like qualities and some trailing Ns.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TrimmingUtilBenchmark {
+
+    // number of reads to cycle through
+    private static final int NUMBER_OF_READS = 1024;
+
+    /** Length of the reads. */
+    @Param({"100", "150", "250"})
+    public int readLength;
+
+    /** Quality threshold for the Mott algorithm (default in TrimReads). */
+    @Param({"20"})
+    public int trimQuality;
+
+    private byte[][] bases;
+    private byte[][] qualities;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(BenchmarkData.SEED);
+        bases = new byte[NUMBER_OF_READS][];
+        qualities = new byte[NUMBER_OF_READS][];
+        for (int i = 0; i < NUMBER_OF_READS; i++) {
+            bases[i] = BenchmarkData.randomBases(random, readLength, 0.001);
+            qualities[i] = BenchmarkData.illuminaQualities(random, readLength);
+            // 5% of the reads with Ns at both ends
+            if (random.nextDouble() < 0.05) {
+                final int nLength = 1 + random.nextInt(5);
+                for (int j = 0; j < nLength; j++) {
+                    bases[i][j] = 'N';
+                    bases[i][readLength - j - 1] = 'N';
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] trimPointsMott() {
+        next = (next + 1) % NUMBER_OF_READS;
+        return TrimmingUtil.trimPointsMott(qualities[next], trimQuality);
+    }
+
+    @Benchmark
+    public int[] trimPointsTrailingNs() {
+        next = (next + 1) % NUMBER_OF_READS;
+        return TrimmingUtil.trimPointsTrailingNs(bases[next]);
+    }
+}
@@ -51,7 +51,12 @@ public final class RTDefaults {
     /** Maximum number of record used to guess the quality of a file. Default=1000000. */
     public static final long MAX_RECORDS_FOR_QUALITY;
 
-    /** Read sampling frequency to check if the quality is really Standard. Default=1000. */
+    /**
+     * Read sampling frequency to check if the quality is really Standard. Default=1000.
+     *
+     * @deprecated not used anymore: all the reads are checked.
+     */
+    @Deprecated
     public static final int SAMPLING_QUALITY_CHECKING_FREQUENCY;
 
     /** Force overwrite of output files. Default=false. */
@@ -60,6 +65,21 @@ public final class RTDefaults {
     /** Suffix for discarded output file(s). Default="_discarded" */
     public static final String DISCARDED_OUTPUT_SUFFIX;
 
+    /** Number of records (reads or pairs) processed together by each thread. Default=1000. */
+    public static final int TRAVERSAL_BATCH_SIZE;
+
+    /**
+     * Use memory-mapped files for reading local uncompressed FASTQ/SAM files. Default=true.
+     */
+    public static final boolean USE_MEMORY_MAPPED_INPUT;
+
+    /**
+     * Open every source only once, buffering the records used for detecting the quality encoding.
+     * Sources which are not regular files (e.g., standard input or named pipes) are always opened
+     * once. Default=false.
+     */
+    public static final boolean SINGLE_OPEN_SOURCES;
+
     static {
         BARCODE_INDEX_DELIMITER = getStringProperty("barcode_index_delimiter", "-");
         BARCODE_QUALITY_DELIMITER = getStringProperty("barcode_quality_delimiter", " ");
@@ -67,6 +87,9 @@ public final class RTDefaults {
         SAMPLING_QUALITY_CHECKING_FREQUENCY = getIntProperty("sampling_quality_checking_frequency", 1000);
         FORCE_OVERWRITE = getBooleanProperty("force_overwrite", false);
         DISCARDED_OUTPUT_SUFFIX = getStringProperty("discarded_output_suffix", SplitGATKWriter.KEY_SPLIT_SEPARATOR + "discarded");
+        TRAVERSAL_BATCH_SIZE = getIntProperty("traversal_batch_size", 1000);
+        USE_MEMORY_MAPPED_INPUT = getBooleanProperty("use_memory_mapped_input", true);
+        SINGLE_OPEN_SOURCES = getBooleanProperty("single_open_sources", false);
     }
 
 
@@ -37,6 +37,17 @@ public class RTStandardArguments {
     /** Cannot be instantiated. */
     private RTStandardArguments() {}
 
+    // ENGINE PARAMS
+
+    /** Number of threads for processing reads. */
+    public static final String NUMBER_OF_THREADS_NAME = "threads";
+
+    /** Include the traversal throughput and time per stage in the metrics file. */
+    public static final String TRAVERSAL_METRICS_NAME = "traversalMetrics";
+
+    /** Log the traversal progress also as JSON. */
+    public static final String JSON_PROGRESS_NAME = "jsonProgress";
+
     // OUTPUT PARAMS
 
     /** Output for force overwrite in the tools. */
@@ -56,6 +67,9 @@ public class RTStandardArguments {
     /** Parameter for keep the discarded records from an output. */
     public static final String KEEP_DISCARDED_NAME = "keepDiscarded";
 
+    /** Parameter for the maximum number of split outputs open at the same time. */
+    public static final String MAX_OPEN_OUTPUTS_NAME = "maxOpenOutputs";
+
     // INPUT PARAMS
 
     /** Parameter for the second of the pair (if pair-end split files). */
@@ -71,6 +85,9 @@ public class RTStandardArguments {
     /** Parameter for forcing a concrete encoding of the input. */
     public static final String FORCE_QUALITY_ENCODING_NAME = "forceEncoding";
 
+    /** Parameter for the number of threads decompressing the input. */
+    public static final String DECOMPRESSION_THREADS_NAME = "decompressionThreads";
+
     // BARCODE PARAMS
 
     public static final String RAW_BARCODE_SEQUENCE_TAG_NAME = "rawBarcodeSequenceTags";
@@ -52,6 +52,7 @@ public final class BarcodeDetectorArgumentCollection implements Serializable {
     @Argument(fullName = "barcodeFile", shortName = "bc", optional = false, doc =
             BarcodeDictionaryFactory.BARCODE_FILE_FORMAT_DESCRIPTION
                     + " Barcode file will overwrite any of Read Group arguments for the same information. "
+                    + "A barcode dictionary compiled with CompileBarcodeDictionary could be also provided. "
                     // TODO: remove WARNING if a different pipeline is implemented
                     + "WARNING: this file should contain all the barcodes present in the multiplexed file.")
     public String barcodeFile;
@@ -75,6 +76,15 @@ public final class BarcodeDetectorArgumentCollection implements Serializable {
     @Argument(fullName = "nNoMismatch", shortName = "nnm", optional = true, doc = "Do not count unknown bases (Ns) as mismatch.")
     public boolean nNoMismatch = false;
 
+    @Argument(fullName = "barcodeCacheSize", shortName = "barcodeCacheSize", optional = true, doc = "Maximum number of distinct raw barcodes to remember with their assigned sample, to avoid matching them again. Use 0 to disable the cache.")
+    public int barcodeCacheSize = BarcodeDecoder.DEFAULT_CACHE_SIZE;
+
+    @Argument(fullName = "largeBarcodeDictionary", shortName = "largeBarcodeDictionary", optional = true, doc = "Use a compact index for barcode files with hundreds of thousands of barcodes for an index (e.g., cell barcodes). Barcodes for each index should have the same length (up to 32 ACGT bases). In this mode, barcodes further than maximumMismatches plus minimumDistance minus one from all the barcodes are discarded as not matched, and the barcode statistics does not include the histogram of mismatches.")
+    public boolean largeBarcodeDictionary = false;
+
+    @Argument(fullName = "barcodeIndels", shortName = "barcodeIndels", optional = true, doc = "Allow insertions and deletions in the sequenced barcodes, counting them as mismatches (edit distance) for maximumMismatches and minimumDistance. Barcodes should have up to 64 bases. Not compatible with largeBarcodeDictionary.")
+    public boolean barcodeIndels = false;
+
     // barcode arguments
     @Argument(fullName = "runName", shortName = "runName", optional = true, doc = "Run name to add to the ID in the read group information.")
     public String runID = null;
@@ -106,6 +116,15 @@ public final class BarcodeDetectorArgumentCollection implements Serializable {
                     minimumDistance.toString(),
                     "Minimum distance should be at least 1 to avoid ambiguous barcodes.");
         }
+        if (barcodeCacheSize < 0) {
+            throw new CommandLineException.BadArgumentValue("--barcodeCacheSize",
+                    String.valueOf(barcodeCacheSize),
+                    "Barcode cache size should be a positive integer (or 0 to disable it).");
+        }
+        if (barcodeIndels && largeBarcodeDictionary) {
+            throw new CommandLineException.BadArgumentValue("--barcodeIndels", "true",
+                    "Insertions and deletions are not supported with --largeBarcodeDictionary.");
+        }
     }
 
     public BarcodeDecoder getBarcodeDecoder() {
@@ -125,7 +144,17 @@ public final class BarcodeDetectorArgumentCollection implements Serializable {
 
         return new BarcodeDecoder(dictionary,
                 (maximumN == null) ? Integer.MAX_VALUE : maximumN,
-                !nNoMismatch, maxMismatchArg, minDistArg);
+                !nNoMismatch, maxMismatchArg, minDistArg, barcodeCacheSize,
+                getMatchingMode());
+    }
+
+    // gets the algorithm to match the barcodes
+    private BarcodeDecoder.MatchingMode getMatchingMode() {
+        if (barcodeIndels) {
+            return BarcodeDecoder.MatchingMode.EDIT_DISTANCE;
+        }
+        return (largeBarcodeDictionary)
+                ? BarcodeDecoder.MatchingMode.LARGE_DICTIONARY : BarcodeDecoder.MatchingMode.HAMMING;
     }
 
 
@@ -65,8 +65,8 @@ public abstract class FixBarcodeAbstractArgumentCollection implements Serializab
             mutex = {RTStandardArguments.RAW_BARCODE_SEQUENCE_TAG_NAME})
     public boolean useReadNameBarcode = false;
 
-    // cached transformer, initialized if needed
-    private ReadTransformer transformer = null;
+    // cached transformer, initialized if needed (volatile, because it may be used by several threads)
+    private volatile ReadTransformer transformer = null;
 
     /** Logger for the class. */
     protected final Logger logger = LogManager.getLogger(this.getClass());
@@ -134,37 +134,45 @@ public abstract class FixBarcodeAbstractArgumentCollection implements Serializab
     @VisibleForTesting
     final ReadTransformer getFixBarcodeReadTransformer() {
         if (transformer == null) {
-            // if it is using the read names, apply the simplest fix
-            if (useReadNameBarcode) {
-                logger.debug("Using barcodes from read names");
-                transformer = new FixReadNameBarcodesReadTransformer();
-            } else if (!rawBarcodeTags.isEmpty()) {
-
-                // if there are barcode tags, try to get qualities too
-                final List<String> rawBarcodeQualsTags = getRawBarcodeQualityTags();
-
-                // if no quality tags, not fixing; otherwise fix and log
-                if (rawBarcodeQualsTags.isEmpty()) {
-                    logger.warn("Quality tags are not updated.");
-                    if (!rawBarcodeTags.equals(RTReadUtils.RAW_BARCODE_TAG_LIST)) {
-                        logger.debug("Using barcode tags: {}", () -> rawBarcodeTags);
-                        transformer = new FixRawBarcodeTagsReadTransformer(rawBarcodeTags);
-                    }
-                } else {
-                    logger.debug("Using barcode tags: {}", () -> rawBarcodeTags);
-                    logger.debug("Using quality tags: {}", () -> rawBarcodeQualsTags);
-                    transformer = new FixRawBarcodeTagsReadTransformer(rawBarcodeTags,
-                            rawBarcodeQualsTags);
+            // synchronized initialization, because reads may be fixed by several threads
+            synchronized (this) {
+                if (transformer == null) {
+                    transformer = createFixBarcodeReadTransformer();
                 }
             }
-            if (transformer == null) {
-                logger.debug("Not using barcode tags: {}", () -> rawBarcodeTags);
-                transformer = ReadTransformer.identity();
-            }
         }
         return transformer;
     }
 
+    // creates the transformer to fix the barcodes
+    private ReadTransformer createFixBarcodeReadTransformer() {
+        // if it is using the read names, apply the simplest fix
+        if (useReadNameBarcode) {
+            logger.debug("Using barcodes from read names");
+            return new FixReadNameBarcodesReadTransformer();
+        } else if (!rawBarcodeTags.isEmpty()) {
+
+            // if there are barcode tags, try to get qualities too
+            final List<String> rawBarcodeQualsTags = getRawBarcodeQualityTags();
+
+            // if no quality tags, not fixing; otherwise fix and log
+            if (rawBarcodeQualsTags.isEmpty()) {
+                logger.warn("Quality tags are not updated.");
+                if (!rawBarcodeTags.equals(RTReadUtils.RAW_BARCODE_TAG_LIST)) {
+                    logger.debug("Using barcode tags: {}", () -> rawBarcodeTags);
+                    return new FixRawBarcodeTagsReadTransformer(rawBarcodeTags);
+                }
+            } else {
+                logger.debug("Using barcode tags: {}", () -> rawBarcodeTags);
+                logger.debug("Using quality tags: {}", () -> rawBarcodeQualsTags);
+                return new FixRawBarcodeTagsReadTransformer(rawBarcodeTags,
+                        rawBarcodeQualsTags);
+            }
+        }
+        logger.debug("Not using barcode tags: {}", () -> rawBarcodeTags);
+        return ReadTransformer.identity();
+    }
+
     /**
      * Gets an argument collection implementation.
      *
@@ -71,6 +71,10 @@ public final class RTInputArgumentCollection implements Serializable {
     @Argument(fullName = RTStandardArguments.FORCE_QUALITY_ENCODING_NAME, shortName = RTStandardArguments.FORCE_QUALITY_ENCODING_NAME, doc = "Force original quality encoding of the input files.", common = true, optional = true)
     public FastqQualityFormat forceQualityEncoding = null;
 
+    @Advanced
+    @Argument(fullName = RTStandardArguments.DECOMPRESSION_THREADS_NAME, shortName = RTStandardArguments.DECOMPRESSION_THREADS_NAME, doc = "Number of threads for decompressing the input. If more than one, BGZF blocks for BAM inputs are inflated in parallel and gzipped FASTQ inputs are decompressed in a read-ahead thread.", common = true, optional = true, minValue = 1)
+    public int decompressionThreads = 1;
+
     // supplier to change the reference
     private Supplier<RTDataSource> source = null;
 
@@ -78,7 +82,8 @@ public final class RTInputArgumentCollection implements Serializable {
     private ReadReaderFactory getReaderFactory(final File referenceFileName) {
         return new ReadReaderFactory()
                 .setReferenceSequence(referenceFileName)
-                .setValidationStringency(readValidationStringency);
+                .setValidationStringency(readValidationStringency)
+                .setDecompressionThreads(decompressionThreads);
     }
 
     /**
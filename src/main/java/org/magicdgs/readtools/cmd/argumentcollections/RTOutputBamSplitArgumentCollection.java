@@ -31,6 +31,7 @@ import org.magicdgs.readtools.utils.read.writer.SplitGATKWriter;
 
 import htsjdk.samtools.SAMFileHeader;
 import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.tools.SplitReads;
 import org.broadinstitute.hellbender.tools.readersplitters.LibraryNameSplitter;
@@ -67,6 +68,9 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
     @Argument(fullName = SplitReads.LIBRARY_NAME_LONG_NAME, doc = "Split file by library.", optional = true)
     public boolean splitByLibrary = false;
 
+    @Argument(fullName = RTStandardArguments.MAX_OPEN_OUTPUTS_NAME, shortName = RTStandardArguments.MAX_OPEN_OUTPUTS_NAME, doc = "Maximum number of split outputs open at the same time. If more outputs are required, the least recently used is closed and its reads are written into temporary segments, concatenated to the output at the end. Not supported for CRAM output. If 'null', the number of open outputs is not limited.", optional = true, minValue = 1)
+    public Integer maxOpenOutputs = null;
+
     @Override
     public String getOutputNameWithSuffix(final String suffix) {
         return outputPrefix + suffix + outputFormat.getExtension();
@@ -80,7 +84,13 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
 
     @Override
     public void validateUserOutput() {
-        // do nothing, because the extension is always valid the outputFormat
+        // the extension is always valid the outputFormat
+        if (maxOpenOutputs != null && outputFormat == ReadToolsIOFormat.BamFormat.CRAM) {
+            throw new CommandLineException.BadArgumentValue(
+                    "--" + RTStandardArguments.MAX_OPEN_OUTPUTS_NAME,
+                    String.valueOf(maxOpenOutputs),
+                    "Number of open outputs could not be limited for CRAM output.");
+        }
     }
 
     @Override
@@ -106,6 +116,8 @@ public final class RTOutputBamSplitArgumentCollection extends RTAbstractOutputBa
                 ? factory.createSAMWriter(outputPrefix + outputFormat.getExtension(),
                 header, presorted)
                 : new SplitGATKWriter(outputPrefix, outputFormat,
-                        splitter, header, presorted, factory, false);
+                        splitter, header, presorted, factory, false,
+                        (maxOpenOutputs == null)
+                                ? SplitGATKWriter.UNLIMITED_OPEN_WRITERS : maxOpenOutputs);
     }
 }
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.engine;
+
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+
+/**
+ * Writer which keeps the input order of the reads when they are added from a
+ * {@link ParallelTraversal}. Reads added while processing a batch are buffered and written by the
+ * traversal once all the previous batches were written; otherwise, they are written directly.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class OrderedGATKReadWriter implements GATKReadWriter {
+
+    private final GATKReadWriter delegate;
+
+    /**
+     * Constructor.
+     *
+     * @param delegate the writer where the reads are written.
+     */
+    OrderedGATKReadWriter(final GATKReadWriter delegate) {
+        this.delegate = Utils.nonNull(delegate, "null delegate");
+    }
+
+    @Override
+    public void addRead(final GATKRead read) {
+        if (!ParallelTraversal.bufferRead(delegate, read)) {
+            delegate.addRead(read);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
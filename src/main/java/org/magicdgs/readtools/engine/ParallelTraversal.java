@@ -0,0 +1,244 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.engine;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Multi-threaded traversal over records (reads or pairs), which keeps the output in the same
+ * order as the input.
+ *
+ * The traversal is a pipeline with three stages:
+ *
+ * - A reader thread pulls the records from the iterator and cuts them into batches.
+ * - A pool of worker threads process each batch. Reads written to an
+ * {@link OrderedGATKReadWriter} are buffered in the batch instead of written.
+ * - The calling thread waits for the batches in input order, writes the buffered reads and
+ * reports the progress for each record.
+ *
+ * The number of batches in flight is bounded to avoid the reader going too far ahead of the
+ * workers and the output.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class ParallelTraversal<T> {
+
+    private static final Logger logger = LogManager.getLogger(ParallelTraversal.class);
+
+    // batch processed by the current thread; null if it is not a worker thread
+    private static final ThreadLocal<Batch<?>> CURRENT_BATCH = new ThreadLocal<>();
+
+    // marker for the end of the input
+    private final CompletableFuture<Batch<T>> endOfInput = CompletableFuture.completedFuture(null);
+
+    private final int nThreads;
+    private final int batchSize;
+
+    // batches in flight for the current traversal; null if it is not running
+    private volatile BlockingQueue<?> pending = null;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads  number of worker threads. Should be at least 2.
+     * @param batchSize number of records for each batch.
+     */
+    ParallelTraversal(final int nThreads, final int batchSize) {
+        Utils.validateArg(nThreads > 1, "parallel traversal requires at least two threads");
+        Utils.validateArg(batchSize > 0, "batch size should be positive");
+        this.nThreads = nThreads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Traverses all the records in the iterator.
+     *
+     * @param iterator    records to process.
+     * @param processor   function to apply to each record in the worker threads.
+     * @param onProcessed function to apply to each record in the calling thread, in input order,
+     *                    after the buffered output for its batch is written.
+     */
+    void traverse(final Iterator<T> iterator, final Consumer<T> processor,
+            final Consumer<T> onProcessed) {
+        Utils.nonNull(iterator, "null iterator");
+        Utils.nonNull(processor, "null processor");
+        Utils.nonNull(onProcessed, "null onProcessed");
+
+        final ExecutorService workers = Executors.newFixedThreadPool(nThreads,
+                new ThreadFactoryBuilder().setNameFormat("ReadTools-worker-%d")
+                        .setDaemon(true).build());
+        // two batches per thread keeps the workers busy while the output is written
+        final BlockingQueue<CompletableFuture<Batch<T>>> pending =
+                new ArrayBlockingQueue<>(2 * nThreads);
+        this.pending = pending;
+
+        final Thread reader = new Thread(
+                () -> readBatches(iterator, processor, workers, pending),
+                "ReadTools-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            Batch<T> batch;
+            while ((batch = getBatch(pending.take())) != null) {
+                batch.writeBufferedReads();
+                batch.records.forEach(onProcessed);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GATKException("Interrupted while waiting for processed reads", e);
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+            this.pending = null;
+        }
+    }
+
+    /** Gets the number of batches waiting to be written (0 if the traversal is not running). */
+    int pendingBatches() {
+        final BlockingQueue<?> queue = pending;
+        return (queue == null) ? 0 : queue.size();
+    }
+
+    // cuts the iterator into batches and submit them to the workers; runs in the reader thread
+    private void readBatches(final Iterator<T> iterator, final Consumer<T> processor,
+            final ExecutorService workers,
+            final BlockingQueue<CompletableFuture<Batch<T>>> pending) {
+        try {
+            Batch<T> batch = new Batch<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.records.add(iterator.next());
+                if (batch.records.size() == batchSize) {
+                    pending.put(submit(batch, processor, workers));
+                    batch = new Batch<>(batchSize);
+                }
+            }
+            if (!batch.records.isEmpty()) {
+                pending.put(submit(batch, processor, workers));
+            }
+            pending.put(endOfInput);
+        } catch (final InterruptedException e) {
+            // the traversal was aborted in the calling thread
+            logger.debug("Reader thread interrupted");
+        } catch (final RuntimeException | Error e) {
+            // propagates the error to the calling thread
+            final CompletableFuture<Batch<T>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                pending.put(failed);
+            } catch (final InterruptedException interrupted) {
+                logger.debug("Reader thread interrupted after error: {}", e.getMessage());
+            }
+        }
+    }
+
+    // submits the batch to be processed in the workers
+    private static <T> CompletableFuture<Batch<T>> submit(final Batch<T> batch,
+            final Consumer<T> processor, final ExecutorService workers) {
+        return CompletableFuture.supplyAsync(() -> batch.process(processor), workers);
+    }
+
+    // waits for the batch, re-throwing the exceptions from the reader/worker threads
+    private static <T> Batch<T> getBatch(final CompletableFuture<Batch<T>> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new GATKException("Error while processing reads", cause);
+        }
+    }
+
+    /**
+     * Buffers the read in the batch processed by the current thread.
+     *
+     * @param writer the writer where the read should be added.
+     * @param read   the read to add.
+     *
+     * @return {@code true} if the read was buffered; {@code false} if the current thread is not
+     * processing a batch and the read should be written directly.
+     */
+    static boolean bufferRead(final GATKReadWriter writer, final GATKRead read) {
+        final Batch<?> batch = CURRENT_BATCH.get();
+        if (batch == null) {
+            return false;
+        }
+        batch.writers.add(writer);
+        batch.reads.add(read);
+        return true;
+    }
+
+    // batch of records, with the reads written while processing them
+    private static final class Batch<T> {
+        private final List<T> records;
+        // parallel lists to avoid creating an object per written read
+        private final List<GATKReadWriter> writers = new ArrayList<>();
+        private final List<GATKRead> reads = new ArrayList<>();
+
+        private Batch(final int size) {
+            this.records = new ArrayList<>(size);
+        }
+
+        // process all the records with the current thread, buffering the output
+        private Batch<T> process(final Consumer<T> processor) {
+            CURRENT_BATCH.set(this);
+            try {
+                records.forEach(processor);
+            } finally {
+                CURRENT_BATCH.remove();
+            }
+            return this;
+        }
+
+        // write the buffered reads in the order that they were added
+        private void writeBufferedReads() {
+            for (int i = 0; i < reads.size(); i++) {
+                writers.get(i).addRead(reads.get(i));
+            }
+        }
+    }
+}
@@ -27,10 +27,12 @@ package org.magicdgs.readtools.engine;
 import org.magicdgs.readtools.RTDefaults;
 import org.magicdgs.readtools.engine.sourcehandler.ReadsSourceHandler;
 import org.magicdgs.readtools.utils.iterators.InterleaveGATKReadIterators;
+import org.magicdgs.readtools.utils.iterators.ReadAheadIterator;
 import org.magicdgs.readtools.utils.iterators.ReadTransformerIterator;
 import org.magicdgs.readtools.utils.iterators.paired.GATKReadPairedIterator;
 import org.magicdgs.readtools.utils.read.ReadReaderFactory;
 import org.magicdgs.readtools.utils.read.transformer.CheckQualityReadTransformer;
+import org.magicdgs.readtools.utils.read.transformer.IlluminaToSangerReadTransformer;
 import org.magicdgs.readtools.utils.read.transformer.SolexaToSangerReadTransformer;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -42,12 +44,12 @@ import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.engine.GATKDataSource;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.exceptions.UserException;
-import org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -79,6 +81,12 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     private final boolean interleaved;
     private final FastqQualityFormat forceEncoding;
 
+    // read-ahead iterators for pair-end data in two sources, closed with the data source
+    private final List<ReadAheadIterator<GATKRead>> readAheadIterators = new ArrayList<>();
+
+    // metrics for timing parsing and transformation; null if they are not tracked
+    private TraversalMetrics traversalMetrics = null;
+
     // CACHE VALUES
     // the original encoding will be equal to forceEncoding if that one is not null
     private FastqQualityFormat originalEncoding = null;
@@ -168,6 +176,14 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
         readerFactory = factory;
     }
 
+    /**
+     * Sets the metrics to account the time for parsing and transforming the reads in the
+     * iterators created afterwards.
+     */
+    void setTraversalMetrics(final TraversalMetrics traversalMetrics) {
+        this.traversalMetrics = traversalMetrics;
+    }
+
     /** Returns {@code true} if the source represents pair-end data; {@code false} otherwise. */
     public boolean isPaired() {
         return interleaved || secondHandler != null;
@@ -315,10 +331,9 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     @Override
     public Iterator<GATKRead> iterator() {
         return (secondHandler == null)
-                ? transformedIterator(readHandler.toIterator())
+                ? transformedIterator(sourceIterator(readHandler))
                 : new InterleaveGATKReadIterators(
-                        transformedIterator(readHandler.toIterator()),
-                        transformedIterator(secondHandler.toIterator()));
+                        concurrentIterator(readHandler), concurrentIterator(secondHandler));
     }
 
     /**
@@ -333,7 +348,7 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     public GATKReadPairedIterator pairedIterator() {
         Utils.validateArg(isPaired(), "no paired iterator");
         if (interleaved) {
-            return GATKReadPairedIterator.of(transformedIterator(readHandler.toIterator()));
+            return GATKReadPairedIterator.of(transformedIterator(sourceIterator(readHandler)));
         } else {
             return pairedIteratorForSplitInput();
         }
@@ -341,14 +356,41 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
 
     // helper for use the read transformer
     private Iterator<GATKRead> transformedIterator(final Iterator<GATKRead> iterator) {
-        return new ReadTransformerIterator(iterator, qualityTransformer());
+        final ReadTransformer transformer = qualityTransformer();
+        return new ReadTransformerIterator(iterator,
+                (traversalMetrics == null || !traversalMetrics.isTimingStages()) ? transformer
+                        : read -> traversalMetrics.time("transform",
+                                () -> transformer.apply(read)));
+    }
+
+    // helper for iterate over the handler, timing the parsing if the metrics are tracked
+    private Iterator<GATKRead> sourceIterator(final ReadsSourceHandler handler) {
+        final Iterator<GATKRead> iterator = handler.toIterator();
+        return (traversalMetrics == null)
+                ? iterator : traversalMetrics.timedIterator("parse", iterator);
     }
 
     // helper for generate a paired iterator from a split
     private GATKReadPairedIterator pairedIteratorForSplitInput() {
         return GATKReadPairedIterator.of(
-                transformedIterator(readHandler.toIterator()),
-                transformedIterator(secondHandler.toIterator()));
+                concurrentIterator(readHandler), concurrentIterator(secondHandler));
+    }
+
+    // helper for reading, decompressing and transforming each source of a split pair-end input
+    // in its own thread if the reader factory has more than one decompression thread
+    private Iterator<GATKRead> concurrentIterator(final ReadsSourceHandler handler) {
+        final Iterator<GATKRead> iterator = transformedIterator(sourceIterator(handler));
+        if (readerFactory.decompressionThreads() > 1) {
+            final ReadAheadIterator<GATKRead> readAhead =
+                    new ReadAheadIterator<>(iterator, handler.getHandledSource());
+            readAheadIterators.add(readAhead);
+            if (traversalMetrics != null) {
+                traversalMetrics.registerGauge("readAhead:" + handler.getHandledSource(),
+                        readAhead::bufferedBatches);
+            }
+            return readAhead;
+        }
+        return iterator;
     }
 
 
@@ -356,10 +398,9 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     private ReadTransformer qualityTransformer() {
         switch (getOriginalQualityEncoding()) {
             case Standard:
-                // TODO: port to GATK MisencodedBaseQualityReadTransformer
                 return new CheckQualityReadTransformer();
             case Illumina:
-                return new MisencodedBaseQualityReadTransformer();
+                return new IlluminaToSangerReadTransformer();
             case Solexa:
                 return new SolexaToSangerReadTransformer();
             default:
@@ -371,6 +412,8 @@ public final class RTDataSource implements GATKDataSource<GATKRead>, AutoCloseab
     /** Close all the data to clean up resources. It could be re-used even if it was closed. */
     @Override
     public void close() throws Exception {
+        readAheadIterators.forEach(ReadAheadIterator::close);
+        readAheadIterators.clear();
         readHandler.close();
         if (secondHandler != null) {
             secondHandler.close();
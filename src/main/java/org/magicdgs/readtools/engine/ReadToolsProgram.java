@@ -51,12 +51,16 @@ public abstract class ReadToolsProgram extends CommandLineProgram {
         logger.info("Number of records to detect quality: {}",
                 () -> RTDefaults.MAX_RECORDS_FOR_QUALITY);
         // for debugging
-        logger.debug("sampling_quality_checking_frequency : {}",
-                () -> RTDefaults.SAMPLING_QUALITY_CHECKING_FREQUENCY);
         logger.debug("force_overwrite : {}",
                 () -> RTDefaults.FORCE_OVERWRITE);
         logger.debug("discarded_output_suffix : {}",
                 () -> RTDefaults.DISCARDED_OUTPUT_SUFFIX);
+        logger.debug("traversal_batch_size : {}",
+                () -> RTDefaults.TRAVERSAL_BATCH_SIZE);
+        logger.debug("use_memory_mapped_input : {}",
+                () -> RTDefaults.USE_MEMORY_MAPPED_INPUT);
+        logger.debug("single_open_sources : {}",
+                () -> RTDefaults.SINGLE_OPEN_SOURCES);
     }
 
     /**
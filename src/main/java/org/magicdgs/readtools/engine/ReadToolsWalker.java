@@ -24,22 +24,31 @@
 
 package org.magicdgs.readtools.engine;
 
+import org.magicdgs.readtools.RTDefaults;
+import org.magicdgs.readtools.cmd.RTStandardArguments;
 import org.magicdgs.readtools.cmd.argumentcollections.RTInputArgumentCollection;
+import org.magicdgs.readtools.metrics.StageMetric;
+import org.magicdgs.readtools.metrics.TraversalMetric;
+import org.magicdgs.readtools.utils.read.ReadReaderFactory;
+import org.magicdgs.readtools.utils.read.ReadWriterFactory;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.CloserUtil;
-import htsjdk.samtools.util.Locatable;
 import org.broadinstitute.barclay.argparser.Argument;
 import org.broadinstitute.barclay.argparser.ArgumentCollection;
 import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
 import org.broadinstitute.hellbender.engine.GATKTool;
-import org.broadinstitute.hellbender.engine.ProgressMeter;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import scala.Tuple2;
 
 import java.io.File;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.function.Consumer;
-import java.util.stream.StreamSupport;
+import java.util.function.Supplier;
 
 /**
  * Base class for all ReadTools command line programs to  raw read traversal. It mimics the
@@ -50,6 +59,10 @@ import java.util.stream.StreamSupport;
  *
  * - The source of reads is a {@link RTDataSource}.
  * - Traversal over read-pairs could be different by overriding {@link #apply(Tuple2)}
+ * - Reads could be processed by several threads if the tool declares that its processing is
+ * thread-safe (see {@link #isApplyThreadSafe()}).
+ * - Progress is reported as records processed per second, and the time spent in each stage of
+ * the processing is tracked (see {@link #timeStage(String, Supplier)}).
  *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
@@ -57,36 +70,49 @@ public abstract class ReadToolsWalker extends ReadToolsProgram {
 
     // For the progress meter in the GATKTool
     @Argument(fullName = GATKTool.SECONDS_BETWEEN_PROGRESS_UPDATES_NAME, shortName = GATKTool.SECONDS_BETWEEN_PROGRESS_UPDATES_NAME, doc = "Output traversal statistics every time this many seconds elapse.", optional = true, common = true)
-    private double secondsBetweenProgressUpdates = ProgressMeter.DEFAULT_SECONDS_BETWEEN_UPDATES;
+    private double secondsBetweenProgressUpdates = TraversalMetrics.DEFAULT_SECONDS_BETWEEN_UPDATES;
+
+    @Argument(fullName = RTStandardArguments.JSON_PROGRESS_NAME, shortName = RTStandardArguments.JSON_PROGRESS_NAME, doc = "Log also the traversal progress as a single-line JSON object, including the time spent in each stage and the depth of the queues between threads.", optional = true, common = true)
+    private boolean jsonProgress = false;
+
+    @Argument(fullName = RTStandardArguments.TRAVERSAL_METRICS_NAME, shortName = RTStandardArguments.TRAVERSAL_METRICS_NAME, doc = "Include the traversal throughput and the time spent in each stage in the metrics file. Only used by tools with a metrics file.", optional = true, common = true)
+    private boolean traversalMetricsInFile = false;
 
     @Argument(fullName = StandardArgumentDefinitions.REFERENCE_LONG_NAME, shortName = StandardArgumentDefinitions.REFERENCE_SHORT_NAME, doc = "Reference sequence file. Required for CRAM input.", optional = true, common = true)
     private File referenceFile = null;
 
+    @Argument(fullName = RTStandardArguments.NUMBER_OF_THREADS_NAME, shortName = RTStandardArguments.NUMBER_OF_THREADS_NAME, doc = "Number of threads for processing reads. Reads are still read by a single thread, and the output keeps the input order. Only used by tools supporting multi-threaded processing.", optional = true, common = true, minValue = 1)
+    private int nThreads = 1;
+
     @ArgumentCollection
     private RTInputArgumentCollection inputArgumentCollection = new RTInputArgumentCollection();
 
     /**
-     * Progress meter to print out traversal statistics. Subclasses must invoke
-     * {@link ProgressMeter#update(Locatable)} after each record processed from
-     * the primary input in their {@link #traverse} method.
+     * Metrics to print out traversal statistics. Updated after each record processed from the
+     * primary input in the {@link #traverse} method.
      */
-    // TODO: probably our own progress meter could be better
-    // TODO: because this only takes into account the locus positions
-    private ProgressMeter progressMeter;
+    private TraversalMetrics traversalMetrics;
 
     /** Source of reads for traversal, either pair-end or single-end data. */
     private RTDataSource dataSource;
 
     /**
-     * Start the progress meter, and initialize the data source.
+     * Initialize the traversal metrics and the data source.
      *
      * Authors should override {@link #onTraversalStart()} for pre-traversal operations.
      */
     @Override
     protected final void onStartup() {
         super.onStartup();
-        progressMeter = new ProgressMeter(secondsBetweenProgressUpdates);
+        // stages are only reported in the JSON progress and the metrics file
+        traversalMetrics = new TraversalMetrics(secondsBetweenProgressUpdates, jsonProgress,
+                jsonProgress || traversalMetricsInFile);
+        ReadReaderFactory.resetBytesRead();
+        traversalMetrics.setBytesIn(ReadReaderFactory::getBytesRead);
         dataSource = inputArgumentCollection.getDataSource(referenceFile);
+        dataSource.setTraversalMetrics(traversalMetrics);
+        ReadWriterFactory.resetBytesWritten();
+        traversalMetrics.setBytesOut(ReadWriterFactory::getBytesWritten);
         logger.info("Input source quality encoding: {}", dataSource.getOriginalQualityEncoding());
     }
 
@@ -124,29 +150,159 @@ public abstract class ReadToolsWalker extends ReadToolsProgram {
     protected void traverse() {
         if (isPaired()) {
             logger.info("Processing reads as pairs.");
-            StreamSupport.stream(dataSource.pairedIterator().spliterator(), false)
-                    .forEach(pairEndConsumer);
+            traverse(dataSource.pairedIterator().iterator(), this::apply,
+                    pair -> traversalMetrics.recordProcessed());
         } else {
             logger.info("Processing reads as singles.");
-            StreamSupport.stream(dataSource.spliterator(), false)
-                    .forEach(singleEndConsumer);
+            traverse(dataSource.iterator(), this::apply,
+                    read -> traversalMetrics.recordProcessed());
+        }
+    }
+
+    // traverse the records with one or several threads, updating the progress after processing
+    private <T> void traverse(final Iterator<T> records, final Consumer<T> processor,
+            final Consumer<T> progress) {
+        final Iterator<T> iterator = limit(records, getMaximumRecordsToTraverse());
+        final int threads = getNumberOfTraversalThreads();
+        if (threads == 1) {
+            iterator.forEachRemaining(processor.andThen(progress));
+        } else {
+            logger.info("Processing reads with {} threads.", threads);
+            final ParallelTraversal<T> traversal =
+                    new ParallelTraversal<>(threads, RTDefaults.TRAVERSAL_BATCH_SIZE);
+            traversalMetrics.registerGauge("pendingBatches", traversal::pendingBatches);
+            traversal.traverse(iterator, processor, progress);
+        }
+    }
+
+    // limits the iterator to the maximum number of records (if non-negative)
+    private <T> Iterator<T> limit(final Iterator<T> iterator, final long maximumRecords) {
+        if (maximumRecords < 0) {
+            return iterator;
+        }
+        return new Iterator<T>() {
+            private long remaining = maximumRecords;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining == 0 && iterator.hasNext()) {
+                    logger.info("Stopping traversal after {} records.", maximumRecords);
+                    remaining = -1;
+                }
+                return remaining > 0 && iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of records (reads or pairs) to traverse, or a negative value
+     * to traverse all of them. Tools which only need a sample of the input could override it to
+     * stop the traversal early.
+     *
+     * Default implementation returns {@code -1}.
+     */
+    protected long getMaximumRecordsToTraverse() {
+        return -1;
+    }
+
+    // gets the number of threads for the traversal, warning if the tool does not support them
+    private int getNumberOfTraversalThreads() {
+        if (nThreads > 1 && !isApplyThreadSafe()) {
+            logger.warn("{} does not support multi-threaded processing. Using only one thread.",
+                    getToolName());
+            return 1;
         }
+        return nThreads;
+    }
+
+    /**
+     * Returns {@code true} if {@link #apply(GATKRead)} and {@link #apply(Tuple2)} could be
+     * called concurrently from several threads; {@code false} otherwise. Tools returning
+     * {@code true} should add the reads to writers wrapped with
+     * {@link #orderedWriter(GATKReadWriter)} to keep the input order in the output.
+     *
+     * Default implementation returns {@code false}.
+     */
+    protected boolean isApplyThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Wraps a writer to keep the input order of the reads added in {@link #apply(GATKRead)} or
+     * {@link #apply(Tuple2)}, even if they are processed by several threads. The returned writer
+     * should be used only during traversal, and closing it also closes the wrapped writer.
+     *
+     * The time spent in the wrapped writer is accounted in the "write" stage.
+     *
+     * @param writer the writer to wrap.
+     *
+     * @return writer that keeps the input order.
+     */
+    protected final GATKReadWriter orderedWriter(final GATKReadWriter writer) {
+        return new OrderedGATKReadWriter(traversalMetrics.timedWriter("write", writer));
     }
 
-    // the processing of single-end data
-    private final Consumer<GATKRead> singleEndConsumer = r -> {
-        apply(r);
-        progressMeter.update(r);
-    };
+    /**
+     * Runs the supplier, accounting its time in the provided stage of the traversal. The time of
+     * stages nested on it is accounted only for the inner stage. This method could be called
+     * from several threads.
+     *
+     * Stages are only timed if they are reported (JSON progress or traversal metrics);
+     * otherwise, the supplier is just run.
+     *
+     * @param stage    name of the stage.
+     * @param supplier the function to run.
+     *
+     * @return the value returned by the supplier.
+     */
+    protected final <T> T timeStage(final String stage, final Supplier<T> supplier) {
+        return traversalMetrics.time(stage, supplier);
+    }
 
-    // the processing of pair-end data
-    private final Consumer<Tuple2<GATKRead, GATKRead>> pairEndConsumer = r -> {
-        apply(r);
-        // update with the second because we are traversing read pairs
-        // and reporting pairs
-        progressMeter.update(r._2);
-    };
+    /**
+     * Runs the action, accounting its time in the provided stage of the traversal.
+     *
+     * @param stage  name of the stage.
+     * @param action the action to run.
+     *
+     * @see #timeStage(String, Supplier)
+     */
+    protected final void timeStage(final String stage, final Runnable action) {
+        traversalMetrics.time(stage, action);
+    }
 
+    /**
+     * Writes the traversal throughput and the time spent in each stage into the metrics writer,
+     * if requested by the user. Tools with a metrics file should call this method in
+     * {@link #onTraversalSuccess()} after writing their own metrics.
+     *
+     * @param metricsWriter      the writer for the metrics file.
+     * @param performanceMetrics tool-specific performance metrics to write after the traversal
+     *                           ones (e.g., cache efficiency), only if requested.
+     */
+    protected final void writeTraversalMetrics(final Writer metricsWriter,
+            final MetricsFile<?, ?>... performanceMetrics) {
+        if (traversalMetricsInFile) {
+            final MetricsFile<TraversalMetric, Integer> traversal = new MetricsFile<>();
+            traversal.addMetric(traversalMetrics.getTraversalMetric());
+            traversal.write(metricsWriter);
+            final MetricsFile<StageMetric, Integer> stages = new MetricsFile<>();
+            stages.addAllMetrics(traversalMetrics.getStageMetrics());
+            stages.write(metricsWriter);
+            for (final MetricsFile<?, ?> metrics : performanceMetrics) {
+                metrics.write(metricsWriter);
+            }
+        }
+    }
 
     /**
      * Process a single read.
@@ -186,16 +342,20 @@ public abstract class ReadToolsWalker extends ReadToolsProgram {
 
     @Override
     protected final Object doWork() {
+        final Object result;
         try {
             onTraversalStart();
-            progressMeter.setRecordLabel(isPaired() ? "read pairs" : "reads");
-            progressMeter.start();
+            traversalMetrics.setRecordLabel(isPaired() ? "read pairs" : "reads");
+            traversalMetrics.start();
             traverse();
-            progressMeter.stop();
-            return onTraversalSuccess();
+            traversalMetrics.stop();
+            result = onTraversalSuccess();
         } finally {
             closeTool();
         }
+        // only after closing the writers all the output is in the files
+        traversalMetrics.logBytesWritten();
+        return result;
     }
 
     /**
@@ -0,0 +1,412 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.engine;
+
+import org.magicdgs.readtools.metrics.StageMetric;
+import org.magicdgs.readtools.metrics.TraversalMetric;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Throughput and latency statistics for a traversal, which replaces the locus-based progress
+ * meter from GATK. It tracks:
+ *
+ * - Records processed by the traversal, reported periodically in the log.
+ * - Time spent in named stages (e.g., parsing, transforming or writing reads). Stages could be
+ * timed from several threads at once, and the time of a stage nested on another is only
+ * accounted for the inner one.
+ * - Bytes read and written, from the provided suppliers.
+ * - Depth of the queues between threads, from the registered gauges.
+ *
+ * Progress could be also logged as a single-line JSON object for machine consumption.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class TraversalMetrics {
+
+    private static final Logger logger = LogManager.getLogger(TraversalMetrics.class);
+
+    /** Default number of seconds between progress updates. */
+    static final double DEFAULT_SECONDS_BETWEEN_UPDATES = 10;
+
+    // number of records between checks of the elapsed time
+    private static final int RECORDS_BETWEEN_TIME_CHECKS = 1000;
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    // time spent in nested stages for the stage running in the current thread
+    private static final ThreadLocal<long[]> NESTED_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long nanosBetweenUpdates;
+    private final boolean logAsJson;
+    // if false, stages are not timed to avoid the overhead
+    private final boolean timeStages;
+
+    // stages are kept in registration order for reporting
+    private final Map<String, Stage> stagesByName = new ConcurrentHashMap<>();
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+    private final Map<String, IntSupplier> gauges = new ConcurrentHashMap<>();
+
+    private String recordLabel = "records";
+    private LongSupplier bytesIn = () -> 0;
+    private LongSupplier bytesOut = () -> 0;
+
+    // only updated by the thread reporting the processed records
+    private long records = 0;
+    private long recordsSinceLastCheck = 0;
+    private long startNanos = -1;
+    private long lastUpdateNanos = -1;
+    private long stopNanos = -1;
+
+    /**
+     * Constructor timing the stages.
+     *
+     * @param secondsBetweenUpdates minimum number of seconds between progress updates.
+     * @param logAsJson             if {@code true}, progress updates are also logged as JSON.
+     */
+    TraversalMetrics(final double secondsBetweenUpdates, final boolean logAsJson) {
+        this(secondsBetweenUpdates, logAsJson, true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param secondsBetweenUpdates minimum number of seconds between progress updates.
+     * @param logAsJson             if {@code true}, progress updates are also logged as JSON.
+     * @param timeStages            if {@code false}, the time spent in stages is not tracked and
+     *                              timing a stage just runs it.
+     */
+    TraversalMetrics(final double secondsBetweenUpdates, final boolean logAsJson,
+            final boolean timeStages) {
+        Utils.validateArg(secondsBetweenUpdates > 0, "secondsBetweenUpdates should be positive");
+        this.nanosBetweenUpdates = (long) (secondsBetweenUpdates * NANOS_PER_SECOND);
+        this.logAsJson = logAsJson;
+        this.timeStages = timeStages;
+    }
+
+    /** Returns {@code true} if the time spent in stages is tracked; {@code false} otherwise. */
+    boolean isTimingStages() {
+        return timeStages;
+    }
+
+    /** Sets the label for the records processed (e.g., "reads"). */
+    void setRecordLabel(final String label) {
+        this.recordLabel = Utils.nonNull(label, "null label");
+    }
+
+    /** Sets the supplier for the number of bytes read. */
+    void setBytesIn(final LongSupplier bytesIn) {
+        this.bytesIn = Utils.nonNull(bytesIn, "null bytesIn");
+    }
+
+    /** Sets the supplier for the number of bytes written. */
+    void setBytesOut(final LongSupplier bytesOut) {
+        this.bytesOut = Utils.nonNull(bytesOut, "null bytesOut");
+    }
+
+    /** Registers a gauge for the depth of a queue, reported in the progress updates. */
+    void registerGauge(final String name, final IntSupplier depth) {
+        Utils.nonNull(name, "null name");
+        gauges.put(name, Utils.nonNull(depth, "null depth"));
+    }
+
+    /**
+     * Runs the supplier, accounting its time in the stage.
+     *
+     * @param stage    name of the stage.
+     * @param supplier the function to time.
+     *
+     * @return the value returned by the supplier.
+     */
+    <T> T time(final String stage, final Supplier<T> supplier) {
+        if (!timeStages) {
+            return supplier.get();
+        }
+        final Stage s = getStage(stage);
+        final long[] nested = NESTED_NANOS.get();
+        final long outerNested = nested[0];
+        nested[0] = 0;
+        final long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            s.add(elapsed - nested[0]);
+            // the enclosing stage (if any) should not account this time
+            nested[0] = outerNested + elapsed;
+        }
+    }
+
+    /**
+     * Runs the action, accounting its time in the stage.
+     *
+     * @param stage  name of the stage.
+     * @param action the action to time.
+     */
+    void time(final String stage, final Runnable action) {
+        if (!timeStages) {
+            action.run();
+            return;
+        }
+        time(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Wraps the iterator to account the time for advancing it in the stage. The iterator is
+     * returned as it is if stages are not timed.
+     */
+    <T> Iterator<T> timedIterator(final String stage, final Iterator<T> iterator) {
+        Utils.nonNull(iterator, "null iterator");
+        if (!timeStages) {
+            return iterator;
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return time(stage, iterator::hasNext);
+            }
+
+            @Override
+            public T next() {
+                return time(stage, iterator::next);
+            }
+        };
+    }
+
+    /**
+     * Wraps the writer to account the time for adding reads in the stage. The writer is returned
+     * as it is if stages are not timed.
+     */
+    GATKReadWriter timedWriter(final String stage, final GATKReadWriter writer) {
+        Utils.nonNull(writer, "null writer");
+        if (!timeStages) {
+            return writer;
+        }
+        return new GATKReadWriter() {
+            @Override
+            public void addRead(final GATKRead read) {
+                time(stage, () -> writer.addRead(read));
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    // gets or register the stage
+    private Stage getStage(final String name) {
+        final Stage stage = stagesByName.get(name);
+        if (stage != null) {
+            return stage;
+        }
+        return stagesByName.computeIfAbsent(Utils.nonNull(name, "null stage"), n -> {
+            final Stage s = new Stage(n);
+            stages.add(s);
+            return s;
+        });
+    }
+
+    /** Starts the traversal. */
+    void start() {
+        logger.info("Starting traversal");
+        startNanos = System.nanoTime();
+        lastUpdateNanos = startNanos;
+    }
+
+    /**
+     * Updates the number of records processed, logging the progress if enough time has elapsed.
+     * Should be called always from the same thread.
+     */
+    void recordProcessed() {
+        records++;
+        if (++recordsSinceLastCheck >= RECORDS_BETWEEN_TIME_CHECKS) {
+            recordsSinceLastCheck = 0;
+            final long now = System.nanoTime();
+            if (now - lastUpdateNanos >= nanosBetweenUpdates) {
+                lastUpdateNanos = now;
+                logProgress(now);
+            }
+        }
+    }
+
+    /** Stops the traversal, logging the final progress. */
+    void stop() {
+        stopNanos = System.nanoTime();
+        logProgress(stopNanos);
+        logger.info("Traversal complete. Processed {} total {} in {} minutes.",
+                records, recordLabel, String.format("%.1f", elapsedSeconds(stopNanos) / 60));
+    }
+
+    /** Logs the bytes written. Should be called after closing the outputs. */
+    void logBytesWritten() {
+        final double seconds = elapsedSeconds(System.nanoTime());
+        final long bytes = bytesOut.getAsLong();
+        logger.info("Written {} MB to the output ({} MB/second).",
+                String.format("%.1f", bytes / BYTES_PER_MB),
+                String.format("%.1f", perSecond(bytes, seconds) / BYTES_PER_MB));
+    }
+
+    // logs the progress at the given time
+    private void logProgress(final long now) {
+        final double seconds = elapsedSeconds(now);
+        logger.info("Processed {} {} in {} minutes ({} {}/second, {} MB/second in, {} MB/second out){}",
+                records, recordLabel, String.format("%.1f", seconds / 60),
+                String.format("%.1f", perSecond(records, seconds)), recordLabel,
+                String.format("%.1f", perSecond(bytesIn.getAsLong(), seconds) / BYTES_PER_MB),
+                String.format("%.1f", perSecond(bytesOut.getAsLong(), seconds) / BYTES_PER_MB),
+                gauges.isEmpty() ? "" : "; queue depths " + queueDepths());
+        if (logAsJson) {
+            logger.info(toJson(now));
+        }
+    }
+
+    // formats the queue depths as name=depth
+    private String queueDepths() {
+        final StringBuilder builder = new StringBuilder();
+        gauges.forEach((name, depth) -> builder.append(builder.length() == 0 ? "" : ", ")
+                .append(name).append('=').append(depth.getAsInt()));
+        return builder.toString();
+    }
+
+    /** Gets the current statistics as a single-line JSON object. */
+    String toJson() {
+        return toJson(stopNanos == -1 ? System.nanoTime() : stopNanos);
+    }
+
+    private String toJson(final long now) {
+        final double seconds = elapsedSeconds(now);
+        final StringBuilder builder = new StringBuilder("{")
+                .append("\"label\":").append(quote(recordLabel))
+                .append(",\"records\":").append(records)
+                .append(",\"seconds\":").append(seconds)
+                .append(",\"recordsPerSecond\":").append(perSecond(records, seconds))
+                .append(",\"bytesIn\":").append(bytesIn.getAsLong())
+                .append(",\"bytesOut\":").append(bytesOut.getAsLong())
+                .append(",\"stages\":{");
+        boolean first = true;
+        for (final Stage stage : stages) {
+            builder.append(first ? "" : ",").append(quote(stage.name))
+                    .append(":{\"calls\":").append(stage.calls.sum())
+                    .append(",\"seconds\":").append(stage.nanos.sum() / NANOS_PER_SECOND)
+                    .append('}');
+            first = false;
+        }
+        builder.append("},\"queues\":{");
+        first = true;
+        for (final Map.Entry<String, IntSupplier> gauge : gauges.entrySet()) {
+            builder.append(first ? "" : ",").append(quote(gauge.getKey()))
+                    .append(':').append(gauge.getValue().getAsInt());
+            first = false;
+        }
+        return builder.append("}}").toString();
+    }
+
+    // quotes the string for JSON output
+    private static String quote(final String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    /** Gets the throughput metric for the traversal. */
+    TraversalMetric getTraversalMetric() {
+        final TraversalMetric metric = new TraversalMetric();
+        metric.RECORDS = records;
+        metric.SECONDS = elapsedSeconds(stopNanos == -1 ? System.nanoTime() : stopNanos);
+        metric.RECORDS_PER_SECOND = perSecond(metric.RECORDS, metric.SECONDS);
+        metric.BYTES_IN = bytesIn.getAsLong();
+        metric.BYTES_IN_PER_SECOND = perSecond(metric.BYTES_IN, metric.SECONDS);
+        metric.BYTES_OUT = bytesOut.getAsLong();
+        metric.BYTES_OUT_PER_SECOND = perSecond(metric.BYTES_OUT, metric.SECONDS);
+        return metric;
+    }
+
+    /** Gets the metrics for each stage, in the order that they were first timed. */
+    List<StageMetric> getStageMetrics() {
+        final List<StageMetric> metrics = new ArrayList<>(stages.size());
+        long total = 0;
+        for (final Stage stage : stages) {
+            final StageMetric metric = new StageMetric(stage.name);
+            metric.CALLS = stage.calls.sum();
+            final long nanos = stage.nanos.sum();
+            metric.SECONDS = nanos / NANOS_PER_SECOND;
+            total += nanos;
+            metrics.add(metric);
+        }
+        if (total != 0) {
+            for (final StageMetric metric : metrics) {
+                metric.PCT_TIME = 100 * metric.SECONDS * NANOS_PER_SECOND / total;
+            }
+        }
+        return metrics;
+    }
+
+    // gets the elapsed seconds since the start (0 if not started)
+    private double elapsedSeconds(final long now) {
+        return (startNanos == -1) ? 0 : (now - startNanos) / NANOS_PER_SECOND;
+    }
+
+    private static double perSecond(final long count, final double seconds) {
+        return (seconds == 0) ? 0 : count / seconds;
+    }
+
+    // accumulated time for a stage, which could be updated concurrently
+    private static final class Stage {
+        private final String name;
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+
+        private Stage(final String name) {
+            this.name = name;
+        }
+
+        private void add(final long elapsed) {
+            nanos.add(elapsed);
+            calls.increment();
+        }
+    }
+}
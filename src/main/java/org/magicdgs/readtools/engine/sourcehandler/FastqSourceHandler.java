@@ -24,12 +24,12 @@
 
 package org.magicdgs.readtools.engine.sourcehandler;
 
-import org.magicdgs.readtools.utils.fastq.FastqGATKRead;
-import org.magicdgs.readtools.utils.iterators.RecordToReadIterator;
+import org.magicdgs.readtools.utils.fastq.FastqGATKReader;
 import org.magicdgs.readtools.utils.read.ReadReaderFactory;
 
 import htsjdk.samtools.SAMFileHeader;
-import htsjdk.samtools.fastq.FastqReader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.FastqQualityFormat;
 import htsjdk.samtools.util.QualityEncodingDetector;
 import org.broadinstitute.hellbender.exceptions.GATKException;
@@ -44,7 +44,7 @@ import java.util.List;
  *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
-final public class FastqSourceHandler extends FileSourceHandler<FastqReader> {
+final public class FastqSourceHandler extends FileSourceHandler<FastqGATKReader> {
 
     // FASTQ headers are assumed to be unsorted for FASTQ files
     private static final SAMFileHeader FASTQ_HEADER = new SAMFileHeader();
@@ -73,29 +73,46 @@ final public class FastqSourceHandler extends FileSourceHandler<FastqReader> {
         throw new UnsupportedOperationException("FASTQ files does not support querying intervals");
     }
 
-    protected FastqReader getFreshReader() {
-        return factory.openFastqReader(path);
+    protected FastqGATKReader getFreshReader() {
+        return factory.openFastqGATKReader(path);
     }
 
     @Override
-    protected SAMFileHeader getReaderHeader(final FastqReader reader) {
+    protected SAMFileHeader getReaderHeader(final FastqGATKReader reader) {
         throw new GATKException.ShouldNeverReachHereException("This method should not be called");
     }
 
     @Override
-    protected Iterator<GATKRead> getReaderIntervalIterator(FastqReader reader,
+    protected Iterator<GATKRead> getReaderIntervalIterator(FastqGATKReader reader,
             List<SimpleInterval> locs) {
         throw new GATKException.ShouldNeverReachHereException("This method should not be called");
     }
 
     @Override
-    protected FastqQualityFormat getReaderQualityEncoding(final FastqReader reader,
+    protected FastqQualityFormat getReaderQualityEncoding(final FastqGATKReader reader,
             long maxNumberOfReads) {
-        return QualityEncodingDetector.detect(maxNumberOfReads, reader);
+        // the qualities in the SAMRecord are offset by 33, which does not change the detection
+        return QualityEncodingDetector.detect(maxNumberOfReads,
+                new CloseableIterator<SAMRecord>() {
+                    @Override
+                    public void close() {
+                        reader.close();
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return reader.hasNext();
+                    }
+
+                    @Override
+                    public SAMRecord next() {
+                        return reader.next().convertToSAMRecord(null);
+                    }
+                }, false);
     }
 
     @Override
-    protected Iterator<GATKRead> getReaderIterator(final FastqReader reader) {
-        return new RecordToReadIterator<>(reader.iterator(), FastqGATKRead::new);
+    protected Iterator<GATKRead> getReaderIterator(final FastqGATKReader reader) {
+        return reader;
     }
 }
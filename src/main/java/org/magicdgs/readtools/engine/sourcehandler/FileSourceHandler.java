@@ -27,16 +27,23 @@ package org.magicdgs.readtools.engine.sourcehandler;
 import org.magicdgs.readtools.utils.read.ReadReaderFactory;
 
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.FastqQualityFormat;
+import htsjdk.samtools.util.QualityEncodingDetector;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.SimpleInterval;
 import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Function;
@@ -44,6 +51,11 @@ import java.util.function.Function;
 /**
  * Helper for implement a source handler from a file. Close operations are encapsulated here.
  *
+ * Sources which are not regular files (e.g., standard input or named pipes) or all of them if
+ * {@link ReadReaderFactory#singleOpenSources()} is enabled are opened only once: the records read
+ * for detecting the quality encoding are buffered and replayed by the iterator, which could be
+ * requested only once. Interval iteration is not supported for these sources.
+ *
  * @param <T> closeable reader.
  *
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -51,13 +63,21 @@ import java.util.function.Function;
 abstract class FileSourceHandler<T extends Closeable> extends ReadsSourceHandler {
 
     // keep all the readers that have been open to close them all at the end
-    private final List<T> openReaders = new ArrayList<>();
+    private final List<Closeable> openReaders = new ArrayList<>();
 
     /** The path to handle. */
     protected final Path path;
 
     protected final ReadReaderFactory factory;
 
+    // single-open mode: the reader is open only once and its iterator is shared
+    private final boolean singleOpen;
+    private T sharedReader = null;
+    private Iterator<GATKRead> sharedIterator = null;
+    // records already read from the shared iterator, to replay before continuing
+    private final Deque<GATKRead> peekBuffer = new ArrayDeque<>();
+    private boolean iterated = false;
+
     /**
      * Protected constructor. Use {@link #getHandler(String, ReadReaderFactory)} for detect the
      * handler.
@@ -66,6 +86,12 @@ abstract class FileSourceHandler<T extends Closeable> extends ReadsSourceHandler
         super(source);
         this.path = IOUtils.getPath(source);
         this.factory = factory;
+        this.singleOpen = factory.singleOpenSources() || !Files.isRegularFile(path);
+    }
+
+    /** Returns {@code true} if the source is opened only once; {@code false} otherwise. */
+    public boolean isSingleOpen() {
+        return singleOpen;
     }
 
     /**
@@ -89,19 +115,32 @@ abstract class FileSourceHandler<T extends Closeable> extends ReadsSourceHandler
     protected abstract Iterator<GATKRead> getReaderIntervalIterator(final T reader,
             final List<SimpleInterval> locs);
 
+    /**
+     * Default implementation open a fresh reader, detects the quality from it and close the
+     * reader. In single-open mode, the records are buffered to be replayed by the iterator.
+     *
+     * {@inheritDoc}
+     */
     @Override
     public FastqQualityFormat getQualityEncoding(long maxNumberOfReads) {
+        if (singleOpen) {
+            return QualityEncodingDetector.detect(maxNumberOfReads,
+                    peekRecords(maxNumberOfReads), false);
+        }
         return readAndClose(r -> getReaderQualityEncoding(r, maxNumberOfReads));
     }
 
     /**
      * Default implementation open a fresh reader, retrieve the header from it and close the
-     * reader.
+     * reader. In single-open mode, the header is retrieved from the shared reader.
      *
      * {@inheritDoc}
      */
     @Override
     public SAMFileHeader getHeader() {
+        if (singleOpen) {
+            return getReaderHeader(getSharedReader()).clone();
+        }
         return readAndClose(this::getReaderHeader);
     }
 
@@ -120,6 +159,9 @@ abstract class FileSourceHandler<T extends Closeable> extends ReadsSourceHandler
      */
     @Override
     public Iterator<GATKRead> toIterator() {
+        if (singleOpen) {
+            return replayIterator();
+        }
         final T reader = getFreshReader();
         openReaders.add(reader);
         return getReaderIterator(reader);
@@ -133,14 +175,100 @@ abstract class FileSourceHandler<T extends Closeable> extends ReadsSourceHandler
      */
     @Override
     public Iterator<GATKRead> toIntervalIterator(final List<SimpleInterval> locs) {
+        if (singleOpen) {
+            throw new UserException.CouldNotReadInputFile(source,
+                    "intervals require a regular, indexed file, but the source is opened only "
+                            + "once (e.g., a stream, a FIFO or single open sources)");
+        }
         final T reader = getFreshReader();
         openReaders.add(reader);
         return getReaderIntervalIterator(reader, locs);
     }
 
+    /**
+     * Keeps the closeable open until {@link #close()} is called. Implementations opening readers
+     * different from the fresh one should register them here.
+     *
+     * @param closeable the closeable to keep open.
+     *
+     * @return the same closeable.
+     */
+    protected <C extends Closeable> C keepOpen(final C closeable) {
+        openReaders.add(closeable);
+        return closeable;
+    }
+
+    // gets the shared reader, opening it if necessary
+    private T getSharedReader() {
+        if (sharedReader == null) {
+            sharedReader = keepOpen(getFreshReader());
+        }
+        return sharedReader;
+    }
+
+    // gets the shared iterator, creating it if necessary
+    private Iterator<GATKRead> getSharedIterator() {
+        if (iterated) {
+            throw new UserException.CouldNotReadInputFile(source,
+                    "the source is opened only once and it was already iterated");
+        }
+        if (sharedIterator == null) {
+            sharedIterator = getReaderIterator(getSharedReader());
+        }
+        return sharedIterator;
+    }
+
+    // buffers up to maxNumberOfReads records and returns an iterator over them as SAMRecords
+    private CloseableIterator<SAMRecord> peekRecords(final long maxNumberOfReads) {
+        final Iterator<GATKRead> iterator = getSharedIterator();
+        while (peekBuffer.size() < maxNumberOfReads && iterator.hasNext()) {
+            peekBuffer.add(iterator.next());
+        }
+        final Iterator<GATKRead> buffered = peekBuffer.iterator();
+        return new CloseableIterator<SAMRecord>() {
+            @Override
+            public void close() {
+                // nothing to close: the shared reader is kept open
+            }
+
+            @Override
+            public boolean hasNext() {
+                return buffered.hasNext();
+            }
+
+            @Override
+            public SAMRecord next() {
+                return buffered.next().convertToSAMRecord(null);
+            }
+        };
+    }
+
+    // iterator replaying the buffered records before continuing with the shared iterator
+    private Iterator<GATKRead> replayIterator() {
+        final Iterator<GATKRead> iterator = getSharedIterator();
+        iterated = true;
+        return new Iterator<GATKRead>() {
+            @Override
+            public boolean hasNext() {
+                return !peekBuffer.isEmpty() || iterator.hasNext();
+            }
+
+            @Override
+            public GATKRead next() {
+                // the buffer is emptied while iterating to release the records
+                return (peekBuffer.isEmpty()) ? iterator.next() : peekBuffer.poll();
+            }
+        };
+    }
+
     @Override
     public final void close() throws IOException {
         CloserUtil.close(openReaders);
         openReaders.clear();
+        // the source could be opened again after closing
+        sharedReader = null;
+        sharedIterator = null;
+        peekBuffer.clear();
+        iterated = false;
     }
 }
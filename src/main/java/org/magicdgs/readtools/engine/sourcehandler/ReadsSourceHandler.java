@@ -52,6 +52,9 @@ import java.util.stream.StreamSupport;
  */
 public abstract class ReadsSourceHandler implements Closeable {
 
+    /** Source for reading from the standard input, which is handled as FASTQ. */
+    public static final String STDIN_SOURCE = "/dev/stdin";
+
     /** The handled source string. */
     protected final String source;
 
@@ -99,7 +102,8 @@ public abstract class ReadsSourceHandler implements Closeable {
     /**
      * Gets a handler to the provided source: FASTQ or SAM/BAM/CRAM.
      *
-     * Note: the source use the extension to determine the kind of source.
+     * Note: the source use the extension to determine the kind of source, except for
+     * {@link #STDIN_SOURCE} (FASTQ).
      *
      * @param source the source string.
      *
@@ -110,7 +114,7 @@ public abstract class ReadsSourceHandler implements Closeable {
         // first check if it is a SAM/BAM/CRAM format
         if (ReadToolsIOFormat.isSamBamOrCram(source)) {
             return new SamSourceHandler(source, factory);
-        } else if (ReadToolsIOFormat.isFastq(source)) {
+        } else if (ReadToolsIOFormat.isFastq(source) || STDIN_SOURCE.equals(source)) {
             return new FastqSourceHandler(source, factory);
         }
         throw new UserException.CouldNotReadInputFile(source,
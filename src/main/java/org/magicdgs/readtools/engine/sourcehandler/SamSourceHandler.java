@@ -25,6 +25,7 @@
 package org.magicdgs.readtools.engine.sourcehandler;
 
 import org.magicdgs.readtools.utils.read.ReadReaderFactory;
+import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
 
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMFileHeader;
@@ -92,6 +93,23 @@ public final class SamSourceHandler extends FileSourceHandler<SamReader> {
         return QualityEncodingDetector.detect(maxNumberOfReads, reader);
     }
 
+    /**
+     * Splits BAM files into shards decoded in parallel (see
+     * {@link ReadReaderFactory#openParallelBamIterator(java.nio.file.Path)}) if the factory has
+     * more than one decompression thread and the source is not opened only once; otherwise, uses
+     * the default implementation.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Iterator<GATKRead> toIterator() {
+        if (!isSingleOpen() && factory.decompressionThreads() > 1
+                && ReadToolsIOFormat.BamFormat.BAM.isAssignable(source)) {
+            return new SAMRecordToReadIterator(keepOpen(factory.openParallelBamIterator(path)));
+        }
+        return super.toIterator();
+    }
+
     @Override
     protected Iterator<GATKRead> getReaderIterator(final SamReader reader) {
         return new SAMRecordToReadIterator(reader.iterator());
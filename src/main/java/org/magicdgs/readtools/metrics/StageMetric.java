@@ -0,0 +1,55 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Holds the time spent in a stage of the traversal, summed over all the threads.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class StageMetric extends MetricBase {
+
+    /** Name of the stage. */
+    public String STAGE;
+
+    /** Number of times that the stage was run. */
+    public long CALLS = 0;
+
+    /** Seconds spent in the stage, excluding the time of the stages nested on it. */
+    public double SECONDS = 0;
+
+    /** Percentage of the time spent in the stage, with respect to all the stages. */
+    public double PCT_TIME = 0;
+
+    /** Constructor for default stage name. */
+    public StageMetric() { }
+
+    /** Constructor for a stage name. */
+    public StageMetric(final String stage) {
+        this.STAGE = stage;
+    }
+}
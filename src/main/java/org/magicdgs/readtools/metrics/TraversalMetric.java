@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.metrics;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Holds summary statistics for the throughput of a traversal.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class TraversalMetric extends MetricBase {
+
+    /** Number of records (reads or pairs) processed. */
+    public long RECORDS = 0;
+
+    /** Elapsed seconds (wall-clock) of the traversal. */
+    public double SECONDS = 0;
+
+    /** Records processed per second. */
+    public double RECORDS_PER_SECOND = 0;
+
+    /** Bytes read from the inputs (compressed bytes for compressed sources). */
+    public long BYTES_IN = 0;
+
+    /** Input bytes per second. */
+    public double BYTES_IN_PER_SECOND = 0;
+
+    /** Bytes written to the outputs (compressed bytes for compressed outputs). */
+    public long BYTES_OUT = 0;
+
+    /** Output bytes per second. */
+    public double BYTES_OUT_PER_SECOND = 0;
+}
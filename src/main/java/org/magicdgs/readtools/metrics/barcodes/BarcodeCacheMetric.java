@@ -0,0 +1,50 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.metrics.barcodes;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Efficiency of the cache for decoded barcodes.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class BarcodeCacheMetric extends MetricBase {
+
+    /** Maximum number of raw barcodes in the cache. */
+    public int CAPACITY;
+
+    /** Number of raw barcodes in the cache at the end of the run. */
+    public int SIZE;
+
+    /** Number of records whose raw barcodes were found in the cache. */
+    public long HITS;
+
+    /** Number of records whose raw barcodes were not found in the cache. */
+    public long MISSES;
+
+    /** Percentage of records whose raw barcodes were found in the cache. */
+    public double PCT_HITS;
+}
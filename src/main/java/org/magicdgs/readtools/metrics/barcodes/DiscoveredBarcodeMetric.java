@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.metrics.barcodes;
+
+import htsjdk.samtools.metrics.MetricBase;
+
+/**
+ * Most abundant raw barcodes, with approximate counts.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class DiscoveredBarcodeMetric extends MetricBase {
+
+    /** Index of the barcode (1-based), or COMBINED for all the indexes together. */
+    public String INDEX;
+
+    /** Rank of the barcode by abundance in the index (1-based). */
+    public int RANK;
+
+    /** Raw barcode sequence. */
+    public String BARCODE;
+
+    /** Estimated number of records with the barcode (never lower than the real number). */
+    public long COUNT;
+
+    /** Percentage of records with barcodes that have the barcode (from the estimated count). */
+    public double PCT_RECORDS;
+
+    /** Closest barcode in the barcode file, if provided and not too different. */
+    public String CLOSEST_BARCODE;
+
+    /**
+     * Number of mismatches with the closest barcode (missing bases in the raw barcode count as
+     * mismatches).
+     */
+    public Integer MISMATCHES;
+
+    /** Samples with the closest barcode (comma-separated). */
+    public String SAMPLES;
+}
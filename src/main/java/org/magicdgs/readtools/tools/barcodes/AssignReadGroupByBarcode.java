@@ -32,6 +32,7 @@ import org.magicdgs.readtools.cmd.argumentcollections.FixBarcodeAbstractArgument
 import org.magicdgs.readtools.cmd.argumentcollections.RTOutputArgumentCollection;
 import org.magicdgs.readtools.cmd.programgroups.RTManipulationProgramGroup;
 import org.magicdgs.readtools.engine.ReadToolsWalker;
+import org.magicdgs.readtools.metrics.barcodes.BarcodeCacheMetric;
 import org.magicdgs.readtools.metrics.barcodes.MatcherStat;
 import org.magicdgs.readtools.tools.barcodes.dictionary.decoder.BarcodeDecoder;
 import org.magicdgs.readtools.tools.barcodes.dictionary.decoder.BarcodeMatch;
@@ -132,20 +133,29 @@ public final class AssignReadGroupByBarcode extends ReadToolsWalker {
         headerForWriter.setReadGroups(decoder.getDictionary().getSampleReadGroups());
 
         // output the writer
-        writer = outputBamArgumentCollection.outputWriter(headerForWriter,
+        writer = orderedWriter(outputBamArgumentCollection.outputWriter(headerForWriter,
                 () -> getProgramRecord(headerForWriter), true, getReferenceFile()
-        );
+        ));
 
         // discarded writer
         discardedWriter = (keepDiscarded)
-                ? discardedWriter = outputBamArgumentCollection.getWriterFactory()
+                ? orderedWriter(outputBamArgumentCollection.getWriterFactory()
                 .setReferenceFile(getReferenceFile())
                 .createWriter(outputBamArgumentCollection
                                 .getOutputNameWithSuffix(RTDefaults.DISCARDED_OUTPUT_SUFFIX),
-                        getHeaderForReads(), true)
+                        getHeaderForReads(), true))
                 : new NullGATKWriter();
     }
 
+    /**
+     * Reads are decoded independently, and the decoder keeps its statistics per thread, so they
+     * could be processed by several threads.
+     */
+    @Override
+    protected boolean isApplyThreadSafe() {
+        return true;
+    }
+
     /**
      * Applies the transformer for fix the barcode, assigns the read group by barcode and writes
      * the read to the output using {@link #writeRead(GATKRead)}.
@@ -154,7 +164,9 @@ public final class AssignReadGroupByBarcode extends ReadToolsWalker {
     protected void apply(final GATKRead read) {
         logger.debug("Read = {}", () -> read);
         // assumes that the transformed read is modified in place
-        decoder.assignReadGroupByBarcode(fixBarcodeArguments.fixBarcodeTags(read));
+        final GATKRead fixed =
+                timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(read));
+        timeStage("decode", () -> decoder.assignReadGroupByBarcode(fixed));
         writeRead(read);
     }
 
@@ -171,8 +183,8 @@ public final class AssignReadGroupByBarcode extends ReadToolsWalker {
         logger.debug("First: {}", () -> pair._1);
         logger.debug("Second: {}", () -> pair._2);
         // this only works if it is modified in place
-        fixBarcodeArguments.fixBarcodeTags(pair);
-        decoder.assignReadGroupByBarcode(pair._1);
+        timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(pair));
+        timeStage("decode", () -> decoder.assignReadGroupByBarcode(pair._1));
         // now use the read1 information for read2
         // assuming that the barcodes are the same for both reads
         pair._2.setReadGroup(pair._1.getReadGroup());
@@ -213,6 +225,10 @@ public final class AssignReadGroupByBarcode extends ReadToolsWalker {
             matcherStatMetrics.write(metricsWriter);
             // write barcode statistics
             decoder.getBarcodeStatMetrics().write(metricsWriter);
+            // write traversal metrics and decoding cache efficiency if requested
+            final MetricsFile<BarcodeCacheMetric, Integer> cacheMetrics =
+                    decoder.getBarcodeCacheMetrics();
+            writeTraversalMetrics(metricsWriter, cacheMetrics);
             // close the metrics file
             metricsWriter.close();
 
@@ -220,6 +236,9 @@ public final class AssignReadGroupByBarcode extends ReadToolsWalker {
             matcherStatMetrics.getMetrics()
                     .forEach(s -> logger.info("Found {} records for {} ({}).",
                             s.RECORDS, s.SAMPLE, s.BARCODE));
+            cacheMetrics.getMetrics()
+                    .forEach(s -> logger.info("Decoded barcode cache: {}% hits (capacity={}).",
+                            String.format("%.2f", s.PCT_HITS), s.CAPACITY));
             return null;
         } catch (final IOException e) {
             // TODO: use the Path exception after https://github.com/broadinstitute/gatk/pull/2282
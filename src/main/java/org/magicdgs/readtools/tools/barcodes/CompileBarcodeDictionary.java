@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes;
+
+import org.magicdgs.readtools.RTHelpConstants;
+import org.magicdgs.readtools.cmd.RTStandardArguments;
+import org.magicdgs.readtools.cmd.programgroups.RTManipulationProgramGroup;
+import org.magicdgs.readtools.engine.ReadToolsProgram;
+import org.magicdgs.readtools.exceptions.RTUserExceptions;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.CommandLineException;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles a barcode file into a binary barcode dictionary, which could be used instead of the
+ * barcode file in {@link AssignReadGroupByBarcode}.
+ *
+ * <p>Compiled dictionaries are loaded without parsing and validating the barcode file, and the
+ * barcodes with their lookups are memory-mapped. Thus, several processes using the same compiled
+ * dictionary on a node share the memory for them. This is useful for large barcode files (e.g.,
+ * cell barcodes) used in many parallel jobs.</p>
+ *
+ * <p>If the matching parameters are provided, the index for large barcode dictionaries is also
+ * stored, and it is reused by {@link AssignReadGroupByBarcode} with the same parameters.</p>
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ * @ReadTools.note Read group information (run name and read group arguments) is not stored in
+ * the compiled dictionary, and should be provided when it is used.
+ */
+@CommandLineProgramProperties(oneLineSummary = "Compiles a barcode file into a binary barcode dictionary for ReadTools.",
+        summary = CompileBarcodeDictionary.SUMMARY,
+        programGroup = RTManipulationProgramGroup.class)
+@DocumentedFeature
+public final class CompileBarcodeDictionary extends ReadToolsProgram {
+
+    protected static final String SUMMARY = "Compiles a barcode file into a binary barcode "
+            + "dictionary, which is loaded faster and shares the barcodes between processes "
+            + "using it (memory-mapped). It could be used instead of the barcode file in "
+            + "AssignReadGroupByBarcode. If the matching parameters are provided, the index for "
+            + "--largeBarcodeDictionary is also stored.\n\n"
+            + "Find more information about this tool in "
+            + RTHelpConstants.DOCUMENTATION_PAGE + "CompileBarcodeDictionary.html";
+
+    @Argument(fullName = "barcodeFile", shortName = "bc", optional = false, doc = BarcodeDictionaryFactory.BARCODE_FILE_FORMAT_DESCRIPTION)
+    public String barcodeFile;
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Output compiled barcode dictionary.", optional = false)
+    public String output;
+
+    @Argument(fullName = "maximumMismatches", shortName = "mm", optional = true, doc = "Maximum number of mismatches to store the index for --largeBarcodeDictionary in AssignReadGroupByBarcode. It is reused if the dictionary is used with the same maximumMismatches, minimumDistance and nNoMismatch. Specify more than once for apply a different threshold to several indexes.")
+    public List<Integer> maximumMismatches = new ArrayList<>();
+
+    @Argument(fullName = "minimumDistance", shortName = "md", optional = true, doc = "Minimum distance (difference in number of mismatches) between the best match and the second to store the index for --largeBarcodeDictionary in AssignReadGroupByBarcode. Requires maximumMismatches. Specify more than once for apply a different threshold to several indexes.")
+    public List<Integer> minimumDistance = new ArrayList<>();
+
+    @Argument(fullName = "nNoMismatch", shortName = "nnm", optional = true, doc = "Do not count unknown bases (Ns) as mismatch for the stored index for --largeBarcodeDictionary in AssignReadGroupByBarcode.")
+    public boolean nNoMismatch = false;
+
+    @Argument(fullName = RTStandardArguments.FORCE_OVERWRITE_NAME, shortName = RTStandardArguments.FORCE_OVERWRITE_NAME, doc = "Force output overwriting if it exists", common = true, optional = true)
+    public Boolean forceOverwrite = false;
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        if (maximumMismatches.isEmpty() != minimumDistance.isEmpty()) {
+            throw new CommandLineException.BadArgumentValue("--minimumDistance",
+                    minimumDistance.toString(),
+                    "Both maximumMismatches and minimumDistance are required to store the index.");
+        }
+        if (maximumMismatches.stream().anyMatch(i -> i < 0)) {
+            throw new CommandLineException.BadArgumentValue("--maximumMismatches",
+                    maximumMismatches.toString(),
+                    "Maximum number of mismatches should be a positive integer.");
+        }
+        if (minimumDistance.stream().anyMatch(i -> i < 1)) {
+            throw new CommandLineException.BadArgumentValue("--minimumDistance",
+                    minimumDistance.toString(),
+                    "Minimum distance should be at least 1 to avoid ambiguous barcodes.");
+        }
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    protected Object doWork() {
+        final Path outputPath = IOUtils.getPath(output);
+        if (!forceOverwrite && Files.exists(outputPath)) {
+            throw new RTUserExceptions.OutputFileExists(outputPath);
+        }
+        BarcodeDictionaryFactory.compile(IOUtils.getPath(barcodeFile), outputPath,
+                maximumMismatches, minimumDistance, !nNoMismatch);
+        return null;
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes;
+
+import org.magicdgs.readtools.RTDefaults;
+import org.magicdgs.readtools.RTHelpConstants;
+import org.magicdgs.readtools.cmd.RTStandardArguments;
+import org.magicdgs.readtools.cmd.argumentcollections.FixBarcodeAbstractArgumentCollection;
+import org.magicdgs.readtools.cmd.argumentcollections.ReadGroupArgumentCollection;
+import org.magicdgs.readtools.cmd.programgroups.RTManipulationProgramGroup;
+import org.magicdgs.readtools.engine.ReadToolsWalker;
+import org.magicdgs.readtools.exceptions.RTUserExceptions;
+import org.magicdgs.readtools.metrics.barcodes.DiscoveredBarcodeMetric;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionary;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+import org.magicdgs.readtools.tools.barcodes.dictionary.decoder.BarcodeMatch;
+import org.magicdgs.readtools.tools.barcodes.discovery.HeavyHitters;
+import org.magicdgs.readtools.utils.read.RTReadUtils;
+
+import htsjdk.samtools.metrics.MetricsFile;
+import org.apache.commons.lang3.StringUtils;
+import org.broadinstitute.barclay.argparser.Argument;
+import org.broadinstitute.barclay.argparser.ArgumentCollection;
+import org.broadinstitute.barclay.argparser.CommandLineProgramProperties;
+import org.broadinstitute.barclay.help.DocumentedFeature;
+import org.broadinstitute.hellbender.cmdline.StandardArgumentDefinitions;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import scala.Tuple2;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the most abundant raw barcodes in the barcode tag(s), to check which barcodes are
+ * present in a multiplexed library when the barcode file is wrong or missing.
+ *
+ * <p>Barcodes are counted for each index and for all the indexes together (if there are more
+ * than one) in fixed memory, using a Count-Min sketch to estimate the number of records for each
+ * barcode and keeping only the most abundant ones. Thus, the reported counts are approximate
+ * (never lower than the real count). If a barcode file is provided, the closest barcode in the
+ * file is reported for each abundant barcode.</p>
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ * @ReadTools.note For pair-end reads, only the barcodes in the first read are counted.
+ * @ReadTools.note The traversal could be stopped after a number of records with
+ * <code>--maxRecords</code> to inspect only the start of the file(s).
+ */
+@CommandLineProgramProperties(oneLineSummary = "Finds the most abundant barcodes in the barcode tag(s) for all kind of sources for ReadTools.",
+        summary = DiscoverBarcodes.SUMMARY,
+        programGroup = RTManipulationProgramGroup.class)
+@DocumentedFeature
+public final class DiscoverBarcodes extends ReadToolsWalker {
+
+    protected static final String SUMMARY = "Finds the most abundant raw barcodes present in "
+            + "the barcode tag(s) with approximate counts, using fixed memory. If a barcode file "
+            + "is provided, the closest barcode in the file is also reported.\n\n"
+            + "Find more information about this tool in "
+            + RTHelpConstants.DOCUMENTATION_PAGE + "DiscoverBarcodes.html";
+
+    // index name for the barcodes combined
+    private static final String COMBINED_INDEX = "COMBINED";
+
+    @Argument(fullName = StandardArgumentDefinitions.OUTPUT_LONG_NAME, shortName = StandardArgumentDefinitions.OUTPUT_SHORT_NAME, doc = "Output metrics file with the most abundant barcodes.", optional = false)
+    public String output;
+
+    @Argument(fullName = RTStandardArguments.FORCE_OVERWRITE_NAME, shortName = RTStandardArguments.FORCE_OVERWRITE_NAME, doc = "Force output overwriting if it exists", common = true, optional = true)
+    public Boolean forceOverwrite = false;
+
+    @Argument(fullName = "topBarcodes", shortName = "topBarcodes", doc = "Number of most abundant barcodes to report for each index.", optional = true, minValue = 1)
+    public int topBarcodes = 100;
+
+    @Argument(fullName = "sketchWidth", shortName = "sketchWidth", doc = "Number of counters for each of the " + HeavyHitters.SKETCH_DEPTH + " rows of the Count-Min sketch (rounded up to a power of 2). Counts are over-estimated by at most 2.72 / sketchWidth of the records with barcodes (with 98% probability).", optional = true, minValue = 1, maxValue = 1 << 28)
+    public int sketchWidth = HeavyHitters.DEFAULT_SKETCH_WIDTH;
+
+    @Argument(fullName = "maxRecords", shortName = "maxRecords", doc = "Stop after this number of records (reads or pairs). If 'null', all the records are processed.", optional = true, minValue = 1)
+    public Long maxRecords = null;
+
+    @Argument(fullName = "barcodeFile", shortName = "bc", optional = true, doc = "Barcode file (or compiled barcode dictionary) to report the closest barcodes. "
+            + BarcodeDictionaryFactory.BARCODE_FILE_FORMAT_DESCRIPTION)
+    public String barcodeFile = null;
+
+    @ArgumentCollection
+    public FixBarcodeAbstractArgumentCollection fixBarcodeArguments =
+            FixBarcodeAbstractArgumentCollection.getArgumentCollection(false);
+
+    private Path outputPath;
+
+    private BarcodeDictionary dictionary = null;
+
+    // heavy hitters for each index (added when found) and for the combined barcodes
+    private final List<HeavyHitters> indexHeavyHitters = new ArrayList<>();
+    private HeavyHitters combinedHeavyHitters;
+
+    // number of records without barcodes
+    private long recordsWithoutBarcodes = 0;
+
+    @Override
+    protected String[] customCommandLineValidation() {
+        fixBarcodeArguments.validateArguments();
+        return super.customCommandLineValidation();
+    }
+
+    @Override
+    public void onTraversalStart() {
+        outputPath = IOUtils.getPath(output);
+        if (!forceOverwrite && Files.exists(outputPath)) {
+            throw new RTUserExceptions.OutputFileExists(outputPath);
+        }
+        if (barcodeFile != null) {
+            dictionary = BarcodeDictionaryFactory.fromFile(IOUtils.getPath(barcodeFile), null,
+                    new ReadGroupArgumentCollection());
+        }
+        combinedHeavyHitters = new HeavyHitters(topBarcodes, sketchWidth);
+    }
+
+    @Override
+    protected long getMaximumRecordsToTraverse() {
+        return (maxRecords == null) ? -1 : maxRecords;
+    }
+
+    @Override
+    protected void apply(final GATKRead read) {
+        addBarcodes(timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(read)));
+    }
+
+    @Override
+    protected void apply(final Tuple2<GATKRead, GATKRead> pair) {
+        timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(pair));
+        addBarcodes(pair._1);
+    }
+
+    // adds the barcodes in the read to the heavy hitters
+    private void addBarcodes(final GATKRead read) {
+        final String[] barcodes = RTReadUtils.getRawBarcodes(read);
+        if (barcodes.length == 0) {
+            recordsWithoutBarcodes++;
+            return;
+        }
+        timeStage("count", () -> {
+            while (indexHeavyHitters.size() < barcodes.length) {
+                indexHeavyHitters.add(new HeavyHitters(topBarcodes, sketchWidth));
+            }
+            for (int i = 0; i < barcodes.length; i++) {
+                indexHeavyHitters.get(i).add(barcodes[i]);
+            }
+            combinedHeavyHitters.add(String.join(RTDefaults.BARCODE_INDEX_DELIMITER, barcodes));
+        });
+    }
+
+    /** Writes the most abundant barcodes into the metrics file. */
+    @Override
+    public Object onTraversalSuccess() {
+        if (recordsWithoutBarcodes != 0) {
+            logger.warn("{} records without barcodes.", recordsWithoutBarcodes);
+        }
+        final MetricsFile<DiscoveredBarcodeMetric, Integer> metrics = getMetricsFile();
+        for (int i = 0; i < indexHeavyHitters.size(); i++) {
+            addMetrics(metrics, String.valueOf(i + 1), indexHeavyHitters.get(i), i);
+        }
+        // combined barcodes are the same as the first index if there is only one
+        if (indexHeavyHitters.size() > 1) {
+            addMetrics(metrics, COMBINED_INDEX, combinedHeavyHitters, -1);
+        }
+        logger.info("Barcodes counted for {} records, with counts over-estimated by at most {}.",
+                combinedHeavyHitters.getTotal(), combinedHeavyHitters.getErrorBound());
+        try (final Writer metricsWriter = Files.newBufferedWriter(outputPath)) {
+            metrics.write(metricsWriter);
+            writeTraversalMetrics(metricsWriter);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotCreateOutputFile(outputPath.toUri().toString(),
+                    e.getMessage(), e);
+        }
+        return null;
+    }
+
+    // adds the metrics for the heavy hitters (index is -1 for combined barcodes)
+    private void addMetrics(final MetricsFile<DiscoveredBarcodeMetric, Integer> metrics,
+            final String indexName, final HeavyHitters heavyHitters, final int index) {
+        int rank = 0;
+        for (final Map.Entry<String, Long> barcode : heavyHitters.getHeavyHitters()) {
+            final DiscoveredBarcodeMetric metric = new DiscoveredBarcodeMetric();
+            metric.INDEX = indexName;
+            metric.RANK = ++rank;
+            metric.BARCODE = barcode.getKey();
+            metric.COUNT = barcode.getValue();
+            metric.PCT_RECORDS = 100d * barcode.getValue() / heavyHitters.getTotal();
+            if (dictionary != null) {
+                setClosest(metric, index);
+            }
+            metrics.addMetric(metric);
+        }
+    }
+
+    // sets the closest barcode in the dictionary for the metric (index is -1 for combined)
+    private void setClosest(final DiscoveredBarcodeMetric metric, final int index) {
+        final String[] barcodes = (index == -1)
+                ? metric.BARCODE.split(Pattern.quote(RTDefaults.BARCODE_INDEX_DELIMITER), -1)
+                : new String[] {metric.BARCODE};
+        // raw barcodes with a different number of indexes are not compared
+        if ((index == -1 && barcodes.length != dictionary.getNumberOfBarcodes())
+                || index >= dictionary.getNumberOfBarcodes()) {
+            return;
+        }
+        final String[] closest = new String[barcodes.length];
+        int mismatches = 0;
+        for (int i = 0; i < barcodes.length; i++) {
+            final int dictionaryIndex = (index == -1) ? i : index;
+            final BarcodeMatch match = getClosest(dictionaryIndex, barcodes[i]);
+            if (!match.isMatch()) {
+                return;
+            }
+            closest[i] = match.getBarcode();
+            mismatches += match.getMismatches();
+        }
+        metric.CLOSEST_BARCODE = String.join(RTDefaults.BARCODE_INDEX_DELIMITER, closest);
+        metric.MISMATCHES = mismatches;
+        metric.SAMPLES = (index == -1)
+                ? getSamples(metric.CLOSEST_BARCODE)
+                : getSamples(closest[0], index);
+    }
+
+    // gets the closest barcode, counting missing bases as mismatches
+    private BarcodeMatch getClosest(final int index, final String barcode) {
+        final int maxLength = dictionary.getSetBarcodesFromIndex(index).stream()
+                .mapToInt(String::length).max().orElse(0);
+        return BarcodeMatch.getBestBarcodeMatch(index, StringUtils.rightPad(barcode, maxLength,
+                'N'), dictionary.getSetBarcodesFromIndex(index), true);
+    }
+
+    // gets the samples with the combined barcode
+    private String getSamples(final String combinedBarcode) {
+        final List<String> samples = new ArrayList<>();
+        for (int i = 0; i < dictionary.numberOfSamples(); i++) {
+            if (dictionary.getCombinedBarcodesFor(i).equals(combinedBarcode)) {
+                samples.add(dictionary.getReadGroupFor(i).getSample());
+            }
+        }
+        return (samples.isEmpty()) ? null : String.join(",", samples);
+    }
+
+    // gets the samples with the barcode at the index
+    private String getSamples(final String barcode, final int index) {
+        final int ordinal = dictionary.getBarcodeOrdinal(barcode, index);
+        return Arrays.stream(dictionary.getSamplesForBarcodeOrdinal(ordinal, index))
+                .mapToObj(i -> dictionary.getReadGroupFor(i).getSample())
+                .collect(Collectors.joining(","));
+    }
+}
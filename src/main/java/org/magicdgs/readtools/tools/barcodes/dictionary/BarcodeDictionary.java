@@ -28,14 +28,13 @@ import org.magicdgs.readtools.RTDefaults;
 
 import htsjdk.samtools.SAMReadGroupRecord;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -54,21 +53,19 @@ public class BarcodeDictionary {
     private final SAMReadGroupRecord unknownBarcode;
 
     /**
-     * Array which contains the barcodes. The lenght is the number of barcodes used, and the
-     * internal array contain the
-     * associated barcode for each sample
+     * Barcodes for each index, with the lookups for matching them
      */
-    private final List<List<String>> barcodes;
+    private final List<IndexBarcodes> barcodes;
 
     /**
-     * Cached map between combined barcodes and read groups
+     * Cached map between combined barcodes and read groups ({@code null} if it is not cached)
      */
-    private final Map<String, SAMReadGroupRecord> barcodeRGmap = new LinkedHashMap<>();
+    private final Map<String, SAMReadGroupRecord> barcodeRGmap;
 
     /**
-     * Cached barcode set(s) for fast access
+     * Cached combined barcodes for each sample ({@code null} if they are not cached)
      */
-    private final List<Set<String>> barcodesSets = new ArrayList<>();
+    private final String[] combinedBarcodes;
 
     /**
      * Protected constructor. For construct an instance, use {@link BarcodeDictionaryFactory}
@@ -79,19 +76,50 @@ public class BarcodeDictionary {
      */
     protected BarcodeDictionary(final List<SAMReadGroupRecord> samples,
             final List<List<String>> barcodes, final SAMReadGroupRecord unknownBarcode) {
+        this(samples, barcodes.stream().map(IndexBarcodes::of).collect(Collectors.toList()),
+                unknownBarcode, true);
+    }
+
+    /**
+     * Constructor for barcodes with their lookups (e.g., read on demand from a compiled barcode
+     * dictionary). For construct an instance, use {@link BarcodeDictionaryFactory}
+     *
+     * @param samples        the sample names.
+     * @param barcodes       the barcodes for each index.
+     * @param unknownBarcode the unknown barcode to assign to unknonw samples.
+     * @param cache          if {@code true}, the combined barcodes are kept in memory for fast
+     *                       lookups; otherwise, they are computed on demand from the barcodes.
+     */
+    BarcodeDictionary(final List<SAMReadGroupRecord> samples,
+            final List<IndexBarcodes> barcodes, final SAMReadGroupRecord unknownBarcode,
+            final boolean cache) {
         this.sampleRecord = samples;
         this.barcodes = barcodes;
         this.unknownBarcode = unknownBarcode;
+        if (cache) {
+            // initialize all the cached values, to have fast lookups later
+            this.combinedBarcodes = new String[numberOfSamples()];
+            for (int i = 0; i < combinedBarcodes.length; i++) {
+                combinedBarcodes[i] =
+                        String.join(RTDefaults.BARCODE_INDEX_DELIMITER, getBarcodesFor(i));
+            }
+            this.barcodeRGmap = initBarcodeRGmap();
+        } else {
+            this.combinedBarcodes = null;
+            this.barcodeRGmap = null;
+        }
     }
 
     /**
      * Initialize the barcode-RG map for the dictionary to cached
      */
-    private void initBarcodeRGmap() {
+    private Map<String, SAMReadGroupRecord> initBarcodeRGmap() {
+        final Map<String, SAMReadGroupRecord> map = new LinkedHashMap<>();
         // init the barcode-rg map
         for (int i = 0; i < numberOfSamples(); i++) {
-            barcodeRGmap.put(getCombinedBarcodesFor(i), getReadGroupFor(i));
+            map.put(getCombinedBarcodesFor(i), getReadGroupFor(i));
         }
+        return map;
     }
 
     /**
@@ -149,7 +177,8 @@ public class BarcodeDictionary {
      * @return the barcodes for the sample
      */
     public String[] getBarcodesFor(final int sampleIndex) {
-        return barcodes.stream().map(l -> l.get(sampleIndex)).toArray(String[]::new);
+        return barcodes.stream().map(b -> b.getBarcodes().get(sampleIndex))
+                .toArray(String[]::new);
     }
 
     /**
@@ -176,12 +205,25 @@ public class BarcodeDictionary {
      * ead group (see {@link #getUnknownReadGroup()}).
      */
     public SAMReadGroupRecord getReadGroupFor(final String combinedBarcode) {
-        if (barcodeRGmap.isEmpty()) {
-            initBarcodeRGmap();
+        if (barcodeRGmap != null) {
+            return (barcodeRGmap.containsKey(combinedBarcode)) ?
+                    barcodeRGmap.get(combinedBarcode) :
+                    unknownBarcode;
+        }
+        // look up the samples with the first barcode (the last sample wins, as in the map)
+        final String firstBarcode = combinedBarcode.split(
+                Pattern.quote(RTDefaults.BARCODE_INDEX_DELIMITER), -1)[0];
+        final int ordinal = getBarcodeOrdinal(firstBarcode, 0);
+        if (ordinal == -1) {
+            return unknownBarcode;
         }
-        return (barcodeRGmap.containsKey(combinedBarcode)) ?
-                barcodeRGmap.get(combinedBarcode) :
-                unknownBarcode;
+        SAMReadGroupRecord readGroup = unknownBarcode;
+        for (final int sample : getSamplesForBarcodeOrdinal(ordinal, 0)) {
+            if (getCombinedBarcodesFor(sample).equals(combinedBarcode)) {
+                readGroup = getReadGroupFor(sample);
+            }
+        }
+        return readGroup;
     }
 
     /**
@@ -192,7 +234,9 @@ public class BarcodeDictionary {
      * @return the combined barcodes for the sample
      */
     public String getCombinedBarcodesFor(final int sampleIndex) {
-        return String.join(RTDefaults.BARCODE_INDEX_DELIMITER, getBarcodesFor(sampleIndex));
+        return (combinedBarcodes == null)
+                ? String.join(RTDefaults.BARCODE_INDEX_DELIMITER, getBarcodesFor(sampleIndex))
+                : combinedBarcodes[sampleIndex];
     }
 
     /**
@@ -204,7 +248,45 @@ public class BarcodeDictionary {
      * @return <code>true</code> if the barcode is unique; <code>false</code> otherwise
      */
     public boolean isBarcodeUniqueInAt(final String barcode, final int index) {
-        return Collections.frequency(barcodes.get(index), barcode) == 1;
+        final int ordinal = getBarcodeOrdinal(barcode, index);
+        return ordinal != -1 && isBarcodeOrdinalUniqueInAt(ordinal, index);
+    }
+
+    /**
+     * Get the ordinal of the barcode for that index, which is its position in
+     * {@link #getSetBarcodesFromIndex(int)}
+     *
+     * @param barcode the barcode
+     * @param index   0-based index
+     *
+     * @return the ordinal of the barcode; -1 if it is not in the index
+     */
+    public int getBarcodeOrdinal(final String barcode, final int index) {
+        return barcodes.get(index).getOrdinal(barcode);
+    }
+
+    /**
+     * Check if the barcode ordinal is unique for that index
+     *
+     * @param ordinal the barcode ordinal (see {@link #getBarcodeOrdinal(String, int)})
+     * @param index   0-based index
+     *
+     * @return <code>true</code> if the barcode is unique; <code>false</code> otherwise
+     */
+    public boolean isBarcodeOrdinalUniqueInAt(final int ordinal, final int index) {
+        return barcodes.get(index).isUnique(ordinal);
+    }
+
+    /**
+     * Get the samples associated with the barcode ordinal for that index
+     *
+     * @param ordinal the barcode ordinal (see {@link #getBarcodeOrdinal(String, int)})
+     * @param index   0-based index
+     *
+     * @return the sample indexes in ascending order (should not be modified)
+     */
+    public int[] getSamplesForBarcodeOrdinal(final int ordinal, final int index) {
+        return barcodes.get(index).getSamples(ordinal);
     }
 
     /**
@@ -215,7 +297,7 @@ public class BarcodeDictionary {
      * @return the list with the barcodes associated with each sample
      */
     public List<String> getBarcodesFromIndex(final int index) {
-        return barcodes.get(index);
+        return barcodes.get(index).getBarcodes();
     }
 
     /**
@@ -226,17 +308,36 @@ public class BarcodeDictionary {
      * @return a set representation of the index barcodes
      */
     public Set<String> getSetBarcodesFromIndex(final int index) {
-        if (barcodesSets.isEmpty()) {
-            initSets();
-        }
-        return barcodesSets.get(index);
+        return barcodes.get(index).getSet();
     }
 
     /**
-     * Initialize the sets for the barcodes
+     * Get the first, second... barcodes (0-indexed) packed for fast comparison, in the same order
+     * as {@link #getSetBarcodesFromIndex(int)}
+     *
+     * @param index the index
+     *
+     * @return the packed representation of the index barcodes; {@code null} if they cannot be
+     * packed (see {@link PackedBarcodes#pack(java.util.Collection)})
+     */
+    public PackedBarcodes getPackedBarcodesFromIndex(final int index) {
+        return barcodes.get(index).getPacked();
+    }
+
+    /**
+     * Get the first, second... barcodes (0-indexed) packed and sorted for each partition (see
+     * {@link PackedBarcodePartitions}), if they are already sorted for the parameters (e.g., in
+     * a compiled barcode dictionary).
+     *
+     * @param index         the index
+     * @param radius        maximum number of mismatches to look up.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the sorted partitions; {@code null} if they are not available.
      */
-    private void initSets() {
-        barcodes.forEach(l -> barcodesSets.add(new LinkedHashSet<>(l)));
+    public PackedBarcodePartitions getPackedPartitionsFromIndex(final int index,
+            final int radius, final boolean nAsMismatches) {
+        return barcodes.get(index).getPartitions(radius, nAsMismatches);
     }
 
     /**
@@ -247,9 +348,6 @@ public class BarcodeDictionary {
      * @return the short representation
      */
     public String toString() {
-        if (barcodeRGmap.isEmpty()) {
-            initBarcodeRGmap();
-        }
-        return barcodeRGmap.toString();
+        return (barcodeRGmap == null) ? initBarcodeRGmap().toString() : barcodeRGmap.toString();
     }
 }
@@ -37,12 +37,22 @@ import org.broadinstitute.hellbender.utils.text.parsers.TabbedInputParser;
 import org.broadinstitute.hellbender.utils.text.parsers.TabbedTextFileWithHeaderParser;
 import scala.Tuple3;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Class to create/read barcode dictionaries.
@@ -108,9 +118,19 @@ public class BarcodeDictionaryFactory {
      */
     public static final String LIBRARY_NAME_COLUMN = "library_name";
 
+    /**
+     * Version of the binary format for compiled barcode dictionaries. Files with other versions
+     * should be compiled again.
+     */
+    public static final int COMPILED_FORMAT_VERSION = 2;
+
+    // first bytes of a compiled barcode dictionary
+    private static final byte[] COMPILED_MAGIC = "RTBCDICT".getBytes(StandardCharsets.US_ASCII);
+
     /**
      * Gets a barcode dictionary from a file in the format defined in
-     * {@link #BARCODE_FILE_FORMAT_DESCRIPTION}.
+     * {@link #BARCODE_FILE_FORMAT_DESCRIPTION} or compiled with
+     * {@link #compile(Path, Path)}.
      *
      * @param barcodePath path to the barcode file.
      *
@@ -121,6 +141,192 @@ public class BarcodeDictionaryFactory {
         Utils.nonNull(barcodePath, "null barcodePath");
         Utils.nonNull(rgInfo, "null rgInfo");
         // run Id can be null
+        if (isCompiledDictionary(barcodePath)) {
+            logger.debug("Loading compiled barcode dictionary: {}", barcodePath::toUri);
+            return fromCompiledFile(barcodePath, runId, rgInfo);
+        }
+        final BarcodeSheet sheet = readBarcodeSheet(barcodePath);
+        return getDictionary(sheet, sheet.barcodes.stream().map(IndexBarcodes::of)
+                .collect(Collectors.toList()), runId, rgInfo, true);
+    }
+
+    /**
+     * Compiles a barcode file in the format defined in {@link #BARCODE_FILE_FORMAT_DESCRIPTION}
+     * into a binary file, which is loaded faster by {@link #fromFile(Path, String,
+     * ReadGroupArgumentCollection)}.
+     *
+     * The compiled file stores the sample names and libraries, followed by the barcodes for each
+     * index with their ordinals, samples and packed bases (see {@link PackedBarcodes}). The
+     * barcodes are memory-mapped when loading the file and read on demand, and thus shared
+     * between processes using the same file. Read group information (run ID and read group
+     * arguments) is not stored, and is provided when loading the dictionary.
+     *
+     * @param barcodePath path to the barcode file.
+     * @param outputPath  path to the compiled barcode dictionary.
+     *
+     * @throws UserException if the barcode file is malformed or an IO error occurs.
+     */
+    public static void compile(final Path barcodePath, final Path outputPath) {
+        compile(barcodePath, outputPath, Collections.emptyList(), Collections.emptyList(), true);
+    }
+
+    /**
+     * Compiles a barcode file as {@link #compile(Path, Path)}, storing also the packed barcodes
+     * sorted for each partition (see {@link PackedBarcodePartitions}) used for matching large
+     * barcode dictionaries with the provided parameters. Loading the dictionary reuses them if
+     * it is used with the same parameters.
+     *
+     * @param barcodePath     path to the barcode file.
+     * @param outputPath      path to the compiled barcode dictionary.
+     * @param maxMismatches   maximum number of mismatches for each index (or a single value for
+     *                        all of them). If empty, the partitions are not stored.
+     * @param minDistance     minimum distance between the best match and the second for each
+     *                        index (or a single value for all of them). If empty, the
+     *                        partitions are not stored.
+     * @param nAsMismatches   if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @throws UserException if the barcode file is malformed, the parameters does not match the
+     *                       number of barcodes or an IO error occurs.
+     */
+    public static void compile(final Path barcodePath, final Path outputPath,
+            final List<Integer> maxMismatches, final List<Integer> minDistance,
+            final boolean nAsMismatches) {
+        Utils.nonNull(barcodePath, "null barcodePath");
+        Utils.nonNull(outputPath, "null outputPath");
+        Utils.nonNull(maxMismatches, "null maxMismatches");
+        Utils.nonNull(minDistance, "null minDistance");
+        final BarcodeSheet sheet = readBarcodeSheet(barcodePath);
+        final int[] radius = getPartitionsRadius(sheet.barcodes.size(), maxMismatches,
+                minDistance);
+        try (final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(outputPath)))) {
+            output.write(COMPILED_MAGIC);
+            output.writeInt(COMPILED_FORMAT_VERSION);
+            output.writeInt(sheet.barcodes.size());
+            output.writeInt(sheet.sampleNames.size());
+            output.writeBoolean(sheet.libraries != null);
+            for (int i = 0; i < sheet.sampleNames.size(); i++) {
+                writeString(output, sheet.sampleNames.get(i));
+                if (sheet.libraries != null) {
+                    writeString(output, sheet.libraries.get(i));
+                }
+            }
+            for (int i = 0; i < sheet.barcodes.size(); i++) {
+                final boolean sorted = MappedIndexBarcodes.write(output,
+                        IndexBarcodes.of(sheet.barcodes.get(i)), radius[i], nAsMismatches);
+                if (radius[i] != -1 && !sorted) {
+                    logger.warn("Barcodes for index {} cannot be used as a large barcode "
+                            + "dictionary with a radius of {}", i + 1, radius[i]);
+                }
+            }
+            logger.info("Compiled {} samples with {} barcodes.", sheet.sampleNames::size,
+                    sheet.barcodes::size);
+        } catch (final IOException e) {
+            // TODO: use the Path exception after https://github.com/broadinstitute/gatk/pull/2282
+            throw new UserException.CouldNotCreateOutputFile(outputPath.toUri().toString(),
+                    e.getMessage(), e);
+        }
+    }
+
+    // gets the radius for the large dictionary index for each barcode (-1 if not provided)
+    private static int[] getPartitionsRadius(final int numberOfBarcodes,
+            final List<Integer> maxMismatches, final List<Integer> minDistance) {
+        final int[] radius = new int[numberOfBarcodes];
+        if (maxMismatches.isEmpty() || minDistance.isEmpty()) {
+            Arrays.fill(radius, -1);
+            return radius;
+        }
+        for (final List<Integer> param : Arrays.asList(maxMismatches, minDistance)) {
+            if (param.size() != 1 && param.size() != numberOfBarcodes) {
+                throw new UserException(String.format(
+                        "Matching parameter specified %s times for %s barcodes.", param.size(),
+                        numberOfBarcodes));
+            }
+        }
+        for (int i = 0; i < numberOfBarcodes; i++) {
+            // same as the large dictionary in the barcode decoder
+            radius[i] = Math.max(0, maxMismatches.get((maxMismatches.size() == 1) ? 0 : i))
+                    + Math.max(1, minDistance.get((minDistance.size() == 1) ? 0 : i)) - 1;
+        }
+        return radius;
+    }
+
+    // returns true if the file starts with the compiled dictionary bytes
+    private static boolean isCompiledDictionary(final Path barcodePath) {
+        try (final InputStream input = Files.newInputStream(barcodePath)) {
+            final byte[] magic = new byte[COMPILED_MAGIC.length];
+            int read = 0;
+            int n;
+            while (read < magic.length && (n = input.read(magic, read, magic.length - read)) > 0) {
+                read += n;
+            }
+            return Arrays.equals(magic, COMPILED_MAGIC);
+        } catch (final IOException e) {
+            // TODO: use the Path exception after https://github.com/broadinstitute/gatk/pull/2282
+            throw new UserException.CouldNotReadInputFile(barcodePath.toFile(), e);
+        }
+    }
+
+    // loads a compiled dictionary, memory-mapping the file
+    private static BarcodeDictionary fromCompiledFile(final Path barcodePath, final String runId,
+            final ReadGroupArgumentCollection rgInfo) {
+        final ByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(barcodePath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new UserException.MalformedFile(barcodePath.toFile(),
+                        "compiled barcode dictionary is too large to be memory-mapped");
+            }
+            // the mapping is valid after closing the channel
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (final IOException e) {
+            // TODO: use the Path exception after https://github.com/broadinstitute/gatk/pull/2282
+            throw new UserException.CouldNotReadInputFile(barcodePath.toFile(), e);
+        }
+        try {
+            buffer.position(COMPILED_MAGIC.length);
+            final int version = buffer.getInt();
+            if (version != COMPILED_FORMAT_VERSION) {
+                throw new UserException.MalformedFile(barcodePath.toFile(), String.format(
+                        "compiled barcode dictionary version %s is not supported (expected %s): "
+                                + "please, compile it again", version, COMPILED_FORMAT_VERSION));
+            }
+            final int numberOfBarcodes = buffer.getInt();
+            final int numberOfSamples = buffer.getInt();
+            final boolean hasLibraries = buffer.get() != 0;
+            final BarcodeSheet sheet = new BarcodeSheet(0, hasLibraries);
+            for (int i = 0; i < numberOfSamples; i++) {
+                sheet.sampleNames.add(readString(buffer));
+                if (hasLibraries) {
+                    sheet.libraries.add(readString(buffer));
+                }
+            }
+            // the barcodes are read on demand from the buffer
+            final List<IndexBarcodes> barcodes = new ArrayList<>(numberOfBarcodes);
+            for (int i = 0; i < numberOfBarcodes; i++) {
+                barcodes.add(MappedIndexBarcodes.read(buffer, numberOfSamples));
+            }
+            return getDictionary(sheet, barcodes, runId, rgInfo, false);
+        } catch (final BufferUnderflowException | IllegalArgumentException e) {
+            throw new UserException.MalformedFile(barcodePath.toFile(),
+                    "truncated compiled barcode dictionary", e);
+        }
+    }
+
+    private static void writeString(final DataOutputStream output, final String value)
+            throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // reads the sample names, libraries and barcodes from a barcode file
+    private static BarcodeSheet readBarcodeSheet(final Path barcodePath) {
         try {
             // similar to ExtractIlluminaBarcodes
             final TabbedTextFileWithHeaderParser barcodesParser =
@@ -149,16 +355,15 @@ public class BarcodeDictionaryFactory {
                 }
             }
 
-            // log the result and get the dictionary from the parser
+            // log the result and get the barcodes from the parser
             logger.info("Detected {} barcodes.", columNames::size);
-            final BarcodeDictionary dictionary = getDictionary(barcodesParser,
-                    columNames, sampleNameColumn,
-                    runId, rgInfo);
+            final BarcodeSheet sheet = getBarcodeSheet(barcodesParser,
+                    columNames, sampleNameColumn);
 
             // close the barcode parser
             barcodesParser.close();
 
-            return dictionary;
+            return sheet;
 
         } catch (IOException e) {
             // TODO: use the Path exception after https://github.com/broadinstitute/gatk/pull/2282
@@ -166,45 +371,59 @@ public class BarcodeDictionaryFactory {
         }
     }
 
-    // gets the dictionary from the tabbed text file
-    private static final BarcodeDictionary getDictionary(
+    // gets the barcodes from the tabbed text file
+    private static final BarcodeSheet getBarcodeSheet(
             final TabbedTextFileWithHeaderParser barcodesParser,
-            final List<String> barcodeColumns, final String sampleNameColumn,
-            final String runId, final ReadGroupArgumentCollection rgInfo) {
+            final List<String> barcodeColumns, final String sampleNameColumn) {
         // debug some information
         logger.debug("Column names for barcodes: {}", barcodeColumns::toString);
         logger.debug("Column names for sample: {}", () -> sampleNameColumn);
 
-
-        // create the lists for samples and barcodes
-        final List<SAMReadGroupRecord> sampleReadGroups = new ArrayList<>();
-        final List<List<String>> barcodes = new ArrayList<>(barcodeColumns.size());
-        barcodeColumns.forEach(s -> barcodes.add(new ArrayList<>()));
-
-        final BiConsumer<TabbedTextFileWithHeaderParser.Row, SAMReadGroupRecord> recordUpdater =
-                getRecordUpdater(barcodesParser);
+        // TODO: update more stuff
+        final BarcodeSheet sheet = new BarcodeSheet(barcodeColumns.size(),
+                barcodesParser.hasColumn(LIBRARY_NAME_COLUMN));
 
         // read the barcode file as a tab-delimited file, one row per sample
         for (final TabbedTextFileWithHeaderParser.Row row : barcodesParser) {
-
-            // this is for the read group ID
-            final List<String> sampleBarcodes = new ArrayList<>(barcodeColumns.size());
             // fill up the barcodes for this sample
             for (int i = 0; i < barcodeColumns.size(); i++) {
-                final String iBarcode = row.getField(barcodeColumns.get(i));
-                sampleBarcodes.add(iBarcode);
-                barcodes.get(i).add(iBarcode);
+                sheet.barcodes.get(i).add(row.getField(barcodeColumns.get(i)));
+            }
+            sheet.sampleNames.add(row.getField(sampleNameColumn));
+            if (sheet.libraries != null) {
+                sheet.libraries.add(row.getField(LIBRARY_NAME_COLUMN));
+            }
+        }
+        return sheet;
+    }
+
+    // gets the dictionary from the sample information in the sheet and the barcodes
+    // (if cache is true, the combined barcodes are kept in memory)
+    private static final BarcodeDictionary getDictionary(final BarcodeSheet sheet,
+            final List<IndexBarcodes> barcodes, final String runId,
+            final ReadGroupArgumentCollection rgInfo, final boolean cache) {
+        // create the lists for samples
+        final List<SAMReadGroupRecord> sampleReadGroups =
+                new ArrayList<>(sheet.sampleNames.size());
+
+        for (int sample = 0; sample < sheet.sampleNames.size(); sample++) {
+
+            // this is for the read group ID
+            final List<String> sampleBarcodes = new ArrayList<>(barcodes.size());
+            for (final IndexBarcodes indexBarcodes : barcodes) {
+                sampleBarcodes.add(indexBarcodes.getBarcodes().get(sample));
             }
 
             // get the sample name and the read group ID
-            final String sampleName = row.getField(sampleNameColumn);
+            final String sampleName = sheet.sampleNames.get(sample);
             String rgId = (runId == null) ? sampleName : runId + "_" + sampleName;
             rgId += "_" + String.join(RTDefaults.BARCODE_INDEX_DELIMITER, sampleBarcodes);
 
             // generate the sample name info
             final SAMReadGroupRecord rg = rgInfo.getReadGroupFromArguments(rgId, sampleName);
             // update the record with more information
-            recordUpdater.accept(row, rg);
+            // TODO: this should be changed and do not output anything?
+            rg.setLibrary((sheet.libraries == null) ? rg.getId() : sheet.libraries.get(sample));
             // add to the sample records
             sampleReadGroups.add(rg);
         }
@@ -214,17 +433,23 @@ public class BarcodeDictionaryFactory {
                 BarcodeMatch.UNKNOWN_STRING, BarcodeMatch.UNKNOWN_STRING);
 
         // creates the barcode dictionary
-        return new BarcodeDictionary(sampleReadGroups, barcodes, unknownReadGroup);
+        return new BarcodeDictionary(sampleReadGroups, barcodes, unknownReadGroup, cache);
     }
 
-    // helper funciton to update the record
-    private static final BiConsumer<TabbedTextFileWithHeaderParser.Row, SAMReadGroupRecord> getRecordUpdater(
-            final TabbedTextFileWithHeaderParser barcodesParser) {
-        // TODO: update more stuff
-        return (barcodesParser.hasColumn(LIBRARY_NAME_COLUMN))
-                ? (row, rg) -> rg.setLibrary(row.getField(LIBRARY_NAME_COLUMN))
-                // TODO: this should be changed and do not output anything?
-                : (row, rg) -> rg.setLibrary(rg.getId());
+    // sample names, libraries and barcodes (by index) for each row of a barcode file
+    private static final class BarcodeSheet {
+        private final List<String> sampleNames = new ArrayList<>();
+        // null if there is no library column
+        private final List<String> libraries;
+        private final List<List<String>> barcodes;
+
+        private BarcodeSheet(final int numberOfBarcodes, final boolean hasLibraries) {
+            this.libraries = (hasLibraries) ? new ArrayList<>() : null;
+            this.barcodes = new ArrayList<>(numberOfBarcodes);
+            for (int i = 0; i < numberOfBarcodes; i++) {
+                barcodes.add(new ArrayList<>());
+            }
+        }
     }
 
     // validates the barcode parser columns, if all required are set and if the optional are present
@@ -0,0 +1,147 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Barcodes at the same position (index) in a barcode dictionary, with the lookups used for
+ * matching them.
+ *
+ * The barcodes for an index have an ordinal, which is their position in {@link #getSet()}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+abstract class IndexBarcodes {
+
+    /**
+     * Gets the barcodes kept in memory, packing them if possible.
+     *
+     * @param barcodes the barcode for each sample.
+     */
+    static IndexBarcodes of(final List<String> barcodes) {
+        return new InHeap(barcodes);
+    }
+
+    /** Gets the barcode for each sample. */
+    abstract List<String> getBarcodes();
+
+    /** Gets the unique barcodes, in ordinal order. */
+    abstract Set<String> getSet();
+
+    /** Gets the ordinal of the barcode; -1 if it is not present. */
+    abstract int getOrdinal(final String barcode);
+
+    /** Gets the samples for the barcode ordinal, in ascending order (should not be modified). */
+    abstract int[] getSamples(final int ordinal);
+
+    /** Returns {@code true} if the barcode ordinal identifies a single sample. */
+    abstract boolean isUnique(final int ordinal);
+
+    /** Gets the packed barcodes in ordinal order; {@code null} if they cannot be packed. */
+    abstract PackedBarcodes getPacked();
+
+    /**
+     * Gets the packed barcodes sorted for each partition, if they were already sorted for the
+     * parameters.
+     *
+     * @param radius        maximum number of mismatches to look up.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the sorted partitions; {@code null} if they are not available.
+     */
+    PackedBarcodePartitions getPartitions(final int radius, final boolean nAsMismatches) {
+        return null;
+    }
+
+    // barcodes and lookups in memory
+    private static final class InHeap extends IndexBarcodes {
+
+        private final List<String> barcodes;
+        private final Set<String> set;
+        private final Map<String, Integer> ordinals = new HashMap<>();
+        private final int[][] samplesByOrdinal;
+        private final BitSet uniqueOrdinals;
+        private final PackedBarcodes packed;
+
+        private InHeap(final List<String> barcodes) {
+            this.barcodes = barcodes;
+            this.set = new LinkedHashSet<>(barcodes);
+            this.packed = PackedBarcodes.pack(set);
+            set.forEach(b -> ordinals.put(b, ordinals.size()));
+            // collect the samples for each barcode ordinal
+            final List<List<Integer>> samples = new ArrayList<>(ordinals.size());
+            for (int o = 0; o < ordinals.size(); o++) {
+                samples.add(new ArrayList<>());
+            }
+            for (int i = 0; i < barcodes.size(); i++) {
+                samples.get(ordinals.get(barcodes.get(i))).add(i);
+            }
+            this.samplesByOrdinal = samples.stream()
+                    .map(l -> l.stream().mapToInt(Integer::intValue).toArray())
+                    .toArray(int[][]::new);
+            this.uniqueOrdinals = new BitSet(ordinals.size());
+            for (int o = 0; o < samplesByOrdinal.length; o++) {
+                uniqueOrdinals.set(o, samplesByOrdinal[o].length == 1);
+            }
+        }
+
+        @Override
+        List<String> getBarcodes() {
+            return barcodes;
+        }
+
+        @Override
+        Set<String> getSet() {
+            return set;
+        }
+
+        @Override
+        int getOrdinal(final String barcode) {
+            return ordinals.getOrDefault(barcode, -1);
+        }
+
+        @Override
+        int[] getSamples(final int ordinal) {
+            return samplesByOrdinal[ordinal];
+        }
+
+        @Override
+        boolean isUnique(final int ordinal) {
+            return uniqueOrdinals.get(ordinal);
+        }
+
+        @Override
+        PackedBarcodes getPacked() {
+            return packed;
+        }
+    }
+}
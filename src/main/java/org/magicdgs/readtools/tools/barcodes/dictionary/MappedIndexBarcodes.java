@@ -0,0 +1,368 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Barcodes at the same position (index) in a compiled barcode dictionary, read on demand from
+ * the memory-mapped file. Thus, only the buffers are kept in memory, and processes using the
+ * same compiled dictionary share the barcodes and lookups.
+ *
+ * The layout for an index (big-endian, each section aligned to 8 bytes) is:
+ *
+ * - Number of unique barcodes (int).
+ * - Ordinal of the barcode for each sample (int array).
+ * - Offsets for each ordinal in the samples array (int array, plus the end) and the sample
+ * indexes (int array).
+ * - Offsets for each ordinal in the barcode bytes (int array, plus the end), the ordinals sorted
+ * by their barcode bytes (int array) and the UTF-8 bytes for the barcodes.
+ * - Number of packed barcodes (int, -1 if they cannot be packed) and the packed bases
+ * (long array).
+ * - Radius of the sorted partitions (int, -1 if they are not stored), 1 if Ns count as
+ * mismatches or 0 otherwise (int), and for each partition the sorted keys (long array) and
+ * barcode positions (int array) (see {@link PackedBarcodePartitions}).
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class MappedIndexBarcodes extends IndexBarcodes {
+
+    private final IntBuffer sampleOrdinals;
+    private final IntBuffer sampleOffsets;
+    private final IntBuffer samples;
+    private final IntBuffer barcodeOffsets;
+    private final IntBuffer sortedOrdinals;
+    private final ByteBuffer barcodeBytes;
+
+    // views of the barcodes, by ordinal and by sample
+    private final List<String> setBarcodes;
+    private final List<String> sampleBarcodes;
+    private final Set<String> set;
+
+    private final PackedBarcodes packed;
+
+    // -1 if the partitions are not stored
+    private final int radius;
+    private final boolean nAsMismatches;
+    private final List<LongBuffer> partitionKeys;
+    private final List<IntBuffer> partitionPositions;
+
+    private MappedIndexBarcodes(final ByteBuffer buffer, final int numberOfSamples) {
+        align(buffer);
+        final int numberOfBarcodes = buffer.getInt();
+        this.sampleOrdinals = readInts(buffer, numberOfSamples);
+        this.sampleOffsets = readInts(buffer, numberOfBarcodes + 1);
+        this.samples = readInts(buffer, numberOfSamples);
+        this.barcodeOffsets = readInts(buffer, numberOfBarcodes + 1);
+        this.sortedOrdinals = readInts(buffer, numberOfBarcodes);
+        this.barcodeBytes = slice(buffer, barcodeOffsets.get(numberOfBarcodes));
+        this.setBarcodes = new BarcodeList(numberOfBarcodes, IntUnaryOperator.identity());
+        this.sampleBarcodes = new BarcodeList(numberOfSamples, sampleOrdinals::get);
+        this.set = new BarcodeSet();
+
+        align(buffer);
+        final boolean isPacked = buffer.getInt() != -1;
+        this.packed = (isPacked)
+                ? PackedBarcodes.wrap(setBarcodes, readLongs(buffer, numberOfBarcodes)) : null;
+
+        align(buffer);
+        this.radius = buffer.getInt();
+        this.nAsMismatches = buffer.getInt() != 0;
+        this.partitionKeys = new ArrayList<>(radius + 1);
+        this.partitionPositions = new ArrayList<>(radius + 1);
+        for (int p = 0; p <= radius; p++) {
+            partitionKeys.add(readLongs(buffer, numberOfBarcodes));
+            partitionPositions.add(readInts(buffer, numberOfBarcodes));
+        }
+    }
+
+    /**
+     * Reads the barcodes for an index from the buffer, starting at the current position and
+     * leaving the position after them.
+     *
+     * @param buffer          the buffer, with the positions relative to the start of the file.
+     * @param numberOfSamples the number of samples in the dictionary.
+     *
+     * @return the barcodes backed by the buffer.
+     *
+     * @throws java.nio.BufferUnderflowException if the buffer is truncated.
+     * @throws IllegalArgumentException          if the buffer is truncated.
+     */
+    static MappedIndexBarcodes read(final ByteBuffer buffer, final int numberOfSamples) {
+        return new MappedIndexBarcodes(buffer, numberOfSamples);
+    }
+
+    /**
+     * Writes the barcodes for an index in the layout read by {@link #read(ByteBuffer, int)}.
+     *
+     * @param output        the output, with the size relative to the start of the file.
+     * @param barcodes      the barcodes to write.
+     * @param radius        maximum number of mismatches to sort the partitions for (see
+     *                      {@link PackedBarcodePartitions}); -1 to do not store them.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return {@code true} if the partitions were stored; {@code false} otherwise.
+     */
+    static boolean write(final DataOutputStream output, final IndexBarcodes barcodes,
+            final int radius, final boolean nAsMismatches) throws IOException {
+        final List<String> sampleBarcodes = barcodes.getBarcodes();
+        final List<byte[]> bytes = new ArrayList<>(barcodes.getSet().size());
+        barcodes.getSet().forEach(b -> bytes.add(b.getBytes(StandardCharsets.UTF_8)));
+
+        align(output);
+        output.writeInt(bytes.size());
+        writeInts(output, sampleBarcodes.stream().mapToInt(barcodes::getOrdinal).toArray());
+        final int[] offsets = new int[bytes.size() + 1];
+        for (int o = 0; o < bytes.size(); o++) {
+            offsets[o + 1] = offsets[o] + barcodes.getSamples(o).length;
+        }
+        writeInts(output, offsets);
+        writeInts(output, IntStream.range(0, bytes.size())
+                .flatMap(o -> Arrays.stream(barcodes.getSamples(o))).toArray());
+        for (int o = 0; o < bytes.size(); o++) {
+            offsets[o + 1] = offsets[o] + bytes.get(o).length;
+        }
+        writeInts(output, offsets);
+        writeInts(output, IntStream.range(0, bytes.size()).boxed()
+                .sorted(Comparator.comparing(bytes::get, MappedIndexBarcodes::compareUnsigned))
+                .mapToInt(Integer::intValue).toArray());
+        align(output);
+        for (final byte[] b : bytes) {
+            output.write(b);
+        }
+
+        final PackedBarcodes packed = barcodes.getPacked();
+        align(output);
+        output.writeInt((packed == null) ? -1 : packed.size());
+        align(output);
+        for (int i = 0; packed != null && i < packed.size(); i++) {
+            output.writeLong(packed.getBases(i));
+        }
+
+        final PackedBarcodePartitions partitions = (packed == null || radius < 0)
+                ? null : PackedBarcodePartitions.sort(packed, radius);
+        align(output);
+        output.writeInt((partitions == null) ? -1 : radius);
+        output.writeInt((nAsMismatches) ? 1 : 0);
+        for (int p = 0; partitions != null && p < partitions.numberOfPartitions(); p++) {
+            final int partition = p;
+            align(output);
+            for (int i = 0; i < partitions.size(); i++) {
+                output.writeLong(partitions.getKey(partition, i));
+            }
+            writeInts(output, IntStream.range(0, partitions.size())
+                    .map(i -> partitions.getPosition(partition, i)).toArray());
+        }
+        return partitions != null;
+    }
+
+    @Override
+    List<String> getBarcodes() {
+        return sampleBarcodes;
+    }
+
+    @Override
+    Set<String> getSet() {
+        return set;
+    }
+
+    @Override
+    int getOrdinal(final String barcode) {
+        final byte[] query = barcode.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = sortedOrdinals.limit() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int ordinal = sortedOrdinals.get(mid);
+            final int cmp = compareBarcode(ordinal, query);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int[] getSamples(final int ordinal) {
+        final int start = sampleOffsets.get(ordinal);
+        final int[] ordinalSamples = new int[sampleOffsets.get(ordinal + 1) - start];
+        for (int i = 0; i < ordinalSamples.length; i++) {
+            ordinalSamples[i] = samples.get(start + i);
+        }
+        return ordinalSamples;
+    }
+
+    @Override
+    boolean isUnique(final int ordinal) {
+        return sampleOffsets.get(ordinal + 1) - sampleOffsets.get(ordinal) == 1;
+    }
+
+    @Override
+    PackedBarcodes getPacked() {
+        return packed;
+    }
+
+    @Override
+    PackedBarcodePartitions getPartitions(final int radius, final boolean nAsMismatches) {
+        return (this.radius != -1 && this.radius == radius
+                && this.nAsMismatches == nAsMismatches)
+                ? PackedBarcodePartitions.wrap(packed, radius, partitionKeys, partitionPositions)
+                : null;
+    }
+
+    // decodes the barcode for the ordinal from the buffer
+    private String getBarcode(final int ordinal) {
+        final int start = barcodeOffsets.get(ordinal);
+        final byte[] bytes = new byte[barcodeOffsets.get(ordinal + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = barcodeBytes.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // compares the barcode bytes for the ordinal with the query, in the sorted order
+    private int compareBarcode(final int ordinal, final byte[] query) {
+        final int start = barcodeOffsets.get(ordinal);
+        final int length = barcodeOffsets.get(ordinal + 1) - start;
+        for (int i = 0; i < Math.min(length, query.length); i++) {
+            final int cmp = Integer.compare(Byte.toUnsignedInt(barcodeBytes.get(start + i)),
+                    Byte.toUnsignedInt(query[i]));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, query.length);
+    }
+
+    // lexicographical order for the barcode bytes
+    private static int compareUnsigned(final byte[] first, final byte[] second) {
+        for (int i = 0; i < Math.min(first.length, second.length); i++) {
+            final int cmp = Integer.compare(Byte.toUnsignedInt(first[i]),
+                    Byte.toUnsignedInt(second[i]));
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(first.length, second.length);
+    }
+
+    private static void align(final DataOutputStream output) throws IOException {
+        while (output.size() % Long.BYTES != 0) {
+            output.writeByte(0);
+        }
+    }
+
+    private static void align(final ByteBuffer buffer) {
+        buffer.position((buffer.position() + Long.BYTES - 1) / Long.BYTES * Long.BYTES);
+    }
+
+    private static void writeInts(final DataOutputStream output, final int[] values)
+            throws IOException {
+        align(output);
+        for (final int value : values) {
+            output.writeInt(value);
+        }
+    }
+
+    // slices the bytes from the current position (aligned) and skips them
+    private static ByteBuffer slice(final ByteBuffer buffer, final int bytes) {
+        align(buffer);
+        final ByteBuffer slice = buffer.slice();
+        slice.limit(bytes);
+        buffer.position(buffer.position() + bytes);
+        return slice;
+    }
+
+    private static IntBuffer readInts(final ByteBuffer buffer, final int length) {
+        return slice(buffer, length * Integer.BYTES).asIntBuffer();
+    }
+
+    private static LongBuffer readLongs(final ByteBuffer buffer, final int length) {
+        return slice(buffer, length * Long.BYTES).asLongBuffer();
+    }
+
+    // barcodes by position, decoded on demand
+    private final class BarcodeList extends AbstractList<String> implements RandomAccess {
+        private final int size;
+        private final IntUnaryOperator ordinal;
+
+        private BarcodeList(final int size, final IntUnaryOperator ordinal) {
+            this.size = size;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public String get(final int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return getBarcode(ordinal.applyAsInt(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // unique barcodes in ordinal order, decoded on demand
+    private final class BarcodeSet extends AbstractSet<String> {
+
+        @Override
+        public Iterator<String> iterator() {
+            return setBarcodes.iterator();
+        }
+
+        @Override
+        public int size() {
+            return setBarcodes.size();
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            return o instanceof String && getOrdinal((String) o) != -1;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Packed barcodes (see {@link PackedBarcodes}) with the same length split in
+ * {@code radius + 1} partitions, and sorted by the bases in each of them to look up by binary
+ * search the barcodes matching exactly a partition.
+ *
+ * The sorted partitions could be backed by buffers (e.g., memory-mapped from a compiled barcode
+ * dictionary), to share them between processes.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class PackedBarcodePartitions {
+
+    private final int radius;
+    // mask with the lower bit of each base in the partition
+    private final long[] masks;
+    // sorted packed bases for each partition, only for the bases in the partition
+    private final LongBuffer[] keys;
+    // position of the barcode for each partition key
+    private final IntBuffer[] positions;
+    private final int size;
+
+    private PackedBarcodePartitions(final int radius, final long[] masks,
+            final LongBuffer[] keys, final IntBuffer[] positions, final int size) {
+        this.radius = radius;
+        this.masks = masks;
+        this.keys = keys;
+        this.positions = positions;
+        this.size = size;
+    }
+
+    /**
+     * Sorts the barcodes for each partition.
+     *
+     * @param barcodes the packed barcodes.
+     * @param radius   maximum number of mismatches to look up (one less than the number of
+     *                 partitions).
+     *
+     * @return the sorted partitions; {@code null} if the barcodes have different lengths or the
+     * radius is not shorter than the barcodes.
+     */
+    public static PackedBarcodePartitions sort(final PackedBarcodes barcodes, final int radius) {
+        final long[] masks = partitionMasks(barcodes, radius);
+        if (masks == null) {
+            return null;
+        }
+        final LongBuffer[] keys = new LongBuffer[masks.length];
+        final IntBuffer[] positions = new IntBuffer[masks.length];
+        for (int p = 0; p < masks.length; p++) {
+            final long keyMask = bothBits(masks[p]);
+            // stable sort keeps the barcode order for the same key
+            final int[] sorted = IntStream.range(0, barcodes.size()).boxed()
+                    .sorted(Comparator.comparingLong(i -> barcodes.getBases(i) & keyMask))
+                    .mapToInt(Integer::intValue).toArray();
+            positions[p] = IntBuffer.wrap(sorted);
+            keys[p] = LongBuffer.wrap(Arrays.stream(sorted)
+                    .mapToLong(i -> barcodes.getBases(i) & keyMask).toArray());
+        }
+        return new PackedBarcodePartitions(radius, masks, keys, positions, barcodes.size());
+    }
+
+    /**
+     * Wraps partitions already sorted (see {@link #getKey(int, int)} and
+     * {@link #getPosition(int, int)}), without checking the order.
+     *
+     * @param barcodes  the packed barcodes.
+     * @param radius    maximum number of mismatches to look up.
+     * @param keys      the sorted keys for each partition, from the current position.
+     * @param positions the barcode positions for each partition, from the current position.
+     *
+     * @return the sorted partitions.
+     */
+    public static PackedBarcodePartitions wrap(final PackedBarcodes barcodes, final int radius,
+            final List<LongBuffer> keys, final List<IntBuffer> positions) {
+        Utils.nonNull(keys, "null keys");
+        Utils.nonNull(positions, "null positions");
+        final long[] masks = partitionMasks(barcodes, radius);
+        Utils.validateArg(masks != null, "barcodes cannot be partitioned for the radius");
+        Utils.validateArg(keys.size() == masks.length && positions.size() == masks.length,
+                "number of sorted partitions does not match the radius");
+        final LongBuffer[] wrappedKeys = new LongBuffer[masks.length];
+        final IntBuffer[] wrappedPositions = new IntBuffer[masks.length];
+        for (int p = 0; p < masks.length; p++) {
+            Utils.validateArg(keys.get(p).remaining() == barcodes.size()
+                            && positions.get(p).remaining() == barcodes.size(),
+                    "number of sorted barcodes does not match the number of barcodes");
+            wrappedKeys[p] = keys.get(p).slice();
+            wrappedPositions[p] = positions.get(p).slice();
+        }
+        return new PackedBarcodePartitions(radius, masks, wrappedKeys, wrappedPositions,
+                barcodes.size());
+    }
+
+    // gets the masks for the partitions; null if the barcodes cannot be partitioned
+    private static long[] partitionMasks(final PackedBarcodes barcodes, final int radius) {
+        Utils.nonNull(barcodes, "null barcodes");
+        Utils.validateArg(radius >= 0, "negative radius");
+        final int length = barcodes.getMaxLength();
+        if (radius >= length) {
+            return null;
+        }
+        final long lengthMask = PackedBarcodes.LOWER_BITS >>> (Long.SIZE - 2 * length);
+        for (int i = 0; i < barcodes.size(); i++) {
+            if (barcodes.getLengthMask(i) != lengthMask) {
+                return null;
+            }
+        }
+        final long[] masks = new long[radius + 1];
+        for (int p = 0; p < masks.length; p++) {
+            final int start = p * length / masks.length;
+            final int end = (p + 1) * length / masks.length;
+            masks[p] = (PackedBarcodes.LOWER_BITS >>> (Long.SIZE - 2 * (end - start)))
+                    << (2 * start);
+        }
+        return masks;
+    }
+
+    // sets both bits of the bases with the lower bit set in the mask
+    private static long bothBits(final long lowerBitsMask) {
+        return lowerBitsMask | (lowerBitsMask << 1);
+    }
+
+    /** Gets the maximum number of mismatches to look up. */
+    public int getRadius() {
+        return radius;
+    }
+
+    /** Gets the number of partitions. */
+    public int numberOfPartitions() {
+        return masks.length;
+    }
+
+    /** Gets the number of barcodes in each partition. */
+    public int size() {
+        return size;
+    }
+
+    /** Gets the mask for the partition, with the lower bit set for each of its bases. */
+    public long getMask(final int partition) {
+        return masks[partition];
+    }
+
+    /** Gets the mask for the partition, with both bits set for each of its bases. */
+    public long getKeyMask(final int partition) {
+        return bothBits(masks[partition]);
+    }
+
+    /** Gets the packed bases in the partition at the sorted position. */
+    public long getKey(final int partition, final int i) {
+        return keys[partition].get(i);
+    }
+
+    /** Gets the position of the barcode at the sorted position. */
+    public int getPosition(final int partition, final int i) {
+        return positions[partition].get(i);
+    }
+
+    /**
+     * Gets the first sorted position with the key.
+     *
+     * @param partition the partition.
+     * @param key       the packed bases in the partition.
+     *
+     * @return the first sorted position; -1 if no barcode has the key.
+     */
+    public int firstIndexOf(final int partition, final long key) {
+        final LongBuffer partitionKeys = keys[partition];
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (partitionKeys.get(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return (low < size && partitionKeys.get(low) == key) ? low : -1;
+    }
+}
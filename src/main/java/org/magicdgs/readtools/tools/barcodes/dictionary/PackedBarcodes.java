@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Barcodes packed with 2-bits per base in a {@code long}, which allows to compare them with
+ * bitwise operations instead of base by base. The first base is stored in the lowest bits
+ * (A=0, C=1, G=2, T=3).
+ *
+ * Only barcodes with up to {@link #MAX_LENGTH} ACGT bases (case-insensitive) can be packed.
+ * Sequences to compare against them might contain Ns, which are stored in a separate mask.
+ *
+ * The packed bases could be backed by a buffer (e.g., memory-mapped from a compiled barcode
+ * dictionary), to share them between processes.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class PackedBarcodes {
+
+    /** Maximum length for a packed barcode. */
+    public static final int MAX_LENGTH = Long.SIZE / 2;
+
+    /** Returned by {@link #packNs(String, int)} if the sequence cannot be packed. */
+    public static final long UNPACKABLE = -1L;
+
+    /** Mask with the lower bit of each base set. */
+    public static final long LOWER_BITS = 0x5555555555555555L;
+
+    private final List<String> barcodes;
+    private final LongBuffer bases;
+    // length of the barcodes if all of them are the same (-1 otherwise)
+    private final int length;
+    // length of each barcode (null if all of them have the same length)
+    private final byte[] lengths;
+    private final int maxLength;
+
+    private PackedBarcodes(final List<String> barcodes, final LongBuffer bases) {
+        this.barcodes = barcodes;
+        this.bases = bases;
+        final byte[] barcodeLengths = new byte[barcodes.size()];
+        int min = MAX_LENGTH;
+        int max = 0;
+        for (int i = 0; i < barcodeLengths.length; i++) {
+            barcodeLengths[i] = (byte) barcodes.get(i).length();
+            min = Math.min(min, barcodeLengths[i]);
+            max = Math.max(max, barcodeLengths[i]);
+        }
+        this.length = (min == max) ? max : -1;
+        this.lengths = (min == max) ? null : barcodeLengths;
+        this.maxLength = max;
+    }
+
+    /**
+     * Packs the barcodes.
+     *
+     * @param barcodes the barcodes to pack, in the order used for matching.
+     *
+     * @return the packed barcodes; {@code null} if any of them is empty, longer than
+     * {@link #MAX_LENGTH} or contains other bases than ACGT.
+     */
+    public static PackedBarcodes pack(final Collection<String> barcodes) {
+        Utils.nonNull(barcodes, "null barcodes");
+        for (final String barcode : barcodes) {
+            if (barcode.isEmpty() || barcode.length() > MAX_LENGTH
+                    || packNs(barcode, barcode.length()) != 0) {
+                return null;
+            }
+        }
+        final long[] bases = barcodes.stream()
+                .mapToLong(barcode -> packBases(barcode, barcode.length())).toArray();
+        return new PackedBarcodes(new ArrayList<>(barcodes), LongBuffer.wrap(bases));
+    }
+
+    /**
+     * Wraps barcodes already packed (see {@link #getBases(int)}), without checking them.
+     *
+     * @param barcodes the barcodes, in the order used for matching. If it is a
+     *                 {@link RandomAccess} list, it is not copied (e.g., to read the barcodes
+     *                 from a compiled barcode dictionary on demand).
+     * @param bases    the packed bases for each barcode, from the current position.
+     *
+     * @return the packed barcodes.
+     */
+    public static PackedBarcodes wrap(final Collection<String> barcodes, final LongBuffer bases) {
+        Utils.nonNull(barcodes, "null barcodes");
+        Utils.nonNull(bases, "null bases");
+        Utils.validateArg(bases.remaining() == barcodes.size(),
+                "number of packed bases does not match the number of barcodes");
+        return new PackedBarcodes((barcodes instanceof List && barcodes instanceof RandomAccess)
+                ? (List<String>) barcodes : new ArrayList<>(barcodes), bases.slice());
+    }
+
+    /** Gets the number of barcodes. */
+    public int size() {
+        return barcodes.size();
+    }
+
+    /** Gets the length of the longest barcode. */
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /** Gets the barcode at the position. */
+    public String getBarcode(final int i) {
+        return barcodes.get(i);
+    }
+
+    /** Gets the packed bases for the barcode at the position. */
+    public long getBases(final int i) {
+        return bases.get(i);
+    }
+
+    /**
+     * Gets the mask for the barcode at the position, with the lower bit set for each of its
+     * bases.
+     */
+    public long getLengthMask(final int i) {
+        final int barcodeLength = (lengths == null) ? length : lengths[i];
+        return LOWER_BITS >>> (Long.SIZE - 2 * barcodeLength);
+    }
+
+    /**
+     * Packs the first bases of the sequence. Unknown bases (Ns) are packed as A, and should be
+     * masked with {@link #packNs(String, int)}; other bases are packed as T, and the sequence
+     * should not be compared.
+     *
+     * @param sequence the sequence to pack.
+     * @param length   number of bases to pack (up to {@link #MAX_LENGTH}).
+     *
+     * @return the packed bases.
+     */
+    public static long packBases(final String sequence, final int length) {
+        long packed = 0;
+        for (int i = 0; i < length; i++) {
+            packed |= ((long) (baseCode(sequence.charAt(i)) & 0b11)) << (2 * i);
+        }
+        return packed;
+    }
+
+    /**
+     * Packs the position of the Ns in the first bases of the sequence, setting the lower bit for
+     * each N.
+     *
+     * @param sequence the sequence to pack.
+     * @param length   number of bases to pack (up to {@link #MAX_LENGTH}).
+     *
+     * @return the mask for the Ns; {@link #UNPACKABLE} if the sequence contains other bases than
+     * ACGTN.
+     */
+    public static long packNs(final String sequence, final int length) {
+        long mask = 0;
+        for (int i = 0; i < length; i++) {
+            final char base = sequence.charAt(i);
+            if (base == 'N' || base == 'n') {
+                mask |= 1L << (2 * i);
+            } else if (baseCode(base) == -1) {
+                return UNPACKABLE;
+            }
+        }
+        return mask;
+    }
+
+    // 2-bit code for the base; 0 for Ns and -1 for other bases
+    private static int baseCode(final char base) {
+        switch (base) {
+            case 'A':
+            case 'a':
+            case 'N':
+            case 'n':
+                return 0;
+            case 'C':
+            case 'c':
+                return 1;
+            case 'G':
+            case 'g':
+                return 2;
+            case 'T':
+            case 't':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+}
@@ -24,39 +24,67 @@
 package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
 
 import org.magicdgs.readtools.RTDefaults;
+import org.magicdgs.readtools.metrics.barcodes.BarcodeCacheMetric;
 import org.magicdgs.readtools.metrics.barcodes.BarcodeDetector;
 import org.magicdgs.readtools.metrics.barcodes.BarcodeStat;
 import org.magicdgs.readtools.metrics.barcodes.MatcherStat;
 import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionary;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodePartitions;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
 import org.magicdgs.readtools.utils.read.RTReadUtils;
 
-import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.metrics.MetricsFile;
 import htsjdk.samtools.util.Histogram;
-import htsjdk.tribble.util.MathUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
  * Helper class for matching sequenced barcodes with the indexes contained in a barcode dictionary.
  *
+ * Barcodes could be decoded concurrently from several threads: statistics are kept for each
+ * thread and merged when the metrics are requested.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public class BarcodeDecoder {
 
+    /** Default number of raw barcodes cached with their decoded barcode. */
+    public static final int DEFAULT_CACHE_SIZE = 65536;
+
+    /** Algorithms to match the sequenced barcodes against the barcode dictionary. */
+    public enum MatchingMode {
+        /** Number of mismatches, using the fastest index for the barcodes. */
+        HAMMING,
+        /**
+         * Number of mismatches, using a compact index for dictionaries with many barcodes (see
+         * {@link PigeonholeBarcodeIndex}). Sequenced barcodes without any barcode within the
+         * maximum number of mismatches plus the minimum difference with the second best minus
+         * one are not matched, and histograms of mismatches are not included in the barcode
+         * statistics.
+         */
+        LARGE_DICTIONARY,
+        /**
+         * Edit distance, which allows insertions and deletions in the sequenced barcode (see
+         * {@link EditDistanceBarcodes}). The maximum number of mismatches and the minimum
+         * difference with the second best apply to the edit distance.
+         */
+        EDIT_DISTANCE
+    }
+
     private final Logger logger;
 
     // the barcode dictionary to match against
@@ -74,23 +102,43 @@ public class BarcodeDecoder {
     // maximum number of Ns for match a barcode
     private final int maxN;
 
-    // metrics header for this detector
-    private final BarcodeDetector metricHeader;
+    // index of the barcodes near the ones in the dictionary for each index (null if not built)
+    private final List<BarcodeNeighbourhoodIndex> neighbourhoodIndexes;
+
+    // index for large dictionaries for each index (null if not in large dictionary mode)
+    private final List<PigeonholeBarcodeIndex> largeDictionaryIndexes;
+
+    // barcodes for computing the edit distance for each index (null if not in edit distance mode)
+    private final List<EditDistanceBarcodes> editDistanceBarcodes;
+
+    // cache for the raw barcodes already decoded
+    private final ClockCache<List<String>, DecodedBarcode> cache;
+
+    // combined barcodes (including the unknown) with their ordinal for the statistics
+    private final Map<String, Integer> combinedOrdinals = new LinkedHashMap<>();
 
-    // statistics for each combined barcode
-    private Map<String, MatcherStat> stats;
+    // sample name for each combined barcode ordinal
+    private final List<String> combinedSamples = new ArrayList<>();
 
-    // statistics of each barcode by index (list entry)
-    private List<Map<String, BarcodeStat>> barcodeStats;
+    // read group ID for each combined barcode ordinal
+    private final List<String> combinedReadGroupIds = new ArrayList<>();
 
-    // histogram of mismatches of each barcode by index (list entry)
-    private List<Map<String, Histogram<Integer>>> mismatchesHist;
+    // combined barcode ordinal for each sample
+    private int[] sampleCombinedOrdinals;
 
-    // running statistics for each barcode by index (list entry)
-    private List<Map<String, MathUtils.RunningStat>> nMean;
+    // number of barcodes by index
+    private int[] numberOfBarcodes;
+
+    // maximum number of mismatches for a matched barcode by index
+    private int[] maxMatchedMismatches;
+
+    // statistics for each thread using this decoder
+    private final Queue<BarcodeDecoderStats> threadStats = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<BarcodeDecoderStats> stats =
+            ThreadLocal.withInitial(this::newThreadStats);
 
     /**
-     * Default constructor.
+     * Default constructor, caching {@link #DEFAULT_CACHE_SIZE} decoded barcodes.
      *
      * @param dictionary              non-null barcode dictionary with indexes to match.
      * @param nAsMismatches           if {@code true}, the Ns count as mismatches.
@@ -104,6 +152,51 @@ public class BarcodeDecoder {
     public BarcodeDecoder(final BarcodeDictionary dictionary, final int maxN,
             final boolean nAsMismatches, final int[] maxMismatches,
             final int[] minDifferenceWithSecond) {
+        this(dictionary, maxN, nAsMismatches, maxMismatches, minDifferenceWithSecond,
+                DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor with a cache for decoded barcodes.
+     *
+     * @param dictionary              non-null barcode dictionary with indexes to match.
+     * @param nAsMismatches           if {@code true}, the Ns count as mismatches.
+     * @param maxMismatches           maximum number of mismatches allowed (for each barcode).
+     * @param minDifferenceWithSecond the minimum difference in the number of mismatches between
+     *                                the first and the second best barcodes (for each barcode).
+     * @param cacheSize               maximum number of raw barcodes cached with their decoded
+     *                                barcode. If 0, decoded barcodes are not cached.
+     *
+     * @throws IllegalArgumentException if the thresholds are arrays with different lengths than
+     *                                  the number of barcodes in the dictionary.
+     */
+    public BarcodeDecoder(final BarcodeDictionary dictionary, final int maxN,
+            final boolean nAsMismatches, final int[] maxMismatches,
+            final int[] minDifferenceWithSecond, final int cacheSize) {
+        this(dictionary, maxN, nAsMismatches, maxMismatches, minDifferenceWithSecond, cacheSize,
+                MatchingMode.HAMMING);
+    }
+
+    /**
+     * Constructor with a cache for decoded barcodes and the algorithm to match them.
+     *
+     * @param dictionary              non-null barcode dictionary with indexes to match.
+     * @param nAsMismatches           if {@code true}, the Ns count as mismatches.
+     * @param maxMismatches           maximum number of mismatches allowed (for each barcode).
+     * @param minDifferenceWithSecond the minimum difference in the number of mismatches between
+     *                                the first and the second best barcodes (for each barcode).
+     * @param cacheSize               maximum number of raw barcodes cached with their decoded
+     *                                barcode. If 0, decoded barcodes are not cached.
+     * @param mode                    algorithm to match the barcodes.
+     *
+     * @throws IllegalArgumentException if the thresholds are arrays with different lengths than
+     *                                  the number of barcodes in the dictionary.
+     * @throws UserException.BadInput   if the barcodes are not supported by the matching mode.
+     */
+    public BarcodeDecoder(final BarcodeDictionary dictionary, final int maxN,
+            final boolean nAsMismatches, final int[] maxMismatches,
+            final int[] minDifferenceWithSecond, final int cacheSize,
+            final MatchingMode mode) {
         this.dictionary = Utils.nonNull(dictionary, "null dictionary");
 
         Utils.validateArg(maxN >= 0, "negative maxN");
@@ -120,49 +213,157 @@ public class BarcodeDecoder {
         Utils.validateArg(minDifferenceWithSecond.length == dictionary.getNumberOfBarcodes(),
                 "minDifferenceWithSecond.size() != number of barcodes");
 
-        this.metricHeader = new BarcodeDetector();
         this.logger = LogManager.getLogger(this.getClass());
+        Utils.nonNull(mode, "null mode");
+        this.neighbourhoodIndexes = (mode != MatchingMode.HAMMING) ? null
+                : IntStream.range(0, dictionary.getNumberOfBarcodes())
+                        .mapToObj(this::buildNeighbourhoodIndex).collect(Collectors.toList());
+        this.largeDictionaryIndexes = (mode != MatchingMode.LARGE_DICTIONARY) ? null
+                : IntStream.range(0, dictionary.getNumberOfBarcodes())
+                        .mapToObj(this::buildLargeDictionaryIndex).collect(Collectors.toList());
+        this.editDistanceBarcodes = (mode != MatchingMode.EDIT_DISTANCE) ? null
+                : IntStream.range(0, dictionary.getNumberOfBarcodes())
+                        .mapToObj(this::buildEditDistanceBarcodes).collect(Collectors.toList());
+        Utils.validateArg(cacheSize >= 0, "negative cacheSize");
+        this.cache = new ClockCache<>(cacheSize);
         initStats();
     }
 
-    // initilialize the statistics on construction
+    // builds the index for sequences with one more mismatch than the maximum (to speed-up also
+    // the stats for the ones discarded by mismatches); if it is too large, uses the maximum
+    private BarcodeNeighbourhoodIndex buildNeighbourhoodIndex(final int index) {
+        final Set<String> barcodes = dictionary.getSetBarcodesFromIndex(index);
+        final int radius = Math.max(0, maxMismatches[index]);
+        final BarcodeNeighbourhoodIndex neighbourhoodIndex =
+                BarcodeNeighbourhoodIndex.build(index, barcodes, radius + 1, nAsMismatches);
+        return (neighbourhoodIndex == null)
+                ? BarcodeNeighbourhoodIndex.build(index, barcodes, radius, nAsMismatches)
+                : neighbourhoodIndex;
+    }
+
+    // builds the index for large dictionaries with enough radius to compute the filters
+    private PigeonholeBarcodeIndex buildLargeDictionaryIndex(final int index) {
+        final int radius = Math.max(0, maxMismatches[index])
+                + Math.max(1, minDifferenceWithSecond[index]) - 1;
+        final PackedBarcodes packed = dictionary.getPackedBarcodesFromIndex(index);
+        // reuse the partitions from a compiled dictionary if they were sorted for the radius
+        final PackedBarcodePartitions partitions =
+                dictionary.getPackedPartitionsFromIndex(index, radius, nAsMismatches);
+        final PigeonholeBarcodeIndex largeIndex;
+        if (packed == null) {
+            largeIndex = null;
+        } else if (partitions == null) {
+            largeIndex = PigeonholeBarcodeIndex.build(index, packed, radius, nAsMismatches);
+        } else {
+            logger.debug("Using sorted partitions from the compiled dictionary for index {}",
+                    index + 1);
+            largeIndex = PigeonholeBarcodeIndex.build(index, packed, partitions, nAsMismatches);
+        }
+        if (largeIndex == null) {
+            throw new UserException.BadInput(String.format(
+                    "Large barcode dictionary mode requires barcodes with the same length "
+                            + "(up to %s ACGT bases) and longer than %s (maximum mismatches plus "
+                            + "minimum distance minus one) for index %s",
+                    PackedBarcodes.MAX_LENGTH, radius, index + 1));
+        }
+        return largeIndex;
+    }
+
+    // prepares the barcodes for computing the edit distance
+    private EditDistanceBarcodes buildEditDistanceBarcodes(final int index) {
+        final EditDistanceBarcodes barcodes = EditDistanceBarcodes
+                .build(dictionary.getSetBarcodesFromIndex(index), nAsMismatches);
+        if (barcodes == null) {
+            throw new UserException.BadInput(String.format(
+                    "Edit distance matching requires barcodes up to %s bases for index %s",
+                    EditDistanceBarcodes.MAX_LENGTH, index + 1));
+        }
+        return barcodes;
+    }
+
+    // gets the best barcode match from the index if possible; otherwise, scan all the barcodes
+    // (packed if possible)
+    private BarcodeMatch getBestBarcodeMatch(final int index, final String barcode) {
+        if (editDistanceBarcodes != null) {
+            return BarcodeMatch.getBestBarcodeMatch(index, barcode,
+                    editDistanceBarcodes.get(index));
+        }
+        BarcodeMatch match;
+        if (largeDictionaryIndexes == null) {
+            final BarcodeNeighbourhoodIndex neighbourhoodIndex = neighbourhoodIndexes.get(index);
+            match = (neighbourhoodIndex == null)
+                    ? null : neighbourhoodIndex.getBestBarcodeMatch(barcode);
+        } else {
+            match = largeDictionaryIndexes.get(index).getBestBarcodeMatch(barcode);
+        }
+        if (match != null) {
+            return match;
+        }
+        final PackedBarcodes packed = dictionary.getPackedBarcodesFromIndex(index);
+        match = (packed == null) ? null
+                : BarcodeMatch.getBestBarcodeMatch(index, barcode, packed, nAsMismatches);
+        if (match == null) {
+            match = BarcodeMatch.getBestBarcodeMatch(index, barcode,
+                    dictionary.getSetBarcodesFromIndex(index), nAsMismatches);
+        }
+        // the large dictionary index only reports matches up to its radius (the statistics are
+        // sized for them), so the ones found by the scan beyond it are not matched either
+        if (largeDictionaryIndexes != null && match.isMatch()
+                && match.getMismatches() > largeDictionaryIndexes.get(index).getRadius()) {
+            return BarcodeMatch.matched(index, null, barcode.length(), barcode.length(),
+                    BarcodeMatch.countNs(barcode, barcode.length()));
+        }
+        return match;
+    }
+
+    // initilialize the ordinals for the statistics on construction
     private void initStats() {
-        // get the statistics for the decoding
-        stats = new LinkedHashMap<>();
+        // get the ordinals for the combined barcodes (the last sample wins for repeated ones)
         final List<String> sampleNames = dictionary.getSampleNames();
+        final Map<String, String> samplesByCombined = new LinkedHashMap<>();
         for (int i = 0; i < dictionary.numberOfSamples(); i++) {
-            final String combined = dictionary.getCombinedBarcodesFor(i);
-            stats.put(combined, new MatcherStat(combined, sampleNames.get(i)));
-        }
-        stats.put(BarcodeMatch.UNKNOWN_STRING,
-                new MatcherStat(BarcodeMatch.UNKNOWN_STRING, BarcodeMatch.UNKNOWN_STRING));
-        // get the statistics for the barcode
-        barcodeStats = new LinkedList<>();
-        mismatchesHist = new LinkedList<>();
-        nMean = new LinkedList<>();
-        final String suffix;
-        if (dictionary.getNumberOfBarcodes() == 1) {
-            suffix = null;
-        } else {
-            suffix = "_";
+            samplesByCombined.put(dictionary.getCombinedBarcodesFor(i), sampleNames.get(i));
         }
+        samplesByCombined.put(BarcodeMatch.UNKNOWN_STRING, BarcodeMatch.UNKNOWN_STRING);
+        samplesByCombined.forEach((combined, sample) -> {
+            combinedOrdinals.put(combined, combinedSamples.size());
+            combinedSamples.add(sample);
+            combinedReadGroupIds.add(dictionary.getReadGroupFor(combined).getReadGroupId());
+        });
+        sampleCombinedOrdinals = IntStream.range(0, dictionary.numberOfSamples())
+                .map(i -> combinedOrdinals.get(dictionary.getCombinedBarcodesFor(i)))
+                .toArray();
+        // get the dimensions for the barcode statistics
+        numberOfBarcodes = new int[dictionary.getNumberOfBarcodes()];
+        maxMatchedMismatches = new int[dictionary.getNumberOfBarcodes()];
         for (int j = 0; j < dictionary.getNumberOfBarcodes(); j++) {
-            final Map<String, BarcodeStat> bar = new LinkedHashMap<>();
-            final Map<String, Histogram<Integer>> histM = new LinkedHashMap<>();
-            final Map<String, MathUtils.RunningStat> mean = new LinkedHashMap<>();
-            for (final String b : dictionary.getSetBarcodesFromIndex(j)) {
-                final BarcodeStat s =
-                        new BarcodeStat((suffix == null) ? b : String.format("%s_%s", b, j + 1));
-                bar.put(b, s);
-                histM.put(b, new Histogram<>("mismatches", s.SEQUENCE));
-                mean.put(b, new MathUtils.RunningStat());
-            }
-            barcodeStats.add(bar);
-            mismatchesHist.add(histM);
-            nMean.add(mean);
+            final Set<String> barcodes = dictionary.getSetBarcodesFromIndex(j);
+            numberOfBarcodes[j] = barcodes.size();
+            // the mismatches against a barcode are at most its length
+            maxMatchedMismatches[j] = (largeDictionaryIndexes == null)
+                    ? barcodes.stream().mapToInt(String::length).max().orElse(0)
+                    : largeDictionaryIndexes.get(j).getRadius();
         }
     }
 
+    // creates the statistics for a new thread
+    private BarcodeDecoderStats newThreadStats() {
+        final BarcodeDecoderStats threadStat =
+                new BarcodeDecoderStats(combinedSamples.size(), numberOfBarcodes,
+                        maxMatchedMismatches);
+        threadStats.add(threadStat);
+        return threadStat;
+    }
+
+    // merges the statistics from all the threads
+    private BarcodeDecoderStats mergeStats() {
+        final BarcodeDecoderStats merged =
+                new BarcodeDecoderStats(combinedSamples.size(), numberOfBarcodes,
+                        maxMatchedMismatches);
+        threadStats.forEach(merged::merge);
+        return merged;
+    }
+
     /** Gets the barcode dictionary associated with this object. */
     public BarcodeDictionary getDictionary() {
         return dictionary;
@@ -171,7 +372,7 @@ public class BarcodeDecoder {
     /**
      * Assigns the read group to a read using the raw barcodes. If there is no raw barcode, it is
      * assigned to the UNKNOWN one; otherwise, it is assigned by matching the barcodes using the
-     * pipeline in {@link #getBestBarcodeString(String...)}.
+     * pipeline in {@link #getDecodedBarcode(String...)}.
      *
      * @param read the read to asssing the read group.
      * @throws UserException.MalformedFile if the raw barcode length and dictionary number of
@@ -186,7 +387,7 @@ public class BarcodeDecoder {
             logger.warn("{} read does not have raw barcodes: assigned to {} Read Group",
                     read::getName, () -> dictionary.getUnknownReadGroup().getId());
             read.setReadGroup(dictionary.getUnknownReadGroup().getReadGroupId());
-            stats.get(BarcodeMatch.UNKNOWN_STRING).RECORDS++;
+            stats.get().addRecord(combinedOrdinals.get(BarcodeMatch.UNKNOWN_STRING));
         } else if (barcodes.length != dictionary.getNumberOfBarcodes() ) {
             // throw an exception if there is a mismatch with the number of barcodes
             throw new UserException.MalformedFile(String.format(
@@ -196,11 +397,10 @@ public class BarcodeDecoder {
                     read.getName(), String.join(RTDefaults.BARCODE_INDEX_DELIMITER, barcodes)));
         } else {
             // assigned the barcode only if it has the same number as in the dictionary
-            final String bestBarcode = getBestBarcodeString(barcodes);
-            logger.debug("Detected barcode: {}", () -> bestBarcode);
-            final SAMReadGroupRecord readGroup = dictionary.getReadGroupFor(bestBarcode);
-            logger.debug("Detected RG: {}", () -> readGroup);
-            read.setReadGroup(readGroup.getReadGroupId());
+            final DecodedBarcode decoded = getDecodedBarcode(barcodes);
+            logger.debug("Detected barcode: {}", () -> decoded.barcode);
+            logger.debug("Detected RG: {}", () -> decoded.readGroupId);
+            read.setReadGroup(decoded.readGroupId);
         }
     }
 
@@ -218,132 +418,188 @@ public class BarcodeDecoder {
         Utils.nonNull(barcode, "null barcodes");
         Utils.validateArg(barcode.length == dictionary.getNumberOfBarcodes(),
                 "Asking for matching a number of barcodes that does not fit with the ones contained in the barcode dictionary");
-        return getBestBarcodeString(barcode);
+        return getDecodedBarcode(barcode).barcode;
     }
 
     /**
-     * Gets the best barcode using the BarcodeMatch approach.
+     * Gets the best barcode using the BarcodeMatch approach. Raw barcodes already decoded are
+     * retrieved from the cache, updating the metrics in the same way.
      *
      * WARNING: does not check the number of barcodes in the input array.
      *
      * @param barcode the array of barcodes to match.
      *
-     * @return the best real barcode in the dictionary (pasted in order if there are more than one).
+     * @return the best real barcode in the dictionary (pasted in order if there are more than
+     * one), with the information to update the metrics.
      */
-    private String getBestBarcodeString(final String... barcode) {
+    private DecodedBarcode getDecodedBarcode(final String... barcode) {
+        DecodedBarcode decoded = cache.get(Arrays.asList(barcode));
+        if (decoded == null) {
+            decoded = decode(barcode);
+            // copy the barcodes to avoid modifications of the key
+            cache.put(Arrays.asList(barcode.clone()), decoded);
+        }
+        // update the statistics for this thread
+        final BarcodeDecoderStats current = stats.get();
+        for (int i = 0; i < decoded.filterFailures.length; i++) {
+            if (decoded.barcodeOrdinals[i] != -1) {
+                current.addMatch(i, decoded.barcodeOrdinals[i], decoded.mismatches[i],
+                        decoded.numberOfNs[i]);
+            }
+            if (decoded.filterFailures[i] != FilterFailure.NONE) {
+                current.addDiscarded(decoded.filterFailures[i]);
+            }
+        }
+        current.addRecord(decoded.combinedOrdinal);
+        return decoded;
+    }
+
+    // decodes the barcode without updating the metrics
+    private DecodedBarcode decode(final String... barcode) {
         // this assumes that the barcodes are not empty and/or null
-        final List<BarcodeMatch> allMatchs = IntStream.range(0, dictionary.getNumberOfBarcodes())
+        return new DecodedBarcode(IntStream.range(0, dictionary.getNumberOfBarcodes())
                 // get the BarcodeMatch for the set of indexes
-                .mapToObj(index -> BarcodeMatch.getBestBarcodeMatch(index, barcode[index],
-                        dictionary.getSetBarcodesFromIndex(index), nAsMismatches))
-                // filter only the ones which pass the filters and update the metrics
-                .filter(this::passFiltersAndUpdateMetrics)
-                .collect(Collectors.toList());
-        // early termination
-        final String detectedBarcode = (allMatchs.isEmpty())
-                ? BarcodeMatch.UNKNOWN_STRING : getBestBarcodeBySampleMajority(allMatchs);
-        // update statistics
-        stats.get(detectedBarcode).RECORDS++;
-        return detectedBarcode;
+                .mapToObj(index -> getBestBarcodeMatch(index, barcode[index]))
+                .collect(Collectors.toList()));
+    }
+
+    // decoded barcode and the ordinals/values for each index, to update the metrics
+    private final class DecodedBarcode {
+        private final String barcode;
+        private final int combinedOrdinal;
+        private final String readGroupId;
+        // -1 if there is no match for the index
+        private final int[] barcodeOrdinals;
+        private final int[] mismatches;
+        private final int[] numberOfNs;
+        private final FilterFailure[] filterFailures;
+
+        private DecodedBarcode(final List<BarcodeMatch> matches) {
+            this.barcodeOrdinals = new int[matches.size()];
+            this.mismatches = new int[matches.size()];
+            this.numberOfNs = new int[matches.size()];
+            this.filterFailures = new FilterFailure[matches.size()];
+            for (final BarcodeMatch match : matches) {
+                final int i = match.getIndexNumber();
+                barcodeOrdinals[i] = (match.isMatch())
+                        ? dictionary.getBarcodeOrdinal(match.getBarcode(), i) : -1;
+                mismatches[i] = match.getMismatches();
+                numberOfNs[i] = match.getNumberOfNs();
+                filterFailures[i] = getFilterFailure(match);
+            }
+            final int sample = getBestSampleByMajority(barcodeOrdinals, filterFailures);
+            this.combinedOrdinal = (sample == -1)
+                    ? combinedOrdinals.get(BarcodeMatch.UNKNOWN_STRING)
+                    : sampleCombinedOrdinals[sample];
+            this.barcode = (sample == -1)
+                    ? BarcodeMatch.UNKNOWN_STRING : dictionary.getCombinedBarcodesFor(sample);
+            this.readGroupId = combinedReadGroupIds.get(combinedOrdinal);
+        }
     }
 
     /**
      * Performs the algorithm to identify the sample with several barcodes.
      *
-     * If a barcode could identify uniquely the sample, returns the combined barcode for that
-     * sample. If not, it computes how many times every sample is identify by every barcode. If
-     * there is a tie, {@link BarcodeMatch#UNKNOWN_STRING} is returned; otherwise, the barcode for
-     * the sample with higher counts is returned.
+     * If a barcode could identify uniquely the sample, returns that sample. If not, it computes
+     * how many times every sample is identify by every barcode. If there is a tie, -1 is
+     * returned; otherwise, the sample with higher counts is returned.
      *
-     * @param matches a list of matches against the barcode dictionary.
+     * @param barcodeOrdinals the ordinal of the matched barcode for each index.
+     * @param filterFailures  the filter failed by the match for each index.
      *
-     * @return best barcode detected with this algorithm; {@link BarcodeMatch#UNKNOWN_STRING} if
-     * impossible to determine unambiguously.
+     * @return index of the best sample detected with this algorithm; -1 if impossible to
+     * determine unambiguously.
      */
-    private String getBestBarcodeBySampleMajority(final List<BarcodeMatch> matches) {
-        // map sample indexes and number of times that it occurs
-        final Map<Integer, Integer> countsBySample = new HashMap<>();
-        // accumulate for each barcode match how many times appears each sample
-        for (final BarcodeMatch current : matches) {
-            final List<String> allBarcodes =
-                    dictionary.getBarcodesFromIndex(current.getIndexNumber());
-            final int sampleIndex = allBarcodes.indexOf(current.getBarcode());
+    private int getBestSampleByMajority(final int[] barcodeOrdinals,
+            final FilterFailure[] filterFailures) {
+        // number of times that each sample occurs (only initialized if required)
+        int[] countsBySample = null;
+        // accumulate for each barcode match passing filters how many times appears each sample
+        for (int i = 0; i < barcodeOrdinals.length; i++) {
+            if (filterFailures[i] != FilterFailure.NONE) {
+                continue;
+            }
+            final int[] samples = dictionary.getSamplesForBarcodeOrdinal(barcodeOrdinals[i], i);
             // check if it is unique for this set
-            if (dictionary.isBarcodeUniqueInAt(current.getBarcode(), current.getIndexNumber())) {
-                // return directly the barcode
-                return dictionary.getCombinedBarcodesFor(sampleIndex);
-            } else {
-                for (int i = sampleIndex; i < allBarcodes.size(); i++) {
-                    if (allBarcodes.get(i).equals(current.getBarcode())) {
-                        countsBySample.merge(i, 1, (oldVal, one) -> oldVal + one);
-                    }
-                }
+            if (dictionary.isBarcodeOrdinalUniqueInAt(barcodeOrdinals[i], i)) {
+                // return directly the sample
+                return samples[0];
+            }
+            if (countsBySample == null) {
+                countsBySample = new int[dictionary.numberOfSamples()];
+            }
+            for (final int sample : samples) {
+                countsBySample[sample]++;
             }
         }
-        if (countsBySample.isEmpty()) {
-            return BarcodeMatch.UNKNOWN_STRING;
+        if (countsBySample == null) {
+            return -1;
         }
         // if we reach this point, there are non unique barcode that identifies the sample
-        // obtain the maximum count
-        final int maxCount = Collections.max(countsBySample.values());
-        final List<Integer> sampleIndexesWithMax = countsBySample.entrySet().stream()
-                .filter(e -> e.getValue() == maxCount)
-                .map(Map.Entry::getKey).collect(Collectors.toList());
-        return (sampleIndexesWithMax.size() != 1) ? BarcodeMatch.UNKNOWN_STRING
-                : dictionary.getCombinedBarcodesFor(sampleIndexesWithMax.get(0));
+        // obtain the sample with the maximum count, if it is not tied
+        int best = -1;
+        int maxCount = 0;
+        boolean tied = false;
+        for (int sample = 0; sample < countsBySample.length; sample++) {
+            if (countsBySample[sample] > maxCount) {
+                best = sample;
+                maxCount = countsBySample[sample];
+                tied = false;
+            } else if (maxCount != 0 && countsBySample[sample] == maxCount) {
+                tied = true;
+            }
+        }
+        return (tied) ? -1 : best;
     }
 
-    /**
-     * Updates the statistics for the barcode stored in the match (if it is matched), and check
-     * if it passes all the filters. The header for the metrics file is also updated according to
-     * the filtered barcodes.
-     *
-     * @param match the match to filter and update.
-     *
-     * @return {@code true} if the match pass the filters; {@code false} otherwise.
-     */
-    private boolean passFiltersAndUpdateMetrics(final BarcodeMatch match) {
-        if (match.isMatch()) {
-            barcodeStats.get(match.getIndexNumber()).get(match.getBarcode()).MATCHED++;
-            mismatchesHist.get(match.getIndexNumber()).get(match.getBarcode())
-                    .increment(match.getMismatches());
-            nMean.get(match.getIndexNumber()).get(match.getBarcode()).push(match.getNumberOfNs());
-        } else {
-            metricHeader.DISCARDED_NO_MATCH++;
-            return false;
+    // gets the first filter that the match does not pass
+    private FilterFailure getFilterFailure(final BarcodeMatch match) {
+        if (!match.isMatch()) {
+            return FilterFailure.NO_MATCH;
         }
         if (match.getNumberOfNs() > maxN) {
-            metricHeader.DISCARDED_BY_N++;
-            return false;
+            return FilterFailure.BY_N;
         }
         if (match.getMismatches() > maxMismatches[match.getIndexNumber()]) {
-            metricHeader.DISCARDED_BY_MISMATCH++;
-            return false;
+            return FilterFailure.BY_MISMATCH;
         }
         if (!match.isAssignable(minDifferenceWithSecond[match.getIndexNumber()])) {
-            metricHeader.DISCARDED_BY_DISTANCE++;
-            return false;
+            return FilterFailure.BY_DISTANCE;
         }
-        return true;
+        return FilterFailure.NONE;
+    }
+
+    /** Filters for a barcode match, in the order that they are applied. */
+    enum FilterFailure {
+        NONE, NO_MATCH, BY_N, BY_MISMATCH, BY_DISTANCE
     }
 
     /**
      * Gets the accumulated statistics for barcodes match/mismatch.
      *
-     * Note: calling this method recomputes the percentage every time.
+     * Note: calling this method merges the statistics from all the threads every time.
      *
      * @see MatcherStat
      */
     public MetricsFile<MatcherStat, Integer> getMatcherStatMetrics() {
+        final BarcodeDecoderStats merged = mergeStats();
         // create the matcher stats
         final MetricsFile<MatcherStat, Integer> matcherStats = new MetricsFile<>();
         // add the header and the metrics
+        final BarcodeDetector metricHeader = new BarcodeDetector();
+        metricHeader.DISCARDED_NO_MATCH = (int) merged.getDiscarded(FilterFailure.NO_MATCH);
+        metricHeader.DISCARDED_BY_N = (int) merged.getDiscarded(FilterFailure.BY_N);
+        metricHeader.DISCARDED_BY_MISMATCH = (int) merged.getDiscarded(FilterFailure.BY_MISMATCH);
+        metricHeader.DISCARDED_BY_DISTANCE = (int) merged.getDiscarded(FilterFailure.BY_DISTANCE);
         matcherStats.addHeader(metricHeader);
 
-        // update the percentage value
-        final double total = stats.values().stream().mapToInt(i -> i.RECORDS).sum();
+        // compute the percentage value
+        final double total = combinedOrdinals.values().stream()
+                .mapToInt(i -> (int) merged.getRecords(i)).sum();
         // for each value, set the percentage and add the metric
-        stats.values().forEach(ms -> {
+        combinedOrdinals.forEach((combined, i) -> {
+            final MatcherStat ms = new MatcherStat(combined, combinedSamples.get(i));
+            ms.RECORDS = (int) merged.getRecords(i);
             ms.PCT_RECORDS = 100d * ms.RECORDS / total;
             matcherStats.addMetric(ms);
         });
@@ -351,25 +607,68 @@ public class BarcodeDecoder {
     }
 
     /**
-     * Gets the accumulated statistics for each barcode.
+     * Gets the accumulated statistics for each barcode. In large dictionary mode, the histograms
+     * of mismatches are not included.
+     *
+     * Note: calling this method merges the statistics from all the threads every time.
      *
      * @see BarcodeStat
      */
     public MetricsFile<BarcodeStat, Integer> getBarcodeStatMetrics() {
+        final BarcodeDecoderStats merged = mergeStats();
         // create the barcode stats
         final MetricsFile<BarcodeStat, Integer> barcode = new MetricsFile<>();
         for (int i = 0; i < dictionary.getNumberOfBarcodes(); i++) {
-            final Map<String, BarcodeStat> current = barcodeStats.get(i);
-            for (final Map.Entry<String, Histogram<Integer>> entry : mismatchesHist.get(i)
-                    .entrySet()) {
-                final BarcodeStat s = current.get(entry.getKey());
-                s.MEAN_MISMATCH = entry.getValue().getMean();
-                s.MEAN_N = nMean.get(i).get(entry.getKey()).mean();
-                barcode.addHistogram(entry.getValue());
+            final List<BarcodeStat> current = new ArrayList<>(numberOfBarcodes[i]);
+            // iteration order is the barcode ordinal
+            for (final String b : dictionary.getSetBarcodesFromIndex(i)) {
+                final int j = current.size();
+                final BarcodeStat s = new BarcodeStat((dictionary.getNumberOfBarcodes() == 1)
+                        ? b : String.format("%s_%s", b, i + 1));
+                final long[] mismatches = merged.getMismatches(i, j);
+                s.MATCHED = (int) merged.getMatched(i, j);
+                s.MEAN_N = (s.MATCHED == 0) ? 0 : (double) merged.getNumberOfNs(i, j) / s.MATCHED;
+                if (largeDictionaryIndexes == null) {
+                    final Histogram<Integer> histogram =
+                            new Histogram<>("mismatches", s.SEQUENCE);
+                    for (int m = 0; m < mismatches.length; m++) {
+                        if (mismatches[m] != 0) {
+                            histogram.increment(m, mismatches[m]);
+                        }
+                    }
+                    s.MEAN_MISMATCH = histogram.getMean();
+                    barcode.addHistogram(histogram);
+                } else {
+                    // avoid a histogram object for each barcode
+                    double sum = 0;
+                    for (int m = 0; m < mismatches.length; m++) {
+                        sum += m * mismatches[m];
+                    }
+                    s.MEAN_MISMATCH = sum / s.MATCHED;
+                }
+                current.add(s);
             }
-            barcode.addAllMetrics(current.values());
+            barcode.addAllMetrics(current);
         }
         return barcode;
     }
 
+    /**
+     * Gets the efficiency of the cache for decoded barcodes.
+     *
+     * @see BarcodeCacheMetric
+     */
+    public MetricsFile<BarcodeCacheMetric, Integer> getBarcodeCacheMetrics() {
+        final BarcodeCacheMetric metric = new BarcodeCacheMetric();
+        metric.CAPACITY = cache.getCapacity();
+        metric.SIZE = cache.size();
+        metric.HITS = cache.getHits();
+        metric.MISSES = cache.getMisses();
+        final long lookups = metric.HITS + metric.MISSES;
+        metric.PCT_HITS = (lookups == 0) ? 0 : 100d * metric.HITS / lookups;
+        final MetricsFile<BarcodeCacheMetric, Integer> metrics = new MetricsFile<>();
+        metrics.addMetric(metric);
+        return metrics;
+    }
+
 }
@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import java.util.Arrays;
+
+/**
+ * Primitive counters for the statistics of a {@link BarcodeDecoder}, indexed by ordinals instead
+ * of barcode sequences. Each thread updates its own instance, and they are merged to generate
+ * the metrics.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class BarcodeDecoderStats {
+
+    // number of records for each combined barcode
+    private final long[] records;
+
+    // number of barcodes discarded by each filter
+    private final long[] discarded = new long[BarcodeDecoder.FilterFailure.values().length];
+
+    // number of matched records for each barcode by index
+    private final long[][] matched;
+
+    // histogram of mismatches for each barcode by index, flattened in a single array for each
+    // index (the position for a barcode is its ordinal times the histogram size plus mismatches)
+    private final long[][] mismatches;
+
+    // size of the histogram of mismatches by index
+    private final int[] histogramSizes;
+
+    // sum of the number of Ns for each barcode by index
+    private final long[][] numberOfNs;
+
+    /**
+     * Constructor.
+     *
+     * @param numberOfCombined number of combined barcodes (including the unknown).
+     * @param numberOfBarcodes number of barcodes by index.
+     * @param maxMismatches    maximum number of mismatches for a matched barcode by index.
+     */
+    BarcodeDecoderStats(final int numberOfCombined, final int[] numberOfBarcodes,
+            final int[] maxMismatches) {
+        this.records = new long[numberOfCombined];
+        this.matched = new long[numberOfBarcodes.length][];
+        this.mismatches = new long[numberOfBarcodes.length][];
+        this.histogramSizes = new int[numberOfBarcodes.length];
+        this.numberOfNs = new long[numberOfBarcodes.length][];
+        for (int i = 0; i < numberOfBarcodes.length; i++) {
+            matched[i] = new long[numberOfBarcodes[i]];
+            numberOfNs[i] = new long[numberOfBarcodes[i]];
+            histogramSizes[i] = maxMismatches[i] + 1;
+            mismatches[i] = new long[numberOfBarcodes[i] * histogramSizes[i]];
+        }
+    }
+
+    /** Adds a record assigned to the combined barcode. */
+    void addRecord(final int combinedOrdinal) {
+        records[combinedOrdinal]++;
+    }
+
+    /** Adds a barcode discarded by the filter. */
+    void addDiscarded(final BarcodeDecoder.FilterFailure filter) {
+        discarded[filter.ordinal()]++;
+    }
+
+    /** Adds a matched barcode for the index. */
+    void addMatch(final int index, final int barcodeOrdinal, final int mismatches,
+            final int numberOfNs) {
+        this.matched[index][barcodeOrdinal]++;
+        this.mismatches[index][barcodeOrdinal * histogramSizes[index] + mismatches]++;
+        this.numberOfNs[index][barcodeOrdinal] += numberOfNs;
+    }
+
+    /** Adds the counts from other statistics with the same dimensions. */
+    void merge(final BarcodeDecoderStats other) {
+        add(records, other.records);
+        add(discarded, other.discarded);
+        for (int i = 0; i < matched.length; i++) {
+            add(matched[i], other.matched[i]);
+            add(numberOfNs[i], other.numberOfNs[i]);
+            add(mismatches[i], other.mismatches[i]);
+        }
+    }
+
+    private static void add(final long[] to, final long[] from) {
+        for (int i = 0; i < to.length; i++) {
+            to[i] += from[i];
+        }
+    }
+
+    /** Gets the number of records assigned to the combined barcode. */
+    long getRecords(final int combinedOrdinal) {
+        return records[combinedOrdinal];
+    }
+
+    /** Gets the number of barcodes discarded by the filter. */
+    long getDiscarded(final BarcodeDecoder.FilterFailure filter) {
+        return discarded[filter.ordinal()];
+    }
+
+    /** Gets the number of matches for the barcode. */
+    long getMatched(final int index, final int barcodeOrdinal) {
+        return matched[index][barcodeOrdinal];
+    }
+
+    /**
+     * Gets a copy of the histogram of mismatches for the barcode, where the position is the
+     * number of mismatches.
+     */
+    long[] getMismatches(final int index, final int barcodeOrdinal) {
+        final int start = barcodeOrdinal * histogramSizes[index];
+        return Arrays.copyOfRange(mismatches[index], start, start + histogramSizes[index]);
+    }
+
+    /** Gets the sum of the number of Ns for the barcode. */
+    long getNumberOfNs(final int index, final int barcodeOrdinal) {
+        return numberOfNs[index][barcodeOrdinal];
+    }
+}
@@ -23,6 +23,8 @@
  */
 package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
 
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
+
 import com.google.common.annotations.VisibleForTesting;
 import org.broadinstitute.hellbender.utils.BaseUtils;
 
@@ -65,6 +67,24 @@ public final class BarcodeMatch {
         this.index = index;
     }
 
+    /**
+     * Creates a match already computed (e.g., by a {@link BarcodeNeighbourhoodIndex}).
+     *
+     * @param index                  0-based index of the barcode.
+     * @param barcode                the matched barcode; {@code null} if it does not match.
+     * @param mismatches             number of mismatches with the matched barcode.
+     * @param mismatchesToSecondBest number of mismatches with the second best barcode.
+     * @param numberOfNs             number of Ns in the matched part of the sequenced barcode.
+     */
+    static BarcodeMatch matched(final int index, final String barcode, final int mismatches,
+            final int mismatchesToSecondBest, final int numberOfNs) {
+        final BarcodeMatch match = new BarcodeMatch(index, mismatches);
+        match.barcode = barcode;
+        match.mismatchesToSecondBest = mismatchesToSecondBest;
+        match.numberOfNs = numberOfNs;
+        return match;
+    }
+
     /**
      * If the barcode is matched, it was identified as belonging to the returned barcode.
      *
@@ -104,6 +124,12 @@ public final class BarcodeMatch {
         return mismatches;
     }
 
+    /** Gets the number of mismatches of the sequenced vs. the second best barcode. */
+    @VisibleForTesting
+    int getMismatchesToSecondBest() {
+        return mismatchesToSecondBest;
+    }
+
     /**
      * An assignable barcode is the one with:
      *
@@ -148,36 +174,105 @@ public final class BarcodeMatch {
         final BarcodeMatch best = new BarcodeMatch(index, barcodeToMatch.length());
         for (final String b : barcodeSet) {
             final String subBarcode = barcodeToMatch.substring(0, b.length());
-            final int currentMismatch = hammingDistance(subBarcode, b, nAsMismatches);
-            // if the barcodeToMatch is longer but it is cut, this is not really the best barcode,
-            // but the sorter one even if all of them have the same mismatches
-            // we solve this outside the 'for' loop
-            if (currentMismatch < best.mismatches) {
-                // if the count of mismatches is better than the previous
-                best.mismatchesToSecondBest = best.mismatches;
-                best.mismatches = currentMismatch;
-                best.barcode = b;
-            } else if (currentMismatch < best.mismatchesToSecondBest) {
-                // if it is the second best, track the result
-                best.mismatchesToSecondBest = currentMismatch;
-            }
+            best.update(b, hammingDistance(subBarcode, b, nAsMismatches));
+        }
+        return best.finish(barcodeToMatch);
+    }
+
+    /**
+     * Gets the best barcode match against packed barcodes, which is the same as
+     * {@link #getBestBarcodeMatch(int, String, Set, boolean)} with the barcodes in the same order.
+     *
+     * @param index          0-based index of the barcode (if only one, it should be 0).
+     * @param barcodeToMatch the barcode to match against the packed barcodes.
+     * @param barcodes       the packed barcodes to match against.
+     * @param nAsMismatches  if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the best barcode matched and the information about it; {@code null} if the barcode
+     * to match is shorter than the packed barcodes or cannot be packed.
+     */
+    public static BarcodeMatch getBestBarcodeMatch(final int index, final String barcodeToMatch,
+            final PackedBarcodes barcodes, final boolean nAsMismatches) {
+        if (barcodeToMatch.length() < barcodes.getMaxLength()) {
+            return null;
+        }
+        final long testNs = PackedBarcodes.packNs(barcodeToMatch, barcodes.getMaxLength());
+        if (testNs == PackedBarcodes.UNPACKABLE) {
+            return null;
+        }
+        final long testBases = PackedBarcodes.packBases(barcodeToMatch, barcodes.getMaxLength());
+        final BarcodeMatch best = new BarcodeMatch(index, barcodeToMatch.length());
+        for (int i = 0; i < barcodes.size(); i++) {
+            best.update(barcodes.getBarcode(i), hammingDistance(testBases, testNs,
+                    barcodes.getBases(i), barcodes.getLengthMask(i), nAsMismatches));
+        }
+        return best.finish(barcodeToMatch);
+    }
+
+    /**
+     * Gets the best barcode match using the edit distance instead of the number of mismatches
+     * (see {@link EditDistanceBarcodes}).
+     *
+     * @param index          0-based index of the barcode (if only one, it should be 0).
+     * @param barcodeToMatch the barcode to match against the barcodes.
+     * @param barcodes       the barcodes to match against.
+     *
+     * @return the best barcode matched and the information about it, where the mismatches are
+     * the edit distance.
+     */
+    static BarcodeMatch getBestBarcodeMatch(final int index, final String barcodeToMatch,
+            final EditDistanceBarcodes barcodes) {
+        final BarcodeMatch best = new BarcodeMatch(index, barcodeToMatch.length());
+        for (int i = 0; i < barcodes.size(); i++) {
+            best.update(barcodes.getBarcode(i), barcodes.editDistance(i, barcodeToMatch));
+        }
+        return best.finish(barcodeToMatch);
+    }
+
+    // updates the best/second best mismatches with the current barcode
+    private void update(final String currentBarcode, final int currentMismatch) {
+        // if the barcodeToMatch is longer but it is cut, this is not really the best barcode,
+        // but the sorter one even if all of them have the same mismatches
+        // we solve this outside the 'for' loop
+        if (currentMismatch < mismatches) {
+            // if the count of mismatches is better than the previous
+            mismatchesToSecondBest = mismatches;
+            mismatches = currentMismatch;
+            barcode = currentBarcode;
+        } else if (currentMismatch < mismatchesToSecondBest) {
+            // if it is the second best, track the result
+            mismatchesToSecondBest = currentMismatch;
         }
+    }
+
+    // finish the match after all the barcodes are tested
+    private BarcodeMatch finish(final String barcodeToMatch) {
         // if the best barcode is not null, but the number of mismatches/mismatches to second best
         // is larger or equal than the barcode length, that means that we cannot find the real
         // barcode, and the shorter one is the detected one
-        if (best.barcode != null
-                && best.mismatches >= best.barcode.length()
-                && best.mismatchesToSecondBest >= best.barcode.length()) {
-            best.barcode = null;
-            best.mismatches = barcodeToMatch.length();
-            best.mismatchesToSecondBest = best.mismatches;
+        if (barcode != null
+                && mismatches >= barcode.length()
+                && mismatchesToSecondBest >= barcode.length()) {
+            barcode = null;
+            mismatches = barcodeToMatch.length();
+            mismatchesToSecondBest = mismatches;
         }
-        // count the number of Ns
-        final String toCount = (best.barcode == null)
-                ? barcodeToMatch : barcodeToMatch.substring(0, best.barcode.length());
-        best.numberOfNs = (int) toCount.chars().filter(i -> BaseUtils.isNBase((byte) i)).count();
+        // count the number of Ns (the barcode to match could be shorter with the edit distance)
+        numberOfNs = countNs(barcodeToMatch, (barcode == null)
+                ? barcodeToMatch.length()
+                : Math.min(barcode.length(), barcodeToMatch.length()));
+        return this;
+    }
 
-        return best;
+    /** Counts the number of Ns in the first {@code length} bases of the sequence. */
+    static int countNs(final String sequence, final int length) {
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (BaseUtils.isNBase((byte) sequence.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -210,4 +305,29 @@ public final class BarcodeMatch {
         }
         return measuredDistance;
     }
+
+    /**
+     * Computes Hamming distance (number of mismatches) between a packed test sequence and a
+     * packed target sequence without Ns (see {@link PackedBarcodes}). This is equivalent to
+     * {@link #hammingDistance(String, String, boolean)} for the bases in the target length.
+     *
+     * @param testBases     packed bases for the test sequence.
+     * @param testNs        mask for the Ns in the test sequence.
+     * @param targetBases   packed bases for the target sequence.
+     * @param targetMask    mask for the length of the target sequence.
+     * @param nAsMismatches if {@code true} N bases are counted as mismatch; otherwise they are
+     *                      ignored.
+     *
+     * @return hamming distance between the two sequences.
+     */
+    @VisibleForTesting
+    static int hammingDistance(final long testBases, final long testNs, final long targetBases,
+            final long targetMask, final boolean nAsMismatches) {
+        final long xor = testBases ^ targetBases;
+        // one bit set per different base
+        long different = (xor | (xor >>> 1)) & PackedBarcodes.LOWER_BITS;
+        // Ns are packed as As, so they should be always/never counted
+        different = (nAsMismatches) ? different | testNs : different & ~testNs;
+        return Long.bitCount(different & targetMask);
+    }
 }
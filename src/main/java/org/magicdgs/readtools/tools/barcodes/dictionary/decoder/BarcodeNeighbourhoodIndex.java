@@ -0,0 +1,261 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed index for the barcodes at the same position in a dictionary. It maps every
+ * sequence that is at most a number of substitutions (including Ns) away from a barcode to its
+ * best and second best matches, which replaces the scan over all the barcodes of
+ * {@link BarcodeMatch#getBestBarcodeMatch(int, String, Set, boolean)} by a single probe.
+ *
+ * Barcodes with different lengths are indexed separately, and the sequenced barcode is cut to
+ * the length of each of them as in the scan. If the sequence is not in the index for all the
+ * lengths, the result cannot be determined and {@code null} is returned (the caller should fall
+ * back to the scan). Thus, results are always the same as the scan.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class BarcodeNeighbourhoodIndex {
+
+    private static final Logger logger = LogManager.getLogger(BarcodeNeighbourhoodIndex.class);
+
+    /** Maximum number of comparisons to build the index (sequences times barcodes). */
+    static final long MAX_BUILD_COMPARISONS = 1L << 29;
+
+    /**
+     * Maximum number of sequences in the index (each entry uses around 120 bytes of heap), which
+     * limits the memory for small dictionaries with a large radius.
+     */
+    static final long MAX_ENTRIES = 1L << 20;
+
+    // bases used for substitutions
+    private static final char[] BASES = {'A', 'C', 'G', 'T', 'N'};
+
+    private final int index;
+    // indexes for each barcode length, in order of first appearance
+    private final List<LengthIndex> lengthIndexes;
+    private final int maxLength;
+
+    private BarcodeNeighbourhoodIndex(final int index, final List<LengthIndex> lengthIndexes) {
+        this.index = index;
+        this.lengthIndexes = lengthIndexes;
+        this.maxLength = lengthIndexes.stream().mapToInt(l -> l.length).max().orElse(0);
+    }
+
+    /**
+     * Builds the index for the barcodes, if the cost of building it is below
+     * {@link #MAX_BUILD_COMPARISONS} and the number of sequences is below {@link #MAX_ENTRIES}.
+     *
+     * @param index         0-based index of the barcodes in the dictionary.
+     * @param barcodes      the barcodes to match against, in the order used by the scan.
+     * @param radius        maximum number of substitutions with respect to the barcodes.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the index; {@code null} if it is too expensive to build.
+     */
+    static BarcodeNeighbourhoodIndex build(final int index, final Set<String> barcodes,
+            final int radius, final boolean nAsMismatches) {
+        Utils.nonEmpty(barcodes, "empty barcodes");
+        Utils.validateArg(radius >= 0, "negative radius");
+        // group the positions of the barcodes by length, to keep their order for ties
+        final List<String> ordered = new ArrayList<>(barcodes);
+        final Map<Integer, List<Integer>> byLength = new LinkedHashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            byLength.computeIfAbsent(ordered.get(i).length(), l -> new ArrayList<>()).add(i);
+        }
+
+        long comparisons = 0;
+        // upper bound, because neighbourhoods of different barcodes might overlap
+        long entries = 0;
+        for (final Map.Entry<Integer, List<Integer>> group : byLength.entrySet()) {
+            final long size = group.getValue().size();
+            final long neighbourhood = neighbourhoodSize(group.getKey(), radius);
+            comparisons += size * size * neighbourhood;
+            entries += size * neighbourhood;
+        }
+        if (comparisons > MAX_BUILD_COMPARISONS) {
+            logger.debug("Barcode index {} not built for radius {}: {} comparisons required",
+                    index, radius, comparisons);
+            return null;
+        }
+        if (entries > MAX_ENTRIES) {
+            logger.debug("Barcode index {} not built for radius {}: up to {} sequences",
+                    index, radius, entries);
+            return null;
+        }
+
+        final List<LengthIndex> lengthIndexes = new ArrayList<>(byLength.size());
+        byLength.forEach((length, positions) -> lengthIndexes.add(
+                new LengthIndex(length, ordered, positions, radius, nAsMismatches)));
+        logger.debug("Barcode index {} built for radius {}: {} sequences", () -> index,
+                () -> radius, () -> lengthIndexes.stream().mapToInt(l -> l.entries.size()).sum());
+        return new BarcodeNeighbourhoodIndex(index, lengthIndexes);
+    }
+
+    // number of sequences with at most radius substitutions (with 4 alternatives) for a length
+    private static long neighbourhoodSize(final int length, final int radius) {
+        long size = 0;
+        long combinations = 1;
+        long alternatives = 1;
+        for (int i = 0; i <= Math.min(radius, length); i++) {
+            size += combinations * alternatives;
+            combinations = combinations * (length - i) / (i + 1);
+            alternatives *= BASES.length - 1;
+        }
+        return size;
+    }
+
+    /**
+     * Gets the best barcode match, or {@code null} if the sequence is not in the index.
+     *
+     * @param barcodeToMatch the barcode to match.
+     *
+     * @return the same best match as the scan over all the barcodes; {@code null} if it cannot be
+     * computed with the index.
+     */
+    BarcodeMatch getBestBarcodeMatch(final String barcodeToMatch) {
+        // shorter sequences fail in the scan
+        if (barcodeToMatch.length() < maxLength) {
+            return null;
+        }
+        Entry best = null;
+        int second = Integer.MAX_VALUE;
+        for (final LengthIndex lengthIndex : lengthIndexes) {
+            final Entry entry = lengthIndex.entries.get(
+                    (barcodeToMatch.length() == lengthIndex.length)
+                            ? barcodeToMatch : barcodeToMatch.substring(0, lengthIndex.length));
+            if (entry == null) {
+                return null;
+            }
+            // the scan keeps the first barcode with the minimum number of mismatches
+            if (best == null || entry.mismatches < best.mismatches
+                    || (entry.mismatches == best.mismatches && entry.order < best.order)) {
+                if (best != null) {
+                    second = Math.min(second, best.mismatches);
+                }
+                best = entry;
+            } else {
+                second = Math.min(second, entry.mismatches);
+            }
+            second = Math.min(second, entry.mismatchesToSecondBest);
+        }
+        // the scan starts with the length of the sequence as the number of mismatches
+        second = Math.min(second, barcodeToMatch.length());
+        final int length = best.barcode.length();
+        if (best.mismatches >= barcodeToMatch.length()
+                || (best.mismatches >= length && second >= length)) {
+            // no match in the scan
+            return null;
+        }
+        return BarcodeMatch.matched(index, best.barcode, best.mismatches, second,
+                BarcodeMatch.countNs(barcodeToMatch, length));
+    }
+
+    // best and second best matches for a sequence against the barcodes with the same length
+    private static final class Entry {
+        private final String barcode;
+        // order of the barcode in the dictionary
+        private final int order;
+        private final int mismatches;
+        private final int mismatchesToSecondBest;
+
+        private Entry(final String barcode, final int order, final int mismatches,
+                final int mismatchesToSecondBest) {
+            this.barcode = barcode;
+            this.order = order;
+            this.mismatches = mismatches;
+            this.mismatchesToSecondBest = mismatchesToSecondBest;
+        }
+    }
+
+    // index for the barcodes with the same length
+    private static final class LengthIndex {
+        private final int length;
+        private final List<String> barcodes;
+        // positions of the barcodes with this length
+        private final List<Integer> positions;
+        private final boolean nAsMismatches;
+        private final Map<String, Entry> entries = new HashMap<>();
+
+        private LengthIndex(final int length, final List<String> barcodes,
+                final List<Integer> positions, final int radius, final boolean nAsMismatches) {
+            this.length = length;
+            this.barcodes = barcodes;
+            this.positions = positions;
+            this.nAsMismatches = nAsMismatches;
+            for (final int position : positions) {
+                addNeighbourhood(barcodes.get(position).toCharArray(), 0, radius);
+            }
+        }
+
+        // adds the sequence and all the substitutions from the position
+        private void addNeighbourhood(final char[] sequence, final int from, final int radius) {
+            entries.computeIfAbsent(new String(sequence), this::scan);
+            if (radius == 0) {
+                return;
+            }
+            for (int i = from; i < sequence.length; i++) {
+                final char original = sequence[i];
+                for (final char base : BASES) {
+                    if (base != original) {
+                        sequence[i] = base;
+                        addNeighbourhood(sequence, i + 1, radius - 1);
+                    }
+                }
+                sequence[i] = original;
+            }
+        }
+
+        // same algorithm as the scan in BarcodeMatch, without the initial number of mismatches
+        private Entry scan(final String sequence) {
+            int best = -1;
+            int mismatches = Integer.MAX_VALUE;
+            int second = Integer.MAX_VALUE;
+            for (final int position : positions) {
+                final int current = BarcodeMatch.hammingDistance(sequence,
+                        barcodes.get(position), nAsMismatches);
+                if (current < mismatches) {
+                    second = mismatches;
+                    mismatches = current;
+                    best = position;
+                } else if (current < second) {
+                    second = current;
+                }
+            }
+            return new Entry(barcodes.get(best), best, mismatches, second);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache with the CLOCK (second-chance) eviction policy, which approximates a LRU cache
+ * without re-ordering the entries on every access.
+ *
+ * Lookups are lock-free and could be performed concurrently from several threads; insertions
+ * are synchronized. The number of hits and misses is tracked to report the efficiency of the
+ * cache.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class ClockCache<K, V> {
+
+    private final int capacity;
+    private final ConcurrentHashMap<K, Entry<V>> entries;
+
+    // keys in insertion slots, and position of the clock hand; guarded by this
+    private final Object[] slots;
+    private int filled = 0;
+    private int hand = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of entries. If 0, nothing is cached.
+     */
+    ClockCache(final int capacity) {
+        Utils.validateArg(capacity >= 0, "negative capacity");
+        this.capacity = capacity;
+        this.entries = new ConcurrentHashMap<>(Math.max(16, capacity / 2));
+        this.slots = new Object[capacity];
+    }
+
+    /**
+     * Gets the value for the key, marking it as recently used.
+     *
+     * @return the cached value; {@code null} if it is not cached.
+     */
+    V get(final K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        entry.referenced = true;
+        return entry.value;
+    }
+
+    /**
+     * Caches the value for the key, evicting the first entry not used since the last pass of the
+     * clock hand if the cache is full. If the key is already present, it is not updated.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void put(final K key, final V value) {
+        if (capacity == 0 || entries.containsKey(key)) {
+            return;
+        }
+        if (filled < capacity) {
+            slots[filled++] = key;
+        } else {
+            // give a second chance to the referenced entries
+            Entry<V> candidate;
+            while ((candidate = entries.get((K) slots[hand])).referenced) {
+                candidate.referenced = false;
+                hand = (hand + 1) % capacity;
+            }
+            entries.remove((K) slots[hand]);
+            slots[hand] = key;
+            hand = (hand + 1) % capacity;
+        }
+        entries.put(key, new Entry<>(value));
+    }
+
+    /** Gets the maximum number of entries. */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /** Gets the number of entries currently cached. */
+    int size() {
+        return entries.size();
+    }
+
+    /** Gets the number of lookups that found the key. */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /** Gets the number of lookups that did not find the key. */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    // cached value with the reference bit for the clock
+    private static final class Entry<V> {
+        private final V value;
+        private volatile boolean referenced = false;
+
+        private Entry(final V value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.Collection;
+
+/**
+ * Barcodes prepared for computing the edit distance (insertions, deletions and substitutions)
+ * against sequenced barcodes with the bit-parallel algorithm of Myers (J ACM 46, 1999; with the
+ * modifications for edit distance described by Hyyro, 2001), which requires barcodes up to
+ * {@link #MAX_LENGTH} bases.
+ *
+ * The barcode is aligned from the start of the sequenced barcode, and the bases after the end of
+ * any of them are not counted: the sequenced barcode could be followed by other bases (e.g., if
+ * the barcode has a deletion), or truncated before the end of the barcode (e.g., if the barcode
+ * has an insertion). The latter is only considered if the sequenced barcode is not shorter than
+ * the barcode, to avoid matching partial barcodes.
+ *
+ * Substitutions are computed as in {@link BarcodeMatch#hammingDistance(String, String, boolean)}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class EditDistanceBarcodes {
+
+    /** Maximum length for a barcode. */
+    static final int MAX_LENGTH = Long.SIZE;
+
+    // codes for the bases (A, C, G, T and any other)
+    private static final int NUMBER_OF_CODES = 5;
+    private static final int OTHER_CODE = 4;
+
+    private final String[] barcodes;
+    // bits set for the positions matching each base code, for each barcode (flattened)
+    private final long[] matchMasks;
+    private final boolean nAsMismatches;
+
+    private EditDistanceBarcodes(final String[] barcodes, final boolean nAsMismatches) {
+        this.barcodes = barcodes;
+        this.nAsMismatches = nAsMismatches;
+        this.matchMasks = new long[barcodes.length * NUMBER_OF_CODES];
+        for (int i = 0; i < barcodes.length; i++) {
+            for (int j = 0; j < barcodes[i].length(); j++) {
+                final char base = barcodes[i].charAt(j);
+                if (!nAsMismatches && isN(base)) {
+                    // matches any base
+                    for (int code = 0; code < NUMBER_OF_CODES; code++) {
+                        matchMasks[i * NUMBER_OF_CODES + code] |= 1L << j;
+                    }
+                } else {
+                    matchMasks[i * NUMBER_OF_CODES + baseCode(base)] |= 1L << j;
+                }
+            }
+        }
+    }
+
+    /**
+     * Prepares the barcodes for computing the edit distance.
+     *
+     * @param barcodes      the barcodes to match against, in the order used for matching.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the prepared barcodes; {@code null} if any of them is empty or longer than
+     * {@link #MAX_LENGTH}.
+     */
+    static EditDistanceBarcodes build(final Collection<String> barcodes,
+            final boolean nAsMismatches) {
+        Utils.nonNull(barcodes, "null barcodes");
+        for (final String barcode : barcodes) {
+            if (barcode.isEmpty() || barcode.length() > MAX_LENGTH) {
+                return null;
+            }
+        }
+        return new EditDistanceBarcodes(barcodes.toArray(new String[barcodes.size()]),
+                nAsMismatches);
+    }
+
+    /** Gets the number of barcodes. */
+    int size() {
+        return barcodes.length;
+    }
+
+    /** Gets the barcode at the position. */
+    String getBarcode(final int i) {
+        return barcodes[i];
+    }
+
+    /**
+     * Computes the edit distance between the barcode at the position and the sequenced barcode.
+     *
+     * @param i        the position of the barcode.
+     * @param sequence the sequenced barcode.
+     *
+     * @return the edit distance.
+     */
+    int editDistance(final int i, final String sequence) {
+        final int length = barcodes[i].length();
+        final long lastBit = 1L << (length - 1);
+        final int offset = i * NUMBER_OF_CODES;
+        // vertical deltas (+1/-1) for the current column, starting with the first one (0..length)
+        long positiveVertical = -1L;
+        long negativeVertical = 0;
+        // distance for the complete barcode against the sequence up to the current base
+        int score = length;
+        int best = score;
+        for (int j = 0; j < sequence.length(); j++) {
+            final char base = sequence.charAt(j);
+            final long match = (!nAsMismatches && isN(base))
+                    ? -1L : matchMasks[offset + baseCode(base)];
+            final long xv = match | negativeVertical;
+            final long xh = (((match & positiveVertical) + positiveVertical) ^ positiveVertical)
+                    | match;
+            long positiveHorizontal = negativeVertical | ~(xh | positiveVertical);
+            long negativeHorizontal = positiveVertical & xh;
+            if ((positiveHorizontal & lastBit) != 0) {
+                score++;
+            } else if ((negativeHorizontal & lastBit) != 0) {
+                score--;
+            }
+            // the first row increases by one in each column (alignment from the start)
+            positiveHorizontal = (positiveHorizontal << 1) | 1;
+            negativeHorizontal <<= 1;
+            positiveVertical = negativeHorizontal | ~(xv | positiveHorizontal);
+            negativeVertical = positiveHorizontal & xv;
+            best = Math.min(best, score);
+        }
+        if (sequence.length() >= length) {
+            // distance for each prefix of the barcode against the complete sequence
+            int column = sequence.length();
+            for (int k = 0; k < length; k++) {
+                column += (int) ((positiveVertical >>> k) & 1)
+                        - (int) ((negativeVertical >>> k) & 1);
+                best = Math.min(best, column);
+            }
+        }
+        return best;
+    }
+
+    private static boolean isN(final char base) {
+        return base == 'N' || base == 'n';
+    }
+
+    private static int baseCode(final char base) {
+        switch (base) {
+            case 'A':
+            case 'a':
+                return 0;
+            case 'C':
+            case 'c':
+                return 1;
+            case 'G':
+            case 'g':
+                return 2;
+            case 'T':
+            case 't':
+                return 3;
+            default:
+                return OTHER_CODE;
+        }
+    }
+}
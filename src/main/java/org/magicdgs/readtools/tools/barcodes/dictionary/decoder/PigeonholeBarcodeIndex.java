@@ -0,0 +1,230 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodePartitions;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * Compact index for large sets of barcodes at the same position in a dictionary (e.g., hundreds
+ * of thousands of cell barcodes), which finds the barcodes within a number of mismatches without
+ * scanning all of them.
+ *
+ * Barcodes are packed (see {@link PackedBarcodes}) and split in {@code radius + 1} partitions.
+ * By the pigeonhole principle, a barcode with at most {@code radius} mismatches matches exactly
+ * at least one partition of the sequenced barcode. For each partition, the packed bases are kept
+ * sorted (see {@link PackedBarcodePartitions}) to look up the candidates by binary search, and
+ * their distance is verified over the packed barcodes.
+ *
+ * Only the barcodes within the radius are considered: if there is none, the sequenced barcode
+ * is not matched; if there is only one, the mismatches to the second best are reported as
+ * {@code radius + 1} (a lower bound). Thus, the result is the same as the scan if the radius is
+ * at least the maximum number of mismatches plus the minimum difference with the second best
+ * minus one.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class PigeonholeBarcodeIndex {
+
+    /**
+     * Maximum number of Ns in a partition to enumerate all the possible bases for them, if Ns
+     * are not counted as mismatches.
+     */
+    static final int MAX_ENUMERATED_NS = 3;
+
+    private final int index;
+    private final PackedBarcodes barcodes;
+    private final PackedBarcodePartitions partitions;
+    private final int length;
+    private final int radius;
+    private final boolean nAsMismatches;
+
+    private PigeonholeBarcodeIndex(final int index, final PackedBarcodes barcodes,
+            final PackedBarcodePartitions partitions, final boolean nAsMismatches) {
+        this.index = index;
+        this.barcodes = barcodes;
+        this.partitions = partitions;
+        this.length = barcodes.getMaxLength();
+        this.radius = partitions.getRadius();
+        this.nAsMismatches = nAsMismatches;
+    }
+
+    /**
+     * Builds the index for the barcodes.
+     *
+     * @param index         0-based index of the barcodes in the dictionary.
+     * @param barcodes      the packed barcodes to match against.
+     * @param radius        maximum number of mismatches with respect to the barcodes.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the index; {@code null} if the barcodes have different lengths or the radius is
+     * not shorter than the barcodes.
+     */
+    static PigeonholeBarcodeIndex build(final int index, final PackedBarcodes barcodes,
+            final int radius, final boolean nAsMismatches) {
+        final PackedBarcodePartitions partitions = PackedBarcodePartitions.sort(barcodes, radius);
+        return (partitions == null) ? null : build(index, barcodes, partitions, nAsMismatches);
+    }
+
+    /**
+     * Builds the index for the barcodes already sorted for each partition (e.g., from a compiled
+     * barcode dictionary).
+     *
+     * @param index         0-based index of the barcodes in the dictionary.
+     * @param barcodes      the packed barcodes to match against.
+     * @param partitions    the barcodes sorted for each partition.
+     * @param nAsMismatches if {@code true}, unknown sequences (Ns) count as mismatches.
+     *
+     * @return the index.
+     */
+    static PigeonholeBarcodeIndex build(final int index, final PackedBarcodes barcodes,
+            final PackedBarcodePartitions partitions, final boolean nAsMismatches) {
+        Utils.nonNull(barcodes, "null barcodes");
+        Utils.nonNull(partitions, "null partitions");
+        Utils.validateArg(partitions.size() == barcodes.size(),
+                "partitions does not match the barcodes");
+        return new PigeonholeBarcodeIndex(index, barcodes, partitions, nAsMismatches);
+    }
+
+    /** Gets the maximum number of mismatches for the barcodes found by this index. */
+    int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Gets the best barcode match for the sequenced barcode, only considering the barcodes with
+     * at most {@link #getRadius()} mismatches.
+     *
+     * @param barcodeToMatch the sequenced barcode.
+     *
+     * @return the best barcode matched and the information about it; {@code null} if the
+     * sequenced barcode is shorter than the barcodes, cannot be packed or contains too many Ns
+     * to look them up (the caller should fall back to the scan).
+     */
+    BarcodeMatch getBestBarcodeMatch(final String barcodeToMatch) {
+        if (barcodeToMatch.length() < length) {
+            return null;
+        }
+        final long ns = PackedBarcodes.packNs(barcodeToMatch, length);
+        if (ns == PackedBarcodes.UNPACKABLE) {
+            return null;
+        }
+        final Search search = new Search(PackedBarcodes.packBases(barcodeToMatch, length), ns);
+        for (int p = 0; p < partitions.numberOfPartitions(); p++) {
+            final long partitionNs = ns & partitions.getMask(p);
+            if (partitionNs == 0) {
+                search.lookup(p, search.bases & partitions.getKeyMask(p));
+            } else if (nAsMismatches) {
+                // Ns are mismatches, so there are no barcodes matching exactly the partition
+                continue;
+            } else if (Long.bitCount(partitionNs) <= MAX_ENUMERATED_NS) {
+                search.lookupWithNs(p, partitionNs);
+            } else {
+                return null;
+            }
+            search.searched[p] = true;
+        }
+        if (search.best == -1) {
+            return BarcodeMatch.matched(index, null, barcodeToMatch.length(),
+                    barcodeToMatch.length(),
+                    BarcodeMatch.countNs(barcodeToMatch, barcodeToMatch.length()));
+        }
+        return BarcodeMatch.matched(index, barcodes.getBarcode(search.best),
+                search.bestMismatches, search.secondBestMismatches,
+                BarcodeMatch.countNs(barcodeToMatch, length));
+    }
+
+    // state of the search for a sequenced barcode
+    private final class Search {
+        private final long bases;
+        private final long ns;
+        // partitions already looked up, to avoid testing the same candidate more than once
+        private final boolean[] searched = new boolean[partitions.numberOfPartitions()];
+
+        private int best = -1;
+        private int bestMismatches = radius + 1;
+        private int secondBestMismatches = radius + 1;
+
+        private Search(final long bases, final long ns) {
+            this.bases = bases;
+            this.ns = ns;
+        }
+
+        // looks up the partition with every base for the Ns
+        private void lookupWithNs(final int partition, final long partitionNs) {
+            final int numberOfNs = Long.bitCount(partitionNs);
+            for (int combination = 0; combination < 1 << (2 * numberOfNs); combination++) {
+                long key = bases & partitions.getKeyMask(partition);
+                long remaining = partitionNs;
+                for (int n = 0; n < numberOfNs; n++) {
+                    final long position = Long.lowestOneBit(remaining);
+                    remaining ^= position;
+                    // Ns are packed as A (0), so the base could be set directly
+                    key |= position * ((combination >>> (2 * n)) & 0b11);
+                }
+                lookup(partition, key);
+            }
+        }
+
+        // looks up the candidates with the same bases in the partition
+        private void lookup(final int partition, final long key) {
+            int i = partitions.firstIndexOf(partition, key);
+            if (i < 0) {
+                return;
+            }
+            for (; i < partitions.size() && partitions.getKey(partition, i) == key; i++) {
+                test(partitions.getPosition(partition, i));
+            }
+        }
+
+        // updates the best/second best with the candidate, if not tested yet
+        private void test(final int candidate) {
+            final long candidateBases = barcodes.getBases(candidate);
+            final long xor = bases ^ candidateBases;
+            final long different = (xor | (xor >>> 1)) & PackedBarcodes.LOWER_BITS & ~ns;
+            for (int p = 0; p < searched.length; p++) {
+                if (searched[p] && (different & partitions.getMask(p)) == 0) {
+                    // it was already found in a previous partition
+                    return;
+                }
+            }
+            final int mismatches = BarcodeMatch.hammingDistance(bases, ns, candidateBases,
+                    barcodes.getLengthMask(candidate), nAsMismatches);
+            if (mismatches > radius) {
+                return;
+            }
+            // same order as the scan: the first barcode wins for the same mismatches
+            if (mismatches < bestMismatches
+                    || (mismatches == bestMismatches && candidate < best)) {
+                secondBestMismatches = bestMismatches;
+                bestMismatches = mismatches;
+                best = candidate;
+            } else if (mismatches < secondBestMismatches) {
+                secondBestMismatches = mismatches;
+            }
+        }
+    }
+}
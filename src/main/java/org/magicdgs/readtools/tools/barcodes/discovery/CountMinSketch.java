@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.discovery;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+/**
+ * Count-Min sketch (Cormode and Muthukrishnan, 2005) for estimating the number of times that a
+ * sequence was added in fixed memory. Estimates are never lower than the real count, and they
+ * are larger by at most a fraction {@code e / width} of the total count with probability
+ * {@code 1 - exp(-depth)}.
+ *
+ * Counters are incremented with conservative update (only the minimum counters), which reduces
+ * the over-estimation for sequences added many times.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class CountMinSketch {
+
+    // FNV-1a 64-bit parameters
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int width;
+    private final int depth;
+    // bit-mask for the column (width is a power of 2)
+    private final int mask;
+    // counters for each row (flattened)
+    private final long[] counters;
+    // columns for the last sequence, to avoid allocating an array per update
+    private final int[] columns;
+
+    /**
+     * Constructor.
+     *
+     * @param width minimum number of counters for each row (rounded up to a power of 2).
+     * @param depth number of rows.
+     */
+    CountMinSketch(final int width, final int depth) {
+        Utils.validateArg(width > 0 && width <= 1 << 30, "width should be in the range (0, 2^30]");
+        Utils.validateArg(depth > 0, "depth should be positive");
+        final int rounded = Integer.highestOneBit(width);
+        this.width = (rounded == width) ? width : rounded << 1;
+        Utils.validateArg((long) this.width * depth < Integer.MAX_VALUE,
+                "too many counters for the sketch");
+        this.depth = depth;
+        this.mask = this.width - 1;
+        this.counters = new long[this.width * depth];
+        this.columns = new int[depth];
+    }
+
+    /** Gets the number of counters for each row. */
+    int getWidth() {
+        return width;
+    }
+
+    /** Gets the number of rows. */
+    int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Adds one occurrence of the sequence.
+     *
+     * @param sequence the sequence to add.
+     *
+     * @return the estimated count for the sequence after adding it.
+     */
+    long add(final CharSequence sequence) {
+        final long estimate = setColumns(sequence) + 1;
+        for (int row = 0; row < depth; row++) {
+            final int i = row * width + columns[row];
+            if (counters[i] < estimate) {
+                counters[i] = estimate;
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the number of times that the sequence was added.
+     *
+     * @param sequence the sequence to estimate.
+     *
+     * @return the estimated count, which is never lower than the real count.
+     */
+    long estimate(final CharSequence sequence) {
+        return setColumns(sequence);
+    }
+
+    // sets the columns for the sequence, returning the current estimate
+    private long setColumns(final CharSequence sequence) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < sequence.length(); i++) {
+            hash = (hash ^ sequence.charAt(i)) * FNV_PRIME;
+        }
+        // double hashing to derive the hash for each row (Kirsch and Mitzenmacher, 2006)
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            columns[row] = (hash1 + row * hash2) & mask;
+            min = Math.min(min, counters[row * width + columns[row]]);
+        }
+        return min;
+    }
+}
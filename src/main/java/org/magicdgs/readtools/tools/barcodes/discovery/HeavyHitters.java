@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.discovery;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Most abundant sequences in a stream (heavy hitters), tracked in fixed memory: the counts are
+ * estimated with a {@link CountMinSketch}, and only the sequences with the highest estimates are
+ * kept.
+ *
+ * Reported counts are estimates, which are never lower than the real count. Sequences which
+ * become abundant late in the stream are tracked only from the moment that their estimate is
+ * larger than the lowest tracked one, but their count includes the previous occurrences.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class HeavyHitters {
+
+    /** Default number of counters for each row of the sketch. */
+    public static final int DEFAULT_SKETCH_WIDTH = 1 << 16;
+
+    /** Number of rows of the sketch. */
+    public static final int SKETCH_DEPTH = 4;
+
+    // order for the tracked sequences (lowest count first)
+    private static final Comparator<Tracked> TRACKED_ORDER =
+            Comparator.<Tracked>comparingLong(t -> t.count).thenComparing(t -> t.sequence);
+
+    private final int capacity;
+    private final CountMinSketch sketch;
+    // tracked sequences, sorted by count and indexed by sequence
+    private final TreeSet<Tracked> tracked = new TreeSet<>(TRACKED_ORDER);
+    private final Map<String, Tracked> trackedBySequence;
+    // number of sequences added
+    private long total = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity    maximum number of sequences to track.
+     * @param sketchWidth minimum number of counters for each row of the sketch.
+     */
+    public HeavyHitters(final int capacity, final int sketchWidth) {
+        Utils.validateArg(capacity > 0, "capacity should be positive");
+        this.capacity = capacity;
+        this.sketch = new CountMinSketch(sketchWidth, SKETCH_DEPTH);
+        this.trackedBySequence = new HashMap<>(2 * capacity);
+    }
+
+    /** Adds one occurrence of the sequence. */
+    public void add(final String sequence) {
+        Utils.nonNull(sequence, "null sequence");
+        total++;
+        final long estimate = sketch.add(sequence);
+        Tracked current = trackedBySequence.get(sequence);
+        if (current != null) {
+            // re-insert to keep the order
+            tracked.remove(current);
+            current.count = estimate;
+            tracked.add(current);
+        } else if (tracked.size() < capacity || estimate > tracked.first().count) {
+            if (tracked.size() == capacity) {
+                trackedBySequence.remove(tracked.pollFirst().sequence);
+            }
+            current = new Tracked(sequence, estimate);
+            tracked.add(current);
+            trackedBySequence.put(sequence, current);
+        }
+    }
+
+    /** Gets the number of sequences added. */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the maximum over-estimation of the counts with 98% probability, which depends on the
+     * number of sequences added and the width of the sketch.
+     */
+    public long getErrorBound() {
+        return (long) Math.ceil(Math.E * total / sketch.getWidth());
+    }
+
+    /**
+     * Gets the tracked sequences with their estimated counts.
+     *
+     * @return the sequences sorted by decreasing count (and by sequence for the same count).
+     */
+    public List<Map.Entry<String, Long>> getHeavyHitters() {
+        final List<Map.Entry<String, Long>> heavyHitters = new ArrayList<>(tracked.size());
+        for (final Tracked t : tracked) {
+            heavyHitters.add(new AbstractMap.SimpleImmutableEntry<>(t.sequence, t.count));
+        }
+        heavyHitters.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        return heavyHitters;
+    }
+
+    // tracked sequence with its last estimated count
+    private static final class Tracked {
+        private final String sequence;
+        private long count;
+
+        private Tracked(final String sequence, final long count) {
+            this.sequence = sequence;
+            this.count = count;
+        }
+    }
+}
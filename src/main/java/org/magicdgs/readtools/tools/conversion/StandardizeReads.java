@@ -114,14 +114,20 @@ public final class StandardizeReads extends ReadToolsWalker {
     @Override
     public void onTraversalStart() {
         final SAMFileHeader headerFromReads = getHeaderForReads();
-        writer = outputBamArgumentCollection.outputWriter(headerFromReads,
+        writer = orderedWriter(outputBamArgumentCollection.outputWriter(headerFromReads,
                 () -> getProgramRecord(headerFromReads), true, getReferenceFile()
-        );
+        ));
+    }
+
+    /** Reads are fixed independently, so they could be processed by several threads. */
+    @Override
+    protected boolean isApplyThreadSafe() {
+        return true;
     }
 
     @Override
     protected void apply(final GATKRead read) {
-        writer.addRead(fixBarcodeArguments.fixBarcodeTags(read));
+        writer.addRead(timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(read)));
     }
 
     @Override
@@ -129,7 +135,7 @@ public final class StandardizeReads extends ReadToolsWalker {
         logger.debug("First: {}", pair._1);
         logger.debug("Second: {}", pair._2);
         // this only works if it is modified in place
-        fixBarcodeArguments.fixBarcodeTags(pair);
+        timeStage("fixBarcodeTags", () -> fixBarcodeArguments.fixBarcodeTags(pair));
         writer.addRead(pair._1);
         writer.addRead(pair._2);
     }
@@ -85,10 +85,16 @@ public final class ReadsToDistmap extends ReadToolsWalker {
     @Override
     public void onTraversalStart() {
         fixBarcodeTags.validateArguments();
-        writer = new ReadWriterFactory()
+        writer = orderedWriter(new ReadWriterFactory()
                 .setForceOverwrite(forceOverwrite)
                 .setHdfsBlockSize(blockSize)
-                .createDistmapWriter(output, isPaired());
+                .createDistmapWriter(output, isPaired()));
+    }
+
+    /** Reads are fixed independently, so they could be processed by several threads. */
+    @Override
+    protected boolean isApplyThreadSafe() {
+        return true;
     }
 
     /** Fixes the barcode tag(s) and write the read down. */
@@ -99,7 +105,7 @@ public final class ReadsToDistmap extends ReadToolsWalker {
         // in addition, we do not have to assign the barcodes for the second pair, because
         // they should have the same and we assume that the first one includes it
         // see https://github.com/magicDGS/ReadTools/issues/159 for more detail
-        writer.addRead(fixBarcodeTags.fixBarcodeTags(read));
+        writer.addRead(timeStage("fixBarcodeTags", () -> fixBarcodeTags.fixBarcodeTags(read)));
     }
 
     /** Close the writer. */
@@ -167,6 +167,39 @@ public class TrimAndFilterPipeline extends ReadFilter {
         return Collections.unmodifiableList(filterMetrics);
     }
 
+    /**
+     * Adds the statistics of another pipeline to the ones in this pipeline. This is useful to
+     * merge the statistics of pipelines with the same trimmers/filters used in different threads.
+     *
+     * @param other pipeline with the same trimmers/filters (in order).
+     */
+    public void mergeStats(final TrimAndFilterPipeline other) {
+        Utils.nonNull(other, "null other");
+        Utils.validateArg(trimmerMetrics.size() == other.trimmerMetrics.size()
+                        && filterMetrics.size() == other.filterMetrics.size(),
+                "pipelines with different trimmers/filters cannot be merged");
+        for (int i = 0; i < trimmerMetrics.size(); i++) {
+            final TrimmerMetric metric = trimmerMetrics.get(i);
+            final TrimmerMetric toAdd = other.trimmerMetrics.get(i);
+            Utils.validateArg(metric.TRIMMER.equals(toAdd.TRIMMER),
+                    "different trimmers cannot be merged: " + metric.TRIMMER + " and "
+                            + toAdd.TRIMMER);
+            metric.TOTAL += toAdd.TOTAL;
+            metric.TRIMMED_5_P += toAdd.TRIMMED_5_P;
+            metric.TRIMMED_3_P += toAdd.TRIMMED_3_P;
+            metric.TRIMMED_COMPLETE += toAdd.TRIMMED_COMPLETE;
+        }
+        for (int i = 0; i < filterMetrics.size(); i++) {
+            final FilterMetric metric = filterMetrics.get(i);
+            final FilterMetric toAdd = other.filterMetrics.get(i);
+            Utils.validateArg(metric.FILTER.equals(toAdd.FILTER),
+                    "different filters cannot be merged: " + metric.FILTER + " and "
+                            + toAdd.FILTER);
+            metric.TOTAL += toAdd.TOTAL;
+            metric.PASSED += toAdd.PASSED;
+        }
+    }
+
     // class for collect metrics for the trimming pipeline
     // it also adds a FT tag to the read
     @VisibleForTesting
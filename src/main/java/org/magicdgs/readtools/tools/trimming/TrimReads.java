@@ -59,6 +59,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -122,59 +123,61 @@ public final class TrimReads extends ReadToolsWalker {
                                 new ReadLengthReadFilter(40, Integer.MAX_VALUE))));
     }
 
-    // pipeline to trim and filter
-    private TrimAndFilterPipeline pipeline;
+    // pipeline to trim and filter and length histograms for each thread processing reads
+    private final ThreadLocal<TrimmingState> trimmingState =
+            ThreadLocal.withInitial(this::newTrimmingState);
+    // all the states for the threads, in creation order
+    private final List<TrimmingState> allTrimmingStates = new ArrayList<>();
 
     // writers -> keep instance to close
     private GATKReadWriter writer;
     private GATKReadWriter discardedWriter;
 
-    // common metrics
-    private List<Histogram<Integer>> lengthHistogramsBeforeTrimming;
-    private List<Histogram<Integer>> lengthHistogramsAfterTrimming;
-
     @Override
     public void onTraversalStart() {
-        // set the length histograms
-        if (isPaired()) {
-            lengthHistogramsBeforeTrimming = Arrays.asList(
-                    new Histogram<>("length", "first_before"),
-                    new Histogram<>("length", "second_before"));
-            lengthHistogramsAfterTrimming = Arrays.asList(
-                    new Histogram<>("length", "first_after"),
-                    new Histogram<>("length", "second_after"));
-        } else {
-            lengthHistogramsBeforeTrimming =
-                    Collections.singletonList(new Histogram<>("length", "before"));
-            lengthHistogramsAfterTrimming =
-                    Collections.singletonList(new Histogram<>("length", "after"));
-        }
-
-        // initialize the pipeline with the plugin descriptors
-        final CommandLineParser commandLineParser = getCommandLineParser();
-        pipeline = TrimAndFilterPipeline.fromPluginDescriptors(
-                commandLineParser.getPluginDescriptor(TrimmerPluginDescriptor.class),
-                commandLineParser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class));
+        // initialize the pipeline for the main thread; this also validates trimmers/filters
+        trimmingState.get();
 
         // get the writers
         final SAMFileHeader header = getHeaderForReads();
 
         // setup the writer
-        writer = outputBamArgumentCollection.outputWriter(header,
+        writer = orderedWriter(outputBamArgumentCollection.outputWriter(header,
                 () -> getProgramRecord(header), true, getReferenceFile()
-        );
+        ));
 
         if (keepDiscarded) {
-            discardedWriter = outputBamArgumentCollection.getWriterFactory()
+            discardedWriter = orderedWriter(outputBamArgumentCollection.getWriterFactory()
                     .setReferenceFile(getReferenceFile())
                     .createWriter(outputBamArgumentCollection
                                     .getOutputNameWithSuffix(RTDefaults.DISCARDED_OUTPUT_SUFFIX),
-                            getHeaderForReads(), true);
+                            getHeaderForReads(), true));
         } else {
             discardedWriter = new NullGATKWriter();
         }
     }
 
+    // creates the pipeline and histograms for a new thread
+    private synchronized TrimmingState newTrimmingState() {
+        // initialize the pipeline with the plugin descriptors
+        final CommandLineParser commandLineParser = getCommandLineParser();
+        final TrimmingState state = new TrimmingState(TrimAndFilterPipeline.fromPluginDescriptors(
+                commandLineParser.getPluginDescriptor(TrimmerPluginDescriptor.class),
+                commandLineParser.getPluginDescriptor(GATKReadFilterPluginDescriptor.class)),
+                isPaired());
+        allTrimmingStates.add(state);
+        return state;
+    }
+
+    /**
+     * Trimmers and filters are applied with a different pipeline in each thread, so reads could
+     * be processed by several threads.
+     */
+    @Override
+    protected boolean isApplyThreadSafe() {
+        return true;
+    }
+
     @Override
     protected void apply(final GATKRead read) {
         if (testRead(read, 0)) {
@@ -202,13 +205,15 @@ public final class TrimReads extends ReadToolsWalker {
 
     // test the read and updates the length histogram
     private boolean testRead(final GATKRead read, final int index) {
-        lengthHistogramsBeforeTrimming.get(index).increment(read.getLength());
-        return pipeline.test(read);
+        final TrimmingState state = trimmingState.get();
+        state.lengthHistogramsBeforeTrimming.get(index).increment(read.getLength());
+        return timeStage("trimAndFilter", () -> state.pipeline.test(read));
     }
 
     // write the read and updates the length histogram
     private void writePassing(final GATKRead passingRead, final int index) {
-        lengthHistogramsAfterTrimming.get(index).increment(passingRead.getLength());
+        trimmingState.get().lengthHistogramsAfterTrimming.get(index)
+                .increment(passingRead.getLength());
         // TODO: this should be moved to the default apply trimming result if it is not trimmed
         passingRead.clearAttribute(ReservedTags.ct);
         writer.addRead(passingRead);
@@ -226,21 +231,28 @@ public final class TrimReads extends ReadToolsWalker {
      */
     @Override
     public Object onTraversalSuccess() {
+        // merge the statistics from all the threads into the first one
+        final TrimmingState merged = allTrimmingStates.get(0);
+        allTrimmingStates.stream().skip(1).forEach(merged::merge);
+
         // TODO: maybe we should create a metric file per statistic
         final Path path = outputBamArgumentCollection.makeMetricsFile(null);
         try (final Writer metricsWriter = Files.newBufferedWriter(path)) {
             // trimer metrics with the header
             final MetricsFile<TrimmerMetric, Integer> trimming = getMetricsFile();
-            trimming.addAllMetrics(pipeline.getTrimmingStats());
+            trimming.addAllMetrics(merged.pipeline.getTrimmingStats());
             trimming.write(metricsWriter);
 
             // filter metrics with histogram without header
             final MetricsFile<FilterMetric, Integer> filtering = new MetricsFile<>();
-            filtering.addAllMetrics(pipeline.getFilterStats());
-            lengthHistogramsBeforeTrimming.forEach(filtering::addHistogram);
-            lengthHistogramsAfterTrimming.forEach(filtering::addHistogram);
+            filtering.addAllMetrics(merged.pipeline.getFilterStats());
+            merged.lengthHistogramsBeforeTrimming.forEach(filtering::addHistogram);
+            merged.lengthHistogramsAfterTrimming.forEach(filtering::addHistogram);
             filtering.write(metricsWriter);
 
+            // traversal metrics if requested
+            writeTraversalMetrics(metricsWriter);
+
         } catch (IOException e) {
             throw new UserException.CouldNotCreateOutputFile(path.toString(), e.getMessage(), e);
         }
@@ -253,4 +265,40 @@ public final class TrimReads extends ReadToolsWalker {
         ReadWriterFactory.closeWriter(writer);
         ReadWriterFactory.closeWriter(discardedWriter);
     }
+
+    // pipeline and length histograms used by a single thread
+    private static final class TrimmingState {
+        private final TrimAndFilterPipeline pipeline;
+        private final List<Histogram<Integer>> lengthHistogramsBeforeTrimming;
+        private final List<Histogram<Integer>> lengthHistogramsAfterTrimming;
+
+        private TrimmingState(final TrimAndFilterPipeline pipeline, final boolean isPaired) {
+            this.pipeline = pipeline;
+            // set the length histograms
+            if (isPaired) {
+                lengthHistogramsBeforeTrimming = Arrays.asList(
+                        new Histogram<>("length", "first_before"),
+                        new Histogram<>("length", "second_before"));
+                lengthHistogramsAfterTrimming = Arrays.asList(
+                        new Histogram<>("length", "first_after"),
+                        new Histogram<>("length", "second_after"));
+            } else {
+                lengthHistogramsBeforeTrimming =
+                        Collections.singletonList(new Histogram<>("length", "before"));
+                lengthHistogramsAfterTrimming =
+                        Collections.singletonList(new Histogram<>("length", "after"));
+            }
+        }
+
+        // adds the statistics from other state to this one
+        private void merge(final TrimmingState other) {
+            pipeline.mergeStats(other.pipeline);
+            for (int i = 0; i < lengthHistogramsBeforeTrimming.size(); i++) {
+                lengthHistogramsBeforeTrimming.get(i)
+                        .addHistogram(other.lengthHistogramsBeforeTrimming.get(i));
+                lengthHistogramsAfterTrimming.get(i)
+                        .addHistogram(other.lengthHistogramsAfterTrimming.get(i));
+            }
+        }
+    }
 }
@@ -0,0 +1,772 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import com.google.api.services.genomics.model.Read;
+import htsjdk.samtools.Cigar;
+import htsjdk.samtools.CigarElement;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFlag;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.TextCigarCodec;
+import htsjdk.samtools.util.Locatable;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Lightweight {@link GATKRead} for FASTQ sources, which stores the name, bases, qualities, flags
+ * and attributes in primitive fields instead of wrapping a {@link SAMRecord}. The behaviour of
+ * the methods is the same as in {@link SAMRecordToGATKReadAdapter}, and a new {@link SAMRecord}
+ * is created only when {@link #convertToSAMRecord(SAMFileHeader)} is called (e.g., for writing
+ * SAM/BAM/CRAM).
+ *
+ * Note: on creation, CompactFastqGATKRead are considered unmapped, but they support positions,
+ * mate information and cigar as any other read.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class CompactFastqGATKRead implements GATKRead, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // empty arrays shared by reads without bases/qualities
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    // initial capacity for the attributes (e.g., barcode, quality header and read group)
+    private static final int INITIAL_ATTRIBUTES_CAPACITY = 4;
+
+    private String name;
+    private byte[] bases;
+    private byte[] qualities;
+    private int flags;
+
+    // alignment information (only set if requested)
+    private String contig = null;
+    private int start = SAMRecord.NO_ALIGNMENT_START;
+    private String mateContig = null;
+    private int mateStart = SAMRecord.NO_ALIGNMENT_START;
+    private int fragmentLength = 0;
+    private int mappingQuality = SAMRecord.NO_MAPPING_QUALITY;
+    private Cigar cigar = null;
+
+    // inline attribute store: parallel arrays of tags and values (String, Integer or byte[])
+    private String[] attributeNames = null;
+    private Object[] attributeValues = null;
+    private int numberOfAttributes = 0;
+
+    /**
+     * Creates a read from the components of a FASTQ record.
+     *
+     * @param readName      the read name (without the '@' character).
+     * @param bases         the bases of the read.
+     * @param qualities     the qualities of the read (phred-scaled, without ASCII offset).
+     * @param qualityHeader the quality header (without the '+' character). May be {@code null}.
+     */
+    public CompactFastqGATKRead(final String readName, final byte[] bases,
+            final byte[] qualities, final String qualityHeader) {
+        this(readName, bases, qualities, qualityHeader, new FastqReadNameDecoder());
+    }
+
+    /**
+     * Creates a read from the components of a FASTQ record, using the provided decoder for the
+     * read name. Reads from the same source should share the decoder.
+     *
+     * @param readName      the read name (without the '@' character).
+     * @param bases         the bases of the read.
+     * @param qualities     the qualities of the read (phred-scaled, without ASCII offset).
+     * @param qualityHeader the quality header (without the '+' character). May be {@code null}.
+     * @param decoder       the decoder for the read name.
+     */
+    public CompactFastqGATKRead(final String readName, final byte[] bases,
+            final byte[] qualities, final String qualityHeader,
+            final FastqReadNameDecoder decoder) {
+        Utils.nonNull(readName, "null read name");
+        Utils.nonNull(decoder, "null decoder");
+        this.bases = (bases == null) ? EMPTY_BYTES : bases;
+        this.qualities = (qualities == null) ? EMPTY_BYTES : qualities;
+        this.flags = SAMFlag.READ_UNMAPPED.intValue();
+        // update the record with the read name information
+        decoder.updateReadFromReadName(this, readName);
+        // add the comments in the quality header to the comment if present
+        if (qualityHeader != null) {
+            // the default tag in the specs is CO
+            setAttribute(SAMTag.CO.name(), qualityHeader);
+        }
+        if (isPaired()) {
+            setMateIsUnmapped();
+        }
+    }
+
+    // copy constructor: deep copies the arrays if requested
+    private CompactFastqGATKRead(final CompactFastqGATKRead other, final boolean deep) {
+        this.name = other.name;
+        this.bases = deep ? other.bases.clone() : other.bases;
+        this.qualities = deep ? other.qualities.clone() : other.qualities;
+        this.flags = other.flags;
+        this.contig = other.contig;
+        this.start = other.start;
+        this.mateContig = other.mateContig;
+        this.mateStart = other.mateStart;
+        this.fragmentLength = other.fragmentLength;
+        this.mappingQuality = other.mappingQuality;
+        this.cigar = (deep && other.cigar != null)
+                ? new Cigar(other.cigar.getCigarElements()) : other.cigar;
+        // the attribute store is always copied, because it is modified in place
+        if (other.numberOfAttributes != 0) {
+            this.attributeNames = Arrays.copyOf(other.attributeNames, other.numberOfAttributes);
+            this.attributeValues = Arrays.copyOf(other.attributeValues, other.numberOfAttributes);
+            this.numberOfAttributes = other.numberOfAttributes;
+            if (deep) {
+                for (int i = 0; i < numberOfAttributes; i++) {
+                    if (attributeValues[i] instanceof byte[]) {
+                        attributeValues[i] = ((byte[]) attributeValues[i]).clone();
+                    }
+                }
+            }
+        }
+    }
+
+    ///////////////////////////////
+    // NAME AND POSITION
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void setName(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public int getLength() {
+        return bases.length;
+    }
+
+    @Override
+    public String getContig() {
+        return isUnmapped() ? null : contig;
+    }
+
+    @Override
+    public int getStart() {
+        return isUnmapped() ? SAMRecord.NO_ALIGNMENT_START : start;
+    }
+
+    @Override
+    public int getEnd() {
+        if (isUnmapped()) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        return start + getCigar().getReferenceLength() - 1;
+    }
+
+    @Override
+    public void setPosition(final String contig, final int start) {
+        validatePosition(contig, start);
+        this.contig = contig;
+        this.start = start;
+        setFlag(SAMFlag.READ_UNMAPPED, false);
+    }
+
+    @Override
+    public void setPosition(final Locatable locatable) {
+        Utils.nonNull(locatable, "Cannot set read position to null");
+        setPosition(locatable.getContig(), locatable.getStart());
+    }
+
+    @Override
+    public String getAssignedContig() {
+        return contig;
+    }
+
+    @Override
+    public int getAssignedStart() {
+        return start;
+    }
+
+    @Override
+    public int getUnclippedStart() {
+        if (isUnmapped()) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        int unclippedStart = start;
+        for (final CigarElement element : getCigarElements()) {
+            if (!element.getOperator().isClipping()) {
+                break;
+            }
+            unclippedStart -= element.getLength();
+        }
+        return unclippedStart;
+    }
+
+    @Override
+    public int getUnclippedEnd() {
+        if (isUnmapped()) {
+            return SAMRecord.NO_ALIGNMENT_START;
+        }
+        int unclippedEnd = getEnd();
+        final List<CigarElement> elements = getCigarElements();
+        for (int i = elements.size() - 1; i >= 0; i--) {
+            if (!elements.get(i).getOperator().isClipping()) {
+                break;
+            }
+            unclippedEnd += elements.get(i).getLength();
+        }
+        return unclippedEnd;
+    }
+
+    @Override
+    public String getMateContig() {
+        return (mateIsUnmapped()) ? null : mateContig;
+    }
+
+    @Override
+    public int getMateStart() {
+        return (mateIsUnmapped()) ? SAMRecord.NO_ALIGNMENT_START : mateStart;
+    }
+
+    @Override
+    public void setMatePosition(final String contig, final int start) {
+        validatePosition(contig, start);
+        // setting the mate position makes the read paired
+        setIsPaired(true);
+        this.mateContig = contig;
+        this.mateStart = start;
+        setFlag(SAMFlag.MATE_UNMAPPED, false);
+    }
+
+    @Override
+    public void setMatePosition(final Locatable locatable) {
+        Utils.nonNull(locatable, "Cannot set mate position to null");
+        setMatePosition(locatable.getContig(), locatable.getStart());
+    }
+
+    @Override
+    public int getFragmentLength() {
+        return fragmentLength;
+    }
+
+    @Override
+    public void setFragmentLength(final int fragmentLength) {
+        // may be negative if mate maps to lower position than read
+        this.fragmentLength = fragmentLength;
+    }
+
+    @Override
+    public int getMappingQuality() {
+        return mappingQuality;
+    }
+
+    @Override
+    public void setMappingQuality(final int mappingQuality) {
+        Utils.validateArg(mappingQuality >= 0 && mappingQuality <= 255,
+                "mapping quality must be >= 0 and <= 255");
+        this.mappingQuality = mappingQuality;
+    }
+
+    private static void validatePosition(final String contig, final int start) {
+        Utils.validateArg(contig != null && !contig.equals(SAMRecord.NO_ALIGNMENT_REFERENCE_NAME),
+                "contig must be non-null and not equal to "
+                        + SAMRecord.NO_ALIGNMENT_REFERENCE_NAME);
+        Utils.validateArg(start >= 1, "start must be >= 1");
+    }
+
+    ///////////////////////////////
+    // BASES AND QUALITIES
+
+    @Override
+    public byte[] getBases() {
+        return bases.clone();
+    }
+
+    @Override
+    public byte getBase(final int i) {
+        return bases[i];
+    }
+
+    @Override
+    public void setBases(final byte[] bases) {
+        this.bases = (bases == null) ? EMPTY_BYTES : bases;
+    }
+
+    @Override
+    public byte[] getBaseQualities() {
+        return qualities.clone();
+    }
+
+    /**
+     * Returns the base qualities without copying them, for in-place modification. Modified
+     * qualities should be non-negative.
+     */
+    public byte[] getBaseQualitiesNoCopy() {
+        return qualities;
+    }
+
+    @Override
+    public int getBaseQualityCount() {
+        return qualities.length;
+    }
+
+    @Override
+    public byte getBaseQuality(final int i) {
+        return qualities[i];
+    }
+
+    @Override
+    public void setBaseQualities(final byte[] baseQualities) {
+        if (baseQualities != null) {
+            for (final byte quality : baseQualities) {
+                Utils.validateArg(quality >= 0, "quality scores must be >= 0");
+            }
+        }
+        this.qualities = (baseQualities == null) ? EMPTY_BYTES : baseQualities;
+    }
+
+    ///////////////////////////////
+    // CIGAR
+
+    @Override
+    public Cigar getCigar() {
+        return (cigar == null) ? new Cigar() : cigar;
+    }
+
+    @Override
+    public List<CigarElement> getCigarElements() {
+        return getCigar().getCigarElements();
+    }
+
+    @Override
+    public CigarElement getCigarElement(final int index) {
+        return getCigar().getCigarElement(index);
+    }
+
+    @Override
+    public int numCigarElements() {
+        return (cigar == null) ? 0 : cigar.numCigarElements();
+    }
+
+    @Override
+    public void setCigar(final Cigar cigar) {
+        this.cigar = cigar;
+    }
+
+    @Override
+    public void setCigar(final String cigarString) {
+        this.cigar = (cigarString == null) ? null : TextCigarCodec.decode(cigarString);
+    }
+
+    ///////////////////////////////
+    // FLAGS
+
+    private boolean getFlag(final SAMFlag flag) {
+        return (flags & flag.intValue()) != 0;
+    }
+
+    private void setFlag(final SAMFlag flag, final boolean value) {
+        if (value) {
+            flags |= flag.intValue();
+        } else {
+            flags &= ~flag.intValue();
+        }
+    }
+
+    private void validatePaired() {
+        if (!isPaired()) {
+            throw new IllegalStateException("Cannot get mate information for an unpaired read");
+        }
+    }
+
+    @Override
+    public boolean isPaired() {
+        return getFlag(SAMFlag.READ_PAIRED);
+    }
+
+    @Override
+    public void setIsPaired(final boolean isPaired) {
+        setFlag(SAMFlag.READ_PAIRED, isPaired);
+        if (!isPaired) {
+            setFlag(SAMFlag.PROPER_PAIR, false);
+        }
+    }
+
+    @Override
+    public boolean isProperlyPaired() {
+        return isPaired() && getFlag(SAMFlag.PROPER_PAIR);
+    }
+
+    @Override
+    public void setIsProperlyPaired(final boolean isProperlyPaired) {
+        if (isProperlyPaired) {
+            setIsPaired(true);
+        }
+        setFlag(SAMFlag.PROPER_PAIR, isProperlyPaired);
+    }
+
+    @Override
+    public boolean isUnmapped() {
+        return getFlag(SAMFlag.READ_UNMAPPED) || contig == null
+                || start == SAMRecord.NO_ALIGNMENT_START;
+    }
+
+    @Override
+    public void setIsUnmapped() {
+        setFlag(SAMFlag.READ_UNMAPPED, true);
+    }
+
+    @Override
+    public boolean mateIsUnmapped() {
+        validatePaired();
+        return getFlag(SAMFlag.MATE_UNMAPPED) || mateContig == null
+                || mateStart == SAMRecord.NO_ALIGNMENT_START;
+    }
+
+    @Override
+    public void setMateIsUnmapped() {
+        validatePaired();
+        setFlag(SAMFlag.MATE_UNMAPPED, true);
+    }
+
+    @Override
+    public boolean isReverseStrand() {
+        return getFlag(SAMFlag.READ_REVERSE_STRAND);
+    }
+
+    @Override
+    public void setIsReverseStrand(final boolean isReverseStrand) {
+        setFlag(SAMFlag.READ_REVERSE_STRAND, isReverseStrand);
+    }
+
+    @Override
+    public boolean mateIsReverseStrand() {
+        validatePaired();
+        return getFlag(SAMFlag.MATE_REVERSE_STRAND);
+    }
+
+    @Override
+    public void setMateIsReverseStrand(final boolean mateIsReverseStrand) {
+        setIsPaired(true);
+        setFlag(SAMFlag.MATE_REVERSE_STRAND, mateIsReverseStrand);
+    }
+
+    @Override
+    public boolean isFirstOfPair() {
+        return isPaired() && getFlag(SAMFlag.FIRST_OF_PAIR);
+    }
+
+    @Override
+    public void setIsFirstOfPair() {
+        setIsPaired(true);
+        setFlag(SAMFlag.FIRST_OF_PAIR, true);
+        setFlag(SAMFlag.SECOND_OF_PAIR, false);
+    }
+
+    @Override
+    public boolean isSecondOfPair() {
+        return isPaired() && getFlag(SAMFlag.SECOND_OF_PAIR);
+    }
+
+    @Override
+    public void setIsSecondOfPair() {
+        setIsPaired(true);
+        setFlag(SAMFlag.FIRST_OF_PAIR, false);
+        setFlag(SAMFlag.SECOND_OF_PAIR, true);
+    }
+
+    @Override
+    public boolean isSecondaryAlignment() {
+        return getFlag(SAMFlag.NOT_PRIMARY_ALIGNMENT);
+    }
+
+    @Override
+    public void setIsSecondaryAlignment(final boolean isSecondaryAlignment) {
+        setFlag(SAMFlag.NOT_PRIMARY_ALIGNMENT, isSecondaryAlignment);
+    }
+
+    @Override
+    public boolean isSupplementaryAlignment() {
+        return getFlag(SAMFlag.SUPPLEMENTARY_ALIGNMENT);
+    }
+
+    @Override
+    public void setIsSupplementaryAlignment(final boolean isSupplementaryAlignment) {
+        setFlag(SAMFlag.SUPPLEMENTARY_ALIGNMENT, isSupplementaryAlignment);
+    }
+
+    @Override
+    public boolean failsVendorQualityCheck() {
+        return getFlag(SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK);
+    }
+
+    @Override
+    public void setFailsVendorQualityCheck(final boolean failsVendorQualityCheck) {
+        setFlag(SAMFlag.READ_FAILS_VENDOR_QUALITY_CHECK, failsVendorQualityCheck);
+    }
+
+    @Override
+    public boolean isDuplicate() {
+        return getFlag(SAMFlag.DUPLICATE_READ);
+    }
+
+    @Override
+    public void setIsDuplicate(final boolean isDuplicate) {
+        setFlag(SAMFlag.DUPLICATE_READ, isDuplicate);
+    }
+
+    ///////////////////////////////
+    // ATTRIBUTES
+
+    @Override
+    public String getReadGroup() {
+        return (String) getAttribute(SAMTag.RG.name());
+    }
+
+    @Override
+    public void setReadGroup(final String readGroupID) {
+        setAttributeValue(SAMTag.RG.name(), readGroupID);
+    }
+
+    @Override
+    public boolean hasAttribute(final String attributeName) {
+        return indexOfAttribute(attributeName) != -1;
+    }
+
+    @Override
+    public Integer getAttributeAsInteger(final String attributeName) {
+        final Object value = getAttribute(attributeName);
+        if (value == null || value instanceof Integer) {
+            return (Integer) value;
+        }
+        throw new GATKException.ReadAttributeTypeMismatch(attributeName, "integer");
+    }
+
+    @Override
+    public String getAttributeAsString(final String attributeName) {
+        final Object value = getAttribute(attributeName);
+        if (value instanceof byte[]) {
+            return new String((byte[]) value, StandardCharsets.US_ASCII);
+        }
+        return (value == null) ? null : value.toString();
+    }
+
+    @Override
+    public byte[] getAttributeAsByteArray(final String attributeName) {
+        final Object value = getAttribute(attributeName);
+        if (value instanceof String) {
+            return ((String) value).getBytes(StandardCharsets.US_ASCII);
+        } else if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        throw new GATKException.ReadAttributeTypeMismatch(attributeName, "byte array");
+    }
+
+    @Override
+    public void setAttribute(final String attributeName, final Integer attributeValue) {
+        setAttributeValue(attributeName, attributeValue);
+    }
+
+    @Override
+    public void setAttribute(final String attributeName, final String attributeValue) {
+        setAttributeValue(attributeName, attributeValue);
+    }
+
+    @Override
+    public void setAttribute(final String attributeName, final byte[] attributeValue) {
+        setAttributeValue(attributeName, attributeValue);
+    }
+
+    @Override
+    public void clearAttribute(final String attributeName) {
+        final int index = indexOfAttribute(attributeName);
+        if (index != -1) {
+            numberOfAttributes--;
+            System.arraycopy(attributeNames, index + 1, attributeNames, index,
+                    numberOfAttributes - index);
+            System.arraycopy(attributeValues, index + 1, attributeValues, index,
+                    numberOfAttributes - index);
+            attributeNames[numberOfAttributes] = null;
+            attributeValues[numberOfAttributes] = null;
+        }
+    }
+
+    @Override
+    public void clearAttributes() {
+        attributeNames = null;
+        attributeValues = null;
+        numberOfAttributes = 0;
+    }
+
+    private int indexOfAttribute(final String attributeName) {
+        for (int i = 0; i < numberOfAttributes; i++) {
+            if (attributeNames[i].equals(attributeName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Object getAttribute(final String attributeName) {
+        final int index = indexOfAttribute(attributeName);
+        return (index == -1) ? null : attributeValues[index];
+    }
+
+    // null values remove the attribute
+    private void setAttributeValue(final String attributeName, final Object value) {
+        Utils.validateArg(attributeName != null && attributeName.length() == 2,
+                "Attribute names must be 2 characters long");
+        if (value == null) {
+            clearAttribute(attributeName);
+            return;
+        }
+        final int index = indexOfAttribute(attributeName);
+        if (index != -1) {
+            attributeValues[index] = value;
+            return;
+        }
+        if (attributeNames == null) {
+            attributeNames = new String[INITIAL_ATTRIBUTES_CAPACITY];
+            attributeValues = new Object[INITIAL_ATTRIBUTES_CAPACITY];
+        } else if (numberOfAttributes == attributeNames.length) {
+            attributeNames = Arrays.copyOf(attributeNames, numberOfAttributes * 2);
+            attributeValues = Arrays.copyOf(attributeValues, numberOfAttributes * 2);
+        }
+        attributeNames[numberOfAttributes] = attributeName;
+        attributeValues[numberOfAttributes++] = value;
+    }
+
+    ///////////////////////////////
+    // COPY AND CONVERSION
+
+    @Override
+    public GATKRead copy() {
+        return new CompactFastqGATKRead(this, false);
+    }
+
+    @Override
+    public GATKRead deepCopy() {
+        return new CompactFastqGATKRead(this, true);
+    }
+
+    /**
+     * Creates a new {@link SAMRecord} with the information in this read. Changes in the returned
+     * record are not reflected in this read.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public SAMRecord convertToSAMRecord(final SAMFileHeader header) {
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName(name);
+        // copies to do not share the arrays with this read
+        record.setReadBases(bases.clone());
+        record.setBaseQualities(qualities.clone());
+        record.setFlags(flags);
+        if (contig != null) {
+            record.setReferenceName(contig);
+        }
+        record.setAlignmentStart(start);
+        if (mateContig != null) {
+            record.setMateReferenceName(mateContig);
+        }
+        record.setMateAlignmentStart(mateStart);
+        record.setInferredInsertSize(fragmentLength);
+        record.setMappingQuality(mappingQuality);
+        if (cigar != null) {
+            record.setCigar(cigar);
+        }
+        for (int i = 0; i < numberOfAttributes; i++) {
+            record.setAttribute(attributeNames[i], attributeValues[i]);
+        }
+        return record;
+    }
+
+    @Override
+    public Read convertToGoogleGenomicsRead() {
+        return new SAMRecordToGATKReadAdapter(convertToSAMRecord(null))
+                .convertToGoogleGenomicsRead();
+    }
+
+    @Override
+    public String getSAMString() {
+        return convertToSAMRecord(null).getSAMString();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final CompactFastqGATKRead other = (CompactFastqGATKRead) o;
+        return flags == other.flags && start == other.start && mateStart == other.mateStart
+                && fragmentLength == other.fragmentLength
+                && mappingQuality == other.mappingQuality
+                && Objects.equals(name, other.name)
+                && Arrays.equals(bases, other.bases)
+                && Arrays.equals(qualities, other.qualities)
+                && Objects.equals(contig, other.contig)
+                && Objects.equals(mateContig, other.mateContig)
+                && getCigar().equals(other.getCigar())
+                && attributesEquals(other);
+    }
+
+    // the order of the attributes is not important
+    private boolean attributesEquals(final CompactFastqGATKRead other) {
+        if (numberOfAttributes != other.numberOfAttributes) {
+            return false;
+        }
+        for (int i = 0; i < numberOfAttributes; i++) {
+            final Object otherValue = other.getAttribute(attributeNames[i]);
+            if (!Objects.deepEquals(attributeValues[i], otherValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Objects.hashCode(name);
+        result = 31 * result + Arrays.hashCode(bases);
+        result = 31 * result + Arrays.hashCode(qualities);
+        result = 31 * result + flags;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return commonToString();
+    }
+}
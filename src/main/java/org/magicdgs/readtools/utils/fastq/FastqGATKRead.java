@@ -57,18 +57,32 @@ public class FastqGATKRead extends SAMRecordToGATKReadAdapter {
      * @param record the record to use as GATKRead.
      */
     public FastqGATKRead(final SAMFileHeader header, final FastqRecord record) {
+        this(header, Utils.nonNull(record, "null record").getReadName(), record.getReadBases(),
+                record.getBaseQualities(), record.getBaseQualityHeader());
+    }
+
+    /**
+     * Creates a GATKRead from the components of a FASTQ record and a header.
+     *
+     * @param header        the header for the record.
+     * @param readName      the read name (without the '@' character).
+     * @param bases         the bases of the read.
+     * @param qualities     the qualities of the read (phred-scaled, without ASCII offset).
+     * @param qualityHeader the quality header (without the '+' character). May be {@code null}.
+     */
+    public FastqGATKRead(final SAMFileHeader header, final String readName, final byte[] bases,
+            final byte[] qualities, final String qualityHeader) {
         super(new SAMRecord(header));
-        Utils.nonNull(record, "null record");
+        Utils.nonNull(readName, "null read name");
         // update the record with the read name information
-        FastqReadNameEncoding.updateReadFromReadName(this, record.getReadName());
+        FastqReadNameEncoding.updateReadFromReadName(this, readName);
         // set the bases and the qualities
-        this.setBases(record.getReadBases());
-        this.setBaseQualities(record.getBaseQualities());
+        this.setBases(bases);
+        this.setBaseQualities(qualities);
         // add the comments in the quality header to the comment if present
-        final String baseQualHeader = record.getBaseQualityHeader();
-        if (baseQualHeader != null) {
+        if (qualityHeader != null) {
             // the default tag in the specs is CO
-            this.setAttribute(SAMTag.CO.toString(), baseQualHeader);
+            this.setAttribute(SAMTag.CO.toString(), qualityHeader);
         }
         this.setIsUnmapped();
         if (this.isPaired()) {
@@ -0,0 +1,393 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import htsjdk.samtools.util.CloserUtil;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reader for FASTQ files which parses the records directly from a byte buffer into
+ * {@link CompactFastqGATKRead}, without creating intermediate Strings for the lines.
+ *
+ * The record boundaries are found by looking for new lines in the buffer, and the name, bases,
+ * qualities and quality header are sliced out of it. Blank lines between records are skipped, and
+ * both Unix and Windows new lines are supported.
+ *
+ * In addition, {@link #findRecordStart(byte[], int, int)} and
+ * {@link #parseChunk(byte[], int, int, int, String)} allow to parse records from any region of a
+ * FASTQ file, synchronizing to the first record boundary. Thus, chunks of the same file could be
+ * parsed by different threads.
+ *
+ * Note: multi-line FASTQ records are not supported.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class FastqGATKReader implements Iterator<GATKRead>, Iterable<GATKRead>, Closeable {
+
+    /** Default size for the buffer (1 MB). */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // ASCII offset for the FASTQ qualities
+    private static final int FASTQ_QUALITY_OFFSET = 33;
+    // maximum quality allowed (printable characters)
+    private static final int MAX_PHRED_SCORE = '~' - FASTQ_QUALITY_OFFSET;
+
+    private final InputStream input;
+    private final String source;
+
+    // buffer with the data and the region which is not parsed yet
+    private byte[] buffer;
+    private int start = 0;
+    private int end = 0;
+    // position in the input of the first byte in the buffer (for error messages)
+    private long bufferPosition = 0;
+    private boolean endOfInput = false;
+
+    // cached array for the line ends of the record
+    private final int[] lineEnds = new int[4];
+
+    // decoder for the read names in this source
+    private final FastqReadNameDecoder nameDecoder = new FastqReadNameDecoder();
+
+    // next record
+    private GATKRead next = null;
+
+    /**
+     * Creates a reader with the default buffer size.
+     *
+     * @param input  the stream with the FASTQ data (already decompressed).
+     * @param source description of the source for error messages.
+     */
+    public FastqGATKReader(final InputStream input, final String source) {
+        this(input, source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader.
+     *
+     * @param input      the stream with the FASTQ data (already decompressed).
+     * @param source     description of the source for error messages.
+     * @param bufferSize initial size of the buffer. It grows if a record does not fit on it.
+     */
+    public FastqGATKReader(final InputStream input, final String source, final int bufferSize) {
+        Utils.nonNull(input, "null input");
+        Utils.nonNull(source, "null source");
+        Utils.validateArg(bufferSize > 0, "buffer size should be positive");
+        this.input = input;
+        this.source = source;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNextRecord();
+            } catch (final IOException e) {
+                throw new UserException.CouldNotReadInputFile(source, e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public GATKRead next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next() called when !hasNext()");
+        }
+        final GATKRead toReturn = next;
+        next = null;
+        return toReturn;
+    }
+
+    @Override
+    public Iterator<GATKRead> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        CloserUtil.close(input);
+    }
+
+    // parses the next record from the buffer, reading more data if necessary
+    private GATKRead readNextRecord() throws IOException {
+        if (!skipBlankLines()) {
+            return null;
+        }
+        int found;
+        while ((found = findLineEnds(buffer, start, end, lineEnds)) != lineEnds.length) {
+            if (endOfInput) {
+                // the last line may not have a new line character
+                if (found != lineEnds.length - 1) {
+                    throw malformed("truncated record", source, bufferPosition + start);
+                }
+                lineEnds[found] = end;
+                break;
+            }
+            fill();
+        }
+        final GATKRead read = parseRecord(buffer, start, lineEnds, source,
+                bufferPosition + start, nameDecoder);
+        start = Math.min(lineEnds[3] + 1, end);
+        return read;
+    }
+
+    // skips the empty lines before a record; returns false if there is no more data
+    private boolean skipBlankLines() throws IOException {
+        while (true) {
+            while (start < end && (buffer[start] == '\n' || buffer[start] == '\r')) {
+                start++;
+            }
+            if (start < end) {
+                return true;
+            }
+            if (endOfInput) {
+                return false;
+            }
+            fill();
+        }
+    }
+
+    // moves the unparsed data to the beginning of the buffer (or grows it if full) and reads more
+    private void fill() throws IOException {
+        if (start != 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            bufferPosition += start;
+            end -= start;
+            start = 0;
+        } else if (end == buffer.length) {
+            // the record does not fit in the buffer
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        final int read = input.read(buffer, end, buffer.length - end);
+        if (read == -1) {
+            endOfInput = true;
+        } else {
+            end += read;
+        }
+    }
+
+    /**
+     * Finds the start of the first FASTQ record in a region of a buffer. A record starts at the
+     * beginning of a line with '@', followed by the sequence line, a line starting with '+' and a
+     * quality line of the same length as the sequence. This allows to synchronize with the record
+     * boundaries at any offset of a FASTQ file.
+     *
+     * @param buffer buffer with FASTQ data.
+     * @param from   first position to look for a record. If it is 0, it is considered the
+     *               beginning of a line; otherwise, the previous byte should be a new line.
+     * @param limit  end of the data in the buffer (exclusive). It is considered the end of the
+     *               input if the last line of a record is not complete.
+     *
+     * @return the position of the first record start; {@code -1} if there is no record start which
+     * could be validated before the limit.
+     */
+    public static int findRecordStart(final byte[] buffer, final int from, final int limit) {
+        Utils.nonNull(buffer, "null buffer");
+        Utils.validateArg(from >= 0 && from <= limit && limit <= buffer.length,
+                "invalid region for buffer");
+        final int[] ends = new int[4];
+        int lineStart = from;
+        if (from != 0 && buffer[from - 1] != '\n') {
+            lineStart = indexOf(buffer, '\n', from, limit) + 1;
+            if (lineStart == 0) {
+                return -1;
+            }
+        }
+        while (lineStart < limit) {
+            if (buffer[lineStart] == '@') {
+                final int found = findLineEnds(buffer, lineStart, limit, ends);
+                if (found < ends.length - 1) {
+                    // not enough lines to validate the record
+                    return -1;
+                } else if (found == ends.length - 1) {
+                    ends[found] = limit;
+                }
+                if (isValidRecord(buffer, lineStart, ends)) {
+                    return lineStart;
+                }
+            }
+            lineStart = indexOf(buffer, '\n', lineStart, limit) + 1;
+            if (lineStart == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses all the records starting in a region of a buffer. The first record is found with
+     * {@link #findRecordStart(byte[], int, int)}, and the last record is the last one starting
+     * before the end of the region. Thus, adjacent regions of the same buffer parse every record
+     * once, even if a record starts in one region and ends in the next one.
+     *
+     * @param buffer buffer with FASTQ data.
+     * @param from   start of the region (inclusive).
+     * @param to     end of the region (exclusive); records starting after it are not parsed.
+     * @param limit  end of the data in the buffer (exclusive). The last record starting before
+     *               {@code to} should end before it, or it is considered the end of the input.
+     * @param source description of the source for error messages.
+     *
+     * @return list of reads parsed from the region.
+     */
+    public static List<GATKRead> parseChunk(final byte[] buffer, final int from, final int to,
+            final int limit, final String source) {
+        Utils.validateArg(to >= from && to <= limit, "invalid region for chunk");
+        final List<GATKRead> reads = new ArrayList<>();
+        final int[] ends = new int[4];
+        final FastqReadNameDecoder nameDecoder = new FastqReadNameDecoder();
+        int recordStart = findRecordStart(buffer, from, limit);
+        while (recordStart != -1 && recordStart < to) {
+            final int found = findLineEnds(buffer, recordStart, limit, ends);
+            if (found < ends.length - 1) {
+                throw malformed("truncated record", source, recordStart);
+            } else if (found == ends.length - 1) {
+                ends[found] = limit;
+            }
+            reads.add(parseRecord(buffer, recordStart, ends, source, recordStart, nameDecoder));
+            // skip blank lines
+            recordStart = ends[3] + 1;
+            while (recordStart < limit
+                    && (buffer[recordStart] == '\n' || buffer[recordStart] == '\r')) {
+                recordStart++;
+            }
+            if (recordStart >= limit) {
+                recordStart = -1;
+            }
+        }
+        return reads;
+    }
+
+    // finds the position of the new lines for the record starting at offset
+    // returns the number of lines found (up to the length of the array)
+    private static int findLineEnds(final byte[] buffer, final int offset, final int limit,
+            final int[] ends) {
+        int found = 0;
+        int position = offset;
+        while (found < ends.length) {
+            position = indexOf(buffer, '\n', position, limit);
+            if (position == -1) {
+                break;
+            }
+            ends[found++] = position++;
+        }
+        return found;
+    }
+
+    // returns the index of the first byte in the region; -1 if not found
+    private static int indexOf(final byte[] buffer, final byte value, final int from,
+            final int limit) {
+        for (int i = from; i < limit; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // returns the end of the line excluding the carriage return if present
+    private static int trimCarriageReturn(final byte[] buffer, final int lineStart,
+            final int lineEnd) {
+        return (lineEnd > lineStart && buffer[lineEnd - 1] == '\r') ? lineEnd - 1 : lineEnd;
+    }
+
+    // check if the lines delimited by ends are a valid record (without parsing)
+    private static boolean isValidRecord(final byte[] buffer, final int offset,
+            final int[] ends) {
+        final int qualityHeaderStart = ends[1] + 1;
+        if (buffer[offset] != '@' || qualityHeaderStart >= ends[2]
+                || buffer[qualityHeaderStart] != '+') {
+            return false;
+        }
+        final int basesStart = ends[0] + 1;
+        final int qualitiesStart = ends[2] + 1;
+        return trimCarriageReturn(buffer, basesStart, ends[1]) - basesStart
+                == trimCarriageReturn(buffer, qualitiesStart, ends[3]) - qualitiesStart;
+    }
+
+    // parses the record delimited by the line ends
+    private static GATKRead parseRecord(final byte[] buffer, final int offset, final int[] ends,
+            final String source, final long position, final FastqReadNameDecoder nameDecoder) {
+        if (buffer[offset] != '@') {
+            throw malformed("missing sequence header", source, position);
+        }
+        final int basesStart = ends[0] + 1;
+        final int basesEnd = trimCarriageReturn(buffer, basesStart, ends[1]);
+        final int qualityHeaderStart = ends[1] + 1;
+        if (qualityHeaderStart >= ends[2] || buffer[qualityHeaderStart] != '+') {
+            throw malformed("missing quality header", source, position);
+        }
+        final int qualityHeaderEnd = trimCarriageReturn(buffer, qualityHeaderStart, ends[2]);
+        final int qualitiesStart = ends[2] + 1;
+        final int qualitiesEnd = trimCarriageReturn(buffer, qualitiesStart, ends[3]);
+        final int length = basesEnd - basesStart;
+        if (qualitiesEnd - qualitiesStart != length) {
+            throw malformed("sequence and quality line must be the same length", source,
+                    position);
+        }
+
+        // slice the record
+        final String readName = new String(buffer, offset + 1,
+                trimCarriageReturn(buffer, offset, ends[0]) - offset - 1,
+                StandardCharsets.US_ASCII);
+        final byte[] bases = Arrays.copyOfRange(buffer, basesStart, basesEnd);
+        final byte[] qualities = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final int quality = buffer[qualitiesStart + i] - FASTQ_QUALITY_OFFSET;
+            if (quality < 0 || quality > MAX_PHRED_SCORE) {
+                throw malformed("invalid quality character '" + (char) buffer[qualitiesStart + i]
+                        + "'", source, position);
+            }
+            qualities[i] = (byte) quality;
+        }
+        // the quality header is null if there is nothing after the '+'
+        final String qualityHeader = (qualityHeaderEnd - qualityHeaderStart > 1)
+                ? new String(buffer, qualityHeaderStart + 1,
+                qualityHeaderEnd - qualityHeaderStart - 1, StandardCharsets.US_ASCII)
+                : null;
+
+        return new CompactFastqGATKRead(readName, bases, qualities, qualityHeader, nameDecoder);
+    }
+
+    // creates an exception for a malformed record
+    private static UserException malformed(final String message, final String source,
+            final long position) {
+        return new UserException.MalformedFile(String.format(
+                "Malformed FASTQ record in %s at byte %d: %s", source, position, message));
+    }
+}
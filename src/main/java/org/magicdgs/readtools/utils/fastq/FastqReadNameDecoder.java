@@ -0,0 +1,212 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.magicdgs.readtools.RTDefaults;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+/**
+ * Decoder for the read names of a single FASTQ source, equivalent to
+ * {@link FastqReadNameEncoding#updateReadFromReadName(GATKRead, String)} but faster.
+ *
+ * The encoding is detected with the regular expressions in {@link FastqReadNameEncoding} for the
+ * first records, and locked in if all of them have the same encoding. After that, each read name
+ * is decoded in a single pass by a hand-written scanner for the locked encoding, which extracts
+ * the name, pair state, PF flag and barcodes at once. If the scanner cannot decode a read name
+ * (or the encoding is not locked), it falls back to {@link FastqReadNameEncoding}, so the result
+ * is always the same.
+ *
+ * Note: this class is not thread-safe, and should be used by a single reader.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class FastqReadNameDecoder {
+
+    private static final Logger logger = LogManager.getLogger(FastqReadNameDecoder.class);
+
+    /** Number of records used to detect the encoding. */
+    public static final int DETECTION_RECORDS = 100;
+
+    private static final String[] NO_BARCODES = new String[0];
+
+    // encoding detected for the first records; null if not detected yet or mixed encodings
+    private FastqReadNameEncoding encoding = null;
+    private int detectedRecords = 0;
+    private boolean locked = false;
+
+    /** Creates a new decoder, which detects the encoding from the first read names. */
+    public FastqReadNameDecoder() { }
+
+    /**
+     * Updates the read from the read name in the same way as
+     * {@link FastqReadNameEncoding#updateReadFromReadName(GATKRead, String)}.
+     *
+     * @param read     the read to update.
+     * @param readName the read name from a FASTQ file.
+     */
+    public void updateReadFromReadName(final GATKRead read, final String readName) {
+        if (!locked) {
+            detect(readName);
+        } else if (encoding == FastqReadNameEncoding.CASAVA && decodeCasava(read, readName)) {
+            return;
+        } else if (encoding == FastqReadNameEncoding.ILLUMINA
+                && decodeIllumina(read, readName)) {
+            return;
+        }
+        // fallback to the regular expressions
+        FastqReadNameEncoding.updateReadFromReadName(read, readName);
+    }
+
+    /** Returns the locked encoding; {@code null} if it is not locked or not unique. */
+    public FastqReadNameEncoding getLockedEncoding() {
+        return (locked) ? encoding : null;
+    }
+
+    // detects the encoding for the read name and locks it after the detection records
+    private void detect(final String readName) {
+        final FastqReadNameEncoding detected = FastqReadNameEncoding.detectEncoding(readName);
+        if (detectedRecords == 0) {
+            encoding = detected;
+        } else if (encoding != detected) {
+            encoding = null;
+        }
+        if (++detectedRecords == DETECTION_RECORDS || encoding == null) {
+            locked = true;
+            logger.debug("Locked read name encoding: {}", encoding);
+        }
+    }
+
+    /**
+     * Decodes a CASAVA read name. The regular expression for {@link FastqReadNameEncoding#CASAVA}
+     * matches at the beginning of the name if and only if this method decodes it.
+     *
+     * @return {@code true} if the read name was decoded; {@code false} otherwise.
+     */
+    private static boolean decodeCasava(final GATKRead read, final String readName) {
+        final int length = readName.length();
+        // read name until the first white-space
+        int i = 0;
+        while (i < length && !isWhitespace(readName.charAt(i))) {
+            i++;
+        }
+        if (i == 0 || i == length) {
+            return false;
+        }
+        final int nameEnd = i;
+        while (i < length && isWhitespace(readName.charAt(i))) {
+            i++;
+        }
+        // pair state and PF flag: '[012]:[YN]:'
+        if (i + 4 > length) {
+            return false;
+        }
+        final char pairState = readName.charAt(i);
+        final char pf = readName.charAt(i + 2);
+        if (pairState < '0' || pairState > '2' || readName.charAt(i + 1) != ':'
+                || (pf != 'Y' && pf != 'N') || readName.charAt(i + 3) != ':') {
+            return false;
+        }
+        // numeric field: '[0-9]+:'
+        i += 4;
+        final int numberStart = i;
+        while (i < length && readName.charAt(i) >= '0' && readName.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == numberStart || i == length || readName.charAt(i) != ':') {
+            return false;
+        }
+        // barcode: '[ATCGN]+'
+        final int barcodeStart = ++i;
+        while (i < length && isBarcodeBase(readName.charAt(i))) {
+            i++;
+        }
+        if (i == barcodeStart) {
+            return false;
+        }
+        FastqReadNameEncoding.updateRead(read, readName.substring(0, nameEnd), pairState,
+                pf == 'Y', readName.substring(barcodeStart, i)
+                        .split(RTDefaults.BARCODE_INDEX_DELIMITER));
+        return true;
+    }
+
+    /**
+     * Decodes an ILLUMINA read name without white-spaces (otherwise, the CASAVA encoding may
+     * match). The regular expression for {@link FastqReadNameEncoding#ILLUMINA} matches at the
+     * beginning of the name if and only if this method decodes it.
+     *
+     * @return {@code true} if the read name was decoded; {@code false} otherwise.
+     */
+    private static boolean decodeIllumina(final GATKRead read, final String readName) {
+        final int length = readName.length();
+        for (int i = 0; i < length; i++) {
+            if (isWhitespace(readName.charAt(i))) {
+                return false;
+            }
+        }
+        // read name until the barcode or pair-end delimiter
+        int i = 0;
+        while (i < length && readName.charAt(i) != '#' && readName.charAt(i) != '/') {
+            i++;
+        }
+        if (i == 0) {
+            return false;
+        }
+        final int nameEnd = i;
+        // barcode: '#[^/]+'
+        String[] barcodes = NO_BARCODES;
+        if (i < length && readName.charAt(i) == '#') {
+            int barcodeEnd = i + 1;
+            while (barcodeEnd < length && readName.charAt(barcodeEnd) != '/') {
+                barcodeEnd++;
+            }
+            if (barcodeEnd != i + 1) {
+                barcodes = readName.substring(i + 1, barcodeEnd)
+                        .split(RTDefaults.BARCODE_INDEX_DELIMITER);
+                i = barcodeEnd;
+            }
+        }
+        // pair state: '/[012]'
+        char pairState = '0';
+        if (i + 1 < length && readName.charAt(i) == '/'
+                && readName.charAt(i + 1) >= '0' && readName.charAt(i + 1) <= '2') {
+            pairState = readName.charAt(i + 1);
+        }
+        FastqReadNameEncoding.updateRead(read, readName.substring(0, nameEnd), pairState,
+                false, barcodes);
+        return true;
+    }
+
+    // white-space as in the regular expressions (\s)
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isBarcodeBase(final char c) {
+        return c == 'A' || c == 'T' || c == 'C' || c == 'G' || c == 'N';
+    }
+}
@@ -204,33 +204,57 @@ public enum FastqReadNameEncoding {
      * @param readName the read name from a FASTQ file.
      */
     public static void updateReadFromReadName(final GATKRead read, final String readName) {
-        // gets the firt encoding that match, in the order of the enum
-        final FastqReadNameEncoding encoding = Arrays.stream(FastqReadNameEncoding.values())
-                .filter(e -> e.pattern.matcher(readName).find())
-                .findFirst().orElse(null);
+        final FastqReadNameEncoding encoding = detectEncoding(readName);
         if (encoding == null) {
             throw new GATKException.ShouldNeverReachHereException("Encoding should not be null.");
         } else {
             logger.debug("Detected encoding: {}", encoding);
-            read.setName(encoding.getPlainName(readName));
-            final String pairState = encoding.getPairedState(readName);
-            switch (pairState) {
-                case "0":
-                    read.setIsPaired(false);
-                    break;
-                case "1":
-                    read.setIsFirstOfPair();
-                    break;
-                case "2":
-                    read.setIsSecondOfPair();
-                    break;
-                default:
-                    throw new GATKException.ShouldNeverReachHereException(
-                            "Incorrect detection of pair-state: " + pairState);
-            }
-            read.setFailsVendorQualityCheck(encoding.isPF(readName));
-            RTReadUtils.addBarcodesTagToRead(read, encoding.getBarcodes(readName));
+            updateRead(read, encoding.getPlainName(readName),
+                    encoding.getPairedState(readName).charAt(0), encoding.isPF(readName),
+                    encoding.getBarcodes(readName));
         }
     }
 
+    /**
+     * Detects the encoding for the read name.
+     *
+     * @param readName the read name from a FASTQ file.
+     *
+     * @return the first encoding that matches, in the order of the enum; {@code null} if none.
+     */
+    static FastqReadNameEncoding detectEncoding(final String readName) {
+        return Arrays.stream(FastqReadNameEncoding.values())
+                .filter(e -> e.pattern.matcher(readName).find())
+                .findFirst().orElse(null);
+    }
+
+    /**
+     * Updates the read with the information decoded from the read name.
+     *
+     * @param read      the read to update.
+     * @param plainName the read name without barcode or pair-end information.
+     * @param pairState the pair state ('0', '1' or '2').
+     * @param pf        the PF flag.
+     * @param barcodes  the barcodes in the read name.
+     */
+    static void updateRead(final GATKRead read, final String plainName, final char pairState,
+            final boolean pf, final String[] barcodes) {
+        read.setName(plainName);
+        switch (pairState) {
+            case '0':
+                read.setIsPaired(false);
+                break;
+            case '1':
+                read.setIsFirstOfPair();
+                break;
+            case '2':
+                read.setIsSecondOfPair();
+                break;
+            default:
+                throw new GATKException.ShouldNeverReachHereException(
+                        "Incorrect detection of pair-state: " + pairState);
+        }
+        read.setFailsVendorQualityCheck(pf);
+        RTReadUtils.addBarcodesTagToRead(read, barcodes);
+    }
 }
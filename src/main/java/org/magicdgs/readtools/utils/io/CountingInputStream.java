@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Input stream which adds the number of bytes read or skipped to a counter, which could be
+ * shared by several streams (e.g., to report the bytes consumed from all the inputs).
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class CountingInputStream extends FilterInputStream {
+
+    private final LongAdder counter;
+
+    /**
+     * Constructor.
+     *
+     * @param in      the stream to wrap.
+     * @param counter the counter for the bytes read.
+     */
+    public CountingInputStream(final InputStream in, final LongAdder counter) {
+        super(Utils.nonNull(in, "null stream"));
+        this.counter = Utils.nonNull(counter, "null counter");
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int value = in.read();
+        if (value != -1) {
+            counter.increment();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int read = in.read(b, off, len);
+        if (read > 0) {
+            counter.add(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = in.skip(n);
+        if (skipped > 0) {
+            counter.add(skipped);
+        }
+        return skipped;
+    }
+
+    // mark/reset would count twice the bytes read again
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream for a local file which maps the file into memory in windows, instead of reading
+ * it with system calls. This avoids the intermediate copies of a buffered file stream, and the
+ * operating system page cache is used directly for repeated reads over the same file.
+ *
+ * Windows are mapped sequentially, and only the current one is referenced by the stream.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class MappedFileInputStream extends InputStream {
+
+    /** Default window size (256 MB). */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+
+    // current window and the position in the file of the next window
+    private MappedByteBuffer window = null;
+    private long nextWindowPosition = 0;
+
+    /**
+     * Opens a stream with the default window size.
+     *
+     * @param path the local file to read.
+     */
+    public MappedFileInputStream(final Path path) throws IOException {
+        this(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens a stream.
+     *
+     * @param path       the local file to read.
+     * @param windowSize the size of each mapped window.
+     */
+    public MappedFileInputStream(final Path path, final int windowSize) throws IOException {
+        Utils.nonNull(path, "null path");
+        Utils.validateArg(windowSize > 0, "window size should be positive");
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int toCopy = Math.min(len, window.remaining());
+        window.get(b, off, toCopy);
+        return toCopy;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        final long current = currentPosition();
+        final long skipped = Math.min(n, fileSize - current);
+        if (window != null && skipped <= window.remaining()) {
+            window.position(window.position() + (int) skipped);
+        } else {
+            // the window will be mapped lazily from the new position
+            window = null;
+            nextWindowPosition = current + skipped;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, fileSize - currentPosition());
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // position in the file of the next byte to read
+    private long currentPosition() {
+        return (window == null) ? nextWindowPosition : nextWindowPosition - window.remaining();
+    }
+
+    // maps the next window if the current one is consumed; false if end of file
+    private boolean ensureAvailable() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (nextWindowPosition >= fileSize) {
+            return false;
+        }
+        final long size = Math.min(windowSize, fileSize - nextWindowPosition);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, nextWindowPosition, size);
+        nextWindowPosition += size;
+        return true;
+    }
+}
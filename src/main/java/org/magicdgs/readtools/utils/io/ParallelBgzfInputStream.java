@@ -0,0 +1,266 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import htsjdk.samtools.util.CloserUtil;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream which decompress a BGZF file (e.g., BAM) inflating several blocks at once in a
+ * pool of threads.
+ *
+ * Compressed blocks are read ahead from the underlying stream in the calling thread (which is
+ * cheap, because the block size is in the header) and inflated in the pool. The decompressed
+ * blocks are returned in the same order as in the file.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBgzfInputStream extends InputStream {
+
+    // BGZF block header constants (see SAM specifications)
+    private static final int BLOCK_HEADER_LENGTH = 12;
+    private static final int BLOCK_FOOTER_LENGTH = 8;
+    private static final int GZIP_ID1 = 31;
+    private static final int GZIP_ID2 = 139;
+    private static final int GZIP_CM_DEFLATE = 8;
+    private static final int GZIP_FLG_EXTRA = 4;
+    private static final int BGZF_ID1 = 66;
+    private static final int BGZF_ID2 = 67;
+
+    // number of blocks in flight per thread, to keep the pool busy
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private final InputStream input;
+    private final String source;
+    private final ExecutorService pool;
+    private final int maxBlocksInFlight;
+
+    // blocks which are being inflated, in file order
+    private final Queue<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private boolean endOfInput = false;
+
+    // current decompressed block
+    private byte[] current = new byte[0];
+    private int position = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param input    the compressed stream.
+     * @param source   description of the source for error messages.
+     * @param nThreads number of threads for inflate blocks.
+     */
+    public ParallelBgzfInputStream(final InputStream input, final String source,
+            final int nThreads) {
+        Utils.nonNull(input, "null input");
+        Utils.nonNull(source, "null source");
+        Utils.validateArg(nThreads > 0, "number of threads should be positive");
+        this.input = input;
+        this.source = source;
+        this.pool = Executors.newFixedThreadPool(nThreads, new ThreadFactoryBuilder()
+                .setNameFormat("ReadTools-bgzf-%d").setDaemon(true).build());
+        this.maxBlocksInFlight = BLOCKS_PER_THREAD * nThreads;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int toCopy = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        pending.clear();
+        CloserUtil.close(input);
+    }
+
+    // gets the next decompressed block if the current one is consumed; false if end of input
+    private boolean ensureAvailable() throws IOException {
+        while (position == current.length) {
+            fillPending();
+            final CompletableFuture<byte[]> next = pending.poll();
+            if (next == null) {
+                return false;
+            }
+            current = getBlock(next);
+            position = 0;
+        }
+        return true;
+    }
+
+    // reads compressed blocks and submit them to the pool up to the maximum in flight
+    private void fillPending() throws IOException {
+        while (!endOfInput && pending.size() < maxBlocksInFlight) {
+            final byte[] block = readCompressedBlock();
+            if (block == null) {
+                endOfInput = true;
+            } else {
+                pending.add(CompletableFuture.supplyAsync(() -> inflate(block), pool));
+            }
+        }
+    }
+
+    // waits for the block, re-throwing the exceptions from the pool
+    private byte[] getBlock(final CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inflating " + source, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new GATKException("Error while inflating " + source, e.getCause());
+        }
+    }
+
+    // reads a full compressed block (including header); null if end of input
+    private byte[] readCompressedBlock() throws IOException {
+        final byte[] header = new byte[BLOCK_HEADER_LENGTH];
+        final int firstByte = input.read();
+        if (firstByte == -1) {
+            return null;
+        }
+        header[0] = (byte) firstByte;
+        readFully(header, 1, BLOCK_HEADER_LENGTH - 1);
+        if ((header[0] & 0xFF) != GZIP_ID1 || (header[1] & 0xFF) != GZIP_ID2
+                || header[2] != GZIP_CM_DEFLATE || (header[3] & GZIP_FLG_EXTRA) == 0) {
+            throw new IOException("Invalid BGZF block header in " + source);
+        }
+        final int extraLength = unsignedShort(header, 10);
+        final byte[] extra = new byte[extraLength];
+        readFully(extra, 0, extraLength);
+        final int blockSize = findBlockSize(extra) + 1;
+        final int remaining = blockSize - BLOCK_HEADER_LENGTH - extraLength;
+        if (remaining < BLOCK_FOOTER_LENGTH) {
+            throw new IOException("Invalid BGZF block size in " + source);
+        }
+        // the header is not needed for inflating
+        final byte[] block = new byte[remaining];
+        readFully(block, 0, remaining);
+        return block;
+    }
+
+    // finds the BSIZE in the extra sub-fields
+    private int findBlockSize(final byte[] extra) throws IOException {
+        int offset = 0;
+        while (offset + 4 <= extra.length) {
+            final int length = unsignedShort(extra, offset + 2);
+            if (extra[offset] == BGZF_ID1 && extra[offset + 1] == BGZF_ID2 && length == 2
+                    && offset + 6 <= extra.length) {
+                return unsignedShort(extra, offset + 4);
+            }
+            offset += 4 + length;
+        }
+        throw new IOException("Missing BGZF block size in " + source);
+    }
+
+    // inflates the compressed data and footer of a block; runs in the pool
+    private byte[] inflate(final byte[] block) {
+        final int dataLength = block.length - BLOCK_FOOTER_LENGTH;
+        final int expectedCrc = signedInt(block, dataLength);
+        final byte[] inflated = new byte[signedInt(block, dataLength + 4)];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, 0, dataLength);
+            final int inflatedLength = inflater.inflate(inflated);
+            if (inflatedLength != inflated.length) {
+                throw new GATKException("Wrong BGZF block inflated size in " + source);
+            }
+        } catch (final DataFormatException e) {
+            throw new GATKException("Corrupted BGZF block in " + source, e);
+        } finally {
+            inflater.end();
+        }
+        final CRC32 crc = new CRC32();
+        crc.update(inflated, 0, inflated.length);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new GATKException("CRC mismatch in BGZF block from " + source);
+        }
+        return inflated;
+    }
+
+    private void readFully(final byte[] buffer, final int offset, final int length)
+            throws IOException {
+        int read = 0;
+        while (read < length) {
+            final int count = input.read(buffer, offset + read, length - read);
+            if (count == -1) {
+                throw new EOFException("Truncated BGZF block in " + source);
+            }
+            read += count;
+        }
+    }
+
+    // little-endian unsigned short
+    private static int unsignedShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    // little-endian int
+    private static int signedInt(final byte[] buffer, final int offset) {
+        return unsignedShort(buffer, offset) | (unsignedShort(buffer, offset + 2) << 16);
+    }
+}
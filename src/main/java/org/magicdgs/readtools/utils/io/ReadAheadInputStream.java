@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import htsjdk.samtools.util.CloserUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Input stream which reads ahead from another stream in a dedicated thread, into a bounded ring
+ * of large buffers. This is useful for streams which are expensive to read (e.g., decompressing a
+ * gzip file), because the work of the wrapped stream overlaps with the work of the reading
+ * thread.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+    private static final Logger logger = LogManager.getLogger(ReadAheadInputStream.class);
+
+    /** Default size for each buffer (4 MB). */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 22;
+
+    /** Default number of buffers in the ring. */
+    public static final int DEFAULT_NUMBER_OF_BUFFERS = 4;
+
+    private final InputStream input;
+    private final String source;
+
+    // ring of buffers: empty buffers to fill and chunks of data to consume
+    private final BlockingQueue<byte[]> emptyBuffers;
+    private final BlockingQueue<Chunk> filledChunks;
+
+    private final Thread readAheadThread;
+
+    // current chunk of data
+    private Chunk current = null;
+    private int position = 0;
+    private boolean endOfInput = false;
+
+    /**
+     * Creates a read-ahead stream with the default buffer size and number of buffers.
+     *
+     * @param input  the stream to read ahead.
+     * @param source description of the source for error messages.
+     */
+    public ReadAheadInputStream(final InputStream input, final String source) {
+        this(input, source, DEFAULT_BUFFER_SIZE, DEFAULT_NUMBER_OF_BUFFERS);
+    }
+
+    /**
+     * Creates a read-ahead stream.
+     *
+     * @param input      the stream to read ahead.
+     * @param source     description of the source for error messages.
+     * @param bufferSize size of each buffer.
+     * @param nBuffers   number of buffers in the ring. Should be at least 2 to read ahead.
+     */
+    public ReadAheadInputStream(final InputStream input, final String source,
+            final int bufferSize, final int nBuffers) {
+        Utils.nonNull(input, "null input");
+        Utils.nonNull(source, "null source");
+        Utils.validateArg(bufferSize > 0, "buffer size should be positive");
+        Utils.validateArg(nBuffers > 1, "at least two buffers are required");
+        this.input = input;
+        this.source = source;
+        this.emptyBuffers = new ArrayBlockingQueue<>(nBuffers);
+        // one more for the end of input/error marker
+        this.filledChunks = new ArrayBlockingQueue<>(nBuffers + 1);
+        for (int i = 0; i < nBuffers; i++) {
+            emptyBuffers.add(new byte[bufferSize]);
+        }
+        this.readAheadThread = new Thread(this::readAhead, "ReadTools-read-ahead");
+        this.readAheadThread.setDaemon(true);
+        this.readAheadThread.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        return current.data[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureAvailable()) {
+            return -1;
+        }
+        final int toCopy = Math.min(len, current.length - position);
+        System.arraycopy(current.data, position, b, off, toCopy);
+        position += toCopy;
+        return toCopy;
+    }
+
+    @Override
+    public int available() {
+        return (current == null) ? 0 : current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        readAheadThread.interrupt();
+        try {
+            readAheadThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        CloserUtil.close(input);
+    }
+
+    // gets the next chunk if the current one is consumed; false if end of input
+    private boolean ensureAvailable() throws IOException {
+        while (current == null || position == current.length) {
+            if (endOfInput) {
+                return false;
+            }
+            if (current != null) {
+                // recycle the buffer
+                emptyBuffers.add(current.data);
+                current = null;
+            }
+            final Chunk next;
+            try {
+                next = filledChunks.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading " + source);
+            }
+            if (next.error != null) {
+                endOfInput = true;
+                throw next.error;
+            } else if (next.data == null) {
+                endOfInput = true;
+                return false;
+            }
+            current = next;
+            position = 0;
+        }
+        return true;
+    }
+
+    // fills the empty buffers until the end of input; runs in the read-ahead thread
+    private void readAhead() {
+        try {
+            while (true) {
+                final byte[] buffer = emptyBuffers.take();
+                int length = 0;
+                int read = 0;
+                while (length < buffer.length
+                        && (read = input.read(buffer, length, buffer.length - length)) != -1) {
+                    length += read;
+                }
+                if (length != 0) {
+                    filledChunks.put(new Chunk(buffer, length, null));
+                }
+                if (read == -1) {
+                    filledChunks.put(new Chunk(null, 0, null));
+                    return;
+                }
+            }
+        } catch (final InterruptedException e) {
+            logger.debug("Read-ahead thread interrupted for {}", source);
+        } catch (final IOException e) {
+            // there is always space for the marker
+            filledChunks.add(new Chunk(null, 0, e));
+        } catch (final RuntimeException e) {
+            filledChunks.add(new Chunk(null, 0, new IOException(e.getMessage(), e)));
+        }
+    }
+
+    // chunk of data read ahead; null data for end of input or error
+    private static final class Chunk {
+        private final byte[] data;
+        private final int length;
+        private final IOException error;
+
+        private Chunk(final byte[] data, final int length, final IOException error) {
+            this.data = data;
+            this.length = length;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.iterators;
+
+import htsjdk.samtools.util.CloseableIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Iterator which pulls the records ahead from another iterator in a dedicated thread, into a
+ * bounded queue of batches. This is useful for iterators which are expensive to advance (e.g.,
+ * reading and decompressing a file), because the work of the wrapped iterator overlaps with the
+ * work of the consuming thread or with other read-ahead iterators.
+ *
+ * Note: the wrapped iterator should not be used after wrapping it. Exceptions thrown by the
+ * wrapped iterator are re-thrown when the consumer reaches them.
+ *
+ * @param <T> type of records.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ReadAheadIterator<T> implements CloseableIterator<T>, Iterable<T> {
+
+    private static final Logger logger = LogManager.getLogger(ReadAheadIterator.class);
+
+    /** Default number of records in each batch. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /** Default number of batches read ahead. */
+    public static final int DEFAULT_NUMBER_OF_BATCHES = 4;
+
+    private final String name;
+    private final BlockingQueue<Batch<T>> queue;
+    private final Thread readAheadThread;
+
+    // current batch of records
+    private List<T> current = null;
+    private int index = 0;
+    private boolean endOfInput = false;
+
+    /**
+     * Creates a read-ahead iterator with the default batch size and number of batches.
+     *
+     * @param iterator the iterator to read ahead.
+     * @param name     description of the iterator for logging and thread naming.
+     */
+    public ReadAheadIterator(final Iterator<T> iterator, final String name) {
+        this(iterator, name, DEFAULT_BATCH_SIZE, DEFAULT_NUMBER_OF_BATCHES);
+    }
+
+    /**
+     * Creates a read-ahead iterator.
+     *
+     * @param iterator  the iterator to read ahead.
+     * @param name      description of the iterator for logging and thread naming.
+     * @param batchSize number of records in each batch.
+     * @param nBatches  maximum number of batches read ahead.
+     */
+    public ReadAheadIterator(final Iterator<T> iterator, final String name, final int batchSize,
+            final int nBatches) {
+        Utils.nonNull(iterator, "null iterator");
+        Utils.nonNull(name, "null name");
+        Utils.validateArg(batchSize > 0, "batch size should be positive");
+        Utils.validateArg(nBatches > 0, "number of batches should be positive");
+        this.name = name;
+        // one more for the end of input/error marker
+        this.queue = new ArrayBlockingQueue<>(nBatches + 1);
+        this.readAheadThread = new Thread(() -> readAhead(iterator, batchSize),
+                "ReadTools-read-ahead-" + name);
+        this.readAheadThread.setDaemon(true);
+        this.readAheadThread.start();
+    }
+
+    /** Gets the number of batches read ahead and waiting to be consumed. */
+    public int bufferedBatches() {
+        return queue.size();
+    }
+
+    /** Returns the same iterator. */
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (current == null || index == current.size()) {
+            if (endOfInput) {
+                return false;
+            }
+            final Batch<T> batch;
+            try {
+                batch = queue.take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while reading ahead " + name, e);
+            }
+            if (batch.records == null) {
+                endOfInput = true;
+                current = null;
+                if (batch.error instanceof Error) {
+                    throw (Error) batch.error;
+                } else if (batch.error != null) {
+                    throw (RuntimeException) batch.error;
+                }
+                return false;
+            }
+            current = batch.records;
+            index = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next() called when !hasNext()");
+        }
+        return current.get(index++);
+    }
+
+    /**
+     * Stops reading ahead and waits for the read-ahead thread to finish, so the wrapped iterator
+     * is not in use after closing. The wrapped iterator is not closed.
+     */
+    @Override
+    public void close() {
+        readAheadThread.interrupt();
+        try {
+            readAheadThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // pulls the batches until the end of the iterator; runs in the read-ahead thread
+    private void readAhead(final Iterator<T> iterator, final int batchSize) {
+        List<T> records = new ArrayList<>(batchSize);
+        try {
+            // stop pulling records if it is closed
+            while (!Thread.currentThread().isInterrupted() && iterator.hasNext()) {
+                records.add(iterator.next());
+                if (records.size() == batchSize) {
+                    queue.put(new Batch<>(records, null));
+                    records = new ArrayList<>(batchSize);
+                }
+            }
+            if (!records.isEmpty()) {
+                queue.put(new Batch<>(records, null));
+            }
+            queue.put(new Batch<>(null, null));
+        } catch (final InterruptedException e) {
+            logger.debug("Read-ahead thread interrupted for {}", name);
+        } catch (final RuntimeException | Error e) {
+            try {
+                // the records before the error are still returned
+                if (!records.isEmpty()) {
+                    queue.put(new Batch<>(records, null));
+                }
+                queue.put(new Batch<>(null, e));
+            } catch (final InterruptedException interrupted) {
+                logger.debug("Read-ahead thread interrupted after error: {}", e.getMessage());
+            }
+        }
+    }
+
+    // batch of records; null records for end of input or error
+    private static final class Batch<T> {
+        private final List<T> records;
+        private final Throwable error;
+
+        private Batch(final List<T> records, final Throwable error) {
+            this.records = records;
+            this.error = error;
+        }
+    }
+}
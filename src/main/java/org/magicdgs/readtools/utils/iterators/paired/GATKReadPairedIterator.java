@@ -24,7 +24,7 @@
 
 package org.magicdgs.readtools.utils.iterators.paired;
 
-import htsjdk.samtools.SamPairUtil;
+import htsjdk.samtools.SAMException;
 import org.broadinstitute.hellbender.exceptions.GATKException;
 import org.broadinstitute.hellbender.utils.Utils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -111,10 +111,26 @@ public abstract class GATKReadPairedIterator
             throw new GATKException.ShouldNeverReachHereException(
                     "BUG: " + this.getClass() + ".getNextPair() return null elements");
         }
-        // assert that they are paired with the htsjdk API
-        SamPairUtil
-                .assertMate(next._1.convertToSAMRecord(null), next._2.convertToSAMRecord(null));
+        assertMate(next._1, next._2);
         return next;
     }
 
+    // same checks as htsjdk SamPairUtil.assertMate, without converting the reads to SAMRecord
+    private static void assertMate(final GATKRead firstOfPair, final GATKRead secondOfPair) {
+        if (!firstOfPair.isPaired()) {
+            throw new SAMException("First record is not marked as paired: " + firstOfPair);
+        } else if (!secondOfPair.isPaired()) {
+            throw new SAMException("Second record is not marked as paired: " + secondOfPair);
+        } else if (!firstOfPair.isFirstOfPair()) {
+            throw new SAMException(
+                    "First record is not marked as first of pair: " + firstOfPair);
+        } else if (!secondOfPair.isSecondOfPair()) {
+            throw new SAMException(
+                    "Second record is not marked as second of pair: " + secondOfPair);
+        } else if (!firstOfPair.getName().equals(secondOfPair.getName())) {
+            throw new SAMException("First [" + firstOfPair.getName() + "] and Second ["
+                    + secondOfPair.getName() + "] readnames do not match!");
+        }
+    }
+
 }
@@ -0,0 +1,328 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import com.google.common.annotations.VisibleForTesting;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a BAM file into shards delimited by BGZF virtual offsets, which could be decoded
+ * independently. The split is done in the following way:
+ *
+ * - The file is cut into byte ranges of the same size.
+ * - Each cut is moved to the next BGZF block start.
+ * - Within the block, the first record start is guessed by validating the fixed fields of
+ * several consecutive records.
+ * - The shard starts at the first record with a different read name, to keep together the
+ * records with the same name (e.g., pairs in unmapped or queryname-grouped files).
+ *
+ * Cuts which could not be moved to a record start are ignored, so the number of shards might be
+ * lower than requested (e.g., for small files).
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class BamShardSplitter {
+
+    private static final Logger logger = LogManager.getLogger(BamShardSplitter.class);
+
+    // BGZF block header length and maximum block size
+    private static final int BLOCK_HEADER_LENGTH = 18;
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    // number of consecutive records to validate for accepting a record start
+    private static final int RECORDS_TO_VALIDATE = 3;
+    // length of the fixed fields of a record, including the block size
+    private static final int FIXED_RECORD_LENGTH = 36;
+    // decompressed bytes after the block to validate the records
+    private static final int RECORD_VALIDATION_WINDOW = 1 << 18;
+    // maximum number of blocks to look for a record start from a cut
+    private static final int MAX_BLOCKS_TO_SEARCH = 16;
+
+    // cannot be instantiated
+    private BamShardSplitter() {}
+
+    /** Shard of a BAM file, delimited by virtual offsets. */
+    public static final class Shard {
+        private final long start;
+        private final long end;
+
+        @VisibleForTesting
+        Shard(final long start, final long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /** Gets the virtual offset of the first record in the shard. */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Gets the virtual offset of the first record after the shard;
+         * {@link Long#MAX_VALUE} for the last one.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("[%s, %s)",
+                    BlockCompressedFilePointerUtil.asString(start),
+                    (end == Long.MAX_VALUE) ? "EOF" : BlockCompressedFilePointerUtil.asString(end));
+        }
+    }
+
+    /**
+     * Splits the BAM file into shards.
+     *
+     * @param path    the BAM file.
+     * @param nShards the number of shards requested.
+     *
+     * @return the list of consecutive shards (at least one).
+     */
+    public static List<Shard> split(final Path path, final int nShards) {
+        Utils.nonNull(path, "null path");
+        Utils.validateArg(nShards > 0, "number of shards should be positive");
+        final String source = path.toString();
+        try (final SeekableStream raw = new SeekablePathStream(path);
+                final BlockCompressedInputStream bgzf =
+                        new BlockCompressedInputStream(new SeekablePathStream(path))) {
+            final SAMFileHeader header = ParallelBamReader
+                    .readHeader(new BinaryCodec(bgzf), source, ValidationStringency.SILENT);
+            final List<Long> starts = new ArrayList<>(nShards);
+            starts.add(bgzf.getFilePointer());
+
+            final BAMRecordCodec codec = new BAMRecordCodec(header);
+            codec.setInputStream(bgzf);
+            final int nReferences = header.getSequenceDictionary().size();
+            final long length = raw.length();
+            for (int i = 1; i < nShards; i++) {
+                final long boundary = findBoundary(raw, bgzf, codec, i * (length / nShards),
+                        nReferences);
+                if (boundary != -1 && boundary > starts.get(starts.size() - 1)) {
+                    starts.add(boundary);
+                }
+            }
+
+            final List<Shard> shards = new ArrayList<>(starts.size());
+            for (int i = 0; i < starts.size(); i++) {
+                shards.add(new Shard(starts.get(i),
+                        (i + 1 < starts.size()) ? starts.get(i + 1) : Long.MAX_VALUE));
+            }
+            logger.debug("Split {} into {} shards: {}", source, shards.size(), shards);
+            return shards;
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(source, e);
+        }
+    }
+
+    // finds the first boundary between records with different names after the position
+    // returns -1 if it is not found
+    private static long findBoundary(final SeekableStream raw,
+            final BlockCompressedInputStream bgzf, final BAMRecordCodec codec,
+            final long position, final int nReferences) throws IOException {
+        long blockAddress = findBlockStart(raw, position);
+        for (int i = 0; i < MAX_BLOCKS_TO_SEARCH && blockAddress != -1; i++) {
+            final long recordStart = findRecordStart(bgzf, blockAddress, nReferences);
+            if (recordStart != -1) {
+                try {
+                    return nextNameGroup(bgzf, codec, recordStart);
+                } catch (final RuntimeException e) {
+                    // the guessed record start was wrong
+                    logger.debug("Cannot decode records at {}: {}",
+                            BlockCompressedFilePointerUtil.asString(recordStart), e.getMessage());
+                }
+            }
+            blockAddress = findBlockStart(raw, blockAddress + 1);
+        }
+        return -1;
+    }
+
+    // returns the virtual offset of the first record with a different name than the one starting
+    // in the provided virtual offset; -1 if the end of the file is reached
+    private static long nextNameGroup(final BlockCompressedInputStream bgzf,
+            final BAMRecordCodec codec, final long recordStart) throws IOException {
+        bgzf.seek(recordStart);
+        final SAMRecord first = codec.decode();
+        if (first == null) {
+            return -1;
+        }
+        final String name = first.getReadName();
+        while (true) {
+            final long pointer = bgzf.getFilePointer();
+            final SAMRecord record = codec.decode();
+            if (record == null) {
+                return -1;
+            } else if (!name.equals(record.getReadName())) {
+                return pointer;
+            }
+        }
+    }
+
+    // finds the address of the first BGZF block starting at or after the position; -1 if none
+    private static long findBlockStart(final SeekableStream raw, final long position)
+            throws IOException {
+        final long length = raw.length();
+        if (position >= length) {
+            return -1;
+        }
+        // a block starts always in the first MAX_BLOCK_SIZE bytes, and the next block after it
+        final byte[] window = new byte[2 * MAX_BLOCK_SIZE + BLOCK_HEADER_LENGTH];
+        raw.seek(position);
+        final int read = readFully(raw, window);
+        for (int i = 0; i < Math.min(MAX_BLOCK_SIZE, read); i++) {
+            if (isBlockHeader(window, i, read)) {
+                // the block should be followed by another block or the end of the file
+                final int next = i + blockSize(window, i);
+                if (position + next == length || isBlockHeader(window, next, read)) {
+                    return position + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // finds the first record start in the block; -1 if there is none
+    private static long findRecordStart(final BlockCompressedInputStream bgzf,
+            final long blockAddress, final int nReferences) throws IOException {
+        bgzf.seek(BlockCompressedFilePointerUtil.makeFilePointer(blockAddress));
+        // only the current block
+        final int blockLength = bgzf.available();
+        if (blockLength == 0) {
+            return -1;
+        }
+        final byte[] data = new byte[blockLength + RECORD_VALIDATION_WINDOW];
+        final int read = readFully(bgzf, data);
+        for (int offset = 0; offset < blockLength; offset++) {
+            if (isRecordStart(data, offset, read, nReferences)) {
+                return BlockCompressedFilePointerUtil.makeFilePointer(blockAddress, offset);
+            }
+        }
+        return -1;
+    }
+
+    // checks if several consecutive records (or until the end of the data) are valid
+    private static boolean isRecordStart(final byte[] data, final int start, final int length,
+            final int nReferences) {
+        long offset = start;
+        for (int i = 0; i < RECORDS_TO_VALIDATE; i++) {
+            if (offset + FIXED_RECORD_LENGTH > length) {
+                // cannot validate more records, but at least one was valid
+                return i != 0;
+            }
+            if (!isValidRecord(data, (int) offset, length, nReferences)) {
+                return false;
+            }
+            offset += 4L + readInt(data, (int) offset);
+        }
+        return true;
+    }
+
+    // validates the fixed fields and the read name of the record
+    private static boolean isValidRecord(final byte[] data, final int offset, final int length,
+            final int nReferences) {
+        final int blockSize = readInt(data, offset);
+        final int referenceIndex = readInt(data, offset + 4);
+        final int position = readInt(data, offset + 8);
+        final int readNameLength = data[offset + 12] & 0xFF;
+        final int cigarLength = (data[offset + 16] & 0xFF) | (data[offset + 17] & 0xFF) << 8;
+        final int sequenceLength = readInt(data, offset + 20);
+        final int mateReferenceIndex = readInt(data, offset + 24);
+        final int matePosition = readInt(data, offset + 28);
+        if (referenceIndex < -1 || referenceIndex >= nReferences
+                || mateReferenceIndex < -1 || mateReferenceIndex >= nReferences
+                || position < -1 || matePosition < -1
+                || readNameLength < 2 || sequenceLength < 0) {
+            return false;
+        }
+        final long minimumBlockSize = FIXED_RECORD_LENGTH - 4 + readNameLength
+                + 4L * cigarLength + (sequenceLength + 1L) / 2 + sequenceLength;
+        if (blockSize < minimumBlockSize) {
+            return false;
+        }
+        // the read name should be printable and null-terminated
+        final int nameStart = offset + FIXED_RECORD_LENGTH;
+        final int nameEnd = Math.min(nameStart + readNameLength - 1, length);
+        for (int i = nameStart; i < nameEnd; i++) {
+            if (data[i] < '!' || data[i] > '~') {
+                return false;
+            }
+        }
+        return nameEnd == length || data[nameEnd] == 0;
+    }
+
+    // checks if there is a BGZF block header at the offset
+    private static boolean isBlockHeader(final byte[] data, final int offset, final int length) {
+        return offset + BLOCK_HEADER_LENGTH <= length
+                && data[offset] == (byte) 0x1f && data[offset + 1] == (byte) 0x8b
+                && data[offset + 2] == 8 && data[offset + 3] == 4
+                // extra length, with the BC sub-field of length 2
+                && (data[offset + 10] & 0xFF | (data[offset + 11] & 0xFF) << 8) >= 6
+                && data[offset + 12] == 'B' && data[offset + 13] == 'C'
+                && data[offset + 14] == 2 && data[offset + 15] == 0;
+    }
+
+    // total size of the block from the BSIZE field
+    private static int blockSize(final byte[] data, final int offset) {
+        return ((data[offset + 16] & 0xFF) | (data[offset + 17] & 0xFF) << 8) + 1;
+    }
+
+    // little-endian integer
+    private static int readInt(final byte[] data, final int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+
+    // reads until the buffer is full or the end of the stream
+    private static int readFully(final InputStream stream, final byte[] buffer)
+            throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length
+                && (read = stream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import org.magicdgs.readtools.utils.io.ParallelBgzfInputStream;
+
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.SAMTextHeaderCodec;
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.SAMValidationError;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.StringLineReader;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Sequential reader for BAM files, which inflates the BGZF blocks in parallel with a
+ * {@link ParallelBgzfInputStream} and decodes the records in order in the calling thread.
+ *
+ * This reader does not support indexing or querying, and it is only intended for traversing the
+ * whole file.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ParallelBamReader implements CloseableIterator<SAMRecord> {
+
+    private static final byte[] BAM_MAGIC = {'B', 'A', 'M', 1};
+
+    private final String source;
+    private final InputStream stream;
+    private final SAMFileHeader header;
+    private final BAMRecordCodec codec;
+    private final ValidationStringency stringency;
+
+    private SAMRecord next;
+    private long recordIndex = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param input      the BAM compressed stream.
+     * @param source     description of the source for error messages.
+     * @param nThreads   number of threads for inflating blocks.
+     * @param stringency validation stringency for the header and the records.
+     */
+    public ParallelBamReader(final InputStream input, final String source, final int nThreads,
+            final ValidationStringency stringency) {
+        this(input, source, nThreads, stringency, null, 0);
+    }
+
+    /**
+     * Constructor for continuing the traversal from a record in the middle of the file.
+     *
+     * @param input       the BAM compressed stream, starting at the block of the first record.
+     * @param source      description of the source for error messages.
+     * @param nThreads    number of threads for inflating blocks.
+     * @param stringency  validation stringency for the header and the records.
+     * @param header      the header of the file; {@code null} if the stream starts at the
+     *                    beginning of the file.
+     * @param blockOffset offset of the first record in the uncompressed block.
+     */
+    ParallelBamReader(final InputStream input, final String source, final int nThreads,
+            final ValidationStringency stringency, final SAMFileHeader header,
+            final int blockOffset) {
+        Utils.nonNull(stringency, "null stringency");
+        this.source = source;
+        this.stringency = stringency;
+        this.stream = new BufferedInputStream(
+                new ParallelBgzfInputStream(input, source, nThreads));
+        try {
+            final BinaryCodec binaryCodec = new BinaryCodec(stream);
+            if (header == null) {
+                this.header = readHeader(binaryCodec, source, stringency);
+            } else {
+                this.header = header;
+                binaryCodec.skipBytes(blockOffset);
+            }
+            this.codec = new BAMRecordCodec(this.header);
+            this.codec.setInputStream(stream);
+            advance();
+        } catch (final RuntimeException e) {
+            CloserUtil.close(stream);
+            throw e;
+        }
+    }
+
+    /** Gets the header of the BAM file. */
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next() called when !hasNext()");
+        }
+        final SAMRecord toReturn = next;
+        advance();
+        return toReturn;
+    }
+
+    @Override
+    public void close() {
+        try {
+            stream.close();
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(source, e);
+        }
+    }
+
+    // decodes the next record
+    private void advance() {
+        try {
+            next = codec.decode();
+        } catch (final RuntimeException e) {
+            throw new UserException.MalformedFile("Error decoding BAM record in " + source
+                    + ": " + e.getMessage(), e);
+        }
+        if (next != null) {
+            recordIndex++;
+            if (stringency != ValidationStringency.SILENT) {
+                final List<SAMValidationError> errors = next.isValid();
+                SAMUtils.processValidationErrors(errors, recordIndex, stringency);
+            }
+        }
+    }
+
+    // reads the header in the same way as htsjdk BAMFileReader
+    static SAMFileHeader readHeader(final BinaryCodec binaryCodec, final String source,
+            final ValidationStringency stringency) {
+        final byte[] magic = new byte[BAM_MAGIC.length];
+        binaryCodec.readBytes(magic);
+        if (!Arrays.equals(magic, BAM_MAGIC)) {
+            throw new UserException.MalformedFile("Invalid BAM file header in " + source);
+        }
+        // the text might be padded with null characters
+        final String text = binaryCodec.readString(binaryCodec.readInt()).replace("\0", "");
+        final SAMTextHeaderCodec headerCodec = new SAMTextHeaderCodec();
+        headerCodec.setValidationStringency(stringency);
+        final SAMFileHeader samFileHeader =
+                headerCodec.decode(new StringLineReader(text), source);
+
+        // the binary sequence dictionary is used if it is not in the text
+        final int nReferences = binaryCodec.readInt();
+        final List<SAMSequenceRecord> sequences = new ArrayList<>(nReferences);
+        for (int i = 0; i < nReferences; i++) {
+            final String name = binaryCodec.readString(binaryCodec.readInt()).replace("\0", "");
+            sequences.add(new SAMSequenceRecord(name, binaryCodec.readInt()));
+        }
+        if (samFileHeader.getSequenceDictionary().isEmpty()) {
+            samFileHeader.setSequenceDictionary(new SAMSequenceDictionary(sequences));
+        }
+        return samFileHeader;
+    }
+}
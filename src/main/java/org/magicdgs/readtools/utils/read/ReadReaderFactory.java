@@ -24,17 +24,42 @@
 
 package org.magicdgs.readtools.utils.read;
 
+import org.magicdgs.readtools.RTDefaults;
+import org.magicdgs.readtools.utils.fastq.FastqGATKReader;
+import org.magicdgs.readtools.utils.io.CountingInputStream;
+import org.magicdgs.readtools.utils.io.CountingSeekableStream;
+import org.magicdgs.readtools.utils.io.MappedFileInputStream;
+import org.magicdgs.readtools.utils.io.ReadAheadInputStream;
+import org.magicdgs.readtools.utils.read.writer.ReadToolsIOFormat;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamFiles;
 import htsjdk.samtools.SamInputResource;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.SamReaderFactory;
 import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.fastq.FastqReader;
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
 import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Factory for generate readers for all sources of reads with the same parameters. If any error
@@ -46,8 +71,20 @@ import java.util.function.Supplier;
  */
 public class ReadReaderFactory {
 
+    // bytes read from the sources opened by any factory since the last reset
+    private static final LongAdder BYTES_READ = new LongAdder();
+
     private final SamReaderFactory samFactory;
 
+    // number of threads for decompression (1 means that it is done by the reading thread)
+    private int decompressionThreads = 1;
+
+    // use memory-mapped files for local uncompressed FASTQ/SAM
+    private boolean useMemoryMapping = RTDefaults.USE_MEMORY_MAPPED_INPUT;
+
+    // open the sources only once (always the case for non-regular files)
+    private boolean singleOpenSources = RTDefaults.SINGLE_OPEN_SOURCES;
+
     /** Creates a default factory. */
     public ReadReaderFactory() {
         this.samFactory = SamReaderFactory.makeDefault();
@@ -72,15 +109,75 @@ public class ReadReaderFactory {
         return this;
     }
 
+    /**
+     * Sets the number of threads for decompressing inputs. If more than one, BAM files are
+     * traversed with a {@link ParallelBamReader} and gzipped FASTQ files are decompressed in a
+     * read-ahead thread.
+     */
+    public ReadReaderFactory setDecompressionThreads(final int decompressionThreads) {
+        Utils.validateArg(decompressionThreads > 0, "decompression threads should be positive");
+        this.decompressionThreads = decompressionThreads;
+        return this;
+    }
+
+    /** Gets the number of threads for decompressing inputs. */
+    public int decompressionThreads() {
+        return decompressionThreads;
+    }
+
+    /**
+     * Sets if local uncompressed FASTQ/SAM files should be memory-mapped instead of read with a
+     * file stream. Default is {@link RTDefaults#USE_MEMORY_MAPPED_INPUT}.
+     */
+    public ReadReaderFactory setUseMemoryMapping(final boolean useMemoryMapping) {
+        this.useMemoryMapping = useMemoryMapping;
+        return this;
+    }
+
+    /**
+     * Sets if the sources of reads should be opened only once, even if they are regular files.
+     * Default is {@link RTDefaults#SINGLE_OPEN_SOURCES}.
+     */
+    public ReadReaderFactory setSingleOpenSources(final boolean singleOpenSources) {
+        this.singleOpenSources = singleOpenSources;
+        return this;
+    }
+
+    /** Returns {@code true} if the sources of reads should be opened only once. */
+    public boolean singleOpenSources() {
+        return singleOpenSources;
+    }
+
     /** Set the reference sequence for reading. */
     public ReadReaderFactory setReferenceSequence(final File referenceFile) {
         samFactory.referenceSequence(referenceFile);
         return this;
     }
 
-    /** Open a new SAMReader from a path. */
+    /**
+     * Open a new SAMReader from a path, accounting the bytes read. Regular files are opened as
+     * seekable streams with their index (if any), to allow queries. Local SAM files are
+     * memory-mapped if {@link #setUseMemoryMapping(boolean)} is enabled.
+     */
     public SamReader openSamReader(final Path path) {
-        return openWrappingException(() -> samFactory.open(path), path::toString);
+        if (isMappable(path) && ReadToolsIOFormat.BamFormat.SAM.isAssignable(path.toString())) {
+            return openWrappingException(() -> samFactory.open(SamInputResource
+                    .of(countBytesRead(new MappedFileInputStream(path)))), path::toString);
+        }
+        if (!Files.isRegularFile(path)) {
+            // named pipes (e.g., /dev/stdin) cannot be seeked
+            return openWrappingException(() -> samFactory.open(SamInputResource
+                    .of(countBytesRead(Files.newInputStream(path)))), path::toString);
+        }
+        return openWrappingException(() -> {
+            final SamInputResource resource = SamInputResource.of(
+                    new CountingSeekableStream(new SeekablePathStream(path), BYTES_READ));
+            final Path index = SamFiles.findIndex(path);
+            if (index != null) {
+                resource.index(new SeekablePathStream(index));
+            }
+            return samFactory.open(resource);
+        }, path::toString);
     }
 
     /** Open a new SAMReader from a file. */
@@ -94,14 +191,106 @@ public class ReadReaderFactory {
         return openWrappingException(() -> samFactory.open(resource), resource::toString);
     }
 
+    /** Open a new ParallelBamReader from a path, using the decompression threads. */
+    public ParallelBamReader openParallelBamReader(final Path path) {
+        return openWrappingException(() -> new ParallelBamReader(
+                        countBytesRead(Files.newInputStream(path)),
+                        path.toString(), decompressionThreads, validationStringency()),
+                path::toString);
+    }
+
+    /**
+     * Open a new iterator over a BAM file using the decompression threads. The file is split into
+     * one shard per thread with {@link BamShardSplitter}, which are decoded in parallel by a
+     * {@link ShardedBamReader}; if the file cannot be split (e.g., it is too small), the blocks
+     * are inflated in parallel by a {@link ParallelBamReader}.
+     */
+    public CloseableIterator<SAMRecord> openParallelBamIterator(final Path path) {
+        final List<BamShardSplitter.Shard> shards =
+                BamShardSplitter.split(path, decompressionThreads);
+        if (shards.size() == 1) {
+            return openParallelBamReader(path);
+        }
+        return openWrappingException(
+                () -> new ShardedBamReader(path, shards, validationStringency()),
+                path::toString);
+    }
+
     /** Open a new FastqReader from a path. */
     public FastqReader openFastqReader(final Path path) {
         return openFastqReader(path.toFile());
     }
 
-    /** Open a new FastqReaderr from a file. */
+    /**
+     * Open a new FastqReaderr from a file. If there is more than one decompression thread,
+     * gzipped files are decompressed ahead in a different thread; local uncompressed files are
+     * memory-mapped if {@link #setUseMemoryMapping(boolean)} is enabled.
+     */
     public FastqReader openFastqReader(final File file) {
-        return openWrappingException(() -> new FastqReader(file), file::getAbsolutePath);
+        return openWrappingException(() -> new FastqReader(file, new BufferedReader(
+                new InputStreamReader(openInputStream(file.toPath()), StandardCharsets.US_ASCII))),
+                file::getAbsolutePath);
+    }
+
+    /**
+     * Open a new FastqGATKReader from a path. Gzipped files are detected from the content of the
+     * file, independently of the extension.
+     *
+     * If there is more than one decompression thread, gzipped files are decompressed ahead in a
+     * different thread; local uncompressed files are memory-mapped if
+     * {@link #setUseMemoryMapping(boolean)} is enabled.
+     */
+    public FastqGATKReader openFastqGATKReader(final Path path) {
+        return openWrappingException(() -> new FastqGATKReader(
+                openInputStream(path), path.toString()), path::toString);
+    }
+
+    // opens the path, decompressing it if it is gzipped (in a read-ahead thread if requested)
+    // or memory-mapping it if it is possible
+    private InputStream openInputStream(final Path path) throws IOException {
+        final InputStream stream = new BufferedInputStream(
+                countBytesRead(Files.newInputStream(path)), FastqGATKReader.DEFAULT_BUFFER_SIZE);
+        if (IOUtil.isGZIPInputStream(stream)) {
+            final InputStream gzipStream =
+                    new GZIPInputStream(stream, FastqGATKReader.DEFAULT_BUFFER_SIZE);
+            return (decompressionThreads > 1)
+                    ? new ReadAheadInputStream(gzipStream, path.toString())
+                    : gzipStream;
+        }
+        if (isMappable(path)) {
+            stream.close();
+            return countBytesRead(new MappedFileInputStream(path));
+        }
+        return stream;
+    }
+
+    /**
+     * Gets the number of bytes read from the sources opened by any factory since the last call
+     * to {@link #resetBytesRead()}. Compressed sources account for the compressed bytes.
+     */
+    public static long getBytesRead() {
+        return BYTES_READ.sum();
+    }
+
+    /** Resets the bytes read for {@link #getBytesRead()}. */
+    public static void resetBytesRead() {
+        BYTES_READ.reset();
+    }
+
+    // wraps the stream to account the bytes read for getBytesRead()
+    static InputStream countBytesRead(final InputStream stream) {
+        return new CountingInputStream(stream, BYTES_READ);
+    }
+
+    // accounts the bytes read for getBytesRead() from a stream which is not wrapped
+    static void addBytesRead(final long bytes) {
+        BYTES_READ.add(bytes);
+    }
+
+    // only regular files in the local file system could be mapped (e.g., not pipes)
+    private boolean isMappable(final Path path) {
+        return useMemoryMapping && path.getFileSystem() == FileSystems.getDefault()
+                && Files.isRegularFile(path);
     }
 
     // any exception caused by open a file will thrown a could not read input file exception
@@ -65,6 +65,8 @@ import java.io.PrintStream;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Factory for generate writers for all sources of reads with the same parameters. Before opening a
@@ -80,6 +82,9 @@ public final class ReadWriterFactory {
 
     private static final Logger logger = LogManager.getLogger(ReadWriterFactory.class);
 
+    // outputs opened by any factory, to report the number of bytes written
+    private static final Set<Path> OPENED_OUTPUTS = ConcurrentHashMap.newKeySet();
+
     private final SAMFileWriterFactory samFactory;
 
     // the reference file to use with CRAM
@@ -370,6 +375,7 @@ public final class ReadWriterFactory {
         } catch (final IOException e) {
             throwCouldNotCreateOutputPath(outputPath, e);
         }
+        OPENED_OUTPUTS.add(outputPath);
     }
 
     /**
@@ -387,6 +393,28 @@ public final class ReadWriterFactory {
                 e);
     }
 
+    /**
+     * Gets the number of bytes in the outputs opened by any factory since the last call to
+     * {@link #resetBytesWritten()}. Outputs which could not be accessed are ignored, and data
+     * still buffered in open writers is not included.
+     */
+    public static long getBytesWritten() {
+        long bytes = 0;
+        for (final Path path : OPENED_OUTPUTS) {
+            try {
+                bytes += Files.size(path);
+            } catch (final IOException | SecurityException e) {
+                logger.debug("Could not get size for {}: {}", path.toUri(), e.getMessage());
+            }
+        }
+        return bytes;
+    }
+
+    /** Resets the outputs tracked for {@link #getBytesWritten()}. */
+    public static void resetBytesWritten() {
+        OPENED_OUTPUTS.clear();
+    }
+
     /**
      * Close the writer if it is not {@code null}, throwing if it is not possible to close.
      */
@@ -0,0 +1,376 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import htsjdk.samtools.BAMRecord;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.ValidationStringency;
+import htsjdk.samtools.seekablestream.SeekablePathStream;
+import htsjdk.samtools.util.BinaryCodec;
+import htsjdk.samtools.util.BlockCompressedFilePointerUtil;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.CloseableIterator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.Utils;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Reader for BAM files split into shards with {@link BamShardSplitter}. Each shard is inflated
+ * and decoded by its own thread, and the records are returned in the same order as in the file.
+ *
+ * All the shards decode ahead while the first ones are consumed, up to a memory budget for the
+ * decoded records shared by all of them. The shard being consumed is never blocked by the
+ * budget while it has less than a few batches waiting.
+ *
+ * If a shard does not finish where the next one starts (the boundary guessed by
+ * {@link BamShardSplitter} was not a record start), the rest of the file is traversed from the
+ * end of the shard with a {@link ParallelBamReader}.
+ *
+ * This reader does not support indexing or querying, and it is only intended for traversing the
+ * whole file.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class ShardedBamReader implements CloseableIterator<SAMRecord> {
+
+    private static final Logger logger = LogManager.getLogger(ShardedBamReader.class);
+
+    // number of records passed at once from the shard threads
+    private static final int BATCH_SIZE = 1000;
+    // number of batches that the shard being consumed could decode ahead over the budget
+    private static final int BATCHES_PER_SHARD = 4;
+    // rough estimate of the heap used by a decoded record, in addition to bases and qualities
+    private static final int RECORD_OVERHEAD_BYTES = 500;
+    // fraction of the maximum heap used as memory budget for the decoded records
+    private static final int MEMORY_BUDGET_FRACTION = 4;
+
+    // marker for the end of a shard
+    private static final Batch END_OF_SHARD = new Batch(null, 0, null, -1);
+
+    private final Path path;
+    private final String source;
+    private final SAMFileHeader header;
+    private final ValidationStringency stringency;
+
+    private final List<BlockingQueue<Batch>> queues;
+    private final List<Thread> threads;
+
+    // estimated bytes of the batches waiting in the queues (guarded by the budget lock)
+    private final Object budgetLock = new Object();
+    private final long memoryBudget;
+    private long bufferedBytes = 0;
+
+    // current batch and shard (the shard is guarded by the budget lock)
+    private List<SAMRecord> current = null;
+    private int index = 0;
+    private int currentShard = 0;
+
+    // reader for the rest of the file if a shard boundary was wrong; null otherwise
+    private ParallelBamReader fallback = null;
+
+    /**
+     * Constructor.
+     *
+     * @param path       the BAM file.
+     * @param shards     consecutive shards covering the file.
+     * @param stringency validation stringency for the header and the records.
+     */
+    public ShardedBamReader(final Path path, final List<BamShardSplitter.Shard> shards,
+            final ValidationStringency stringency) {
+        this(path, shards, stringency, Runtime.getRuntime().maxMemory() / MEMORY_BUDGET_FRACTION);
+    }
+
+    /**
+     * Constructor with a memory budget.
+     *
+     * @param path         the BAM file.
+     * @param shards       consecutive shards covering the file.
+     * @param stringency   validation stringency for the header and the records.
+     * @param memoryBudget estimated bytes of decoded records waiting to be consumed.
+     */
+    ShardedBamReader(final Path path, final List<BamShardSplitter.Shard> shards,
+            final ValidationStringency stringency, final long memoryBudget) {
+        Utils.nonNull(path, "null path");
+        Utils.nonEmpty(shards, "no shards");
+        Utils.nonNull(stringency, "null stringency");
+        Utils.validateArg(memoryBudget >= 0, "negative memory budget");
+        this.path = path;
+        this.source = path.toString();
+        this.stringency = stringency;
+        this.memoryBudget = memoryBudget;
+        try (final BlockCompressedInputStream stream =
+                new BlockCompressedInputStream(new SeekablePathStream(path))) {
+            this.header = ParallelBamReader.readHeader(new BinaryCodec(stream), source, stringency);
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(source, e);
+        }
+        this.queues = new ArrayList<>(shards.size());
+        this.threads = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final BamShardSplitter.Shard shard = shards.get(i);
+            final int shardIndex = i;
+            // bounded by the memory budget
+            final BlockingQueue<Batch> queue = new LinkedBlockingQueue<>();
+            final Thread thread = new Thread(() -> readShard(shardIndex, shard, queue),
+                    "ReadTools-shard-" + i);
+            thread.setDaemon(true);
+            queues.add(queue);
+            threads.add(thread);
+        }
+        threads.forEach(Thread::start);
+    }
+
+    /** Gets the header of the BAM file. */
+    public SAMFileHeader getFileHeader() {
+        return header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (fallback != null) {
+            return fallback.hasNext();
+        }
+        while (current == null || index == current.size()) {
+            if (currentShard == queues.size()) {
+                return false;
+            }
+            final Batch batch;
+            try {
+                batch = queues.get(currentShard).take();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GATKException("Interrupted while reading " + source, e);
+            }
+            release(batch);
+            if (batch.error != null) {
+                nextShard(queues.size());
+                if (batch.error instanceof IOException) {
+                    throw new UserException.CouldNotReadInputFile(source, batch.error);
+                }
+                throw (RuntimeException) batch.error;
+            } else if (batch.resumeFrom != -1) {
+                logger.warn("Shard boundary in {} is not a record start; reading the rest of "
+                        + "the file from {} without shards", () -> source,
+                        () -> BlockCompressedFilePointerUtil.asString(batch.resumeFrom));
+                stopShards();
+                fallback = openFallback(batch.resumeFrom);
+                return fallback.hasNext();
+            } else if (batch == END_OF_SHARD) {
+                nextShard(currentShard + 1);
+                current = null;
+            } else {
+                current = batch.records;
+                index = 0;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public SAMRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("next() called when !hasNext()");
+        }
+        return (fallback == null) ? current.get(index++) : fallback.next();
+    }
+
+    @Override
+    public void close() {
+        stopShards();
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+
+    // interrupts the shard threads and waits for them to finish
+    private void stopShards() {
+        threads.forEach(Thread::interrupt);
+        for (final Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // opens a reader for the rest of the file, starting at the virtual offset
+    private ParallelBamReader openFallback(final long virtualOffset) {
+        try {
+            final SeekableByteChannel channel = Files.newByteChannel(path);
+            channel.position(BlockCompressedFilePointerUtil.getBlockAddress(virtualOffset));
+            return new ParallelBamReader(
+                    ReadReaderFactory.countBytesRead(Channels.newInputStream(channel)), source,
+                    threads.size(), stringency, header,
+                    BlockCompressedFilePointerUtil.getBlockOffset(virtualOffset));
+        } catch (final IOException e) {
+            throw new UserException.CouldNotReadInputFile(source, e);
+        }
+    }
+
+    // moves to the shard, waking up the shard threads waiting for the budget
+    private void nextShard(final int shard) {
+        synchronized (budgetLock) {
+            currentShard = shard;
+            budgetLock.notifyAll();
+        }
+    }
+
+    // releases the budget used by a batch taken from a queue
+    private void release(final Batch batch) {
+        if (batch.bytes != 0) {
+            synchronized (budgetLock) {
+                bufferedBytes -= batch.bytes;
+                budgetLock.notifyAll();
+            }
+        }
+    }
+
+    // puts the batch into the queue, waiting until it fits into the budget; runs in the shard
+    // thread. The shard being consumed only waits if it has several batches waiting already.
+    private void put(final int shard, final BlockingQueue<Batch> queue, final Batch batch)
+            throws InterruptedException {
+        synchronized (budgetLock) {
+            while (bufferedBytes >= memoryBudget
+                    && (shard != currentShard || queue.size() >= BATCHES_PER_SHARD)) {
+                budgetLock.wait();
+            }
+            bufferedBytes += batch.bytes;
+        }
+        queue.put(batch);
+    }
+
+    // decodes the records in the shard; runs in the shard thread
+    private void readShard(final int shardIndex, final BamShardSplitter.Shard shard,
+            final BlockingQueue<Batch> queue) {
+        try (final BlockCompressedInputStream stream =
+                new BlockCompressedInputStream(new SeekablePathStream(path))) {
+            final BAMRecordCodec codec = new BAMRecordCodec(header);
+            codec.setInputStream(stream);
+            stream.seek(shard.getStart());
+            List<SAMRecord> records = new ArrayList<>(BATCH_SIZE);
+            long bytes = 0;
+            // compressed bytes consumed are accounted by block for each batch
+            long countedAddress =
+                    BlockCompressedFilePointerUtil.getBlockAddress(shard.getStart());
+            long recordIndex = 0;
+            while (stream.getFilePointer() < shard.getEnd()) {
+                final SAMRecord record = codec.decode();
+                if (record == null) {
+                    break;
+                }
+                decode(record, ++recordIndex);
+                records.add(record);
+                bytes += RECORD_OVERHEAD_BYTES + 2L * record.getReadLength();
+                if (records.size() == BATCH_SIZE) {
+                    countedAddress = countBytesRead(stream, countedAddress);
+                    put(shardIndex, queue, new Batch(records, bytes, null, -1));
+                    records = new ArrayList<>(BATCH_SIZE);
+                    bytes = 0;
+                }
+            }
+            countBytesRead(stream, countedAddress);
+            if (!records.isEmpty()) {
+                put(shardIndex, queue, new Batch(records, bytes, null, -1));
+            }
+            // the shard should finish exactly where the next one starts; otherwise, the next
+            // one is wrong and the rest of the file is read from the end of this shard
+            if (shard.getEnd() != Long.MAX_VALUE && stream.getFilePointer() != shard.getEnd()) {
+                logger.debug("Shard {} of {} does not finish at a record boundary ({})",
+                        shard, source,
+                        BlockCompressedFilePointerUtil.asString(stream.getFilePointer()));
+                queue.put(new Batch(null, 0, null, stream.getFilePointer()));
+            } else {
+                queue.put(END_OF_SHARD);
+            }
+        } catch (final InterruptedException e) {
+            logger.debug("Shard thread interrupted for {}", source);
+        } catch (final IOException | RuntimeException e) {
+            putError(queue, e);
+        }
+    }
+
+    // accounts the blocks consumed since the previous address, returning the current one
+    private static long countBytesRead(final BlockCompressedInputStream stream,
+            final long previousAddress) {
+        final long address =
+                BlockCompressedFilePointerUtil.getBlockAddress(stream.getFilePointer());
+        ReadReaderFactory.addBytesRead(address - previousAddress);
+        return address;
+    }
+
+    // decodes all the fields of the record in the shard thread, validating it if requested
+    private void decode(final SAMRecord record, final long recordIndex) {
+        if (record instanceof BAMRecord) {
+            ((BAMRecord) record).eagerDecode();
+        }
+        if (stringency != ValidationStringency.SILENT) {
+            SAMUtils.processValidationErrors(record.isValid(), recordIndex, stringency);
+        }
+    }
+
+    // puts the error into the queue
+    private void putError(final BlockingQueue<Batch> queue, final Exception error) {
+        try {
+            queue.put(new Batch(null, 0, error, -1));
+        } catch (final InterruptedException interrupted) {
+            logger.debug("Shard thread interrupted after error: {}", error.getMessage());
+        }
+    }
+
+    // batch of records decoded by a shard thread; null records for end of shard, error or
+    // resuming from a virtual offset (if it is not -1)
+    private static final class Batch {
+        private final List<SAMRecord> records;
+        // estimated bytes of the records
+        private final long bytes;
+        private final Exception error;
+        private final long resumeFrom;
+
+        private Batch(final List<SAMRecord> records, final long bytes, final Exception error,
+                final long resumeFrom) {
+            this.records = records;
+            this.bytes = bytes;
+            this.error = error;
+            this.resumeFrom = resumeFrom;
+        }
+    }
+}
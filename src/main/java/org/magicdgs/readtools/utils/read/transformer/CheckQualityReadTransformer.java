@@ -24,19 +24,14 @@
 
 package org.magicdgs.readtools.utils.read.transformer;
 
-import org.magicdgs.readtools.RTDefaults;
-
-import com.google.common.annotations.VisibleForTesting;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.QualityUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 
-import java.util.concurrent.atomic.AtomicInteger;
-
 /**
  * Checks for and errors out when it detects reads with base qualities that are not encoded with
- * phred-scaled quality scores, each {@link RTDefaults#SAMPLING_QUALITY_CHECKING_FREQUENCY}.
+ * phred-scaled quality scores. All the reads are checked.
  *
  * Note: this is adapted from the GATK3 not back-ported behaviour of
  * {@link org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer}.
@@ -46,25 +41,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CheckQualityReadTransformer implements ReadTransformer {
     private static final long serialVersionUID = 1L;
 
-    // sample 1 read each this number of reads
-    private static final int SAMPLING_FREQUENCY = RTDefaults.SAMPLING_QUALITY_CHECKING_FREQUENCY;
-
-    // atomic integer in case of concurrent usage of this transformer
-    @VisibleForTesting
-    protected AtomicInteger currentReadCounter = new AtomicInteger(0);
-
     @Override
     public GATKRead apply(GATKRead read) {
-        // sample reads randomly for checking
-        if (currentReadCounter.incrementAndGet() >= SAMPLING_FREQUENCY) {
-            currentReadCounter.set(0);
-            final byte[] quals = read.getBaseQualities();
-            for (final byte qual : quals) {
-                if (qual > QualityUtils.MAX_REASONABLE_Q_SCORE) {
-                    throw new UserException.MisencodedQualityScoresRead(read,
-                            "we encountered an extremely high quality score of " + (int) qual);
-                }
-            }
+        final int invalid = QualityConversionTable.SANGER.convert(read);
+        if (invalid != -1) {
+            throw new UserException.MisencodedQualityScoresRead(read,
+                    "we encountered an extremely high quality score of "
+                            + (int) read.getBaseQuality(invalid));
         }
         return read;
     }
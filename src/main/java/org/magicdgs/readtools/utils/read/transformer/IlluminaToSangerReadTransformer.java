@@ -0,0 +1,51 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.transformers.ReadTransformer;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+/**
+ * Transformer that change the read encoding from Illumina 1.3+ to Standard PHRED score. If the
+ * quality is incorrectly formatted, it will throw an error.
+ *
+ * Note: this is equivalent to
+ * {@link org.broadinstitute.hellbender.transformers.MisencodedBaseQualityReadTransformer}, but
+ * using a lookup table and modifying the qualities in place if possible.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public final class IlluminaToSangerReadTransformer implements ReadTransformer {
+
+    @Override
+    public GATKRead apply(final GATKRead read) {
+        if (QualityConversionTable.ILLUMINA.convert(read) != -1) {
+            throw new UserException.BadInput(
+                    "while fixing mis-encoded base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
+        }
+        return read;
+    }
+}
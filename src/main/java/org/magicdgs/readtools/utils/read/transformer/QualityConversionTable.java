@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read.transformer;
+
+import org.magicdgs.readtools.utils.fastq.CompactFastqGATKRead;
+
+import htsjdk.samtools.SAMUtils;
+import htsjdk.samtools.util.SolexaQualityConverter;
+import org.broadinstitute.hellbender.utils.QualityUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Lookup table for converting base qualities (as stored in the reads, offset by 33) to Standard
+ * PHRED scores, validating them in the same pass. Each of the 256 possible byte values maps to
+ * the converted quality or to a negative value if the quality is not valid for the encoding.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class QualityConversionTable {
+
+    // marker for invalid qualities in the table
+    private static final byte INVALID = -1;
+
+    // difference between Illumina 1.3+ and Standard qualities
+    private static final int ILLUMINA_TO_PHRED_SUBTRAHEND = 31;
+
+    /** Validates Standard qualities (up to {@link QualityUtils#MAX_REASONABLE_Q_SCORE}). */
+    static final QualityConversionTable SANGER = new QualityConversionTable(
+            q -> (q <= QualityUtils.MAX_REASONABLE_Q_SCORE) ? q : INVALID, true);
+
+    /** Converts Illumina 1.3+ qualities (ASCII offset of 64, 31 more than Standard). */
+    static final QualityConversionTable ILLUMINA = new QualityConversionTable(
+            q -> q - ILLUMINA_TO_PHRED_SUBTRAHEND, false);
+
+    /** Converts Solexa qualities (ASCII offset of 64, with negative values). */
+    static final QualityConversionTable SOLEXA = new QualityConversionTable(
+            QualityConversionTable::solexaToPhred, false);
+
+    // the minimum quality in Solexa before conversion (';')
+    // this is necessary because the quality converter transform lower qualities to '!'
+    private static final int MIN_SOLEXA_BEFORE_CONVERSION = 26;
+
+    private final byte[] table = new byte[256];
+    // if true, the conversion does not modify the qualities
+    private final boolean identity;
+
+    private QualityConversionTable(final IntUnaryOperator conversion, final boolean identity) {
+        for (int q = 0; q < table.length; q++) {
+            // negative bytes are never valid qualities
+            final int converted = (q > Byte.MAX_VALUE) ? INVALID : conversion.applyAsInt(q);
+            table[q] = (converted < 0) ? INVALID : (byte) converted;
+        }
+        this.identity = identity;
+    }
+
+    // uses the htsjdk converter, which does not check bounds for low/high Solexa qualities
+    private static int solexaToPhred(final int q) {
+        if (q < MIN_SOLEXA_BEFORE_CONVERSION) {
+            return INVALID;
+        }
+        try {
+            return SolexaQualityConverter.getSingleton()
+                    .solexaCharToPhredBinary((byte) SAMUtils.phredToFastq(q));
+        } catch (final IndexOutOfBoundsException e) {
+            return INVALID;
+        }
+    }
+
+    /**
+     * Converts the qualities in place, stopping at the first invalid one.
+     *
+     * @param quals the qualities to convert.
+     *
+     * @return the index of the first invalid quality; {@code -1} if all of them are valid.
+     */
+    int convert(final byte[] quals) {
+        for (int i = 0; i < quals.length; i++) {
+            final byte converted = table[quals[i] & 0xFF];
+            if (converted == INVALID) {
+                return i;
+            }
+            quals[i] = converted;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts the qualities of the read. The qualities are modified in place for
+     * {@link CompactFastqGATKRead}, and they are not copied at all if the conversion does not
+     * modify them.
+     *
+     * @param read the read to convert.
+     *
+     * @return the index of the first invalid quality; {@code -1} if all of them are valid.
+     */
+    int convert(final GATKRead read) {
+        if (identity) {
+            final int length = read.getBaseQualityCount();
+            for (int i = 0; i < length; i++) {
+                if (table[read.getBaseQuality(i) & 0xFF] == INVALID) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        if (read instanceof CompactFastqGATKRead) {
+            return convert(((CompactFastqGATKRead) read).getBaseQualitiesNoCopy());
+        }
+        final byte[] quals = read.getBaseQualities();
+        final int invalid = convert(quals);
+        if (invalid == -1) {
+            read.setBaseQualities(quals);
+        }
+        return invalid;
+    }
+}
@@ -24,8 +24,6 @@
 
 package org.magicdgs.readtools.utils.read.transformer;
 
-import htsjdk.samtools.SAMUtils;
-import htsjdk.samtools.util.SolexaQualityConverter;
 import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.transformers.ReadTransformer;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
@@ -38,42 +36,12 @@ import org.broadinstitute.hellbender.utils.read.GATKRead;
  */
 public final class SolexaToSangerReadTransformer implements ReadTransformer {
 
-    // the quality converter
-    private final static SolexaQualityConverter SOLEXA_QUALITY_CONVERTER =
-            SolexaQualityConverter.getSingleton();
-
-    // this is the value of the minimum quality in Solexa possible before conversion (';')
-    // this is necessary because the quality converter transform lower qualities to '!'
-    // and cannot be catched as an exception
-    private final static byte MIN_SOLEXA_BEFORE_CONVERSION = 26;
-
     @Override
     public GATKRead apply(final GATKRead read) {
-        // get the qualities
-        final byte[] quals = read.getBaseQualities();
-        try {
-            // transform them in place
-            for (int i = 0; i < quals.length; ++i) {
-                if (quals[i] < MIN_SOLEXA_BEFORE_CONVERSION) {
-                    // throw an exception if they are missencoded
-                    throwException();
-                }
-                // convert to Solexa
-                quals[i] = SOLEXA_QUALITY_CONVERTER
-                        .solexaCharToPhredBinary((byte) SAMUtils.phredToFastq(quals[i]));
-            }
-        } catch (IndexOutOfBoundsException e) {
-            // if there is an index exception, that means that the qualities are not correctly encoded
-            throwException();
+        if (QualityConversionTable.SOLEXA.convert(read) != -1) {
+            throw new UserException.BadInput(
+                    "while converting Solexa base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
         }
-        // set the base qualities
-        read.setBaseQualities(quals);
         return read;
     }
-
-    // throws the exception for Solexa mis-encoded qualities
-    private static void throwException() {
-        throw new UserException.BadInput(
-                "while converting Solexa base qualities we encountered a read that was correctly encoded; we cannot handle such a mixture of reads so unfortunately the input must be fixed with some other tool.");
-    }
 }
@@ -51,12 +51,20 @@ public class PairEndSplitter extends ReaderSplitter<String> {
 
     @Override
     public String getSplitBy(final GATKRead record, final SAMFileHeader header) {
+        return SPLIT_BY_LIST.get(getSplitOrdinal(record));
+    }
+
+    /**
+     * Gets the position of the split for the record in {@link #getSplitsBy(SAMFileHeader)},
+     * without creating any object.
+     */
+    public int getSplitOrdinal(final GATKRead record) {
         if (record.isFirstOfPair()) {
-            return "1";
+            return 0;
         } else if (record.isSecondOfPair()) {
-            return "2";
+            return 1;
         } else {
-            return "SE";
+            return 2;
         }
     }
 }
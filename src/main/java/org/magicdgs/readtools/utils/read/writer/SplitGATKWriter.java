@@ -24,15 +24,41 @@
 
 package org.magicdgs.readtools.utils.read.writer;
 
+import org.magicdgs.readtools.utils.fastq.FastqGATKWriter;
 import org.magicdgs.readtools.utils.read.ReadWriterFactory;
 
+import htsjdk.samtools.BAMIndex;
+import htsjdk.samtools.BAMIndexer;
+import htsjdk.samtools.BAMRecordCodec;
 import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.fastq.BasicFastqWriter;
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
+import htsjdk.samtools.util.BlockCompressedStreamConstants;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.Md5CalculatingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.broadinstitute.hellbender.exceptions.GATKException;
+import org.broadinstitute.hellbender.exceptions.UserException;
 import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
 import org.broadinstitute.hellbender.utils.Utils;
+import org.broadinstitute.hellbender.utils.io.IOUtils;
 import org.broadinstitute.hellbender.utils.read.GATKRead;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -40,12 +66,25 @@ import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Read writer to add readers splitting by different parameters.
  *
  * This class have a lot of code in common with {@link org.broadinstitute.hellbender.tools.SplitReads}.
  *
+ * The number of writers open at the same time could be limited: when a new writer is required,
+ * the least recently used one is closed. Each output is opened only once, and reads for a closed
+ * writer are encoded without header into a bounded in-memory buffer, which is appended to a
+ * single segment file next to the output when it is full. The segment is appended to the output
+ * on {@link #close()} without re-encoding the reads:
+ *
+ * - BAM segments are compressed into BGZF blocks, and appended before the EOF block.
+ * - SAM segments are appended to the output.
+ * - FASTQ segments are appended (gzipped FASTQ files result in a multi-member gzip file).
+ *
+ * CRAM files could not be concatenated, so the number of writers could not be limited for them.
+ *
  * @author Daniel Gomez-Sanchez (magicDGS)
  */
 public final class SplitGATKWriter implements GATKReadWriter {
@@ -56,8 +95,22 @@ public final class SplitGATKWriter implements GATKReadWriter {
     /** This is different from the GATK4 framework. */
     public static final String KEY_SPLIT_SEPARATOR = "_";
 
-    // this is the map for every key and the writer
-    private final Map<String, GATKReadWriter> outs;
+    /** Maximum number of open writers to do not limit them. */
+    public static final int UNLIMITED_OPEN_WRITERS = Integer.MAX_VALUE;
+
+    // infix for the segment files, between the output name and the extension
+    private static final String SEGMENT_INFIX = ".segment";
+
+    // size of the buffer for the reads of a closed writer before it is appended to the segment
+    private static final int SEGMENT_BUFFER_SIZE = 32 * 1024;
+
+    // this is the map for every key and the output
+    private final Map<String, SplitOutput> outs;
+
+    // outputs with an open writer in access order (only if the number of writers is limited)
+    private final LinkedHashMap<String, SplitOutput> openOutputs =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxOpenWriters;
 
     private final String outputPrefix;
     private final ReadToolsIOFormat format;
@@ -66,10 +119,18 @@ public final class SplitGATKWriter implements GATKReadWriter {
     private final SAMFileHeader header;
     // the list of splitters, in order
     private final List<ReaderSplitter<?>> splitters;
+    // router for the reads, compiled for the header
+    private final SplitKeyRouter router;
+    // outputs for each route, filled on demand
+    private final SplitOutput[] routed;
     // the writer factory to create the factories
     private final ReadWriterFactory factory;
     private final boolean presorted;
 
+    // compressor for the BAM segments, shared by all the outputs (BGZF blocks are independent)
+    private final ByteArrayOutputStream compressedSegment = new ByteArrayOutputStream();
+    private BlockCompressedOutputStream segmentCompressor = null;
+
     /**
      * Constructor.
      *
@@ -86,6 +147,36 @@ public final class SplitGATKWriter implements GATKReadWriter {
     public SplitGATKWriter(final String outputPrefix, final ReadToolsIOFormat format,
             final List<ReaderSplitter<?>> splitters, final SAMFileHeader header,
             final boolean presorted, final ReadWriterFactory factory, final boolean onDemand) {
+        this(outputPrefix, format, splitters, header, presorted, factory, onDemand,
+                UNLIMITED_OPEN_WRITERS);
+    }
+
+    /**
+     * Constructor with a limited number of open writers.
+     *
+     * @param outputPrefix   common output prefix for all the output files.
+     * @param format         output extension for the writers. Note that some extensions will
+     *                       not be allowed.
+     * @param splitters      ordered list with the splitters to use, one after the other.
+     * @param header         output header for all the readers.
+     * @param presorted      if {@code true}, reads are expected to be already sorted.
+     * @param factory        factory to create the writers.
+     * @param onDemand       if {@code true}, creates the readers on demand; otherwise, all the
+     *                       outputs will be generated except the unknown.
+     * @param maxOpenWriters maximum number of writers open at the same time (use
+     *                       {@link #UNLIMITED_OPEN_WRITERS} to do not limit them).
+     *
+     * @throws IllegalArgumentException if the number of writers is limited for CRAM output.
+     */
+    public SplitGATKWriter(final String outputPrefix, final ReadToolsIOFormat format,
+            final List<ReaderSplitter<?>> splitters, final SAMFileHeader header,
+            final boolean presorted, final ReadWriterFactory factory, final boolean onDemand,
+            final int maxOpenWriters) {
+        Utils.validateArg(maxOpenWriters > 0, "maxOpenWriters should be positive");
+        Utils.validateArg(maxOpenWriters == UNLIMITED_OPEN_WRITERS
+                        || format != ReadToolsIOFormat.BamFormat.CRAM,
+                "number of open writers could not be limited for CRAM output");
+        this.maxOpenWriters = maxOpenWriters;
         // storing all parameters
         this.outputPrefix = Utils.nonNull(outputPrefix, "null prefix");
         this.format = Utils.nonNull(format, "null outputExtension");
@@ -95,6 +186,8 @@ public final class SplitGATKWriter implements GATKReadWriter {
         this.presorted = presorted;
         // create the outputs
         this.outs = new LinkedHashMap<>();
+        this.router = new SplitKeyRouter(this.splitters, header);
+        this.routed = new SplitOutput[router.getNumberOfRoutes()];
         if (!onDemand) {
             initWriters();
         }
@@ -102,13 +195,33 @@ public final class SplitGATKWriter implements GATKReadWriter {
 
     @Override
     public void addRead(final GATKRead read) {
-        outs.computeIfAbsent(getKey(read), this::createWriter).addRead(read);
+        final int route = router.getRoute(read);
+        if (route == -1) {
+            outs.computeIfAbsent(router.getKey(read), SplitOutput::new).addRead(read);
+        } else {
+            if (routed[route] == null) {
+                routed[route] = outs.computeIfAbsent(router.getKey(route), SplitOutput::new);
+            }
+            routed[route].addRead(read);
+        }
     }
 
     @Override
     public void close() throws IOException {
-        for (final GATKReadWriter w : outs.values()) {
-            w.close();
+        for (final SplitOutput out : outs.values()) {
+            out.closeWriter();
+        }
+        for (final SplitOutput out : outs.values()) {
+            if (!out.opened) {
+                // outputs which were not opened because of the limit are created empty
+                out.open();
+                out.closeWriter();
+            } else if (out.segmentBuffer != null) {
+                out.appendSegment();
+            }
+        }
+        if (segmentCompressor != null) {
+            segmentCompressor.close();
         }
     }
 
@@ -121,7 +234,14 @@ public final class SplitGATKWriter implements GATKReadWriter {
                 .map(splitter -> new LinkedHashSet<>(splitter.getSplitsBy(header)))
                 .collect(Collectors.toList());
         // For every combination of keys, add a GATKWriter.
-        addKey(splitKeys, 0, "", key -> outs.put(key, createWriter(key)));
+        addKey(splitKeys, 0, "", key -> {
+            final SplitOutput out = new SplitOutput(key);
+            outs.put(key, out);
+            // if the number of writers is limited, the rest are created on close
+            if (openOutputs.size() < maxOpenWriters) {
+                out.open();
+            }
+        });
     }
 
     /**
@@ -146,28 +266,219 @@ public final class SplitGATKWriter implements GATKReadWriter {
         }
     }
 
-    /**
-     * Traverses the splitters generating a key for this particular record.
-     *
-     * @param record the record to analyze.
-     *
-     * @return the generated key that may then be used to find the appropriate writer.
-     */
-    private String getKey(final GATKRead record) {
-        // if a read is missing the value for the target split, return the constant "unknown" which will
-        // result in a new output stream being created on demand to hold uncategorized reads
-        return splitters.stream()
-                .map(s -> {
-                    final Object key = s.getSplitBy(record, header);
-                    return key == null ? UNKNOWN_OUT_PREFIX : key.toString();
-                })
-                .reduce("", (acc, item) -> acc + KEY_SPLIT_SEPARATOR + item);
+    // gets the output path for the key
+    private String getOutputName(final String key) {
+        return outputPrefix + key + format.getExtension();
+    }
+
+    // gets the path for the segment of the output for the key
+    private String getSegmentName(final String key) {
+        return outputPrefix + key + SEGMENT_INFIX + format.getExtension();
+    }
+
+    // gets the MD5 digest file for an output
+    private static Path getMd5(final Path output) {
+        return output.resolveSibling(output.getFileName() + ".md5");
+    }
+
+    // gets the index file for a BAM file, as created by htsjdk
+    private static Path getBamIndex(final Path bam) {
+        return bam.resolveSibling(IOUtil.basename(bam.toFile()) + BAMIndex.BAMIndexSuffix);
+    }
+
+    // creates a writer which encodes the reads without header into the stream
+    private GATKReadWriter newSegmentEncoder(final ByteArrayOutputStream os) {
+        if (format instanceof ReadToolsIOFormat.FastqFormat) {
+            return new FastqGATKWriter(new BasicFastqWriter(new PrintStream(os)));
+        }
+        return new SamRecordEncoder(os, header, format == ReadToolsIOFormat.BamFormat.BAM);
+    }
+
+    // compresses the buffer into BGZF blocks and writes them into the output stream
+    private void writeBgzfBlocks(final ByteArrayOutputStream buffer, final OutputStream os)
+            throws IOException {
+        if (segmentCompressor == null) {
+            segmentCompressor = new BlockCompressedOutputStream(compressedSegment, (File) null);
+        }
+        buffer.writeTo(segmentCompressor);
+        // flush writes all the data as complete blocks, without the EOF block
+        segmentCompressor.flush();
+        compressedSegment.writeTo(os);
+        compressedSegment.reset();
     }
 
-    // helper method to use the compute if absent
-    private GATKReadWriter createWriter(final String attributeValue) {
-        return factory.createWriter(outputPrefix + attributeValue + format.getExtension(),
-                header, presorted);
+    // encodes SAM/BAM records without the header
+    private static final class SamRecordEncoder implements GATKReadWriter {
+        private final ByteArrayOutputStream os;
+        private final SAMFileHeader header;
+        // null for SAM records
+        private final BAMRecordCodec codec;
+
+        private SamRecordEncoder(final ByteArrayOutputStream os, final SAMFileHeader header,
+                final boolean binary) {
+            this.os = os;
+            this.header = header;
+            if (binary) {
+                codec = new BAMRecordCodec(header);
+                codec.setOutputStream(os);
+            } else {
+                codec = null;
+            }
+        }
+
+        @Override
+        public void addRead(final GATKRead read) {
+            if (codec == null) {
+                final String line = read.convertToSAMRecord(header).getSAMString();
+                final byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+                os.write(bytes, 0, bytes.length);
+            } else {
+                codec.encode(read.convertToSAMRecord(header));
+            }
+        }
+
+        @Override
+        public void close() {
+            // nothing to close: the stream is managed by the output
+        }
+    }
+
+    // output for a key, with a segment for the reads added after its writer was closed
+    private final class SplitOutput {
+        private final String key;
+        // true if the writer was already opened (it is opened only once)
+        private boolean opened = false;
+        // null if the writer is not open
+        private GATKReadWriter writer = null;
+        // reads encoded for the segment and its encoder; null if the writer was not closed
+        private ByteArrayOutputStream segmentBuffer = null;
+        private GATKReadWriter segmentEncoder = null;
+        // true if the segment file was already created
+        private boolean segmentCreated = false;
+
+        private SplitOutput(final String key) {
+            this.key = key;
+        }
+
+        // adds the read to the writer, or to the segment if the writer was closed
+        private void addRead(final GATKRead read) {
+            if (!opened) {
+                open();
+            }
+            if (writer != null) {
+                if (maxOpenWriters != UNLIMITED_OPEN_WRITERS) {
+                    // access to update the order of the open outputs
+                    openOutputs.get(key);
+                }
+                writer.addRead(read);
+                return;
+            }
+            if (segmentEncoder == null) {
+                segmentBuffer = new ByteArrayOutputStream(SEGMENT_BUFFER_SIZE);
+                segmentEncoder = newSegmentEncoder(segmentBuffer);
+            }
+            segmentEncoder.addRead(read);
+            if (segmentBuffer.size() >= SEGMENT_BUFFER_SIZE) {
+                flushSegment();
+            }
+        }
+
+        // opens the writer, closing the least recently used if necessary
+        private void open() {
+            if (maxOpenWriters != UNLIMITED_OPEN_WRITERS) {
+                if (openOutputs.size() == maxOpenWriters) {
+                    final Iterator<SplitOutput> eldest = openOutputs.values().iterator();
+                    final SplitOutput evicted = eldest.next();
+                    eldest.remove();
+                    ReadWriterFactory.closeWriter(evicted.writer);
+                    evicted.writer = null;
+                }
+                openOutputs.put(key, this);
+            }
+            writer = factory.createWriter(getOutputName(key), header, presorted);
+            opened = true;
+        }
+
+        // closes the writer if it is open
+        private void closeWriter() throws IOException {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+                openOutputs.remove(key);
+            }
+        }
+
+        // appends the buffered reads to the segment file, creating it if necessary
+        private void flushSegment() {
+            if (segmentBuffer.size() == 0) {
+                return;
+            }
+            final Path segment = IOUtils.getPath(getSegmentName(key));
+            final StandardOpenOption mode = (segmentCreated)
+                    ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+            try (final OutputStream os = Files.newOutputStream(segment,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+                if (format == ReadToolsIOFormat.BamFormat.BAM) {
+                    writeBgzfBlocks(segmentBuffer, os);
+                } else if (format == ReadToolsIOFormat.FastqFormat.GZIP) {
+                    // each flush is a new gzip member
+                    try (final GZIPOutputStream gzip = new GZIPOutputStream(os)) {
+                        segmentBuffer.writeTo(gzip);
+                    }
+                } else {
+                    segmentBuffer.writeTo(os);
+                }
+            } catch (final IOException e) {
+                throw new UserException.CouldNotCreateOutputFile(segment.toUri().toString(),
+                        e.getMessage(), e);
+            }
+            segmentBuffer.reset();
+            segmentCreated = true;
+        }
+
+        // appends the segment to the closed output, re-generating the MD5/index if present
+        private void appendSegment() throws IOException {
+            flushSegment();
+            final Path output = IOUtils.getPath(getOutputName(key));
+            final Path segment = IOUtils.getPath(getSegmentName(key));
+            final boolean isBam = format == ReadToolsIOFormat.BamFormat.BAM;
+            if (isBam) {
+                // remove the EOF block to add it after the segment
+                if (BlockCompressedInputStream.checkTermination(output.toFile())
+                        != BlockCompressedInputStream.FileTermination.HAS_TERMINATOR_BLOCK) {
+                    throw new GATKException("Output without BGZF EOF block: " + output.toUri());
+                }
+                try (final FileChannel channel =
+                        FileChannel.open(output, StandardOpenOption.WRITE)) {
+                    channel.truncate(channel.size()
+                            - BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length);
+                }
+            }
+            try (final OutputStream os = Files.newOutputStream(output,
+                    StandardOpenOption.APPEND)) {
+                Files.copy(segment, os);
+                if (isBam) {
+                    os.write(BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK);
+                }
+            }
+            Files.delete(segment);
+
+            final Path md5 = getMd5(output);
+            if (Files.exists(md5)) {
+                try (final OutputStream os =
+                        new Md5CalculatingOutputStream(new NullOutputStream(), md5)) {
+                    Files.copy(output, os);
+                }
+            }
+            final Path index = getBamIndex(output);
+            if (isBam && Files.exists(index)) {
+                try (final SamReader reader = SamReaderFactory.makeDefault()
+                        .enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS)
+                        .open(output.toFile())) {
+                    BAMIndexer.createIndex(reader, index.toFile());
+                }
+            }
+        }
     }
 
 }
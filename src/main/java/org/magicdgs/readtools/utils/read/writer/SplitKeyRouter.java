@@ -0,0 +1,204 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import htsjdk.samtools.SAMRecord;
+import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.SAMRecordToGATKReadAdapter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes reads to the split keys of a {@link SplitGATKWriter} using ordinals pre-computed for
+ * the header, instead of building the key for each read.
+ *
+ * Splitters are compiled as following:
+ *
+ * - {@link ReadGroupSplitter}s: their values only depend on the read group, so they are computed
+ * once for each read group in the header and looked up by read group ID.
+ * - {@link PairEndSplitter}: the ordinal is computed from the flags of the read.
+ *
+ * Each read is routed to an ordinal combining the ordinals for each splitter, which is the same
+ * for all the reads with the same key. Reads which could not be routed (read groups not present
+ * in the header, or other splitters) should use {@link #getKey(GATKRead)}.
+ *
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+final class SplitKeyRouter {
+
+    private final List<ReaderSplitter<?>> splitters;
+    private final SAMFileHeader header;
+
+    // false if some splitter could not be compiled
+    private final boolean compiled;
+    // ordinals for the read group IDs; null if there are not read group splitters
+    private final Map<String, Integer> readGroupOrdinals;
+    // values for each read group ordinal, for each splitter (null for non read group splitters)
+    private final String[][] readGroupValues;
+    // pair-end splitters, in order
+    private final List<PairEndSplitter> pairEndSplitters = new ArrayList<>();
+    // number of ordinals for each pair-end splitter
+    private final int pairEndSplits;
+    // number of routes
+    private final int numberOfRoutes;
+
+    /**
+     * Constructor.
+     *
+     * @param splitters ordered list with the splitters to use, one after the other.
+     * @param header    header for the reads to route.
+     */
+    SplitKeyRouter(final List<ReaderSplitter<?>> splitters, final SAMFileHeader header) {
+        this.splitters = splitters;
+        this.header = header;
+        boolean compilable = true;
+        boolean hasReadGroupSplitter = false;
+        for (final ReaderSplitter<?> splitter : splitters) {
+            if (splitter instanceof PairEndSplitter) {
+                pairEndSplitters.add((PairEndSplitter) splitter);
+            } else if (splitter instanceof ReadGroupSplitter) {
+                hasReadGroupSplitter = true;
+            } else {
+                compilable = false;
+            }
+        }
+        this.pairEndSplits = new PairEndSplitter().getSplitsBy(header).size();
+        long routes = (long) Math.pow(pairEndSplits, pairEndSplitters.size());
+        if (compilable && hasReadGroupSplitter) {
+            final List<SAMReadGroupRecord> readGroups = header.getReadGroups();
+            routes *= readGroups.size();
+            this.readGroupOrdinals = new HashMap<>();
+            this.readGroupValues = new String[readGroups.size()][];
+            // computes the values with the splitters for a read with each read group
+            final GATKRead probe = new SAMRecordToGATKReadAdapter(new SAMRecord(header));
+            for (final SAMReadGroupRecord rg : readGroups) {
+                final int ordinal = readGroupOrdinals.size();
+                readGroupOrdinals.put(rg.getReadGroupId(), ordinal);
+                probe.setReadGroup(rg.getReadGroupId());
+                readGroupValues[ordinal] = new String[splitters.size()];
+                for (int i = 0; i < splitters.size(); i++) {
+                    if (splitters.get(i) instanceof ReadGroupSplitter) {
+                        readGroupValues[ordinal][i] = getValue(splitters.get(i), probe);
+                    }
+                }
+            }
+        } else {
+            this.readGroupOrdinals = null;
+            this.readGroupValues = null;
+        }
+        // do not compile if there are too many routes
+        this.compiled = compilable && routes <= Integer.MAX_VALUE - 8;
+        this.numberOfRoutes = (compiled) ? (int) routes : 0;
+    }
+
+    /** Gets the number of ordinals returned by {@link #getRoute(GATKRead)}. */
+    int getNumberOfRoutes() {
+        return numberOfRoutes;
+    }
+
+    /**
+     * Gets the route for the read without creating any object.
+     *
+     * @param read the read to route.
+     *
+     * @return the ordinal for the key of the read; {@code -1} if the read could not be routed.
+     */
+    int getRoute(final GATKRead read) {
+        if (!compiled) {
+            return -1;
+        }
+        int route = 0;
+        if (readGroupOrdinals != null) {
+            final String readGroup = read.getReadGroup();
+            final Integer ordinal = (readGroup == null) ? null : readGroupOrdinals.get(readGroup);
+            if (ordinal == null) {
+                return -1;
+            }
+            route = ordinal;
+        }
+        for (int i = 0; i < pairEndSplitters.size(); i++) {
+            route = route * pairEndSplits + pairEndSplitters.get(i).getSplitOrdinal(read);
+        }
+        return route;
+    }
+
+    /**
+     * Gets the key for a route.
+     *
+     * @param route the ordinal returned by {@link #getRoute(GATKRead)}.
+     *
+     * @return the key for the reads with that route.
+     */
+    String getKey(final int route) {
+        // decompose the route into the ordinals for each splitter (pair-end are the last digits)
+        final int[] pairEndOrdinals = new int[pairEndSplitters.size()];
+        int remaining = route;
+        for (int i = pairEndOrdinals.length - 1; i >= 0; i--) {
+            pairEndOrdinals[i] = remaining % pairEndSplits;
+            remaining /= pairEndSplits;
+        }
+        final StringBuilder key = new StringBuilder();
+        int pairEndIndex = 0;
+        for (int i = 0; i < splitters.size(); i++) {
+            key.append(SplitGATKWriter.KEY_SPLIT_SEPARATOR);
+            if (splitters.get(i) instanceof PairEndSplitter) {
+                key.append(splitters.get(i).getSplitsBy(header)
+                        .get(pairEndOrdinals[pairEndIndex++]));
+            } else {
+                key.append(readGroupValues[remaining][i]);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Traverses the splitters generating a key for this particular record.
+     *
+     * @param record the record to analyze.
+     *
+     * @return the generated key that may then be used to find the appropriate writer.
+     */
+    String getKey(final GATKRead record) {
+        final StringBuilder key = new StringBuilder();
+        for (final ReaderSplitter<?> splitter : splitters) {
+            key.append(SplitGATKWriter.KEY_SPLIT_SEPARATOR).append(getValue(splitter, record));
+        }
+        return key.toString();
+    }
+
+    // if a read is missing the value for the target split, return the constant "unknown" which
+    // will result in a new output stream being created on demand to hold uncategorized reads
+    private String getValue(final ReaderSplitter<?> splitter, final GATKRead record) {
+        final Object value = splitter.getSplitBy(record, header);
+        return (value == null) ? SplitGATKWriter.UNKNOWN_OUT_PREFIX : value.toString();
+    }
+}
@@ -93,6 +93,16 @@ public class BarcodeDetectorArgumentCollectionUnitTest extends RTCommandLineProg
                 maxMismatches, minDistance);
     }
 
+    @Test(expectedExceptions = CommandLineException.BadArgumentValue.class)
+    public void testBarcodeIndelsWithLargeBarcodeDictionary() throws Exception {
+        final ArgumentsBuilder args = new ArgumentsBuilder()
+                .addFileArgument("barcodeFile", UNIQUE_BARCODE_FILE)
+                .addBooleanArgument("barcodeIndels", true)
+                .addBooleanArgument("largeBarcodeDictionary", true);
+        new BarcodeDetectorArgumentCollectionTool()
+                .instanceMain(injectDefaultVerbosity(args.getArgsList()).toArray(new String[0]));
+    }
+
     // test the validation while running a tool with customCommandLineValidation
     // should thrown
     private Object runBarcodeDetectorArgumentCollectionToolWithArgs(final File barcodeFile,
@@ -30,6 +30,7 @@ import org.magicdgs.readtools.RTBaseTest;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.barclay.argparser.CommandLineException;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
 import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import org.broadinstitute.hellbender.utils.read.SAMFileGATKReadWriter;
@@ -172,4 +173,14 @@ public class RTOutputBamSplitArgumentCollectionUnitTest extends RTBaseTest {
         args.outputPrefix = outputPrefix;
         Assert.assertEquals(args.makeMetricsFile(suffix).toFile(), expectedMetricsFile);
     }
-}
\ No newline at end of file
+
+    @Test(expectedExceptions = CommandLineException.BadArgumentValue.class)
+    public void testMaxOpenOutputsForCram() throws Exception {
+        final RTOutputBamSplitArgumentCollection args = new RTOutputBamSplitArgumentCollection();
+        args.outputPrefix = "example";
+        args.outputFormat = ReadToolsIOFormat.BamFormat.CRAM;
+        args.splitByReadGroup = true;
+        args.maxOpenOutputs = 10;
+        args.validateUserOutput();
+    }
+}
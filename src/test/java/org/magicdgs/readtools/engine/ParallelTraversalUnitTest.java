@@ -0,0 +1,161 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.engine;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelTraversalUnitTest extends RTBaseTest {
+
+    // creates reads named by its index
+    private static List<GATKRead> createReads(final int nReads) {
+        return IntStream.range(0, nReads).mapToObj(i -> {
+            final GATKRead read = ArtificialReadUtils.createArtificialRead("10M");
+            read.setName(String.valueOf(i));
+            return read;
+        }).collect(Collectors.toList());
+    }
+
+    // writer storing the names of the reads
+    private static class NameCollectorWriter implements GATKReadWriter {
+        private final List<String> names = new ArrayList<>();
+
+        @Override
+        public void addRead(final GATKRead read) {
+            names.add(read.getName());
+        }
+
+        @Override
+        public void close() { }
+    }
+
+    @DataProvider
+    public Object[][] traversalParams() {
+        return new Object[][] {
+                // number of reads, threads and batch size
+                {0, 2, 10},
+                {1, 2, 10},
+                {10, 2, 10},
+                {1000, 2, 1},
+                {1000, 4, 7},
+                {1000, 16, 100},
+                {1001, 3, 1000}
+        };
+    }
+
+    @Test(dataProvider = "traversalParams")
+    public void testTraversalKeepsOrder(final int nReads, final int nThreads,
+            final int batchSize) {
+        final List<GATKRead> reads = createReads(nReads);
+        final List<String> expectedNames = reads.stream().map(GATKRead::getName)
+                .collect(Collectors.toList());
+
+        // write each read two times, in two different writers
+        final NameCollectorWriter first = new NameCollectorWriter();
+        final NameCollectorWriter second = new NameCollectorWriter();
+        final GATKReadWriter orderedFirst = new OrderedGATKReadWriter(first);
+        final GATKReadWriter orderedSecond = new OrderedGATKReadWriter(second);
+        final List<String> processed = new ArrayList<>(nReads);
+
+        new ParallelTraversal<GATKRead>(nThreads, batchSize).traverse(reads.iterator(),
+                read -> {
+                    orderedFirst.addRead(read);
+                    orderedSecond.addRead(read);
+                },
+                read -> processed.add(read.getName()));
+
+        Assert.assertEquals(first.names, expectedNames);
+        Assert.assertEquals(second.names, expectedNames);
+        Assert.assertEquals(processed, expectedNames);
+    }
+
+    @Test
+    public void testOrderedWriterOutsideTraversal() {
+        final NameCollectorWriter writer = new NameCollectorWriter();
+        final List<GATKRead> reads = createReads(10);
+        final GATKReadWriter ordered = new OrderedGATKReadWriter(writer);
+        reads.forEach(ordered::addRead);
+        Assert.assertEquals(writer.names,
+                reads.stream().map(GATKRead::getName).collect(Collectors.toList()));
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testExceptionInWorkerIsPropagated() {
+        new ParallelTraversal<GATKRead>(4, 10).traverse(createReads(100).iterator(),
+                read -> {
+                    if (read.getName().equals("50")) {
+                        throw new UserException("expected exception");
+                    }
+                },
+                read -> { });
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testExceptionInReaderIsPropagated() {
+        final Iterator<GATKRead> failingIterator = new Iterator<GATKRead>() {
+            private final Iterator<GATKRead> reads = createReads(100).iterator();
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public GATKRead next() {
+                if (!reads.hasNext()) {
+                    throw new UserException("expected exception");
+                }
+                return reads.next();
+            }
+        };
+        new ParallelTraversal<GATKRead>(4, 10).traverse(failingIterator, read -> { }, read -> { });
+    }
+
+    @DataProvider
+    public Object[][] badParams() {
+        return new Object[][] {{1, 10}, {0, 10}, {2, 0}};
+    }
+
+    @Test(dataProvider = "badParams", expectedExceptions = IllegalArgumentException.class)
+    public void testBadParams(final int nThreads, final int batchSize) {
+        new ParallelTraversal<GATKRead>(nThreads, batchSize);
+    }
+}
@@ -28,12 +28,15 @@ import org.magicdgs.readtools.RTCommandLineProgramTest;
 import org.magicdgs.readtools.TestResourcesUtils;
 
 import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -51,6 +54,40 @@ public class ReadToolsWalkerUnitTest extends RTCommandLineProgramTest {
 
     }
 
+    // test class for multi-threaded processing, which stores the names of the reads in order
+    private static class ThreadSafeTestWalker extends ReadToolsWalker {
+        private final AtomicInteger nReads = new AtomicInteger();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> threads = new ArrayList<>();
+        private GATKReadWriter writer;
+
+        @Override
+        public void onTraversalStart() {
+            // this writer is called in the main thread, so the lists do not require synchronization
+            writer = orderedWriter(new GATKReadWriter() {
+                @Override
+                public void addRead(final GATKRead read) {
+                    names.add(read.getName());
+                    threads.add(Thread.currentThread().getName());
+                }
+
+                @Override
+                public void close() { }
+            });
+        }
+
+        @Override
+        protected boolean isApplyThreadSafe() {
+            return true;
+        }
+
+        @Override
+        protected void apply(GATKRead read) {
+            nReads.incrementAndGet();
+            writer.addRead(read);
+        }
+    }
+
     @DataProvider(name = "arguments")
     public Object[][] walkerArguments() {
         return new Object[][] {
@@ -69,4 +106,37 @@ public class ReadToolsWalkerUnitTest extends RTCommandLineProgramTest {
         Assert.assertEquals(walker.nReads, expectedReads);
     }
 
-}
\ No newline at end of file
+    @Test(dataProvider = "arguments")
+    public void testReadToolsMultiThreadedWalker(final List<String> args, final int expectedReads,
+            final boolean isPaired) throws Exception {
+        // single-threaded walker for the expected order
+        final ThreadSafeTestWalker expected = new ThreadSafeTestWalker();
+        Assert.assertNull(expected.instanceMain(injectDefaultVerbosity(args).toArray(new String[0])));
+
+        final List<String> multiThreadedArgs = new ArrayList<>(args);
+        multiThreadedArgs.add("--threads");
+        multiThreadedArgs.add("4");
+        final ThreadSafeTestWalker walker = new ThreadSafeTestWalker();
+        Assert.assertNull(walker.instanceMain(
+                injectDefaultVerbosity(multiThreadedArgs).toArray(new String[0])));
+        Assert.assertEquals(walker.isPaired(), isPaired);
+        Assert.assertEquals(walker.nReads.get(), expectedReads);
+        // output in the same order and written by the main thread
+        Assert.assertEquals(walker.names, expected.names);
+        Assert.assertEquals(walker.threads, expected.threads);
+    }
+
+    @Test(dataProvider = "arguments")
+    public void testReadToolsNonThreadSafeWalkerWithThreads(final List<String> args,
+            final int expectedReads, final boolean isPaired) throws Exception {
+        final List<String> multiThreadedArgs = new ArrayList<>(args);
+        multiThreadedArgs.add("--threads");
+        multiThreadedArgs.add("4");
+        final TestWalker walker = new TestWalker();
+        Assert.assertNull(walker.instanceMain(
+                injectDefaultVerbosity(multiThreadedArgs).toArray(new String[0])));
+        Assert.assertEquals(walker.isPaired(), isPaired);
+        Assert.assertEquals(walker.nReads, expectedReads);
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.engine;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.metrics.StageMetric;
+import org.magicdgs.readtools.metrics.TraversalMetric;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.broadinstitute.hellbender.utils.read.GATKReadWriter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class TraversalMetricsUnitTest extends RTBaseTest {
+
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (final InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testStagesInRegistrationOrder() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, false);
+        Assert.assertEquals((int) metrics.time("first", () -> 1), 1);
+        metrics.time("second", () -> { });
+        metrics.time("first", () -> { });
+        final List<StageMetric> stages = metrics.getStageMetrics();
+        Assert.assertEquals(stages.stream().map(s -> s.STAGE).collect(Collectors.toList()),
+                Arrays.asList("first", "second"));
+        Assert.assertEquals(stages.get(0).CALLS, 2);
+        Assert.assertEquals(stages.get(1).CALLS, 1);
+    }
+
+    @Test
+    public void testStagesNotTimed() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, false, false);
+        Assert.assertFalse(metrics.isTimingStages());
+        Assert.assertEquals((int) metrics.time("first", () -> 1), 1);
+        final int[] runs = {0};
+        metrics.time("second", () -> {
+            runs[0]++;
+        });
+        Assert.assertEquals(runs[0], 1);
+        // iterators and writers are not wrapped
+        final Iterator<Integer> iterator = Collections.singletonList(1).iterator();
+        Assert.assertSame(metrics.timedIterator("parse", iterator), iterator);
+        Assert.assertTrue(metrics.getStageMetrics().isEmpty());
+    }
+
+    @Test
+    public void testNestedStagesAreExclusive() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, false);
+        metrics.time("outer", () -> metrics.time("inner", () -> sleep(50)));
+        final List<StageMetric> stages = metrics.getStageMetrics();
+        Assert.assertEquals(stages.size(), 2);
+        final StageMetric outer = stages.get(0);
+        final StageMetric inner = stages.get(1);
+        Assert.assertEquals(outer.STAGE, "outer");
+        Assert.assertTrue(inner.SECONDS >= 0.05, "inner: " + inner.SECONDS);
+        Assert.assertTrue(outer.SECONDS < inner.SECONDS, "outer: " + outer.SECONDS);
+        Assert.assertEquals(outer.PCT_TIME + inner.PCT_TIME, 100, 1e-6);
+    }
+
+    @Test
+    public void testTimedIteratorAndWriter() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, false);
+        final List<GATKRead> reads = IntStream.range(0, 5)
+                .mapToObj(i -> ArtificialReadUtils.createArtificialRead("10M"))
+                .collect(Collectors.toList());
+        final List<GATKRead> written = new ArrayList<>();
+        final GATKReadWriter writer = metrics.timedWriter("write", new GATKReadWriter() {
+            @Override
+            public void addRead(final GATKRead read) {
+                written.add(read);
+            }
+
+            @Override
+            public void close() { }
+        });
+        final Iterator<GATKRead> it = metrics.timedIterator("parse", reads.iterator());
+        it.forEachRemaining(writer::addRead);
+        writer.close();
+
+        Assert.assertEquals(written, reads);
+        final List<StageMetric> stages = metrics.getStageMetrics();
+        Assert.assertEquals(stages.get(0).STAGE, "parse");
+        // five hasNext/next pairs and the last hasNext
+        Assert.assertEquals(stages.get(0).CALLS, 11);
+        Assert.assertEquals(stages.get(1).STAGE, "write");
+        Assert.assertEquals(stages.get(1).CALLS, 5);
+    }
+
+    @Test
+    public void testTraversalMetric() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, false);
+        metrics.setBytesIn(() -> 1000);
+        metrics.setBytesOut(() -> 500);
+        metrics.start();
+        IntStream.range(0, 2500).forEach(i -> metrics.recordProcessed());
+        sleep(10);
+        metrics.stop();
+        final TraversalMetric metric = metrics.getTraversalMetric();
+        Assert.assertEquals(metric.RECORDS, 2500);
+        Assert.assertEquals(metric.BYTES_IN, 1000);
+        Assert.assertTrue(metric.SECONDS > 0);
+        Assert.assertEquals(metric.RECORDS_PER_SECOND, 2500 / metric.SECONDS, 1e-6);
+        Assert.assertEquals(metric.BYTES_IN_PER_SECOND, 1000 / metric.SECONDS, 1e-6);
+        Assert.assertEquals(metric.BYTES_OUT, 500);
+        Assert.assertEquals(metric.BYTES_OUT_PER_SECOND, 500 / metric.SECONDS, 1e-6);
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final TraversalMetrics metrics = new TraversalMetrics(10, true);
+        metrics.setRecordLabel("\"reads\"");
+        metrics.setBytesOut(() -> 10);
+        metrics.registerGauge("queue", () -> 3);
+        metrics.time("parse", () -> { });
+        final String json = metrics.toJson();
+        Assert.assertTrue(json.startsWith("{\"label\":\"\\\"reads\\\"\",\"records\":0,"), json);
+        Assert.assertTrue(json.contains("\"bytesOut\":10,"), json);
+        Assert.assertTrue(json.contains("\"stages\":{\"parse\":{\"calls\":1,\"seconds\":"), json);
+        Assert.assertTrue(json.endsWith("\"queues\":{\"queue\":3}}"), json);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSecondsBetweenUpdates() throws Exception {
+        new TraversalMetrics(0, false);
+    }
+}
@@ -39,11 +39,15 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Daniel Gomez-Sanchez (magicDGS)
@@ -272,6 +276,106 @@ public class ReadsSourceHandlerUnitTest extends RTBaseTest {
                 () -> handler.toIntervalIterator(Collections.singletonList(INTERVAL_TO_QUERY)));
     }
 
+    @Test(dataProvider = "fastqSources")
+    public void testGzippedFastqSourcesWithDecompressionThreads(final File source,
+            final FastqQualityFormat format, final SAMFileHeader header, final int length)
+            throws Exception {
+        // compress the source
+        final File gzipped = new File(createTestTempDir(source.getName()),
+                source.getName() + ".gz");
+        try (final OutputStream output = new GZIPOutputStream(new FileOutputStream(gzipped))) {
+            Files.copy(source.toPath(), output);
+        }
+        final ReadReaderFactory factory = new ReadReaderFactory().setDecompressionThreads(2);
+        final ReadsSourceHandler handler =
+                ReadsSourceHandler.getHandler(gzipped.getAbsolutePath(), factory);
+        testHandler(handler, format, header, length);
+        // the reads should be the same as the uncompressed source
+        try (final ReadsSourceHandler expected =
+                ReadsSourceHandler.getHandler(source.getAbsolutePath(), FACTORY_FOR_TEST)) {
+            final Iterator<GATKRead> expectedIterator = expected.toIterator();
+            handler.toIterator().forEachRemaining(read -> Assert.assertEquals(
+                    read.getSAMString(), expectedIterator.next().getSAMString()));
+            Assert.assertFalse(expectedIterator.hasNext());
+        }
+        handler.close();
+    }
+
+    @Test(dataProvider = "samSourcesNoIndex")
+    public void testSamSourcesWithDecompressionThreads(final File source,
+            final FastqQualityFormat format, final SAMFileHeader header, final int length)
+            throws Exception {
+        final ReadReaderFactory factory = new ReadReaderFactory()
+                .setReferenceSequence(TestResourcesUtils.getWalkthroughDataFile("2L.fragment.fa"))
+                .setDecompressionThreads(3);
+        final ReadsSourceHandler handler =
+                ReadsSourceHandler.getHandler(source.getAbsolutePath(), factory);
+        testHandler(handler, format, header, length);
+        // the reads should be the same as without decompression threads
+        try (final ReadsSourceHandler expected =
+                ReadsSourceHandler.getHandler(source.getAbsolutePath(), FACTORY_FOR_TEST)) {
+            final Iterator<GATKRead> expectedIterator = expected.toIterator();
+            handler.toIterator().forEachRemaining(read -> Assert.assertEquals(
+                    read.getSAMString(), expectedIterator.next().getSAMString()));
+            Assert.assertFalse(expectedIterator.hasNext());
+        }
+        handler.close();
+    }
+
+    @Test(dataProvider = "fastqSources")
+    public void testSingleOpenFastqSources(final File source, final FastqQualityFormat format,
+            final SAMFileHeader header, final int length) throws Exception {
+        testSingleOpenHandler(source, new ReadReaderFactory().setSingleOpenSources(true),
+                format, header, length);
+    }
+
+    @Test(dataProvider = "samSourcesNoIndex")
+    public void testSingleOpenSamSources(final File source, final FastqQualityFormat format,
+            final SAMFileHeader header, final int length) throws Exception {
+        final ReadReaderFactory factory = new ReadReaderFactory()
+                .setReferenceSequence(TestResourcesUtils.getWalkthroughDataFile("2L.fragment.fa"))
+                .setSingleOpenSources(true);
+        testSingleOpenHandler(source, factory, format, header, length);
+    }
+
+    private void testSingleOpenHandler(final File source, final ReadReaderFactory factory,
+            final FastqQualityFormat format, final SAMFileHeader header, final int length)
+            throws Exception {
+        try (final FileSourceHandler<?> handler = (FileSourceHandler<?>) ReadsSourceHandler
+                .getHandler(source.getAbsolutePath(), factory);
+                final ReadsSourceHandler expected = ReadsSourceHandler
+                        .getHandler(source.getAbsolutePath(), FACTORY_FOR_TEST)) {
+            Assert.assertTrue(handler.isSingleOpen());
+            // the records for detecting the quality are less than the length of the source
+            Assert.assertEquals(handler.getQualityEncoding(100), format);
+            Assert.assertEquals(handler.getHeader(), header);
+            Assert.assertThrows(UserException.CouldNotReadInputFile.class,
+                    () -> handler.toIntervalIterator(
+                            Collections.singletonList(INTERVAL_TO_QUERY)));
+            // the buffered reads are replayed before the rest of the source
+            final Iterator<GATKRead> expectedIterator = expected.toIterator();
+            int n = 0;
+            final Iterator<GATKRead> iterator = handler.toIterator();
+            while (iterator.hasNext()) {
+                Assert.assertEquals(iterator.next().getSAMString(),
+                        expectedIterator.next().getSAMString());
+                n++;
+            }
+            Assert.assertFalse(expectedIterator.hasNext());
+            Assert.assertEquals(n, length);
+            // the source could not be iterated again
+            Assert.assertThrows(UserException.CouldNotReadInputFile.class, handler::toIterator);
+        }
+    }
+
+    @Test
+    public void testStdinIsHandledAsFastq() throws Exception {
+        final ReadsSourceHandler handler =
+                ReadsSourceHandler.getHandler(ReadsSourceHandler.STDIN_SOURCE, FACTORY_FOR_TEST);
+        Assert.assertEquals(handler.getClass(), FastqSourceHandler.class);
+        Assert.assertTrue(((FileSourceHandler<?>) handler).isSingleOpen());
+    }
+
     @Test(dataProvider = "samSourcesIndexed")
     public void testSamSourcesWithIndex(final String source, final FastqQualityFormat format,
             final SAMFileHeader header, final int length, final int length2L) throws Exception {
@@ -287,6 +391,10 @@ public class ReadsSourceHandlerUnitTest extends RTBaseTest {
             itInterval.next();
         }
         Assert.assertEquals(n, length2L);
+        // bytes are still accounted when the index is used
+        ReadReaderFactory.resetBytesRead();
+        Assert.assertEquals(handler.toStream().count(), length);
+        Assert.assertTrue(ReadReaderFactory.getBytesRead() > 0);
     }
 
     private static void testHandler(final ReadsSourceHandler handler,
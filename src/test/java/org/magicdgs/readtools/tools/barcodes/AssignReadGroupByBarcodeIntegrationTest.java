@@ -164,6 +164,21 @@ public class AssignReadGroupByBarcodeIntegrationTest extends RTCommandLineProgra
                                 .addFileArgument("barcodeFile", UNIQUE_BARCODE_FILE)
                                 .addFileArgument("input", getTestFile("example.mapped.sam"))
                                 .addBooleanArgument("barcodeInReadName", true),
+                        true},
+
+                // multi-threaded runs should produce the same output and metrics
+                {"testPairEndMaxMismatch", "FastqBarcodeDetector.threads",
+                        new ArgumentsBuilder().addInput(dualFastq1)
+                                .addFileArgument("input2", dualFastq2)
+                                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                                .addArgument("maximumMismatches", "3")
+                                .addArgument("threads", "4"),
+                        false},
+                {"testSingleEndSplitting", "FastqBarcodeDetector.threads",
+                        new ArgumentsBuilder().addInput(dualFastq1)
+                                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                                .addArgument("threads", "4")
+                                .addArgument("barcodeCacheSize", "0"),
                         true}
         };
     }
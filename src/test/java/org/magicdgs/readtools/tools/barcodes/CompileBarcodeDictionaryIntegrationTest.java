@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes;
+
+import org.magicdgs.readtools.RTCommandLineProgramTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+import org.magicdgs.readtools.cmd.argumentcollections.ReadGroupArgumentCollection;
+import org.magicdgs.readtools.exceptions.RTUserExceptions;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionary;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+
+import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class CompileBarcodeDictionaryIntegrationTest extends RTCommandLineProgramTest {
+
+    private final static File DUAL_BARCODE_FILE =
+            TestResourcesUtils.getWalkthroughDataFile("dual.barcodes");
+
+    private final static ReadGroupArgumentCollection RG_INFO = new ReadGroupArgumentCollection();
+
+    @Test
+    public void testCompileBarcodeDictionary() throws Exception {
+        final File output = new File(createTestTempDir("compiled"), "dual.barcodes.bin");
+        runCommandLine(new ArgumentsBuilder()
+                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                .addOutput(output));
+        final BarcodeDictionary expected = BarcodeDictionaryFactory
+                .fromFile(DUAL_BARCODE_FILE.toPath(), "run", RG_INFO);
+        final BarcodeDictionary actual = BarcodeDictionaryFactory
+                .fromFile(output.toPath(), "run", RG_INFO);
+        Assert.assertEquals(actual.getSampleReadGroups(), expected.getSampleReadGroups());
+        Assert.assertEquals(actual.getNumberOfBarcodes(), expected.getNumberOfBarcodes());
+        for (int i = 0; i < expected.getNumberOfBarcodes(); i++) {
+            Assert.assertEquals(actual.getBarcodesFromIndex(i), expected.getBarcodesFromIndex(i));
+        }
+    }
+
+    @Test
+    public void testCompileBarcodeDictionaryWithLargeDictionaryIndex() throws Exception {
+        final File output = new File(createTestTempDir("index"), "dual.barcodes.bin");
+        runCommandLine(new ArgumentsBuilder()
+                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                .addOutput(output)
+                .addArgument("maximumMismatches", "1")
+                .addArgument("minimumDistance", "1")
+                .addBooleanArgument("nNoMismatch", true));
+        final BarcodeDictionary dictionary = BarcodeDictionaryFactory
+                .fromFile(output.toPath(), "run", RG_INFO);
+        for (int i = 0; i < dictionary.getNumberOfBarcodes(); i++) {
+            Assert.assertNotNull(dictionary.getPackedPartitionsFromIndex(i, 1, false));
+            Assert.assertNull(dictionary.getPackedPartitionsFromIndex(i, 1, true));
+        }
+    }
+
+    @Test(expectedExceptions = RTUserExceptions.OutputFileExists.class)
+    public void testOutputExists() throws Exception {
+        final File output = new File(createTestTempDir("exists"), "dual.barcodes.bin");
+        Assert.assertTrue(output.createNewFile());
+        runCommandLine(new ArgumentsBuilder()
+                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                .addOutput(output));
+    }
+}
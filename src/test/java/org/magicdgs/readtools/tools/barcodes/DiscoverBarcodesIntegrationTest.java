@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes;
+
+import org.magicdgs.readtools.RTCommandLineProgramTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+import org.magicdgs.readtools.metrics.barcodes.DiscoveredBarcodeMetric;
+
+import htsjdk.samtools.metrics.MetricsFile;
+import org.broadinstitute.hellbender.utils.test.ArgumentsBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class DiscoverBarcodesIntegrationTest extends RTCommandLineProgramTest {
+
+    private final static File DUAL_BARCODE_FILE =
+            TestResourcesUtils.getWalkthroughDataFile("dual.barcodes");
+
+    private final static File DUAL_INDEX_SAM =
+            TestResourcesUtils.getWalkthroughDataFile("standard.dual_index.SE.sam");
+
+    private static List<DiscoveredBarcodeMetric> readMetrics(final File file) throws Exception {
+        final MetricsFile<DiscoveredBarcodeMetric, Integer> metrics = new MetricsFile<>();
+        try (final Reader reader = new FileReader(file)) {
+            metrics.read(reader);
+        }
+        return metrics.getMetrics();
+    }
+
+    private static List<DiscoveredBarcodeMetric> getIndex(
+            final List<DiscoveredBarcodeMetric> metrics, final String index) {
+        return metrics.stream().filter(m -> m.INDEX.equals(index)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDiscoverBarcodesWithBarcodeFile() throws Exception {
+        final File output = new File(createTestTempDir("discover"), "discovered.metrics");
+        runCommandLine(new ArgumentsBuilder()
+                .addInput(DUAL_INDEX_SAM)
+                .addFileArgument("barcodeFile", DUAL_BARCODE_FILE)
+                .addOutput(output));
+        final List<DiscoveredBarcodeMetric> metrics = readMetrics(output);
+
+        final DiscoveredBarcodeMetric first = getIndex(metrics, "1").get(0);
+        Assert.assertEquals(first.RANK, 1);
+        Assert.assertEquals(first.BARCODE, "GAATTCGTA");
+        Assert.assertEquals(first.COUNT, 16);
+        Assert.assertEquals(first.CLOSEST_BARCODE, "GAATTCGT");
+        Assert.assertEquals(first.MISMATCHES, Integer.valueOf(0));
+        Assert.assertEquals(first.SAMPLES, "sample6");
+
+        final DiscoveredBarcodeMetric combined = getIndex(metrics, "COMBINED").get(0);
+        Assert.assertEquals(combined.BARCODE, "GAATTCGTA-CAGGACGTA");
+        Assert.assertEquals(combined.COUNT, 14);
+        Assert.assertEquals(combined.CLOSEST_BARCODE, "GAATTCGT-CAGGACGT");
+        Assert.assertEquals(combined.MISMATCHES, Integer.valueOf(0));
+        Assert.assertEquals(combined.SAMPLES, "sample6");
+    }
+
+    @Test
+    public void testDiscoverBarcodesMaxRecords() throws Exception {
+        final File output = new File(createTestTempDir("discoverMax"), "discovered.metrics");
+        runCommandLine(new ArgumentsBuilder()
+                .addInput(DUAL_INDEX_SAM)
+                .addArgument("maxRecords", "10")
+                .addArgument("topBarcodes", "100")
+                .addOutput(output));
+        final List<DiscoveredBarcodeMetric> metrics = readMetrics(output);
+        for (final String index : new String[] {"1", "2", "COMBINED"}) {
+            final List<DiscoveredBarcodeMetric> indexMetrics = getIndex(metrics, index);
+            Assert.assertFalse(indexMetrics.isEmpty());
+            Assert.assertEquals(indexMetrics.stream().mapToLong(m -> m.COUNT).sum(), 10);
+            // closest barcodes are only reported with a barcode file
+            indexMetrics.forEach(m -> Assert.assertNull(m.CLOSEST_BARCODE));
+        }
+    }
+}
@@ -33,7 +33,11 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -65,6 +69,106 @@ public class BarcodeDictionaryFactoryUnitTest extends RTBaseTest {
         Assert.assertEquals(dictionary.getSampleNames(), sampleNames);
     }
 
+    @Test(dataProvider = "barcodeFiles")
+    public void testCompiledBarcodeDictionary(final File file, final List<String> sampleNames,
+            final int numberOfBarcodes) throws Exception {
+        final Path compiled = new File(createTestTempDir("compiled"), "barcodes.bin").toPath();
+        BarcodeDictionaryFactory.compile(file.toPath(), compiled);
+        final BarcodeDictionary expected =
+                BarcodeDictionaryFactory.fromFile(file.toPath(), "runId", RG_INFO);
+        final BarcodeDictionary actual =
+                BarcodeDictionaryFactory.fromFile(compiled, "runId", RG_INFO);
+        Assert.assertEquals(actual.getNumberOfBarcodes(), numberOfBarcodes);
+        Assert.assertEquals(actual.getSampleNames(), sampleNames);
+        Assert.assertEquals(actual.getSampleReadGroups(), expected.getSampleReadGroups());
+        Assert.assertEquals(actual.getUnknownReadGroup(), expected.getUnknownReadGroup());
+        for (int i = 0; i < numberOfBarcodes; i++) {
+            Assert.assertEquals(actual.getBarcodesFromIndex(i), expected.getBarcodesFromIndex(i));
+            final PackedBarcodes actualPacked = actual.getPackedBarcodesFromIndex(i);
+            final PackedBarcodes expectedPacked = expected.getPackedBarcodesFromIndex(i);
+            Assert.assertEquals(actualPacked.size(), expectedPacked.size());
+            for (int j = 0; j < expectedPacked.size(); j++) {
+                Assert.assertEquals(actualPacked.getBarcode(j), expectedPacked.getBarcode(j));
+                Assert.assertEquals(actualPacked.getBases(j), expectedPacked.getBases(j));
+            }
+        }
+    }
+
+    @Test(dataProvider = "barcodeFiles")
+    public void testCompiledBarcodeDictionaryLookups(final File file,
+            final List<String> sampleNames, final int numberOfBarcodes) throws Exception {
+        final Path compiled = new File(createTestTempDir("lookups"), "barcodes.bin").toPath();
+        BarcodeDictionaryFactory.compile(file.toPath(), compiled);
+        final BarcodeDictionary expected =
+                BarcodeDictionaryFactory.fromFile(file.toPath(), "runId", RG_INFO);
+        final BarcodeDictionary actual =
+                BarcodeDictionaryFactory.fromFile(compiled, "runId", RG_INFO);
+        for (int i = 0; i < numberOfBarcodes; i++) {
+            Assert.assertEquals(new ArrayList<>(actual.getSetBarcodesFromIndex(i)),
+                    new ArrayList<>(expected.getSetBarcodesFromIndex(i)));
+            Assert.assertEquals(actual.getBarcodeOrdinal("NOT_A_BARCODE", i), -1);
+            for (final String barcode : expected.getSetBarcodesFromIndex(i)) {
+                final int ordinal = expected.getBarcodeOrdinal(barcode, i);
+                Assert.assertEquals(actual.getBarcodeOrdinal(barcode, i), ordinal);
+                Assert.assertEquals(actual.getSamplesForBarcodeOrdinal(ordinal, i),
+                        expected.getSamplesForBarcodeOrdinal(ordinal, i));
+                Assert.assertEquals(actual.isBarcodeOrdinalUniqueInAt(ordinal, i),
+                        expected.isBarcodeOrdinalUniqueInAt(ordinal, i));
+            }
+        }
+        for (int i = 0; i < sampleNames.size(); i++) {
+            final String combined = expected.getCombinedBarcodesFor(i);
+            Assert.assertEquals(actual.getCombinedBarcodesFor(i), combined);
+            Assert.assertEquals(actual.getReadGroupFor(combined),
+                    expected.getReadGroupFor(combined));
+        }
+        Assert.assertEquals(actual.getReadGroupFor("NOT_A_BARCODE"),
+                actual.getUnknownReadGroup());
+        Assert.assertEquals(actual.toString(), expected.toString());
+    }
+
+    @Test
+    public void testCompiledPartitions() throws Exception {
+        final Path compiled = new File(createTestTempDir("partitions"), "barcodes.bin").toPath();
+        BarcodeDictionaryFactory.compile(getTestFile("unique_main_names.barcodes").toPath(),
+                compiled, Collections.singletonList(1), Collections.singletonList(2), true);
+        final BarcodeDictionary dictionary =
+                BarcodeDictionaryFactory.fromFile(compiled, "runId", RG_INFO);
+        // radius is the maximum mismatches plus the minimum distance minus one
+        final PackedBarcodePartitions partitions =
+                dictionary.getPackedPartitionsFromIndex(0, 2, true);
+        Assert.assertNotNull(partitions);
+        final PackedBarcodePartitions expected = PackedBarcodePartitions
+                .sort(dictionary.getPackedBarcodesFromIndex(0), 2);
+        Assert.assertEquals(partitions.numberOfPartitions(), expected.numberOfPartitions());
+        for (int p = 0; p < expected.numberOfPartitions(); p++) {
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(partitions.getKey(p, i), expected.getKey(p, i));
+                Assert.assertEquals(partitions.getPosition(p, i), expected.getPosition(p, i));
+            }
+        }
+        // other parameters are not reused
+        Assert.assertNull(dictionary.getPackedPartitionsFromIndex(0, 1, true));
+        Assert.assertNull(dictionary.getPackedPartitionsFromIndex(0, 2, false));
+    }
+
+    @Test(expectedExceptions = UserException.class)
+    public void testCompiledPartitionsWrongNumberOfParameters() throws Exception {
+        final Path compiled = new File(createTestTempDir("wrong"), "barcodes.bin").toPath();
+        BarcodeDictionaryFactory.compile(getTestFile("dual_required_names.barcodes").toPath(),
+                compiled, Arrays.asList(1, 1, 1), Collections.singletonList(1), true);
+    }
+
+    @Test(expectedExceptions = UserException.MalformedFile.class)
+    public void testTruncatedCompiledDictionary() throws Exception {
+        final Path compiled = new File(createTestTempDir("truncated"), "barcodes.bin").toPath();
+        BarcodeDictionaryFactory.compile(getTestFile("unique_main_names.barcodes").toPath(),
+                compiled);
+        final byte[] bytes = Files.readAllBytes(compiled);
+        Files.write(compiled, Arrays.copyOf(bytes, bytes.length - 1));
+        BarcodeDictionaryFactory.fromFile(compiled, "runId", RG_INFO);
+    }
+
     @DataProvider(name = "badBarcodeFiles")
     public Object[][] getBadBarcodeFiles() {
         return new Object[][] {
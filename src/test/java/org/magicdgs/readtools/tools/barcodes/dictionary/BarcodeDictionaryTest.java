@@ -139,4 +139,29 @@ public class BarcodeDictionaryTest extends RTBaseTest {
             Assert.assertEquals(dictionaryDouble.getReadGroupFor(combinedBarcode), samples.get(i));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBarcodeOrdinals() throws Exception {
+        final List<List<String>> shared = Arrays.asList(
+                Arrays.asList("AAAA", "CCCC", "AAAA", "TTTT"),
+                Arrays.asList("GGGG", "GGGG", "GGGG", "GGGG"));
+        final BarcodeDictionary dictionary =
+                new BarcodeDictionary(samples, shared, UNKNOWN_READGROUP_INFO);
+        // first index
+        Assert.assertEquals(dictionary.getBarcodeOrdinal("AAAA", 0), 0);
+        Assert.assertEquals(dictionary.getBarcodeOrdinal("CCCC", 0), 1);
+        Assert.assertEquals(dictionary.getBarcodeOrdinal("TTTT", 0), 2);
+        Assert.assertEquals(dictionary.getBarcodeOrdinal("GGGG", 0), -1);
+        Assert.assertEquals(dictionary.getSamplesForBarcodeOrdinal(0, 0), new int[] {0, 2});
+        Assert.assertEquals(dictionary.getSamplesForBarcodeOrdinal(2, 0), new int[] {3});
+        Assert.assertFalse(dictionary.isBarcodeOrdinalUniqueInAt(0, 0));
+        Assert.assertTrue(dictionary.isBarcodeOrdinalUniqueInAt(1, 0));
+        Assert.assertFalse(dictionary.isBarcodeUniqueInAt("AAAA", 0));
+        Assert.assertTrue(dictionary.isBarcodeUniqueInAt("TTTT", 0));
+        Assert.assertFalse(dictionary.isBarcodeUniqueInAt("GGGG", 0));
+        // second index
+        Assert.assertEquals(dictionary.getBarcodeOrdinal("GGGG", 1), 0);
+        Assert.assertEquals(dictionary.getSamplesForBarcodeOrdinal(0, 1), new int[] {0, 1, 2, 3});
+        Assert.assertFalse(dictionary.isBarcodeOrdinalUniqueInAt(0, 1));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PackedBarcodePartitionsUnitTest extends RTBaseTest {
+
+    private static final PackedBarcodes PACKED =
+            PackedBarcodes.pack(Arrays.asList("TTAA", "ACGT", "AAAA", "ACTT", "GGAA"));
+
+    @Test
+    public void testSortPartitions() throws Exception {
+        final PackedBarcodePartitions partitions = PackedBarcodePartitions.sort(PACKED, 1);
+        Assert.assertEquals(partitions.getRadius(), 1);
+        Assert.assertEquals(partitions.numberOfPartitions(), 2);
+        Assert.assertEquals(partitions.size(), PACKED.size());
+        // first partition has the two first bases
+        Assert.assertEquals(partitions.getMask(0), 0b0101L);
+        Assert.assertEquals(partitions.getKeyMask(0), 0b1111L);
+        Assert.assertEquals(partitions.getMask(1), 0b01010000L);
+        for (int p = 0; p < partitions.numberOfPartitions(); p++) {
+            for (int i = 1; i < partitions.size(); i++) {
+                Assert.assertTrue(partitions.getKey(p, i - 1) <= partitions.getKey(p, i));
+            }
+            for (int i = 0; i < partitions.size(); i++) {
+                Assert.assertEquals(partitions.getKey(p, i),
+                        PACKED.getBases(partitions.getPosition(p, i)) & partitions.getKeyMask(p));
+            }
+        }
+        // AC is shared by two barcodes, in the barcode order
+        final int first = partitions.firstIndexOf(0, PackedBarcodes.packBases("AC", 2));
+        Assert.assertEquals(partitions.getPosition(0, first), 1);
+        Assert.assertEquals(partitions.getPosition(0, first + 1), 3);
+        Assert.assertEquals(partitions.firstIndexOf(0, PackedBarcodes.packBases("CC", 2)), -1);
+    }
+
+    @Test
+    public void testNotPartitioned() throws Exception {
+        // radius should be smaller than the barcode length
+        Assert.assertNull(PackedBarcodePartitions.sort(PACKED, 4));
+        // barcodes should have the same length
+        Assert.assertNull(PackedBarcodePartitions
+                .sort(PackedBarcodes.pack(Arrays.asList("AAAA", "TTTTT")), 1));
+    }
+
+    @Test
+    public void testWrapPartitions() throws Exception {
+        final PackedBarcodePartitions sorted = PackedBarcodePartitions.sort(PACKED, 2);
+        final List<LongBuffer> keys = new ArrayList<>();
+        final List<IntBuffer> positions = new ArrayList<>();
+        for (int p = 0; p < sorted.numberOfPartitions(); p++) {
+            final long[] partitionKeys = new long[sorted.size()];
+            final int[] partitionPositions = new int[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                partitionKeys[i] = sorted.getKey(p, i);
+                partitionPositions[i] = sorted.getPosition(p, i);
+            }
+            keys.add(LongBuffer.wrap(partitionKeys));
+            positions.add(IntBuffer.wrap(partitionPositions));
+        }
+        final PackedBarcodePartitions wrapped =
+                PackedBarcodePartitions.wrap(PACKED, 2, keys, positions);
+        Assert.assertEquals(wrapped.numberOfPartitions(), sorted.numberOfPartitions());
+        for (int p = 0; p < sorted.numberOfPartitions(); p++) {
+            Assert.assertEquals(wrapped.getMask(p), sorted.getMask(p));
+            for (int i = 0; i < sorted.size(); i++) {
+                Assert.assertEquals(wrapped.getKey(p, i), sorted.getKey(p, i));
+                Assert.assertEquals(wrapped.getPosition(p, i), sorted.getPosition(p, i));
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrapWrongNumberOfPartitions() throws Exception {
+        PackedBarcodePartitions.wrap(PACKED, 1,
+                Collections.singletonList(LongBuffer.wrap(new long[PACKED.size()])),
+                Collections.singletonList(IntBuffer.wrap(new int[PACKED.size()])));
+    }
+}
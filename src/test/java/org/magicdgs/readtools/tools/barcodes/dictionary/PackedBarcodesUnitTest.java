@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PackedBarcodesUnitTest extends RTBaseTest {
+
+    @DataProvider
+    public Object[][] unpackableBarcodes() {
+        return new Object[][] {
+                {Arrays.asList("ACTG", "")},
+                {Arrays.asList("ACTG", "ACNG")},
+                {Arrays.asList("ACTG", "AC.G")},
+                {Collections.singletonList(
+                        "ACTGACTGACTGACTGACTGACTGACTGACTGA")}
+        };
+    }
+
+    @Test(dataProvider = "unpackableBarcodes")
+    public void testUnpackableBarcodes(final List<String> barcodes) throws Exception {
+        Assert.assertNull(PackedBarcodes.pack(barcodes));
+    }
+
+    @Test
+    public void testPackBarcodes() throws Exception {
+        final PackedBarcodes packed = PackedBarcodes.pack(
+                Arrays.asList("ACGT", "acgtA", "TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTT"));
+        Assert.assertEquals(packed.size(), 3);
+        Assert.assertEquals(packed.getMaxLength(), PackedBarcodes.MAX_LENGTH);
+        Assert.assertEquals(packed.getBarcode(1), "acgtA");
+        Assert.assertEquals(packed.getBases(0), 0b11100100L);
+        Assert.assertEquals(packed.getBases(1), 0b0011100100L);
+        Assert.assertEquals(packed.getBases(2), -1L);
+        Assert.assertEquals(packed.getLengthMask(0), 0b01010101L);
+        Assert.assertEquals(packed.getLengthMask(1), 0b0101010101L);
+        Assert.assertEquals(packed.getLengthMask(2), PackedBarcodes.LOWER_BITS);
+    }
+
+    @Test
+    public void testWrapPackedBarcodes() throws Exception {
+        final List<String> barcodes = Arrays.asList("ACGT", "acgtA");
+        final PackedBarcodes packed = PackedBarcodes.pack(barcodes);
+        // skip the first value in the buffer
+        final LongBuffer bases = LongBuffer.wrap(new long[] {-1, packed.getBases(0),
+                packed.getBases(1)});
+        bases.position(1);
+        final PackedBarcodes wrapped = PackedBarcodes.wrap(barcodes, bases);
+        Assert.assertEquals(wrapped.size(), packed.size());
+        Assert.assertEquals(wrapped.getMaxLength(), packed.getMaxLength());
+        for (int i = 0; i < packed.size(); i++) {
+            Assert.assertEquals(wrapped.getBarcode(i), packed.getBarcode(i));
+            Assert.assertEquals(wrapped.getBases(i), packed.getBases(i));
+            Assert.assertEquals(wrapped.getLengthMask(i), packed.getLengthMask(i));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrapDifferentNumberOfBarcodes() throws Exception {
+        PackedBarcodes.wrap(Arrays.asList("ACGT", "ACGG"), LongBuffer.wrap(new long[] {0}));
+    }
+
+    @Test
+    public void testPackNs() throws Exception {
+        Assert.assertEquals(PackedBarcodes.packNs("ACGT", 4), 0);
+        Assert.assertEquals(PackedBarcodes.packNs("NCGn", 4), 0b01000001L);
+        // only the first bases are packed
+        Assert.assertEquals(PackedBarcodes.packNs("ACGN", 3), 0);
+        Assert.assertEquals(PackedBarcodes.packNs("ACGN.", 4), 0b01000000L);
+        Assert.assertEquals(PackedBarcodes.packNs("AC.N", 4), PackedBarcodes.UNPACKABLE);
+        // Ns are packed as A
+        Assert.assertEquals(PackedBarcodes.packBases("NCGN", 4), 0b00100100L);
+    }
+}
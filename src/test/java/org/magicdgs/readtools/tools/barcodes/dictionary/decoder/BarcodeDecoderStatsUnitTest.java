@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class BarcodeDecoderStatsUnitTest extends RTBaseTest {
+
+    // two indexes with 2 barcodes of length 4 and 1 barcode of length 6
+    private static final int[] NUMBER_OF_BARCODES = new int[] {2, 1};
+    private static final int[] MAX_MISMATCHES = new int[] {4, 6};
+
+    private static BarcodeDecoderStats newStats() {
+        return new BarcodeDecoderStats(3, NUMBER_OF_BARCODES, MAX_MISMATCHES);
+    }
+
+    @Test
+    public void testAddAndMerge() throws Exception {
+        final BarcodeDecoderStats first = newStats();
+        first.addRecord(0);
+        first.addMatch(0, 1, 4, 2);
+        first.addMatch(1, 0, 0, 0);
+        first.addDiscarded(BarcodeDecoder.FilterFailure.BY_MISMATCH);
+
+        final BarcodeDecoderStats second = newStats();
+        second.addRecord(0);
+        second.addRecord(2);
+        second.addMatch(0, 1, 1, 1);
+        second.addDiscarded(BarcodeDecoder.FilterFailure.BY_MISMATCH);
+        second.addDiscarded(BarcodeDecoder.FilterFailure.NO_MATCH);
+
+        final BarcodeDecoderStats merged = newStats();
+        merged.merge(first);
+        merged.merge(second);
+
+        Assert.assertEquals(merged.getRecords(0), 2);
+        Assert.assertEquals(merged.getRecords(1), 0);
+        Assert.assertEquals(merged.getRecords(2), 1);
+        Assert.assertEquals(merged.getDiscarded(BarcodeDecoder.FilterFailure.BY_MISMATCH), 2);
+        Assert.assertEquals(merged.getDiscarded(BarcodeDecoder.FilterFailure.NO_MATCH), 1);
+        Assert.assertEquals(merged.getDiscarded(BarcodeDecoder.FilterFailure.BY_N), 0);
+        Assert.assertEquals(merged.getMatched(0, 0), 0);
+        Assert.assertEquals(merged.getMatched(0, 1), 2);
+        Assert.assertEquals(merged.getMatched(1, 0), 1);
+        Assert.assertEquals(merged.getMismatches(0, 1), new long[] {0, 1, 0, 0, 1});
+        Assert.assertEquals(merged.getMismatches(1, 0), new long[] {1, 0, 0, 0, 0, 0, 0});
+        Assert.assertEquals(merged.getNumberOfNs(0, 1), 3);
+        // merging does not modify the merged ones
+        Assert.assertEquals(first.getRecords(0), 1);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.cmd.argumentcollections.ReadGroupArgumentCollection;
+import org.magicdgs.readtools.metrics.barcodes.BarcodeStat;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionary;
+import org.magicdgs.readtools.tools.barcodes.dictionary.BarcodeDictionaryFactory;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class BarcodeDecoderUnitTest extends RTBaseTest {
+
+    private static BarcodeDictionary getDictionary() throws Exception {
+        final Path file = new File(createTestTempDir("decoder"), "barcodes.txt").toPath();
+        Files.write(file, Arrays.asList(
+                "sample_name\tbarcode_sequence",
+                "sample1\tATTACTCG",
+                "sample2\tTCCGGAGA",
+                "sample3\tCGCTCATT"));
+        return BarcodeDictionaryFactory.fromFile(file, "runId",
+                new ReadGroupArgumentCollection());
+    }
+
+    @DataProvider(name = "beyondRadius")
+    public Object[][] getBarcodesBeyondRadius() {
+        return new Object[][] {
+                // cannot be packed (scanned with the Set)
+                {"..CTCATT", true},
+                {"..CTCATT", false},
+                // too many Ns in a partition to enumerate them (scanned packed)
+                {"NNNNCAAA", false}
+        };
+    }
+
+    @Test(dataProvider = "beyondRadius")
+    public void testLargeDictionaryScanBeyondRadius(final String barcode,
+            final boolean nAsMismatches) throws Exception {
+        // radius of 1 mismatch, so the scan returns a best barcode with 2 mismatches
+        final BarcodeDecoder decoder = new BarcodeDecoder(getDictionary(), 8, nAsMismatches,
+                new int[] {1}, new int[] {1}, 0, BarcodeDecoder.MatchingMode.LARGE_DICTIONARY);
+        Assert.assertEquals(decoder.getBestBarcode(barcode), BarcodeMatch.UNKNOWN_STRING);
+        for (final BarcodeStat stat : decoder.getBarcodeStatMetrics().getMetrics()) {
+            Assert.assertEquals(stat.MATCHED, 0, stat.SEQUENCE);
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
 
 import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
 
 import org.apache.commons.lang3.StringUtils;
 import org.testng.Assert;
@@ -33,6 +34,7 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -97,6 +99,33 @@ public class BarcodeMatchUnitTest extends RTBaseTest {
         Assert.assertEquals(barcodeMatch.isAssignable(2), isAssignableFor2, "wrong isAssignable");
     }
 
+    @Test(dataProvider = "bestBarcodes")
+    public void testGetBestBarcodeMatchPacked(final int index, final String toMatch,
+            final boolean nAsMismatch,
+            final String expectedBarcode, final int expectedMismatches, final boolean ambiguous,
+            final boolean isAssignableFor2) throws Exception {
+        final BarcodeMatch expected = BarcodeMatch
+                .getBestBarcodeMatch(index, toMatch, ALL_BARCODES, nAsMismatch);
+        final BarcodeMatch packed = BarcodeMatch
+                .getBestBarcodeMatch(index, toMatch, PackedBarcodes.pack(ALL_BARCODES),
+                        nAsMismatch);
+        Assert.assertEquals(packed.getIndexNumber(), expected.getIndexNumber(), "wrong index");
+        Assert.assertEquals(packed.getBarcode(), expected.getBarcode(), "wrong barcode");
+        Assert.assertEquals(packed.getMismatches(), expected.getMismatches(), "wrong # mismatch");
+        Assert.assertEquals(packed.getMismatchesToSecondBest(),
+                expected.getMismatchesToSecondBest(), "wrong # mismatch to second");
+        Assert.assertEquals(packed.getNumberOfNs(), expected.getNumberOfNs(), "wrong # Ns");
+    }
+
+    @Test
+    public void testGetBestBarcodeMatchPackedNotPossible() throws Exception {
+        final PackedBarcodes packed = PackedBarcodes.pack(ALL_BARCODES);
+        // shorter than the barcodes
+        Assert.assertNull(BarcodeMatch.getBestBarcodeMatch(0, "AAA", packed, true));
+        // other bases than ACGTN
+        Assert.assertNull(BarcodeMatch.getBestBarcodeMatch(0, "AA.A", packed, true));
+    }
+
     @DataProvider
     public Object[][] hammingDistanceData() {
         return new Object[][] {
@@ -122,4 +151,19 @@ public class BarcodeMatchUnitTest extends RTBaseTest {
         Assert.assertEquals(BarcodeMatch.hammingDistance(test, target, nAsMismatch),
                 expectedDistance);
     }
-}
\ No newline at end of file
+
+    @Test(dataProvider = "hammingDistanceData")
+    public void testPackedHammingDistance(String test, String target, boolean nAsMismatch,
+            int expectedDistance) throws Exception {
+        // packed barcodes cannot contain Ns, so they are compared swapping test and target
+        final boolean swap = target.toUpperCase().contains("N");
+        final String packedTest = (swap) ? target : test;
+        final PackedBarcodes packed = PackedBarcodes.pack(
+                Collections.singleton((swap) ? test : target));
+        Assert.assertEquals(BarcodeMatch.hammingDistance(
+                PackedBarcodes.packBases(packedTest, packedTest.length()),
+                PackedBarcodes.packNs(packedTest, packedTest.length()),
+                packed.getBases(0), packed.getLengthMask(0), nAsMismatch),
+                expectedDistance);
+    }
+}
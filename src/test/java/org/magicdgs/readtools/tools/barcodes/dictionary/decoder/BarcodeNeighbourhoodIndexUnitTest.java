@@ -0,0 +1,146 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class BarcodeNeighbourhoodIndexUnitTest extends RTBaseTest {
+
+    private static final Set<String> SAME_LENGTH = new LinkedHashSet<>(
+            Arrays.asList("AAAA", "TTTT", "CCCC", "AATC"));
+
+    private static final Set<String> MIXED_LENGTH = new LinkedHashSet<>(
+            Arrays.asList("AAAA", "TTTTT", "CCCC", "AATCG"));
+
+    // all the sequences with the bases (including Ns) of the provided length
+    private static List<String> allSequences(final int length) {
+        List<String> sequences = Arrays.asList("");
+        for (int i = 0; i < length; i++) {
+            final List<String> extended = new ArrayList<>(sequences.size() * 5);
+            for (final String s : sequences) {
+                for (final char base : "ACGTN".toCharArray()) {
+                    extended.add(s + base);
+                }
+            }
+            sequences = extended;
+        }
+        return sequences;
+    }
+
+    @DataProvider
+    public Object[][] indexParameters() {
+        final List<Object[]> data = new ArrayList<>();
+        for (final Set<String> barcodes : Arrays.asList(SAME_LENGTH, MIXED_LENGTH)) {
+            for (int radius = 0; radius <= 2; radius++) {
+                data.add(new Object[] {barcodes, radius, true});
+                data.add(new Object[] {barcodes, radius, false});
+            }
+        }
+        return data.toArray(new Object[data.size()][]);
+    }
+
+    @Test(dataProvider = "indexParameters")
+    public void testSameResultsAsScan(final Set<String> barcodes, final int radius,
+            final boolean nAsMismatches) throws Exception {
+        final BarcodeNeighbourhoodIndex index =
+                BarcodeNeighbourhoodIndex.build(1, barcodes, radius, nAsMismatches);
+        Assert.assertNotNull(index);
+        final List<String> sequences = new ArrayList<>(allSequences(4));
+        sequences.addAll(allSequences(5));
+        sequences.addAll(Arrays.asList("aaaa", "AAAAC", "AATCGT", "TTTTTT"));
+        for (final String sequence : sequences) {
+            final BarcodeMatch actual = index.getBestBarcodeMatch(sequence);
+            if (actual == null) {
+                continue;
+            }
+            final BarcodeMatch expected =
+                    BarcodeMatch.getBestBarcodeMatch(1, sequence, barcodes, nAsMismatches);
+            Assert.assertEquals(actual.getIndexNumber(), expected.getIndexNumber(), sequence);
+            Assert.assertEquals(actual.getBarcode(), expected.getBarcode(), sequence);
+            Assert.assertEquals(actual.getMismatches(), expected.getMismatches(), sequence);
+            Assert.assertEquals(actual.getMismatchesToSecondBest(),
+                    expected.getMismatchesToSecondBest(), sequence);
+            Assert.assertEquals(actual.getNumberOfNs(), expected.getNumberOfNs(), sequence);
+        }
+    }
+
+    @Test
+    public void testIndexedSequences() throws Exception {
+        final BarcodeNeighbourhoodIndex index =
+                BarcodeNeighbourhoodIndex.build(0, SAME_LENGTH, 1, true);
+        // barcodes and one substitution (also with N) are indexed, also if the sequence is longer
+        for (final String sequence : Arrays.asList("AAAA", "AAAAT", "AAAG", "NTTT", "AATN")) {
+            Assert.assertNotNull(index.getBestBarcodeMatch(sequence), sequence);
+        }
+        // two substitutions, lower case bases and shorter sequences are not indexed
+        for (final String sequence : Arrays.asList("AAGG", "aaaa", "AAA")) {
+            Assert.assertNull(index.getBestBarcodeMatch(sequence), sequence);
+        }
+    }
+
+    @Test
+    public void testMixedLengthRequiresAllLengths() throws Exception {
+        final BarcodeNeighbourhoodIndex index =
+                BarcodeNeighbourhoodIndex.build(0, MIXED_LENGTH, 1, true);
+        // close to barcodes of length 5, but far from the ones of length 4
+        Assert.assertNull(index.getBestBarcodeMatch("TTTTT"));
+        // close to barcodes of both lengths
+        Assert.assertNotNull(index.getBestBarcodeMatch("AATCG"));
+    }
+
+    @Test
+    public void testTooLargeIndexIsNotBuilt() throws Exception {
+        final Set<String> barcodes = new LinkedHashSet<>();
+        for (final String sequence : allSequences(8)) {
+            if (sequence.indexOf('N') == -1 && barcodes.size() < 5000) {
+                barcodes.add(sequence);
+            }
+        }
+        Assert.assertNull(BarcodeNeighbourhoodIndex.build(0, barcodes, 8, true));
+    }
+
+    @Test
+    public void testIndexWithTooManySequencesIsNotBuilt() throws Exception {
+        // few comparisons, but the neighbourhood is too large to keep in memory
+        final Set<String> barcodes = new LinkedHashSet<>();
+        barcodes.add("ACGTACGTACGTACGT");
+        barcodes.add("TGCATGCATGCATGCA");
+        Assert.assertNull(BarcodeNeighbourhoodIndex.build(0, barcodes, 5, true));
+        Assert.assertNotNull(BarcodeNeighbourhoodIndex.build(0, barcodes, 2, true));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ClockCacheUnitTest extends RTBaseTest {
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        final ClockCache<String, Integer> cache = new ClockCache<>(2);
+        Assert.assertNull(cache.get("A"));
+        cache.put("A", 1);
+        Assert.assertEquals(cache.get("A"), (Integer) 1);
+        Assert.assertEquals(cache.get("A"), (Integer) 1);
+        // present keys are not updated
+        cache.put("A", 2);
+        Assert.assertEquals(cache.get("A"), (Integer) 1);
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(cache.getCapacity(), 2);
+        Assert.assertEquals(cache.getHits(), 3);
+        Assert.assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        final ClockCache<String, Integer> cache = new ClockCache<>(3);
+        cache.put("A", 1);
+        cache.put("B", 2);
+        cache.put("C", 3);
+        // A and C are used, so B is evicted first
+        cache.get("A");
+        cache.get("C");
+        cache.put("D", 4);
+        Assert.assertEquals(cache.size(), 3);
+        Assert.assertNull(cache.get("B"));
+        // A and C lost the second chance, so A is evicted next
+        cache.put("E", 5);
+        Assert.assertNull(cache.get("A"));
+        Assert.assertEquals(cache.get("C"), (Integer) 3);
+        Assert.assertEquals(cache.get("D"), (Integer) 4);
+        Assert.assertEquals(cache.get("E"), (Integer) 5);
+    }
+
+    @Test
+    public void testZeroCapacity() throws Exception {
+        final ClockCache<String, Integer> cache = new ClockCache<>(0);
+        cache.put("A", 1);
+        Assert.assertNull(cache.get("A"));
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getMisses(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeCapacity() throws Exception {
+        new ClockCache<>(-1);
+    }
+}
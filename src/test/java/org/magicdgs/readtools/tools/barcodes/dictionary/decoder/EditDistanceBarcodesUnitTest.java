@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class EditDistanceBarcodesUnitTest extends RTBaseTest {
+
+    // edit distance with dynamic programming, with the same alignment as EditDistanceBarcodes
+    private static int expectedEditDistance(final String barcode, final String sequence,
+            final boolean nAsMismatches) {
+        final int[][] distance = new int[barcode.length() + 1][sequence.length() + 1];
+        for (int i = 0; i <= barcode.length(); i++) {
+            distance[i][0] = i;
+        }
+        for (int j = 0; j <= sequence.length(); j++) {
+            distance[0][j] = j;
+        }
+        for (int i = 1; i <= barcode.length(); i++) {
+            for (int j = 1; j <= sequence.length(); j++) {
+                final int substitution = BarcodeMatch.hammingDistance(
+                        barcode.substring(i - 1, i), sequence.substring(j - 1, j), nAsMismatches);
+                distance[i][j] = Math.min(distance[i - 1][j - 1] + substitution,
+                        Math.min(distance[i - 1][j], distance[i][j - 1]) + 1);
+            }
+        }
+        int best = barcode.length();
+        for (int j = 0; j <= sequence.length(); j++) {
+            best = Math.min(best, distance[barcode.length()][j]);
+        }
+        if (sequence.length() >= barcode.length()) {
+            for (int i = 0; i <= barcode.length(); i++) {
+                best = Math.min(best, distance[i][sequence.length()]);
+            }
+        }
+        return best;
+    }
+
+    @DataProvider
+    public Object[][] editDistanceData() {
+        return new Object[][] {
+                // exact and substitutions
+                {"ACTGACTG", "ACTGACTG", true, 0},
+                {"ACTGACTG", "ACTGTCTG", true, 1},
+                // deletion in the sequence (followed by other bases)
+                {"ACTGACTG", "ACTACTGA", true, 1},
+                // insertion in the sequence (truncated at the end of the barcode)
+                {"ACTGACTG", "ACTTGACT", true, 1},
+                // shorter sequences are not truncated
+                {"ACTGACTG", "ACTGACT", true, 1},
+                {"ACTGACTG", "", true, 8},
+                // Ns
+                {"ACTGACTG", "ACTNACTG", true, 1},
+                {"ACTGACTG", "ACTNACTG", false, 0},
+                {"ACTNACTG", "ACTGACTG", false, 0},
+                // lower case
+                {"ACTGACTG", "actgactg", true, 0}
+        };
+    }
+
+    @Test(dataProvider = "editDistanceData")
+    public void testEditDistance(final String barcode, final String sequence,
+            final boolean nAsMismatches, final int expected) {
+        final EditDistanceBarcodes barcodes =
+                EditDistanceBarcodes.build(Collections.singleton(barcode), nAsMismatches);
+        Assert.assertEquals(barcodes.editDistance(0, sequence), expected);
+        Assert.assertEquals(expectedEditDistance(barcode, sequence, nAsMismatches), expected);
+    }
+
+    @Test
+    public void testEditDistanceAgainstDynamicProgramming() {
+        final Random random = new Random(1234);
+        for (int i = 0; i < 10000; i++) {
+            final String barcode = randomSequence(random, 1 + random.nextInt(64));
+            final String sequence = randomSequence(random, random.nextInt(70));
+            final boolean nAsMismatches = random.nextBoolean();
+            final EditDistanceBarcodes barcodes =
+                    EditDistanceBarcodes.build(Collections.singleton(barcode), nAsMismatches);
+            Assert.assertEquals(barcodes.editDistance(0, sequence),
+                    expectedEditDistance(barcode, sequence, nAsMismatches),
+                    barcode + " vs. " + sequence);
+        }
+    }
+
+    private static String randomSequence(final Random random, final int length) {
+        final StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append("ACGTN".charAt(random.nextInt(5)));
+        }
+        return builder.toString();
+    }
+
+    @Test
+    public void testBuildUnsupportedBarcodes() {
+        Assert.assertNull(EditDistanceBarcodes.build(Arrays.asList("ACTG", ""), true));
+        final char[] longBarcode = new char[EditDistanceBarcodes.MAX_LENGTH + 1];
+        Arrays.fill(longBarcode, 'A');
+        Assert.assertNull(EditDistanceBarcodes
+                .build(Arrays.asList("ACTG", new String(longBarcode)), true));
+    }
+
+    @Test
+    public void testBestBarcodeMatch() {
+        final EditDistanceBarcodes barcodes = EditDistanceBarcodes
+                .build(Arrays.asList("ACTGACTG", "TTTTCCCC", "GGGGAAAA"), true);
+        // one deletion
+        final BarcodeMatch match = BarcodeMatch.getBestBarcodeMatch(0, "ACTACTGA", barcodes);
+        Assert.assertEquals(match.getBarcode(), "ACTGACTG");
+        Assert.assertEquals(match.getMismatches(), 1);
+        Assert.assertTrue(match.getMismatchesToSecondBest() > 1);
+    }
+}
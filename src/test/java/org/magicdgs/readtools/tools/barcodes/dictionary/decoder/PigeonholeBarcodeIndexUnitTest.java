@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.magicdgs.readtools.tools.barcodes.dictionary.decoder;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodePartitions;
+import org.magicdgs.readtools.tools.barcodes.dictionary.PackedBarcodes;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class PigeonholeBarcodeIndexUnitTest extends RTBaseTest {
+
+    private static final int LENGTH = 6;
+
+    // random barcodes of the same length (with a fixed seed)
+    private static final Set<String> BARCODES = new LinkedHashSet<>();
+
+    static {
+        final Random random = new Random(1234);
+        while (BARCODES.size() < 300) {
+            final StringBuilder barcode = new StringBuilder(LENGTH);
+            for (int i = 0; i < LENGTH; i++) {
+                barcode.append("ACGT".charAt(random.nextInt(4)));
+            }
+            BARCODES.add(barcode.toString());
+        }
+    }
+
+    private static final PackedBarcodes PACKED = PackedBarcodes.pack(BARCODES);
+
+    // all the sequences with the bases (including Ns) of the provided length
+    private static List<String> allSequences(final int length) {
+        List<String> sequences = Arrays.asList("");
+        for (int i = 0; i < length; i++) {
+            final List<String> extended = new ArrayList<>(sequences.size() * 5);
+            for (final String s : sequences) {
+                for (final char base : "ACGTN".toCharArray()) {
+                    extended.add(s + base);
+                }
+            }
+            sequences = extended;
+        }
+        return sequences;
+    }
+
+    @DataProvider
+    public Object[][] indexParameters() {
+        final List<Object[]> data = new ArrayList<>();
+        for (int radius = 0; radius <= 3; radius++) {
+            data.add(new Object[] {radius, true});
+            data.add(new Object[] {radius, false});
+        }
+        return data.toArray(new Object[data.size()][]);
+    }
+
+    @Test(dataProvider = "indexParameters")
+    public void testSameResultsAsScanWithinRadius(final int radius, final boolean nAsMismatches)
+            throws Exception {
+        final PigeonholeBarcodeIndex index =
+                PigeonholeBarcodeIndex.build(1, PACKED, radius, nAsMismatches);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(index.getRadius(), radius);
+        final List<String> sequences = allSequences(LENGTH);
+        sequences.addAll(Arrays.asList("acgtac", "ACGTACGT"));
+        for (final String sequence : sequences) {
+            final BarcodeMatch actual = index.getBestBarcodeMatch(sequence);
+            if (actual == null) {
+                continue;
+            }
+            final BarcodeMatch expected =
+                    BarcodeMatch.getBestBarcodeMatch(1, sequence, BARCODES, nAsMismatches);
+            Assert.assertEquals(actual.getIndexNumber(), expected.getIndexNumber(), sequence);
+            Assert.assertEquals(actual.getNumberOfNs(), expected.getNumberOfNs(), sequence);
+            if (expected.getMismatches() > radius) {
+                // the barcodes out of the radius are not found
+                Assert.assertFalse(actual.isMatch(), sequence);
+                continue;
+            }
+            Assert.assertEquals(actual.getBarcode(), expected.getBarcode(), sequence);
+            Assert.assertEquals(actual.getMismatches(), expected.getMismatches(), sequence);
+            // the second best is only known within the radius
+            Assert.assertEquals(actual.getMismatchesToSecondBest(),
+                    Math.min(expected.getMismatchesToSecondBest(), radius + 1), sequence);
+        }
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        final PigeonholeBarcodeIndex index =
+                PigeonholeBarcodeIndex.build(0, PACKED, 0, false);
+        // shorter and non-ACGTN sequences cannot be looked up
+        Assert.assertNull(index.getBestBarcodeMatch("ACGTA"));
+        Assert.assertNull(index.getBestBarcodeMatch("ACGTAX"));
+        // too many Ns to enumerate if they are not mismatches
+        Assert.assertNull(index.getBestBarcodeMatch("NNNNAC"));
+        Assert.assertNotNull(PigeonholeBarcodeIndex.build(0, PACKED, 0, true)
+                .getBestBarcodeMatch("NNNNAC"));
+    }
+
+    @Test
+    public void testBuildWithSortedPartitions() throws Exception {
+        final PigeonholeBarcodeIndex index = PigeonholeBarcodeIndex.build(0, PACKED,
+                PackedBarcodePartitions.sort(PACKED, 2), true);
+        Assert.assertEquals(index.getRadius(), 2);
+        final String barcode = BARCODES.iterator().next();
+        Assert.assertEquals(index.getBestBarcodeMatch(barcode).getBarcode(), barcode);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBuildWithPartitionsForOtherBarcodes() throws Exception {
+        final PackedBarcodes other = PackedBarcodes.pack(Arrays.asList("AAAAAA", "TTTTTT"));
+        PigeonholeBarcodeIndex.build(0, PACKED, PackedBarcodePartitions.sort(other, 2), true);
+    }
+
+    @Test
+    public void testNotBuilt() throws Exception {
+        // radius should be smaller than the barcode length
+        Assert.assertNull(PigeonholeBarcodeIndex.build(0, PACKED, LENGTH, true));
+        // barcodes should have the same length
+        final PackedBarcodes mixed = PackedBarcodes.pack(Arrays.asList("AAAA", "TTTTT"));
+        Assert.assertNull(PigeonholeBarcodeIndex.build(0, mixed, 1, true));
+    }
+}
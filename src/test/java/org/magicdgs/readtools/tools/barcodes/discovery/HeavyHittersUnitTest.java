@@ -0,0 +1,86 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.tools.barcodes.discovery;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class HeavyHittersUnitTest extends RTBaseTest {
+
+    @Test
+    public void testExactCountsForFewSequences() {
+        final HeavyHitters heavyHitters = new HeavyHitters(10, 1024);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                heavyHitters.add("BARCODE" + i);
+            }
+        }
+        Assert.assertEquals(heavyHitters.getTotal(), 15);
+        final List<Map.Entry<String, Long>> result = heavyHitters.getHeavyHitters();
+        Assert.assertEquals(result.size(), 5);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(result.get(i).getKey(), "BARCODE" + (4 - i));
+            Assert.assertEquals(result.get(i).getValue().longValue(), 5 - i);
+        }
+    }
+
+    @Test
+    public void testHeavyHittersWithNoise() {
+        final HeavyHitters heavyHitters = new HeavyHitters(5, 1024);
+        final Map<String, Long> expected = new HashMap<>();
+        final Random random = new Random(1234);
+        for (int i = 0; i < 100000; i++) {
+            // 5 abundant sequences (10% of the records each) and random noise
+            final String sequence = (random.nextInt(2) == 0)
+                    ? "ABUNDANT" + random.nextInt(5) : "NOISE" + random.nextInt(100000);
+            heavyHitters.add(sequence);
+            expected.merge(sequence, 1L, Long::sum);
+        }
+        final List<Map.Entry<String, Long>> result = heavyHitters.getHeavyHitters();
+        Assert.assertEquals(result.size(), 5);
+        for (final Map.Entry<String, Long> entry : result) {
+            Assert.assertTrue(entry.getKey().startsWith("ABUNDANT"), entry.getKey());
+            // estimates are never lower than the real count, and within the error bound
+            final long real = expected.get(entry.getKey());
+            Assert.assertTrue(entry.getValue() >= real);
+            Assert.assertTrue(entry.getValue() - real <= heavyHitters.getErrorBound());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new HeavyHitters(0, 1024);
+    }
+}
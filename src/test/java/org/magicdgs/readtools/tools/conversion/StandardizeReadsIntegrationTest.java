@@ -230,6 +230,19 @@ public class StandardizeReadsIntegrationTest extends RTCommandLineProgramTest {
                                 .addInput(TestResourcesUtils.getWalkthroughDataFile("legacy.single_index.SE.fq")),
                         STANDARD_SINGLE_INDEX_SE},
 
+                // multi-threaded processing keeps the order
+                {"legacy.single_index.paired.threads",
+                        new ArgumentsBuilder()
+                                .addInput(TestResourcesUtils.getWalkthroughDataFile("legacy.single_index.paired_1.fq"))
+                                .addFileArgument("input2", TestResourcesUtils.getWalkthroughDataFile("legacy.single_index.paired_2.fq"))
+                                .addArgument("threads", "4"),
+                        STANDARD_SINGLE_INDEX_PAIRED},
+                {"standard.dual_index.SE.threads",
+                        new ArgumentsBuilder()
+                                .addInput(STANDARD_DUAL_INDEX_SE)
+                                .addArgument("threads", "4"),
+                        STANDARD_DUAL_INDEX_SE},
+
                 // test for barcode quality tags option (not in the Walkthrough data)
                 {"StandardizeReads_single_SAM_quals",
                         new ArgumentsBuilder()
@@ -405,6 +405,39 @@ public class TrimAndFilterPipelineUnitTest extends RTBaseTest {
 
     }
 
+    @Test
+    public void testMergeStats() throws Exception {
+        final TrimmingFunction tf = new CutReadTrimmer(1, 1);
+        final ReadFilter rf = new ReadLengthReadFilter(5, 100);
+        final TrimAndFilterPipeline first = new TrimAndFilterPipeline(
+                Collections.singletonList(tf), Collections.singletonList(rf));
+        final TrimAndFilterPipeline second = new TrimAndFilterPipeline(
+                Collections.singletonList(tf), Collections.singletonList(rf));
+
+        // trimmed and passing in the first pipeline
+        Assert.assertTrue(first.test(ArtificialReadUtils.createArtificialRead("10M")));
+        // completely trimmed and filtered by length in the second one
+        Assert.assertFalse(second.test(ArtificialReadUtils.createArtificialRead("1M")));
+        Assert.assertFalse(second.test(ArtificialReadUtils.createArtificialRead("5M")));
+
+        first.mergeStats(second);
+        testTrimmingMetric(first.getTrimmingStats().get(0), "CutReadTrimmer", 3, 2, 2, 1);
+        testFilterMetric(first.getFilterStats().get(0), "CompletelyTrimReadFilter", 3, 2);
+        testFilterMetric(first.getFilterStats().get(1), "ReadLengthReadFilter", 2, 1);
+
+        // the merged pipeline is not modified
+        testTrimmingMetric(second.getTrimmingStats().get(0), "CutReadTrimmer", 2, 1, 1, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMergeStatsDifferentPipelines() throws Exception {
+        new TrimAndFilterPipeline(Collections.singletonList(new CutReadTrimmer(1, 1)),
+                Collections.emptyList())
+                .mergeStats(new TrimAndFilterPipeline(
+                        Collections.singletonList(new TrailingNtrimmer()),
+                        Collections.emptyList()));
+    }
+
     // helper method for test filter metric
     private void testFilterMetric(final FilterMetric metric,
             final String filterName, final int total, final int passed) {
@@ -94,7 +94,15 @@ public class TrimReadsIntegrationTest extends RTCommandLineProgramTest {
                 // new method for not trimming quality is disable the quality trimming
                 {"testTrimmingSingleEndNoQuality", getRequiredArguments()
                         .addArgument("disableTrimmer", "MottQualityTrimmer"),
-                        false, false}
+                        false, false},
+                // multi-threaded processing provides the same results
+                {"testTrimmingSingleEndDefaultParameters", getRequiredArguments()
+                        .addArgument("threads", "4"),
+                        false, true},
+                {"testTrimmingPairEndDefaultParameters", getRequiredArguments()
+                        .addFileArgument("input2", secondOfPair)
+                        .addArgument("threads", "4"),
+                        true, true}
         };
     }
 
@@ -0,0 +1,213 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMTag;
+import htsjdk.samtools.fastq.FastqRecord;
+import org.broadinstitute.hellbender.utils.SimpleInterval;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class CompactFastqGATKReadUnitTest extends RTBaseTest {
+
+    private static final String BASES = "ACTGTTAG";
+    private static final String QUALITIES = "FFGCHI5#";
+
+    private static CompactFastqGATKRead createRead(final FastqRecord record) {
+        return new CompactFastqGATKRead(record.getReadName(), record.getReadBases(),
+                record.getBaseQualities(), record.getBaseQualityHeader());
+    }
+
+    @DataProvider(name = "fastqRecords")
+    public Object[][] fastqRecords() {
+        return new Object[][] {
+                {new FastqRecord("baseRecord", BASES, null, QUALITIES)},
+                {new FastqRecord("baseRecord", BASES, "quality comment", QUALITIES)},
+                {new FastqRecord("baseRecord/2", BASES, "quality comment", QUALITIES)},
+                {new FastqRecord("baseRecord#ACTG-TTTT/1", BASES, null, QUALITIES)},
+                {new FastqRecord("baseRecord 2:N:3:ATCG", BASES, "quality comment", QUALITIES)},
+                {new FastqRecord("baseRecord 1:Y:3:ATCG", BASES, null, QUALITIES)},
+                {new FastqRecord("baseRecord", "", null, "")}
+        };
+    }
+
+    @Test(dataProvider = "fastqRecords")
+    public void testSameAsFastqGATKRead(final FastqRecord record) throws Exception {
+        final GATKRead expected = new FastqGATKRead(record);
+        final CompactFastqGATKRead read = createRead(record);
+        Assert.assertEquals(read.getName(), expected.getName());
+        Assert.assertEquals(read.getBases(), expected.getBases());
+        Assert.assertEquals(read.getBaseQualities(), expected.getBaseQualities());
+        Assert.assertEquals(read.getLength(), expected.getLength());
+        Assert.assertEquals(read.isPaired(), expected.isPaired());
+        Assert.assertEquals(read.isFirstOfPair(), expected.isFirstOfPair());
+        Assert.assertEquals(read.isSecondOfPair(), expected.isSecondOfPair());
+        Assert.assertEquals(read.failsVendorQualityCheck(), expected.failsVendorQualityCheck());
+        Assert.assertTrue(read.isUnmapped());
+        Assert.assertNull(read.getContig());
+        Assert.assertEquals(read.getStart(), expected.getStart());
+        Assert.assertEquals(read.getEnd(), expected.getEnd());
+        Assert.assertEquals(read.getAttributeAsString(SAMTag.CO.name()),
+                expected.getAttributeAsString(SAMTag.CO.name()));
+        Assert.assertEquals(read.getAttributeAsString(SAMTag.BC.name()),
+                expected.getAttributeAsString(SAMTag.BC.name()));
+        Assert.assertEquals(read.getSAMString(), expected.getSAMString());
+        // conversion to SAMRecord should be the same
+        final SAMFileHeader header = new SAMFileHeader();
+        Assert.assertEquals(read.convertToSAMRecord(header), expected.convertToSAMRecord(header));
+    }
+
+    @Test
+    public void testConvertToSAMRecordDoesNotShareArrays() throws Exception {
+        final CompactFastqGATKRead read = createRead(
+                new FastqRecord("read", BASES, null, QUALITIES));
+        final SAMRecord record = read.convertToSAMRecord(null);
+        record.getReadBases()[0] = 'N';
+        record.getBaseQualities()[0] = 0;
+        Assert.assertEquals(read.getBasesString(), BASES);
+        Assert.assertEquals(read.getBaseQualities(),
+                createRead(new FastqRecord("read", BASES, null, QUALITIES)).getBaseQualities());
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+        final CompactFastqGATKRead read = createRead(
+                new FastqRecord("read", BASES, null, QUALITIES));
+        Assert.assertFalse(read.hasAttribute("CO"));
+        // several attributes to force growing the store
+        for (int i = 0; i < 10; i++) {
+            read.setAttribute("X" + i, i);
+        }
+        read.setAttribute("ZS", "string");
+        read.setAttribute("ZB", new byte[] {'A', 'C'});
+        read.setReadGroup("rg1");
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(read.getAttributeAsInteger("X" + i).intValue(), i);
+        }
+        Assert.assertEquals(read.getAttributeAsString("X1"), "1");
+        Assert.assertEquals(read.getAttributeAsString("ZS"), "string");
+        Assert.assertEquals(read.getAttributeAsString("ZB"), "AC");
+        Assert.assertEquals(read.getAttributeAsByteArray("ZS"), "string".getBytes());
+        Assert.assertEquals(read.getReadGroup(), "rg1");
+        Assert.assertEquals(read.getAttributeAsString(SAMTag.RG.name()), "rg1");
+        // the conversion contains all of them
+        final SAMRecord record = read.convertToSAMRecord(null);
+        Assert.assertEquals(record.getIntegerAttribute("X9").intValue(), 9);
+        Assert.assertEquals(record.getStringAttribute("RG"), "rg1");
+        // overwrite and clear
+        read.setAttribute("ZS", "other");
+        Assert.assertEquals(read.getAttributeAsString("ZS"), "other");
+        read.clearAttribute("X0");
+        Assert.assertFalse(read.hasAttribute("X0"));
+        Assert.assertTrue(read.hasAttribute("X1"));
+        read.setAttribute("X1", (Integer) null);
+        Assert.assertFalse(read.hasAttribute("X1"));
+        read.clearAttributes();
+        Assert.assertFalse(read.hasAttribute("ZS"));
+        Assert.assertNull(read.getReadGroup());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidAttributeName() throws Exception {
+        createRead(new FastqRecord("read", BASES, null, QUALITIES)).setAttribute("XXX", 1);
+    }
+
+    @Test
+    public void testCopies() throws Exception {
+        final CompactFastqGATKRead read = createRead(
+                new FastqRecord("read/1", BASES, "comment", QUALITIES));
+        final GATKRead copy = read.copy();
+        final GATKRead deepCopy = read.deepCopy();
+        Assert.assertEquals(copy, read);
+        Assert.assertEquals(deepCopy, read);
+        Assert.assertNotSame(copy, read);
+        // modifying the attributes of the copy does not change the original
+        copy.setAttribute(SAMTag.CO.name(), "other");
+        Assert.assertEquals(read.getAttributeAsString(SAMTag.CO.name()), "comment");
+        Assert.assertNotEquals(copy, read);
+        // modifying the deep copy bases does not change the original
+        deepCopy.setName("other");
+        Assert.assertEquals(read.getName(), "read");
+    }
+
+    @Test
+    public void testMappingInformation() throws Exception {
+        final GATKRead expected = ArtificialReadUtils.createArtificialRead("8M");
+        final CompactFastqGATKRead read = createRead(
+                new FastqRecord("read/1", BASES, null, QUALITIES));
+        read.setName(expected.getName());
+        read.setBases(expected.getBases());
+        read.setBaseQualities(expected.getBaseQualities());
+        read.setCigar("2S4M2S");
+        read.setPosition(new SimpleInterval("1", 10, 10));
+        read.setMatePosition("1", 100);
+        read.setMappingQuality(60);
+        read.setFragmentLength(100);
+        Assert.assertFalse(read.isUnmapped());
+        Assert.assertFalse(read.mateIsUnmapped());
+        Assert.assertEquals(read.getContig(), "1");
+        Assert.assertEquals(read.getStart(), 10);
+        Assert.assertEquals(read.getEnd(), 13);
+        Assert.assertEquals(read.getUnclippedStart(), 8);
+        Assert.assertEquals(read.getUnclippedEnd(), 15);
+        Assert.assertEquals(read.getMateContig(), "1");
+        Assert.assertEquals(read.getMateStart(), 100);
+        final SAMRecord record = read.convertToSAMRecord(null);
+        Assert.assertEquals(record.getAlignmentStart(), 10);
+        Assert.assertEquals(record.getAlignmentEnd(), 13);
+        Assert.assertEquals(record.getCigarString(), "2S4M2S");
+        Assert.assertEquals(record.getMappingQuality(), 60);
+        Assert.assertEquals(record.getInferredInsertSize(), 100);
+        Assert.assertEquals(record.getMateAlignmentStart(), 100);
+        Assert.assertFalse(record.getReadUnmappedFlag());
+        // and set unmapped again
+        read.setIsUnmapped();
+        Assert.assertTrue(read.isUnmapped());
+        Assert.assertNull(read.getContig());
+        Assert.assertEquals(read.getAssignedContig(), "1");
+        Assert.assertEquals(read.getAssignedStart(), 10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeQualities() throws Exception {
+        createRead(new FastqRecord("read", BASES, null, QUALITIES))
+                .setBaseQualities(new byte[] {-1});
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNullName() throws Exception {
+        new CompactFastqGATKRead(null, new byte[0], new byte[0], null);
+    }
+}
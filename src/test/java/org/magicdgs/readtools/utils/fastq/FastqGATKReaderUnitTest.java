@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+import org.magicdgs.readtools.utils.iterators.RecordToReadIterator;
+
+import htsjdk.samtools.fastq.FastqReader;
+import org.broadinstitute.hellbender.exceptions.UserException;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class FastqGATKReaderUnitTest extends RTBaseTest {
+
+    private static final String TWO_RECORDS = "@read1 comment\nACTG\n+\nIIII\n"
+            + "@read2/1\nTTAA\n+read2/1\n#II@\n";
+
+    // reads all the records with the htsjdk reader
+    private static List<GATKRead> readWithHtsjdk(final File file) {
+        final List<GATKRead> reads = new ArrayList<>();
+        try (final FastqReader reader = new FastqReader(file)) {
+            new RecordToReadIterator<>(reader.iterator(), FastqGATKRead::new)
+                    .forEachRemaining(reads::add);
+        }
+        return reads;
+    }
+
+    // reads all the records with the tested reader
+    private static List<GATKRead> readAll(final byte[] data, final int bufferSize) {
+        final List<GATKRead> reads = new ArrayList<>();
+        try (final FastqGATKReader reader = new FastqGATKReader(
+                new ByteArrayInputStream(data), "test", bufferSize)) {
+            reader.forEach(reads::add);
+        }
+        return reads;
+    }
+
+    private static void assertReadsEquals(final List<GATKRead> actual,
+            final List<GATKRead> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            Assert.assertEquals(actual.get(i).convertToSAMRecord(null),
+                    expected.get(i).convertToSAMRecord(null), "failed read " + i);
+        }
+    }
+
+    @DataProvider(name = "walkthroughFastq")
+    public Object[][] walkthroughFastq() {
+        return new Object[][] {
+                {"legacy.single_index.SE.fq"},
+                {"legacy.dual_index.paired_1.fq"},
+                {"legacy.single_index.illumina_quality.SE.fq"},
+                {"casava.single_index.paired_2.fq"}
+        };
+    }
+
+    @Test(dataProvider = "walkthroughFastq")
+    public void testSameReadsAsHtsjdk(final String fileName) throws Exception {
+        final File file = TestResourcesUtils.getWalkthroughDataFile(fileName);
+        final byte[] data = Files.readAllBytes(file.toPath());
+        final List<GATKRead> expected = readWithHtsjdk(file);
+        // small buffer sizes force the buffer to be re-filled and grow
+        for (final int bufferSize : new int[] {1, 7, 100, FastqGATKReader.DEFAULT_BUFFER_SIZE}) {
+            assertReadsEquals(readAll(data, bufferSize), expected);
+        }
+    }
+
+    @Test(dataProvider = "walkthroughFastq")
+    public void testParseChunksAtAnyOffset(final String fileName) throws Exception {
+        final File file = TestResourcesUtils.getWalkthroughDataFile(fileName);
+        final byte[] data = Files.readAllBytes(file.toPath());
+        final List<GATKRead> expected = readWithHtsjdk(file);
+        // split the file at different positions
+        for (int split = 0; split <= data.length; split += 13) {
+            final List<GATKRead> reads = new ArrayList<>(
+                    FastqGATKReader.parseChunk(data, 0, split, data.length, "test"));
+            reads.addAll(FastqGATKReader.parseChunk(data, split, data.length, data.length,
+                    "test"));
+            assertReadsEquals(reads, expected);
+        }
+    }
+
+    @Test
+    public void testParsedRecords() throws Exception {
+        final List<GATKRead> reads = readAll(TWO_RECORDS.getBytes(StandardCharsets.US_ASCII),
+                FastqGATKReader.DEFAULT_BUFFER_SIZE);
+        Assert.assertEquals(reads.size(), 2);
+        Assert.assertEquals(reads.get(0).getName(), "read1");
+        Assert.assertEquals(reads.get(0).getBasesString(), "ACTG");
+        Assert.assertEquals(reads.get(0).getBaseQualities(), new byte[] {40, 40, 40, 40});
+        Assert.assertFalse(reads.get(0).hasAttribute("CO"));
+        Assert.assertEquals(reads.get(1).getName(), "read2");
+        Assert.assertTrue(reads.get(1).isFirstOfPair());
+        Assert.assertEquals(reads.get(1).getBaseQualities(), new byte[] {2, 40, 40, 31});
+        Assert.assertEquals(reads.get(1).getAttributeAsString("CO"), "read2/1");
+    }
+
+    @DataProvider(name = "equivalentFormats")
+    public Object[][] equivalentFormats() {
+        return new Object[][] {
+                // no trailing new line
+                {TWO_RECORDS.substring(0, TWO_RECORDS.length() - 1)},
+                // windows new lines
+                {TWO_RECORDS.replace("\n", "\r\n")},
+                // blank lines between records
+                {TWO_RECORDS.replace("@read2", "\n\n@read2") + "\n\n"}
+        };
+    }
+
+    @Test(dataProvider = "equivalentFormats")
+    public void testEquivalentFormats(final String fastq) throws Exception {
+        final List<GATKRead> expected = readAll(TWO_RECORDS.getBytes(StandardCharsets.US_ASCII),
+                FastqGATKReader.DEFAULT_BUFFER_SIZE);
+        assertReadsEquals(readAll(fastq.getBytes(StandardCharsets.US_ASCII), 3), expected);
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        Assert.assertTrue(readAll(new byte[0], 10).isEmpty());
+        Assert.assertTrue(readAll("\n\n".getBytes(StandardCharsets.US_ASCII), 10).isEmpty());
+    }
+
+    @DataProvider(name = "malformed")
+    public Object[][] malformedFastq() {
+        return new Object[][] {
+                {"read1\nACTG\n+\nIIII\n"},
+                {"@read1\nACTG\nIIII\n+\n"},
+                {"@read1\nACTG\n+\nIII\n"},
+                {"@read1\nACTG\n+\n"},
+                {"@read1\nACTG\n"},
+                {"@read1\nACTG\n+\nII I\n"}
+        };
+    }
+
+    @Test(dataProvider = "malformed", expectedExceptions = UserException.MalformedFile.class)
+    public void testMalformedRecord(final String fastq) throws Exception {
+        readAll(fastq.getBytes(StandardCharsets.US_ASCII), FastqGATKReader.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Test
+    public void testFindRecordStart() throws Exception {
+        final byte[] data = TWO_RECORDS.getBytes(StandardCharsets.US_ASCII);
+        final int secondRecord = TWO_RECORDS.indexOf("@read2");
+        Assert.assertEquals(FastqGATKReader.findRecordStart(data, 0, data.length), 0);
+        Assert.assertEquals(FastqGATKReader.findRecordStart(data, 1, data.length), secondRecord);
+        // quality line starting with '@' is not a record start
+        final byte[] startWithQuality = "@IIII\n@r\nACTG\n+\nIIII\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(FastqGATKReader.findRecordStart(startWithQuality, 0,
+                startWithQuality.length), 6);
+        // not enough data
+        Assert.assertEquals(FastqGATKReader.findRecordStart(data, secondRecord + 1, data.length),
+                -1);
+    }
+}
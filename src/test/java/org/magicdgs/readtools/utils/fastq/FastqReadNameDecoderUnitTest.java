@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.fastq;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class FastqReadNameDecoderUnitTest extends RTBaseTest {
+
+    // read names to test against the regular expression implementation
+    private static final String[] READ_NAMES = {
+            // CASAVA
+            "HWI-ST1234:8:1101:1224:2236 1:N:0:ACTG",
+            "HWI-ST1234:8:1101:1224:2236 2:Y:18:ATCACG",
+            "HWI-ST1234:8:1101:1224:2236 0:N:0:NNNN",
+            "HWI-ST1234:8:1101:1224:2236  \t1:N:0:ACTGTT extra comment",
+            "HWI-ST1234:8:1101:1224:2236 1:N:0:ACTG-TTTT",
+            "HWI-ST1234:8:1101:1224:2236 1:N:0:ACTG+TTTT",
+            "HWI-ST1234:8:1101:1224:2236 comment 1:N:0:ACTG",
+            "HWI-ST1234:8:1101:1224:2236 3:N:0:ACTG",
+            "HWI-ST1234:8:1101:1224:2236 1:N:0:",
+            "HWI-ST1234:8:1101:1224:2236 1:N::ACTG",
+            "HWI-ST1234:8:1101:1224:2236 1:X:0:ACTG",
+            "HWI-ST1234:8:1101:1224:2236 1:N:0:actg",
+            "HWI-ST1234:8:1101:1224:2236 1:N",
+            // ILLUMINA
+            "HWUSI-EAS100R:6:73:941:1973#ACTG/1",
+            "HWUSI-EAS100R:6:73:941:1973#ACTG/2",
+            "HWUSI-EAS100R:6:73:941:1973#ACTG-TTTT/1",
+            "HWUSI-EAS100R:6:73:941:1973#ACTG",
+            "HWUSI-EAS100R:6:73:941:1973#0/1",
+            "HWUSI-EAS100R:6:73:941:1973/1",
+            "HWUSI-EAS100R:6:73:941:1973/3",
+            "HWUSI-EAS100R:6:73:941:1973#/1",
+            "HWUSI-EAS100R:6:73:941:1973#",
+            "HWUSI-EAS100R:6:73:941:1973/",
+            "HWUSI-EAS100R:6:73:941:1973#ACTG/1/2",
+            "HWUSI-EAS100R:6:73:941:1973#ACTG/1 comment",
+            "HWUSI-EAS100R:6:73:941:1973/1 1:N:0:ACTG",
+            "#ACTG/1",
+            "/1",
+            "read",
+            "read with spaces"
+    };
+
+    @DataProvider(name = "lockedEncodings")
+    public Object[][] lockedEncodings() {
+        return new Object[][] {
+                {"HWI-ST1234:8:1101:1224:2236 1:N:0:ACTG", FastqReadNameEncoding.CASAVA},
+                {"HWUSI-EAS100R:6:73:941:1973#ACTG/1", FastqReadNameEncoding.ILLUMINA}
+        };
+    }
+
+    private static GATKRead decodeWithRegex(final String readName) {
+        final GATKRead read = ArtificialReadUtils.createArtificialUnmappedRead(null,
+                new byte[] {'A'}, new byte[] {30});
+        FastqReadNameEncoding.updateReadFromReadName(read, readName);
+        return read;
+    }
+
+    private static GATKRead decode(final FastqReadNameDecoder decoder, final String readName) {
+        final GATKRead read = ArtificialReadUtils.createArtificialUnmappedRead(null,
+                new byte[] {'A'}, new byte[] {30});
+        decoder.updateReadFromReadName(read, readName);
+        return read;
+    }
+
+    @Test(dataProvider = "lockedEncodings")
+    public void testSameAsRegularExpressions(final String detectionName,
+            final FastqReadNameEncoding expectedEncoding) throws Exception {
+        final FastqReadNameDecoder decoder = new FastqReadNameDecoder();
+        for (int i = 0; i < FastqReadNameDecoder.DETECTION_RECORDS; i++) {
+            Assert.assertNull(decoder.getLockedEncoding());
+            decode(decoder, detectionName);
+        }
+        Assert.assertEquals(decoder.getLockedEncoding(), expectedEncoding);
+        for (final String readName : READ_NAMES) {
+            Assert.assertEquals(decode(decoder, readName).convertToSAMRecord(null),
+                    decodeWithRegex(readName).convertToSAMRecord(null), readName);
+        }
+    }
+
+    @Test
+    public void testMixedEncodingsNotLocked() throws Exception {
+        final FastqReadNameDecoder decoder = new FastqReadNameDecoder();
+        decode(decoder, "HWI-ST1234:8:1101:1224:2236 1:N:0:ACTG");
+        decode(decoder, "HWUSI-EAS100R:6:73:941:1973#ACTG/1");
+        Assert.assertNull(decoder.getLockedEncoding());
+        for (final String readName : READ_NAMES) {
+            Assert.assertEquals(decode(decoder, readName).convertToSAMRecord(null),
+                    decodeWithRegex(readName).convertToSAMRecord(null), readName);
+        }
+    }
+}
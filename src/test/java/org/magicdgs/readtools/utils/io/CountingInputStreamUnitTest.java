@@ -0,0 +1,61 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class CountingInputStreamUnitTest extends RTBaseTest {
+
+    @Test
+    public void testSharedCounter() throws Exception {
+        final LongAdder counter = new LongAdder();
+        try (final InputStream first = new CountingInputStream(
+                new ByteArrayInputStream(new byte[100]), counter);
+                final InputStream second = new CountingInputStream(
+                        new ByteArrayInputStream(new byte[10]), counter)) {
+            Assert.assertEquals(first.read(), 0);
+            Assert.assertEquals(first.read(new byte[20]), 20);
+            Assert.assertEquals(first.skip(30), 30);
+            Assert.assertEquals(counter.sum(), 51);
+            // reading past the end does not count
+            Assert.assertEquals(first.read(new byte[100]), 49);
+            Assert.assertEquals(first.read(), -1);
+            Assert.assertEquals(counter.sum(), 100);
+            Assert.assertEquals(second.read(new byte[100]), 10);
+            Assert.assertEquals(counter.sum(), 110);
+            Assert.assertFalse(first.markSupported());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.seekablestream.ByteArraySeekableStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class CountingSeekableStreamUnitTest extends RTBaseTest {
+
+    @Test
+    public void testSeekIsNotCounted() throws Exception {
+        final LongAdder counter = new LongAdder();
+        try (final SeekableStream stream = new CountingSeekableStream(
+                new ByteArraySeekableStream(new byte[100]), counter)) {
+            Assert.assertEquals(stream.length(), 100);
+            Assert.assertEquals(stream.read(), 0);
+            Assert.assertEquals(stream.read(new byte[20], 0, 20), 20);
+            Assert.assertEquals(counter.sum(), 21);
+            stream.seek(90);
+            Assert.assertEquals(stream.position(), 90);
+            Assert.assertEquals(counter.sum(), 21);
+            // reading past the end does not count
+            Assert.assertEquals(stream.read(new byte[20], 0, 20), 10);
+            Assert.assertTrue(stream.eof());
+            Assert.assertEquals(stream.read(), -1);
+            Assert.assertEquals(counter.sum(), 31);
+        }
+    }
+}
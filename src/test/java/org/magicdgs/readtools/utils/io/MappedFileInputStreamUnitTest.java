@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class MappedFileInputStreamUnitTest extends RTBaseTest {
+
+    private static final File FASTQ_FILE =
+            TestResourcesUtils.getWalkthroughDataFile("legacy.single_index.SE.fq");
+
+    @DataProvider(name = "windowSizes")
+    public Object[][] windowSizes() {
+        return new Object[][] {{1}, {7}, {1000}, {MappedFileInputStream.DEFAULT_WINDOW_SIZE}};
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testReadAll(final int windowSize) throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final InputStream stream =
+                new MappedFileInputStream(FASTQ_FILE.toPath(), windowSize)) {
+            output.write(stream.read());
+            final byte[] buffer = new byte[100];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            Assert.assertEquals(stream.available(), 0);
+        }
+        Assert.assertEquals(output.toByteArray(), Files.readAllBytes(FASTQ_FILE.toPath()));
+    }
+
+    @Test(dataProvider = "windowSizes")
+    public void testSkip(final int windowSize) throws Exception {
+        final byte[] expected = Files.readAllBytes(FASTQ_FILE.toPath());
+        try (final InputStream stream =
+                new MappedFileInputStream(FASTQ_FILE.toPath(), windowSize)) {
+            Assert.assertEquals(stream.skip(10), 10);
+            final byte[] buffer = new byte[5];
+            Assert.assertEquals(stream.read(buffer, 0, 1), 1);
+            Assert.assertEquals(buffer[0], expected[10]);
+            Assert.assertEquals(stream.skip(2000), 2000);
+            Assert.assertEquals(stream.read(), expected[2011] & 0xFF);
+            Assert.assertEquals(stream.available(), expected.length - 2012);
+            Assert.assertEquals(stream.skip(expected.length), expected.length - 2012);
+            Assert.assertEquals(stream.read(), -1);
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        final File empty = new File(createTestTempDir("empty"), "empty.fq");
+        Assert.assertTrue(empty.createNewFile());
+        try (final InputStream stream = new MappedFileInputStream(empty.toPath())) {
+            Assert.assertEquals(stream.read(), -1);
+            Assert.assertEquals(stream.read(new byte[10]), -1);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+
+import htsjdk.samtools.util.BlockCompressedInputStream;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelBgzfInputStreamUnitTest extends RTBaseTest {
+
+    private static byte[] readAll(final InputStream stream) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        stream.close();
+        return output.toByteArray();
+    }
+
+    @DataProvider(name = "bgzfFiles")
+    public Object[][] bgzfFiles() {
+        final File singleIndex = TestResourcesUtils
+                .getWalkthroughDataFile("legacy.single_index.paired.mapped.bam");
+        final File dualIndex = TestResourcesUtils
+                .getWalkthroughDataFile("standard.dual_index.SE.bam");
+        return new Object[][] {
+                {singleIndex, 1}, {singleIndex, 2}, {singleIndex, 4},
+                {dualIndex, 1}, {dualIndex, 3}
+        };
+    }
+
+    @Test(dataProvider = "bgzfFiles")
+    public void testSameAsBlockCompressedInputStream(final File file, final int nThreads)
+            throws Exception {
+        final byte[] expected = readAll(new BlockCompressedInputStream(file));
+        final byte[] actual = readAll(new ParallelBgzfInputStream(
+                Files.newInputStream(file.toPath()), file.toString(), nThreads));
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception {
+        Assert.assertEquals(readAll(new ParallelBgzfInputStream(
+                new ByteArrayInputStream(new byte[0]), "empty", 2)), new byte[0]);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testTruncatedBlock() throws Exception {
+        final File file = TestResourcesUtils.getWalkthroughDataFile("standard.dual_index.SE.bam");
+        final byte[] compressed = Files.readAllBytes(file.toPath());
+        readAll(new ParallelBgzfInputStream(
+                new ByteArrayInputStream(Arrays.copyOf(compressed, 100)), "truncated", 2));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNotBgzf() throws Exception {
+        final File file = TestResourcesUtils
+                .getWalkthroughDataFile("standard.dual_index.SE.sam");
+        readAll(new ParallelBgzfInputStream(Files.newInputStream(file.toPath()), "sam", 2));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.io;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ReadAheadInputStreamUnitTest extends RTBaseTest {
+
+    private static byte[] randomData(final int length) {
+        final byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    @DataProvider(name = "readAheadParams")
+    public Object[][] readAheadParams() {
+        return new Object[][] {
+                {0, 10, 2},
+                {1, 10, 2},
+                {100, 10, 2},
+                {100, 7, 3},
+                {10_000, 1000, 4},
+                {10_000, ReadAheadInputStream.DEFAULT_BUFFER_SIZE,
+                        ReadAheadInputStream.DEFAULT_NUMBER_OF_BUFFERS}
+        };
+    }
+
+    @Test(dataProvider = "readAheadParams")
+    public void testReadAllData(final int length, final int bufferSize, final int nBuffers)
+            throws Exception {
+        final byte[] data = randomData(length);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (final InputStream stream = new ReadAheadInputStream(
+                new ByteArrayInputStream(data), "test", bufferSize, nBuffers)) {
+            // mix single byte and array reads
+            final int first = stream.read();
+            if (first != -1) {
+                output.write(first);
+            }
+            final byte[] buffer = new byte[13];
+            int read;
+            while ((read = stream.read(buffer, 0, buffer.length)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            Assert.assertEquals(stream.read(), -1);
+        }
+        Assert.assertEquals(output.toByteArray(), data);
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws Exception {
+        final InputStream stream = new ReadAheadInputStream(
+                new ByteArrayInputStream(randomData(1000)), "test", 10, 2);
+        stream.read();
+        stream.close();
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testErrorPropagation() throws Exception {
+        final InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("expected failure");
+            }
+        };
+        try (final InputStream stream = new ReadAheadInputStream(failing, "test", 10, 2)) {
+            stream.read();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNumberOfBuffers() throws Exception {
+        new ReadAheadInputStream(new ByteArrayInputStream(new byte[0]), "test", 10, 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.iterators;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ReadAheadIteratorUnitTest extends RTBaseTest {
+
+    @DataProvider(name = "readAheadParams")
+    public Object[][] readAheadParams() {
+        return new Object[][] {
+                {0, 1, 1},
+                {1, 10, 2},
+                {100, 10, 1},
+                {1001, 10, 4},
+                {10000, ReadAheadIterator.DEFAULT_BATCH_SIZE,
+                        ReadAheadIterator.DEFAULT_NUMBER_OF_BATCHES}
+        };
+    }
+
+    @Test(dataProvider = "readAheadParams")
+    public void testSameRecords(final int nRecords, final int batchSize, final int nBatches)
+            throws Exception {
+        final List<Integer> expected = IntStream.range(0, nRecords).boxed()
+                .collect(Collectors.toList());
+        final List<Integer> actual = new ArrayList<>(nRecords);
+        try (final ReadAheadIterator<Integer> iterator = new ReadAheadIterator<>(
+                expected.iterator(), "test", batchSize, nBatches)) {
+            iterator.forEach(actual::add);
+            Assert.assertFalse(iterator.hasNext());
+            Assert.assertThrows(NoSuchElementException.class, iterator::next);
+        }
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testErrorPropagated() throws Exception {
+        final Iterator<Integer> failing = new Iterator<Integer>() {
+            private int n = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                if (n == 15) {
+                    throw new IllegalStateException("failing iterator");
+                }
+                return n++;
+            }
+        };
+        try (final ReadAheadIterator<Integer> iterator =
+                new ReadAheadIterator<>(failing, "test", 10, 2)) {
+            // the records before the error are returned
+            for (int i = 0; i < 15; i++) {
+                Assert.assertEquals(iterator.next().intValue(), i);
+            }
+            Assert.assertThrows(IllegalStateException.class, iterator::hasNext);
+        }
+    }
+
+    @Test
+    public void testCloseBeforeConsuming() throws Exception {
+        final ReadAheadIterator<Integer> iterator = new ReadAheadIterator<>(
+                IntStream.range(0, 1000).iterator(), "test", 10, 1);
+        Assert.assertEquals(iterator.next().intValue(), 0);
+        iterator.close();
+    }
+
+    @Test(timeOut = 10000)
+    public void testCloseWaitsForReadInFlight() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final AtomicBoolean inFlight = new AtomicBoolean(false);
+        final Iterator<Integer> slow = new Iterator<Integer>() {
+            private int n = 0;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                inFlight.set(true);
+                reading.countDown();
+                // simulates a read which does not respond to interruption
+                final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                inFlight.set(false);
+                return n++;
+            }
+        };
+        final ReadAheadIterator<Integer> iterator = new ReadAheadIterator<>(slow, "test", 10, 1);
+        reading.await();
+        iterator.close();
+        Assert.assertFalse(inFlight.get());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.ValidationStringency;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Iterator;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ParallelBamReaderUnitTest extends RTBaseTest {
+
+    @DataProvider(name = "bamFiles")
+    public Object[][] bamFiles() {
+        return new Object[][] {
+                {"legacy.single_index.paired.mapped.bam", 2},
+                {"standard.dual_index.SE.bam", 4},
+                {"standard.single_index.paired.bam", 3}
+        };
+    }
+
+    @Test(dataProvider = "bamFiles")
+    public void testSameAsSamReader(final String fileName, final int nThreads) throws Exception {
+        final File file = TestResourcesUtils.getWalkthroughDataFile(fileName);
+        try (final SamReader expected = new ReadReaderFactory().openSamReader(file);
+                final ParallelBamReader actual = new ParallelBamReader(
+                        Files.newInputStream(file.toPath()), fileName, nThreads,
+                        ValidationStringency.LENIENT)) {
+            Assert.assertEquals(actual.getFileHeader(), expected.getFileHeader());
+            final Iterator<SAMRecord> expectedIterator = expected.iterator();
+            while (expectedIterator.hasNext()) {
+                Assert.assertTrue(actual.hasNext());
+                Assert.assertEquals(actual.next().getSAMString(),
+                        expectedIterator.next().getSAMString());
+            }
+            Assert.assertFalse(actual.hasNext());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read;
+
+import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.TestResourcesUtils;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMFileWriter;
+import htsjdk.samtools.SAMFileWriterFactory;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.ValidationStringency;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class ShardedBamReaderUnitTest extends RTBaseTest {
+
+    private static final int NUMBER_OF_PAIRS = 20000;
+
+    // unmapped paired BAM large enough to have several BGZF blocks
+    private File pairedBam;
+
+    @BeforeClass
+    public void createPairedBam() throws Exception {
+        pairedBam = new File(createTestTempDir(this.getClass().getSimpleName()), "paired.bam");
+        final SAMFileHeader header = new SAMFileHeader();
+        header.setSortOrder(SAMFileHeader.SortOrder.unsorted);
+        header.setGroupOrder(SAMFileHeader.GroupOrder.query);
+        final Random random = new Random(1984);
+        try (final SAMFileWriter writer = new SAMFileWriterFactory()
+                .makeBAMWriter(header, true, pairedBam)) {
+            for (int i = 0; i < NUMBER_OF_PAIRS; i++) {
+                writer.addAlignment(createUnmappedRecord(header, "read" + i, true, random));
+                writer.addAlignment(createUnmappedRecord(header, "read" + i, false, random));
+            }
+        }
+    }
+
+    private static SAMRecord createUnmappedRecord(final SAMFileHeader header, final String name,
+            final boolean first, final Random random) {
+        final byte[] bases = new byte[100];
+        final byte[] quals = new byte[bases.length];
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = (byte) "ACGT".charAt(random.nextInt(4));
+            quals[i] = (byte) random.nextInt(41);
+        }
+        final SAMRecord record = new SAMRecord(header);
+        record.setReadName(name);
+        record.setReadBases(bases);
+        record.setBaseQualities(quals);
+        record.setReadUnmappedFlag(true);
+        record.setReadPairedFlag(true);
+        record.setMateUnmappedFlag(true);
+        record.setFirstOfPairFlag(first);
+        record.setSecondOfPairFlag(!first);
+        return record;
+    }
+
+    @Test
+    public void testSplitKeepsPairsTogether() throws Exception {
+        final List<BamShardSplitter.Shard> shards = BamShardSplitter.split(pairedBam.toPath(), 4);
+        Assert.assertEquals(shards.size(), 4);
+        Assert.assertEquals(shards.get(shards.size() - 1).getEnd(), Long.MAX_VALUE);
+        for (int i = 1; i < shards.size(); i++) {
+            Assert.assertEquals(shards.get(i).getStart(), shards.get(i - 1).getEnd());
+            // each shard should start with the first read of a pair
+            final List<BamShardSplitter.Shard> single = new ArrayList<>();
+            single.add(shards.get(i));
+            try (final ShardedBamReader reader = new ShardedBamReader(pairedBam.toPath(),
+                    single, ValidationStringency.SILENT)) {
+                Assert.assertTrue(reader.next().getFirstOfPairFlag());
+            }
+        }
+    }
+
+    @DataProvider(name = "bamFiles")
+    public Object[][] bamFiles() {
+        return new Object[][] {
+                {TestResourcesUtils.getWalkthroughDataFile("legacy.single_index.paired.mapped.bam"), 2},
+                {TestResourcesUtils.getWalkthroughDataFile("standard.dual_index.SE.bam"), 3},
+                {pairedBam, 2},
+                {pairedBam, 5},
+                {pairedBam, 16}
+        };
+    }
+
+    @Test(dataProvider = "bamFiles")
+    public void testSameAsSamReader(final File file, final int nShards) throws Exception {
+        final List<BamShardSplitter.Shard> shards = BamShardSplitter.split(file.toPath(), nShards);
+        try (final SamReader expected = new ReadReaderFactory().openSamReader(file);
+                final ShardedBamReader actual = new ShardedBamReader(file.toPath(), shards,
+                        ValidationStringency.LENIENT)) {
+            Assert.assertEquals(actual.getFileHeader(), expected.getFileHeader());
+            final Iterator<SAMRecord> expectedIterator = expected.iterator();
+            while (expectedIterator.hasNext()) {
+                Assert.assertTrue(actual.hasNext());
+                Assert.assertEquals(actual.next().getSAMString(),
+                        expectedIterator.next().getSAMString());
+            }
+            Assert.assertFalse(actual.hasNext());
+        }
+    }
+
+    // asserts that the reader returns the same records as the file
+    private static void assertSameRecords(final File file, final ShardedBamReader actual)
+            throws Exception {
+        try (final SamReader expected = new ReadReaderFactory().openSamReader(file)) {
+            final Iterator<SAMRecord> expectedIterator = expected.iterator();
+            while (expectedIterator.hasNext()) {
+                Assert.assertTrue(actual.hasNext());
+                Assert.assertEquals(actual.next().getSAMString(),
+                        expectedIterator.next().getSAMString());
+            }
+            Assert.assertFalse(actual.hasNext());
+        }
+    }
+
+    @Test
+    public void testWithoutMemoryBudget() throws Exception {
+        // only the shard being consumed decodes ahead
+        final List<BamShardSplitter.Shard> shards = BamShardSplitter.split(pairedBam.toPath(), 4);
+        try (final ShardedBamReader actual = new ShardedBamReader(pairedBam.toPath(), shards,
+                ValidationStringency.LENIENT, 0)) {
+            assertSameRecords(pairedBam, actual);
+        }
+    }
+
+    @Test
+    public void testWrongShardBoundaryFallsBack() throws Exception {
+        final List<BamShardSplitter.Shard> shards = BamShardSplitter.split(pairedBam.toPath(), 2);
+        Assert.assertEquals(shards.size(), 2);
+        // move the boundary into the middle of a record
+        final long wrongBoundary = shards.get(1).getStart() + 1;
+        final List<BamShardSplitter.Shard> wrongShards = new ArrayList<>(2);
+        wrongShards.add(new BamShardSplitter.Shard(shards.get(0).getStart(), wrongBoundary));
+        wrongShards.add(new BamShardSplitter.Shard(wrongBoundary, Long.MAX_VALUE));
+        try (final ShardedBamReader actual = new ShardedBamReader(pairedBam.toPath(),
+                wrongShards, ValidationStringency.SILENT)) {
+            assertSameRecords(pairedBam, actual);
+        }
+    }
+}
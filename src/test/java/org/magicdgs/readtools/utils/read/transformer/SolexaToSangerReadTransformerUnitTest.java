@@ -25,6 +25,7 @@
 package org.magicdgs.readtools.utils.read.transformer;
 
 import org.magicdgs.readtools.RTBaseTest;
+import org.magicdgs.readtools.utils.fastq.CompactFastqGATKRead;
 
 import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.SAMUtils;
@@ -71,6 +72,18 @@ public class SolexaToSangerReadTransformerUnitTest extends RTBaseTest {
                 expectedSolexaQuals);
     }
 
+    @Test(dataProvider = "solexaQuals")
+    public void testConvertQualitiesInPlace(final String solexaQualityString,
+            final String expectedSolexaQuals) throws Exception {
+        final CompactFastqGATKRead read = new CompactFastqGATKRead("read",
+                Utils.dupBytes((byte) 'A', solexaQualityString.length()),
+                SAMUtils.fastqToPhred(solexaQualityString), null);
+        final byte[] quals = read.getBaseQualitiesNoCopy();
+        Assert.assertSame(transformer.apply(read), read);
+        Assert.assertSame(read.getBaseQualitiesNoCopy(), quals);
+        Assert.assertEquals(ReadUtils.getBaseQualityString(read), expectedSolexaQuals);
+    }
+
     @DataProvider(name = "badQuals")
     public Iterator<Object[]> solexaBadQualsProvider() {
         // sanger range not included in Solexa
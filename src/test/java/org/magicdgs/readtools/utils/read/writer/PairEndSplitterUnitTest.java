@@ -72,4 +72,11 @@ public class PairEndSplitterUnitTest extends RTBaseTest {
             throws Exception {
         Assert.assertEquals(SPLITTER.getSplitBy(read, null), expected);
     }
-}
\ No newline at end of file
+
+    @Test(dataProvider = "reads")
+    public void testGetSplitOrdinal(final GATKRead read, final String expected)
+            throws Exception {
+        Assert.assertEquals(SPLITTER.getSplitsBy(null).get(SPLITTER.getSplitOrdinal(read)),
+                expected);
+    }
+}
@@ -34,6 +34,7 @@ import htsjdk.samtools.SAMReadGroupRecord;
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.SamReader;
 import htsjdk.samtools.ValidationStringency;
+import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupIdSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
 import org.broadinstitute.hellbender.tools.readersplitters.SampleNameSplitter;
 import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
@@ -46,11 +47,15 @@ import org.testng.annotations.Test;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -188,4 +193,106 @@ public class SplitGATKWriterUnitTest extends RTBaseTest {
         }
     }
 
-}
\ No newline at end of file
+    @DataProvider
+    public Object[][] limitedWritersData() {
+        return new Object[][] {
+                {ReadToolsIOFormat.BamFormat.SAM, true},
+                {ReadToolsIOFormat.BamFormat.BAM, true},
+                {ReadToolsIOFormat.BamFormat.BAM, false},
+                {ReadToolsIOFormat.FastqFormat.PLAIN, true},
+                {ReadToolsIOFormat.FastqFormat.GZIP, false}
+        };
+    }
+
+    @Test(dataProvider = "limitedWritersData")
+    public void testLimitedOpenWriters(final ReadToolsIOFormat format, final boolean onDemand)
+            throws Exception {
+        final File testDir = createTestTempDir("testLimitedOpenWriters");
+        final String prefix = new File(testDir, "limited").getAbsolutePath();
+        final List<SAMReadGroupRecord> readGroups = IntStream.range(0, 4)
+                .mapToObj(n -> new SAMReadGroupRecord(String.valueOf(n)))
+                .collect(Collectors.toList());
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        header.setReadGroups(readGroups);
+
+        // only one writer open, so the reads for closed writers are written into segments
+        final SplitGATKWriter writer = new SplitGATKWriter(prefix, format,
+                Collections.singletonList(new ReadGroupIdSplitter()), header, true,
+                new ReadWriterFactory(), onDemand, 1);
+        // the last read group does not have reads
+        final List<List<String>> expectedNames = new ArrayList<>();
+        readGroups.forEach(rg -> expectedNames.add(new ArrayList<>()));
+        for (int i = 0; i < 30; i++) {
+            final GATKRead read = ArtificialReadUtils.createArtificialRead("1M");
+            read.setName("read" + i);
+            read.setReadGroup(String.valueOf(i % 3));
+            expectedNames.get(i % 3).add(read.getName());
+            writer.addRead(read);
+        }
+        writer.close();
+
+        for (int i = 0; i < readGroups.size(); i++) {
+            final File output = new File(prefix + "_" + i + format.getExtension());
+            Assert.assertEquals(output.exists(), !onDemand || !expectedNames.get(i).isEmpty());
+            if (output.exists()) {
+                final List<String> names = ReadsSourceHandler
+                        .getHandler(output.getAbsolutePath(), READER_FACTORY).toStream()
+                        .map(GATKRead::getName).collect(Collectors.toList());
+                Assert.assertEquals(names, expectedNames.get(i));
+            }
+        }
+        // segments are removed
+        Assert.assertEquals(Objects.requireNonNull(testDir.listFiles(
+                (dir, name) -> name.contains(".segment"))).length, 0);
+    }
+
+    @Test(dataProvider = "limitedWritersData")
+    public void testLimitedOpenWritersSegmentsWithMd5(final ReadToolsIOFormat format,
+            final boolean onDemand) throws Exception {
+        final File testDir = createTestTempDir("testLimitedOpenWritersSegmentsWithMd5");
+        final String prefix = new File(testDir, "limited").getAbsolutePath();
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        header.setReadGroups(IntStream.range(0, 3)
+                .mapToObj(n -> new SAMReadGroupRecord(String.valueOf(n)))
+                .collect(Collectors.toList()));
+
+        // enough interleaved reads to flush the segments several times
+        final SplitGATKWriter writer = new SplitGATKWriter(prefix, format,
+                Collections.singletonList(new ReadGroupIdSplitter()), header, true,
+                new ReadWriterFactory().setCreateMd5File(true), onDemand, 1);
+        final List<List<String>> expectedNames = new ArrayList<>();
+        header.getReadGroups().forEach(rg -> expectedNames.add(new ArrayList<>()));
+        for (int i = 0; i < 6000; i++) {
+            final GATKRead read = ArtificialReadUtils.createArtificialRead("10M");
+            read.setName("read" + i);
+            read.setReadGroup(String.valueOf(i % 3));
+            expectedNames.get(i % 3).add(read.getName());
+            writer.addRead(read);
+        }
+        writer.close();
+
+        for (int i = 0; i < expectedNames.size(); i++) {
+            final File output = new File(prefix + "_" + i + format.getExtension());
+            final List<String> names = ReadsSourceHandler
+                    .getHandler(output.getAbsolutePath(), READER_FACTORY).toStream()
+                    .map(GATKRead::getName).collect(Collectors.toList());
+            Assert.assertEquals(names, expectedNames.get(i));
+            // the MD5 is re-computed after appending the segment
+            final byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest(Files.readAllBytes(output.toPath()));
+            final String expectedMd5 = String.format("%032x", new BigInteger(1, digest));
+            Assert.assertEquals(
+                    new String(Files.readAllBytes(new File(output + ".md5").toPath())).trim(),
+                    expectedMd5);
+        }
+        Assert.assertEquals(Objects.requireNonNull(testDir.listFiles(
+                (dir, name) -> name.contains(".segment"))).length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testLimitedOpenWritersForCram() throws Exception {
+        new SplitGATKWriter("prefix", ReadToolsIOFormat.BamFormat.CRAM,
+                Collections.singletonList(new ReadGroupIdSplitter()), new SAMFileHeader(), true,
+                new ReadWriterFactory(), true, 1);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2017 Daniel Gomez-Sanchez
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.magicdgs.readtools.utils.read.writer;
+
+import org.magicdgs.readtools.RTBaseTest;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMReadGroupRecord;
+import org.broadinstitute.hellbender.tools.readersplitters.LibraryNameSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.ReadGroupIdSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.ReaderSplitter;
+import org.broadinstitute.hellbender.tools.readersplitters.SampleNameSplitter;
+import org.broadinstitute.hellbender.utils.read.ArtificialReadUtils;
+import org.broadinstitute.hellbender.utils.read.GATKRead;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author Daniel Gomez-Sanchez (magicDGS)
+ */
+public class SplitKeyRouterUnitTest extends RTBaseTest {
+
+    private static SAMFileHeader createHeader() {
+        final SAMFileHeader header = ArtificialReadUtils.createArtificialSamHeader();
+        final List<SAMReadGroupRecord> readGroups = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final SAMReadGroupRecord rg = new SAMReadGroupRecord("rg" + i);
+            // the last read group does not have sample/library
+            if (i != 3) {
+                rg.setSample("sample" + (i % 2));
+                rg.setLibrary("library" + i);
+            }
+            readGroups.add(rg);
+        }
+        header.setReadGroups(readGroups);
+        return header;
+    }
+
+    // single-end and pair-end reads for each read group in the header
+    private static List<GATKRead> createReads(final SAMFileHeader header) {
+        final List<GATKRead> reads = new ArrayList<>();
+        for (final SAMReadGroupRecord rg : header.getReadGroups()) {
+            final GATKRead singleEnd = ArtificialReadUtils
+                    .createArtificialUnmappedRead(header, new byte[0], new byte[0]);
+            final List<GATKRead> pair = ArtificialReadUtils
+                    .createPair(header, rg.getReadGroupId(), 10, 2, 2, true, true);
+            reads.add(singleEnd);
+            reads.addAll(pair);
+            for (final GATKRead read : Arrays.asList(singleEnd, pair.get(0), pair.get(1))) {
+                read.setReadGroup(rg.getReadGroupId());
+            }
+        }
+        return reads;
+    }
+
+    @DataProvider
+    public Object[][] compiledSplitters() {
+        return new Object[][] {
+                {Collections.singletonList(new PairEndSplitter())},
+                {Collections.singletonList(new ReadGroupIdSplitter())},
+                {Arrays.asList(new SampleNameSplitter(), new PairEndSplitter())},
+                {Arrays.asList(new PairEndSplitter(), new LibraryNameSplitter(),
+                        new SampleNameSplitter())}
+        };
+    }
+
+    @Test(dataProvider = "compiledSplitters")
+    public void testRouteKeysForReadGroupsInHeader(final List<ReaderSplitter<?>> splitters)
+            throws Exception {
+        final SAMFileHeader header = createHeader();
+        final SplitKeyRouter router = new SplitKeyRouter(splitters, header);
+        final Set<Integer> routes = new HashSet<>();
+        for (final GATKRead read : createReads(header)) {
+            final int route = router.getRoute(read);
+            Assert.assertTrue(route >= 0 && route < router.getNumberOfRoutes(),
+                    "route out of range: " + route);
+            Assert.assertEquals(router.getKey(route), router.getKey(read));
+            routes.add(route);
+        }
+        Assert.assertEquals(routes.size(), router.getNumberOfRoutes());
+    }
+
+    @Test
+    public void testRouteForReadGroupsNotInHeader() throws Exception {
+        final SAMFileHeader header = createHeader();
+        final SplitKeyRouter router = new SplitKeyRouter(
+                Arrays.asList(new SampleNameSplitter(), new PairEndSplitter()), header);
+        final GATKRead read = ArtificialReadUtils
+                .createArtificialUnmappedRead(header, new byte[0], new byte[0]);
+        // null read group
+        read.setReadGroup(null);
+        Assert.assertEquals(router.getRoute(read), -1);
+        // read group not in the header
+        read.setReadGroup("missing");
+        Assert.assertEquals(router.getRoute(read), -1);
+    }
+
+    @Test
+    public void testPairEndRouteIgnoresReadGroup() throws Exception {
+        final SAMFileHeader header = createHeader();
+        final SplitKeyRouter router =
+                new SplitKeyRouter(Collections.singletonList(new PairEndSplitter()), header);
+        final GATKRead read = ArtificialReadUtils
+                .createArtificialUnmappedRead(header, new byte[0], new byte[0]);
+        read.setReadGroup("missing");
+        Assert.assertEquals(router.getKey(router.getRoute(read)), "_SE");
+    }
+
+    @Test
+    public void testNotCompiledSplitter() throws Exception {
+        final SAMFileHeader header = createHeader();
+        final ReaderSplitter<String> nameSplitter = new ReaderSplitter<String>() {
+            @Override
+            public String getSplitBy(final GATKRead record, final SAMFileHeader header) {
+                return record.getName();
+            }
+
+            @Override
+            public List<String> getSplitsBy(final SAMFileHeader header) {
+                return Collections.emptyList();
+            }
+        };
+        final SplitKeyRouter router = new SplitKeyRouter(
+                Arrays.asList(new PairEndSplitter(), nameSplitter), header);
+        Assert.assertEquals(router.getNumberOfRoutes(), 0);
+        for (final GATKRead read : createReads(header)) {
+            Assert.assertEquals(router.getRoute(read), -1);
+            Assert.assertEquals(router.getKey(read),
+                    "_" + new PairEndSplitter().getSplitBy(read, header) + "_" + read.getName());
+        }
+    }
+}